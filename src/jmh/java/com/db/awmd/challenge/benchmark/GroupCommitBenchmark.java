@@ -0,0 +1,75 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+import com.db.awmd.challenge.repository.JournalProperties;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Durable transfers between random pairs of accounts for a range of group commit windows. The
+ * window only pays off with many writers waiting on the same flush, hence the thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+public class GroupCommitBenchmark {
+
+  @Param({"0", "100", "500", "1000", "5000"})
+  public long groupCommitMicros;
+
+  @Param({"10000"})
+  public int accounts;
+
+  private AccountsRepositoryJournaled repository;
+
+  private String[] accountIds;
+
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("benchmark-group-commit");
+    JournalProperties properties = new JournalProperties();
+    properties.setDirectory(directory.toString());
+    properties.setGroupCommitMicros(groupCommitMicros);
+    properties.setSnapshotIntervalSeconds(0);
+    repository = new AccountsRepositoryJournaled(properties, 1024);
+    accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = "Id-" + i;
+      repository.createAccount(new Account(accountIds[i], RepositoryState.INITIAL_BALANCE));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    Repositories.close(repository, directory);
+  }
+
+  @Benchmark
+  public TransferReceipt randomPairs() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    return repository.instantTransfer(new Transfer(accountIds[to], accountIds[from],
+      BigDecimal.valueOf(random.nextInt(1, 100))));
+  }
+}
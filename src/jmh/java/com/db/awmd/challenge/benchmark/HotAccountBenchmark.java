@@ -0,0 +1,77 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.BalanceMode;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Nine transfers out of ten paying into one account, say a fee or settlement account, from
+ * accounts picked at random among {@link #accounts}, the tenth between two random accounts. Run
+ * with the account designated hot, so that its credits are buffered, and without, as before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class HotAccountBenchmark {
+
+  private static final String HOT_ACCOUNT = "fees";
+
+  private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+  @Param({"false", "true"})
+  public boolean hot;
+
+  @Param({"LOCKED", "LOCK_FREE"})
+  public BalanceMode balanceMode;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private AccountsRepositoryInMemory repository;
+
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    String[] hotAccounts = hot ? new String[] {HOT_ACCOUNT} : new String[0];
+    repository = new AccountsRepositoryInMemory(1024, balanceMode, AccountsJournal.NONE,
+      hotAccounts, TransferMetrics.NONE);
+    repository.createAccount(new Account(HOT_ACCOUNT, BigDecimal.ZERO));
+    accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = "Id-" + i;
+      repository.createAccount(new Account(accountIds[i], RepositoryState.INITIAL_BALANCE));
+    }
+  }
+
+  @Benchmark
+  public TransferReceipt ninetyPercentToOneAccount() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    if (random.nextInt(10) != 0) {
+      return repository.instantTransfer(new Transfer(HOT_ACCOUNT, accountIds[from], AMOUNT));
+    }
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    return repository.instantTransfer(new Transfer(accountIds[to], accountIds[from], AMOUNT));
+  }
+}
@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.ledger.LedgerEntry;
+import com.db.awmd.challenge.ledger.LedgerProperties;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-account history queries against a ledger of {@link #entries} transfers spread over
+ * {@link #accounts} accounts, and the cost of recording one more.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LedgerBenchmark {
+
+  @Param({"20000000"})
+  public int entries;
+
+  @Param({"100000"})
+  public int accounts;
+
+  private TransferLedger ledger;
+
+  private String[] accountIds;
+
+  private long firstMillis;
+
+  private long lastMillis;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    LedgerProperties properties = new LedgerProperties();
+    properties.setMaxEntries(Integer.MAX_VALUE - 1);
+    ledger = new TransferLedger(properties);
+    accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = "Id-" + i;
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    firstMillis = System.currentTimeMillis();
+    for (int i = 0; i < entries; i++) {
+      int from = random.nextInt(accounts);
+      int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+      ledger.record(accountIds[from], accountIds[to], random.nextInt(1, 100_000));
+    }
+    lastMillis = System.currentTimeMillis();
+  }
+
+  @Benchmark
+  public List<LedgerEntry> latest() {
+    return ledger.latest(randomAccount(), 20);
+  }
+
+  @Benchmark
+  public List<LedgerEntry> timeRange() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long from = firstMillis + random.nextLong(Math.max(1, lastMillis - firstMillis));
+    return ledger.between(randomAccount(), from, from + 1_000, 100);
+  }
+
+  @Benchmark
+  public long record() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    return ledger.record(accountIds[from], accountIds[(from + 1) % accounts], 100);
+  }
+
+  private String randomAccount() {
+    return accountIds[ThreadLocalRandom.current().nextInt(accounts)];
+  }
+}
@@ -0,0 +1,66 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.limits.LimitsProperties;
+import com.db.awmd.challenge.limits.TransferLimits;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * What the limits add to a transfer: reserving an amount against every window of an account
+ * picked at random among {@link #accounts}, and handing it back, as for a transfer that was not
+ * applied. The limits are high enough never to be hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LimitsBenchmark {
+
+  @Param({"1000", "1000000"})
+  public int accounts;
+
+  private TransferLimits limits;
+
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    LimitsProperties.Tier tier = new LimitsProperties.Tier();
+    tier.setMaxTransfersPerMinute(Integer.MAX_VALUE);
+    tier.setMaxAmountPerHour(new BigDecimal("1000000000"));
+    tier.setMaxAmountPerDay(new BigDecimal("1000000000"));
+    tier.setMaxTransfersPerDay(Integer.MAX_VALUE);
+    LimitsProperties properties = new LimitsProperties();
+    properties.getTiers().put(properties.getDefaultTier(), tier);
+    limits = new TransferLimits(properties);
+    accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = "Id-" + i;
+      limits.reserve(accountIds[i], 1);
+    }
+  }
+
+  @Benchmark
+  public long reserve() {
+    return limits.reserve(accountIds[ThreadLocalRandom.current().nextInt(accounts)], 1);
+  }
+
+  @Benchmark
+  public long reserveAndRelease() {
+    String accountId = accountIds[ThreadLocalRandom.current().nextInt(accounts)];
+    long reservation = limits.reserve(accountId, 1);
+    limits.release(accountId, 1, reservation);
+    return reservation;
+  }
+}
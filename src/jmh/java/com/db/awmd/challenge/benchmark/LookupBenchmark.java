@@ -0,0 +1,78 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Read-heavy traffic: point lookups on their own, lookups running alongside transfers in a
+ * roughly 7:1 read/write mix, and the throughput of account views served while half the threads
+ * transfer as fast as they can.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+  @Benchmark
+  public long balanceLookup(RepositoryState state) {
+    return state.repository.getBalanceMinorUnits(randomAccount(state));
+  }
+
+  @Benchmark
+  public Account accountLookup(RepositoryState state) {
+    return state.repository.getAccount(randomAccount(state));
+  }
+
+  @Benchmark
+  @Group("readMix")
+  @GroupThreads(7)
+  public long readMixLookup(RepositoryState state) {
+    return state.repository.getBalanceMinorUnits(randomAccount(state));
+  }
+
+  @Benchmark
+  @Group("readMix")
+  @GroupThreads(1)
+  public TransferReceipt readMixTransfer(RepositoryState state) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(state.accounts);
+    int to = (from + 1 + random.nextInt(state.accounts - 1)) % state.accounts;
+    return state.repository.instantTransfer(
+      new Transfer(state.accountIds[to], state.accountIds[from], AMOUNT));
+  }
+
+  @Benchmark
+  @Group("viewsUnderTransferLoad")
+  @GroupThreads(4)
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public AccountView viewUnderLoad(RepositoryState state) {
+    String accountId = randomAccount(state);
+    return AccountView.of(accountId, state.repository.getBalanceMinorUnits(accountId));
+  }
+
+  @Benchmark
+  @Group("viewsUnderTransferLoad")
+  @GroupThreads(4)
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public TransferReceipt transferUnderLoad(RepositoryState state) {
+    return readMixTransfer(state);
+  }
+
+  private static String randomAccount(RepositoryState state) {
+    return state.accountIds[ThreadLocalRandom.current().nextInt(state.accounts)];
+  }
+}
@@ -0,0 +1,104 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The arithmetic of one transfer, from the debit check to the receipt and the notification text,
+ * done with {@link BigDecimal} balances as the transfer path used to and with minor units and
+ * {@link Money}. Run with {@code -prof gc} to compare allocation per transfer as well as time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+  private static final String FROM = "Id-1";
+
+  private static final String TO = "Id-2";
+
+  private final BigDecimal decimalAmount = new BigDecimal("12.34");
+
+  private BigDecimal decimalFrom = new BigDecimal("1000000.00");
+
+  private BigDecimal decimalTo = new BigDecimal("1000000.00");
+
+  private final Money amount = Money.of(decimalAmount);
+
+  private long from = Money.toMinorUnits(decimalFrom);
+
+  private long to = Money.toMinorUnits(decimalTo);
+
+  @Benchmark
+  public DecimalReceipt bigDecimalTransfer() {
+    if (decimalFrom.compareTo(decimalAmount) < 0) {
+      throw new IllegalStateException("Insufficient funds");
+    }
+    BigDecimal fromBalance = decimalFrom.subtract(decimalAmount);
+    BigDecimal toBalance = decimalTo.add(decimalAmount);
+    // Swap sides so that the balances never run out.
+    decimalFrom = toBalance;
+    decimalTo = fromBalance;
+    return new DecimalReceipt(FROM, TO, decimalAmount, fromBalance, toBalance);
+  }
+
+  @Benchmark
+  public TransferReceipt moneyTransfer() {
+    long units = amount.getMinorUnits();
+    if (from < units) {
+      throw new IllegalStateException("Insufficient funds");
+    }
+    long fromBalance = from - units;
+    long toBalance = to + units;
+    from = toBalance;
+    to = fromBalance;
+    return new TransferReceipt(FROM, TO, units, fromBalance, toBalance);
+  }
+
+  /*
+   * Every transfer leaves a new balance behind, so each call formats one it has not seen before;
+   * a BigDecimal caches its own string after the first time.
+   */
+  @Benchmark
+  public String bigDecimalNotificationText() {
+    return "Updated balance is: " + BigDecimal.valueOf(++from, Money.SCALE);
+  }
+
+  @Benchmark
+  public String moneyNotificationText() {
+    return Money.format(++from, new StringBuilder(48).append("Updated balance is: ")).toString();
+  }
+
+  /**
+   * The receipt as it was before balances were kept in minor units.
+   */
+  public static final class DecimalReceipt {
+
+    final String fromAccountId;
+
+    final String toAccountId;
+
+    final BigDecimal amount;
+
+    final BigDecimal fromBalance;
+
+    final BigDecimal toBalance;
+
+    DecimalReceipt(String fromAccountId, String toAccountId, BigDecimal amount,
+      BigDecimal fromBalance, BigDecimal toBalance) {
+      this.fromAccountId = fromAccountId;
+      this.toAccountId = toAccountId;
+      this.amount = amount;
+      this.fromBalance = fromBalance;
+      this.toBalance = toBalance;
+    }
+  }
+}
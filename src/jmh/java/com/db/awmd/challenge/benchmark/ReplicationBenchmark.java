@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.LocalCluster;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.repository.AccountsRepositoryReplicated;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Committed transfers between random pairs of accounts on the leader of a three node cluster, its
+ * nodes talking in process or over loopback sockets. Each iteration ends once the followers have
+ * caught up, so that one iteration's backlog does not slow down the next.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+public class ReplicationBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000");
+
+  @Param({"in-process", "loopback"})
+  public String transport;
+
+  @Param({"10000"})
+  public int accounts;
+
+  private LocalCluster cluster;
+
+  private AccountsRepositoryReplicated leader;
+
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    cluster = "loopback".equals(transport)
+      ? LocalCluster.overLoopback(3, properties -> { })
+      : LocalCluster.inProcess(3, properties -> { });
+    leader = cluster.leader();
+    accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = "Id-" + i;
+      leader.createAccount(new Account(accountIds[i], INITIAL_BALANCE));
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void awaitFollowers() throws InterruptedException {
+    cluster.awaitReplication(TimeUnit.SECONDS.toMillis(30));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    cluster.close();
+  }
+
+  @Benchmark
+  public TransferReceipt randomPairs() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    return leader.instantTransfer(new Transfer(accountIds[to], accountIds[from],
+      BigDecimal.valueOf(random.nextInt(1, 100))));
+  }
+}
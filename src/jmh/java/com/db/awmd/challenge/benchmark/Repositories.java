@@ -0,0 +1,66 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.repository.AccountsRepositoryPartitioned;
+import com.db.awmd.challenge.repository.BalanceMode;
+import com.db.awmd.challenge.repository.JournalProperties;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Builds every {@link AccountsRepository} engine the benchmarks are parameterized over. New
+ * engines should be added here so that they are measured by every benchmark.
+ */
+final class Repositories {
+
+  static final String IN_MEMORY = "in-memory";
+
+  static final String LOCK_FREE = "lock-free";
+
+  static final String JOURNAL = "journal";
+
+  static final String MAPPED = "mapped";
+
+  static final String PARTITIONED = "partitioned";
+
+  private static final int LOCK_STRIPES = 1024;
+
+  private Repositories() {
+  }
+
+  static AccountsRepository create(String engine, Path directory, int accounts) throws IOException {
+    switch (engine) {
+      case IN_MEMORY:
+        return new AccountsRepositoryInMemory(LOCK_STRIPES, BalanceMode.LOCKED);
+      case LOCK_FREE:
+        return new AccountsRepositoryInMemory(LOCK_STRIPES, BalanceMode.LOCK_FREE);
+      case JOURNAL:
+        JournalProperties properties = new JournalProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSnapshotIntervalSeconds(0);
+        return new AccountsRepositoryJournaled(properties, LOCK_STRIPES);
+      case MAPPED:
+        long capacity = Long.highestOneBit(Math.max(16, accounts * 2L - 1)) * 2;
+        return new AccountsRepositoryMapped(directory.resolve("accounts.map"), capacity, LOCK_STRIPES);
+      case PARTITIONED:
+        return new AccountsRepositoryPartitioned(Runtime.getRuntime().availableProcessors());
+      default:
+        throw new IllegalArgumentException("Unknown repository engine " + engine);
+    }
+  }
+
+  static void close(AccountsRepository repository, Path directory) throws Exception {
+    if (repository instanceof AutoCloseable) {
+      ((AutoCloseable) repository).close();
+    }
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A repository of the engine under test, filled with {@link #accounts} accounts that have enough
+ * money for any benchmark never to run out.
+ */
+@State(Scope.Benchmark)
+public class RepositoryState {
+
+  static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000");
+
+  @Param({Repositories.IN_MEMORY, Repositories.LOCK_FREE, Repositories.JOURNAL, Repositories.MAPPED,
+    Repositories.PARTITIONED})
+  public String engine;
+
+  @Param({"100000"})
+  public int accounts;
+
+  AccountsRepository repository;
+
+  String[] accountIds;
+
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("benchmark-" + engine);
+    repository = Repositories.create(engine, directory, accounts);
+    accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = "Id-" + i;
+      repository.createAccount(new Account(accountIds[i], INITIAL_BALANCE));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    Repositories.close(repository, directory);
+  }
+}
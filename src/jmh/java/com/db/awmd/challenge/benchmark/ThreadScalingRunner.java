@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link TransferBenchmark#randomPairs} at 1, 2, 4, ... up to the given number of threads
+ * (default: available processors), showing how each engine scales with cores.
+ */
+public class ThreadScalingRunner {
+
+  public static void main(String[] args) throws Exception {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+      : Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      Options options = new OptionsBuilder()
+        .include(TransferBenchmark.class.getName() + ".randomPairs")
+        .threads(threads)
+        .forks(1)
+        .warmupIterations(3)
+        .measurementIterations(5)
+        .build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Transfer throughput under three traffic shapes: every thread on its own pair of accounts, all
+ * threads paying into a few hot accounts, and uniformly random pairs. Use {@code -t} (or
+ * {@code -Pjmh.threads}) to vary contention, or {@link ThreadScalingRunner} to sweep it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransferBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+  /**
+   * Gives every benchmark thread a distinct pair of accounts.
+   */
+  @State(Scope.Thread)
+  public static class OwnAccounts {
+
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    Transfer there;
+
+    Transfer back;
+
+    @Setup(Level.Trial)
+    public void setUp(RepositoryState state) {
+      int pair = NEXT.getAndIncrement() * 2 % state.accounts;
+      String first = state.accountIds[pair];
+      String second = state.accountIds[pair + 1];
+      there = new Transfer(second, first, AMOUNT);
+      back = new Transfer(first, second, AMOUNT);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class HotAccounts {
+
+    @Param({"4"})
+    public int hotAccounts;
+  }
+
+  @Benchmark
+  public TransferReceipt uncontended(RepositoryState state, OwnAccounts own) {
+    state.repository.instantTransfer(own.there);
+    return state.repository.instantTransfer(own.back);
+  }
+
+  @Benchmark
+  public TransferReceipt hotAccounts(RepositoryState state, HotAccounts hot) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String to = state.accountIds[random.nextInt(hot.hotAccounts)];
+    String from = state.accountIds[hot.hotAccounts + random.nextInt(state.accounts - hot.hotAccounts)];
+    return state.repository.instantTransfer(new Transfer(to, from, AMOUNT));
+  }
+
+  @Benchmark
+  public TransferReceipt randomPairs(RepositoryState state) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(state.accounts);
+    int to = (from + 1 + random.nextInt(state.accounts - 1)) % state.accounts;
+    return state.repository.instantTransfer(
+      new Transfer(state.accountIds[to], state.accountIds[from], AMOUNT));
+  }
+}
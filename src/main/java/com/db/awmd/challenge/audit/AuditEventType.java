@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.audit;
+
+public enum AuditEventType {
+
+  ACCOUNT_CREATED,
+
+  DUPLICATE_ACCOUNT,
+
+  TRANSFER,
+
+  INSUFFICIENT_FUNDS,
+
+  SAME_ACCOUNT,
+
+  UNKNOWN_ACCOUNT,
+
+  INVALID_AMOUNT,
+
+  LIMIT_EXCEEDED,
+
+  /**
+   * A valid transfer refused because another transfer of its all-or-nothing batch was not.
+   */
+  BATCH_REJECTED
+}
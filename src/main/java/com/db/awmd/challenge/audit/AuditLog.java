@@ -0,0 +1,285 @@
+package com.db.awmd.challenge.audit;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Asynchronous audit trail of account creations, transfers and rejections.
+ *
+ * <p>Publishing claims a slot in a preallocated ring buffer with a single compare-and-set and
+ * copies the event's ids and its amounts in minor units into it; nothing is formatted and nothing
+ * is allocated. A single writer thread reads the slots in order, formats them and writes them to
+ * the configured {@link AuditSink}. If the writer falls a whole buffer behind, new events are dropped
+ * and counted rather than making the caller wait. With auditing disabled every method returns
+ * straight away.
+ */
+@Slf4j
+@Service
+public class AuditLog {
+
+  private static final Logger AUDIT = LoggerFactory.getLogger("audit");
+
+  /*
+   * Which of a slot's amount and balances the event has. Flags rather than a sentinel value, since
+   * every long is a balance some account can hold: an account created without one holds
+   * Long.MIN_VALUE, which is then recorded as such.
+   */
+  private static final int AMOUNT = 1;
+
+  private static final int FROM_BALANCE = 2;
+
+  private static final int TO_BALANCE = 4;
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final boolean enabled;
+
+  private final AuditSink sink;
+
+  private final String file;
+
+  private final Slot[] slots;
+
+  private final int mask;
+
+  /**
+   * Per slot, one more than the sequence last published into it.
+   */
+  private final AtomicLongArray published;
+
+  private final AtomicLong claimed = new AtomicLong();
+
+  /**
+   * Sequence the writer reads next; only the writer thread advances it.
+   */
+  private volatile long consumed;
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final Thread writer;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public AuditLog(AuditProperties properties) {
+    int capacity = properties.getCapacity();
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("audit.capacity must be a power of two: " + capacity);
+    }
+    this.enabled = properties.isEnabled();
+    this.sink = properties.getSink();
+    this.file = properties.getFile();
+    this.slots = new Slot[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot();
+    }
+    this.mask = capacity - 1;
+    this.published = new AtomicLongArray(capacity);
+    if (enabled) {
+      this.writer = new Thread(this::runWriter, "audit-writer");
+      this.writer.setDaemon(true);
+      this.writer.start();
+    } else {
+      this.writer = null;
+    }
+  }
+
+  public void accountCreated(Account account) {
+    if (enabled) {
+      publish(AuditEventType.ACCOUNT_CREATED, null, account.getAccountId(), TO_BALANCE, 0L, 0L,
+        account.getBalanceMinorUnits());
+    }
+  }
+
+  public void duplicateAccount(Account account) {
+    if (enabled) {
+      publish(AuditEventType.DUPLICATE_ACCOUNT, null, account.getAccountId(), 0, 0L, 0L, 0L);
+    }
+  }
+
+  public void transfer(TransferReceipt receipt) {
+    if (enabled) {
+      publish(AuditEventType.TRANSFER, receipt.getFromAccountId(), receipt.getToAccountId(),
+        AMOUNT | FROM_BALANCE | TO_BALANCE, receipt.getAmountMinorUnits(),
+        receipt.getFromBalanceMinorUnits(), receipt.getToBalanceMinorUnits());
+    }
+  }
+
+  /**
+   * Records a transfer applied as part of a batch. Batches apply only the net change of each
+   * account, so there are no balances right after the transfer to record.
+   */
+  public void batchedTransfer(Transfer transfer) {
+    if (enabled) {
+      publish(AuditEventType.TRANSFER, transfer.getFromAccountId(), transfer.getToAccountId(),
+        AMOUNT, transfer.getAmount().getMinorUnits(), 0L, 0L);
+    }
+  }
+
+  /**
+   * Records a transfer that was refused for {@code reason}.
+   */
+  public void rejected(AuditEventType reason, Transfer transfer) {
+    if (enabled) {
+      Money amount = transfer.getAmount();
+      publish(reason, transfer.getFromAccountId(), transfer.getToAccountId(),
+        amount == null ? 0 : AMOUNT, amount == null ? 0L : amount.getMinorUnits(), 0L, 0L);
+    }
+  }
+
+  /**
+   * @return number of events dropped because the writer was a whole buffer behind
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stops the writer once every event published so far has been written.
+   */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  private void publish(AuditEventType type, String fromAccountId, String toAccountId, int fields,
+    long amount, long fromBalance, long toBalance) {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - consumed >= slots.length) {
+        dropped.increment();
+        return;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+    int index = (int) sequence & mask;
+    Slot slot = slots[index];
+    slot.type = type;
+    slot.timeMillis = System.currentTimeMillis();
+    slot.fromAccountId = fromAccountId;
+    slot.toAccountId = toAccountId;
+    slot.fields = fields;
+    slot.amount = amount;
+    slot.fromBalance = fromBalance;
+    slot.toBalance = toBalance;
+    published.lazySet(index, sequence + 1);
+  }
+
+  private void runWriter() {
+    StringBuilder line = new StringBuilder(256);
+    try (Writer out = sink == AuditSink.FILE ? new BufferedWriter(new OutputStreamWriter(
+      new FileOutputStream(file, true), StandardCharsets.UTF_8)) : null) {
+      while (true) {
+        long next = consumed;
+        int index = (int) next & mask;
+        if (published.get(index) != next + 1) {
+          if (out != null) {
+            out.flush();
+          }
+          if (!running && claimed.get() == next) {
+            return;
+          }
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          continue;
+        }
+        Slot slot = slots[index];
+        line.setLength(0);
+        slot.format(line);
+        slot.clear();
+        consumed = next + 1;
+        if (out != null) {
+          out.append(line).append('\n');
+        } else {
+          AUDIT.info(line.toString());
+        }
+      }
+    } catch (IOException e) {
+      log.error("Audit writer failed, no further events will be written to {}", file, e);
+    }
+  }
+
+  /**
+   * A ring buffer entry. Written by the publisher that claimed it, then read and cleared by the
+   * writer; {@link #published} orders the two.
+   */
+  private static final class Slot {
+
+    private AuditEventType type;
+
+    private long timeMillis;
+
+    private String fromAccountId;
+
+    private String toAccountId;
+
+    private int fields;
+
+    private long amount;
+
+    private long fromBalance;
+
+    private long toBalance;
+
+    private void format(StringBuilder line) {
+      line.append(Instant.ofEpochMilli(timeMillis)).append(' ').append(type);
+      if (type == AuditEventType.ACCOUNT_CREATED || type == AuditEventType.DUPLICATE_ACCOUNT) {
+        append(line, "account", toAccountId);
+        append(line, "balance", TO_BALANCE, toBalance);
+      } else {
+        append(line, "from", fromAccountId);
+        append(line, "to", toAccountId);
+        append(line, "amount", AMOUNT, amount);
+        append(line, "fromBalance", FROM_BALANCE, fromBalance);
+        append(line, "toBalance", TO_BALANCE, toBalance);
+      }
+    }
+
+    private static void append(StringBuilder line, String name, String value) {
+      if (value != null) {
+        line.append(' ').append(name).append('=').append(value);
+      }
+    }
+
+    private void append(StringBuilder line, String name, int field, long minorUnits) {
+      if ((fields & field) == 0) {
+        return;
+      }
+      line.append(' ').append(name).append('=');
+      if (minorUnits == Long.MIN_VALUE) {
+        line.append("null");
+      } else {
+        Money.format(minorUnits, line);
+      }
+    }
+
+    private void clear() {
+      fromAccountId = null;
+      toAccountId = null;
+    }
+  }
+}
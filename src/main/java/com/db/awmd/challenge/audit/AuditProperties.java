@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.audit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "audit")
+public class AuditProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Number of events the ring buffer holds; must be a power of two. Events published while it is
+   * full are dropped and counted.
+   */
+  private int capacity = 65_536;
+
+  private AuditSink sink = AuditSink.LOG;
+
+  private String file = "audit.log";
+}
@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.audit;
+
+public enum AuditSink {
+
+  /**
+   * Each event is logged at INFO level to the {@code audit} logger.
+   */
+  LOG,
+
+  /**
+   * Events are appended to {@link AuditProperties#getFile()}, one per line.
+   */
+  FILE
+}
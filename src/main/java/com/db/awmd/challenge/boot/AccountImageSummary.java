@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.boot;
+
+import lombok.Data;
+
+/**
+ * Outcome of writing the account image.
+ */
+@Data
+public class AccountImageSummary {
+
+  private final String file;
+
+  private final long accounts;
+
+  private final long bytes;
+
+  private final long millis;
+}
@@ -0,0 +1,102 @@
+package com.db.awmd.challenge.boot;
+
+import com.db.awmd.challenge.repository.AccountImage;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.BalanceMode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gets the service ready to take requests: loads the account image, if asked to and there is one,
+ * then warms up the JIT. Both happen while the bean is created, so before the web server opens
+ * its port.
+ *
+ * <p>The in-memory engine loads the image on {@code boot.decode-threads} threads straight into a
+ * map sized for it. Other engines keep their own state on disk and take the image one account at
+ * a time through their usual write path.
+ *
+ * <p>Every account of the image is allocated within the load and stays live, the worst case for
+ * a generational collector. Give the JVM a young generation that holds a whole load, about
+ * 1.2 GB for ten million accounts, and the load runs without a single collection.
+ */
+@Slf4j
+@Component
+public class AccountsBoot {
+
+  private final Path imageFile;
+
+  private final int chunkSize;
+
+  private final AccountsRepository accountsRepository;
+
+  private final BootMetrics metrics;
+
+  @Autowired
+  public AccountsBoot(BootProperties properties, AccountsRepository accountsRepository,
+    @Value("${accounts.lock-stripes:1024}") int lockStripes,
+    @Value("${accounts.balance-mode:LOCKED}") BalanceMode balanceMode) throws IOException {
+    if (properties.getChunkSize() <= 0 || properties.getDecodeThreads() < 0
+      || properties.getWarmUpIterations() < 0) {
+      throw new IllegalArgumentException("boot.chunk-size must be positive, "
+        + "boot.decode-threads and boot.warm-up-iterations not negative");
+    }
+    this.imageFile = Paths.get(properties.getImageFile());
+    this.chunkSize = properties.getChunkSize();
+    this.accountsRepository = accountsRepository;
+
+    long imageAccounts = 0;
+    long imageLoadNanos = 0;
+    if (properties.isLoadImage() && Files.exists(imageFile)) {
+      long start = System.nanoTime();
+      if (accountsRepository instanceof AccountsRepositoryInMemory) {
+        int threads = properties.getDecodeThreads() == 0
+          ? Runtime.getRuntime().availableProcessors() : properties.getDecodeThreads();
+        imageAccounts = AccountImage.load(imageFile,
+          (AccountsRepositoryInMemory) accountsRepository, threads);
+      } else {
+        imageAccounts = AccountImage.load(imageFile, accountsRepository);
+      }
+      imageLoadNanos = System.nanoTime() - start;
+      log.info("Loaded {} accounts from {} in {} ms", imageAccounts, imageFile,
+        TimeUnit.NANOSECONDS.toMillis(imageLoadNanos));
+    } else if (properties.isLoadImage()) {
+      log.info("No account image at {}, starting without accounts", imageFile);
+    }
+
+    int warmUpIterations = properties.isWarmUp() ? properties.getWarmUpIterations() : 0;
+    long warmUpNanos = 0;
+    if (warmUpIterations > 0) {
+      long start = System.nanoTime();
+      JitWarmUp.run(accountsRepository, lockStripes, balanceMode, warmUpIterations);
+      warmUpNanos = System.nanoTime() - start;
+      log.info("Warmed up with {} transfers and lookups in {} ms", warmUpIterations,
+        TimeUnit.NANOSECONDS.toMillis(warmUpNanos));
+    }
+    this.metrics = new BootMetrics(imageAccounts, TimeUnit.NANOSECONDS.toMillis(imageLoadNanos),
+      warmUpIterations, TimeUnit.NANOSECONDS.toMillis(warmUpNanos));
+  }
+
+  /**
+   * Writes every account, with balances as of a single point in time, to the account image the
+   * next start loads. Transfers keep running while it is written.
+   */
+  public synchronized AccountImageSummary writeImage() throws IOException {
+    long start = System.nanoTime();
+    long accounts = AccountImage.write(accountsRepository, imageFile, chunkSize);
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    log.info("Wrote {} accounts to {} in {} ms", accounts, imageFile, millis);
+    return new AccountImageSummary(imageFile.toString(), accounts, Files.size(imageFile), millis);
+  }
+
+  public BootMetrics getMetrics() {
+    return metrics;
+  }
+}
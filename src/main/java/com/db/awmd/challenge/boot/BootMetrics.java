@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.boot;
+
+import lombok.Data;
+
+/**
+ * What the service did before it started taking requests.
+ */
+@Data
+public class BootMetrics {
+
+  /**
+   * Accounts loaded from the account image, zero if none was loaded.
+   */
+  private final long imageAccounts;
+
+  private final long imageLoadMillis;
+
+  private final int warmUpIterations;
+
+  private final long warmUpMillis;
+}
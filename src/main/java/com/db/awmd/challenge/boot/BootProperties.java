@@ -0,0 +1,43 @@
+package com.db.awmd.challenge.boot;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "boot")
+public class BootProperties {
+
+  /**
+   * Account image written by {@code POST /v1/accounts/image} and loaded at startup.
+   */
+  private String imageFile = "data/accounts.img";
+
+  /**
+   * Whether to load the account image, if there is one, before the service starts taking
+   * requests.
+   */
+  private boolean loadImage = false;
+
+  /**
+   * Threads decoding the image's chunks. Zero uses one per available processor.
+   */
+  private int decodeThreads = 0;
+
+  /**
+   * Accounts per image chunk, the unit the image is decoded in parallel by.
+   */
+  private int chunkSize = 65_536;
+
+  /**
+   * Whether to run the transfer and lookup paths until the JIT has compiled them before the
+   * service starts taking requests.
+   */
+  private boolean warmUp = false;
+
+  /**
+   * Transfers and lookups made during warm-up; enough to get past the compile thresholds.
+   */
+  private int warmUpIterations = 20_000;
+}
@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.boot;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.BalanceMode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs the transfer and lookup paths often enough for the JIT to compile them, so the first
+ * requests after a start do not pay for interpretation.
+ *
+ * <p>Transfers are made on a scratch repository of the same kind, sharing the compiled code but
+ * none of the state; the live repository is only read. Nothing a client can see changes.
+ */
+final class JitWarmUp {
+
+  private static final int SCRATCH_ACCOUNTS = 1_024;
+
+  private static final int BATCH_SIZE = 16;
+
+  private JitWarmUp() {
+  }
+
+  /**
+   * @return a value depending on every read, so none of them can be optimized away
+   */
+  static long run(AccountsRepository live, int lockStripes, BalanceMode balanceMode,
+    int iterations) {
+    AccountsRepositoryInMemory scratch = new AccountsRepositoryInMemory(lockStripes, balanceMode);
+    String[] scratchIds = new String[SCRATCH_ACCOUNTS];
+    for (int i = 0; i < SCRATCH_ACCOUNTS; i++) {
+      scratchIds[i] = "warm-up-" + i;
+      scratch.createAccount(Account.ofMinorUnits(scratchIds[i], i % 2 == 0 ? 1_000_000L : 0L));
+    }
+    AccountPage firstPage = live.listAccounts(0L, SCRATCH_ACCOUNTS);
+    List<String> liveIds = new ArrayList<>(firstPage.getAccounts().size());
+    for (AccountView view : firstPage.getAccounts()) {
+      liveIds.add(view.getAccountId());
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    BigDecimal amount = BigDecimal.valueOf(1, Account.BALANCE_SCALE);
+    List<Transfer> batch = new ArrayList<>(BATCH_SIZE);
+    long sink = 0;
+    for (int i = 0; i < iterations; i++) {
+      String from = scratchIds[random.nextInt(SCRATCH_ACCOUNTS)];
+      String to = scratchIds[random.nextInt(SCRATCH_ACCOUNTS)];
+      if (!from.equals(to)) {
+        try {
+          sink += scratch.instantTransfer(new Transfer(to, from, amount))
+            .getToBalanceMinorUnits();
+        } catch (InsufficientFundsException expected) {
+          // The odd accounts start empty, so the refusal path is warmed too.
+          sink++;
+        }
+        batch.add(new Transfer(to, from, amount));
+      }
+      if (batch.size() == BATCH_SIZE) {
+        BatchMode mode = i % 2 == 0 ? BatchMode.BEST_EFFORT : BatchMode.ALL_OR_NOTHING;
+        sink += scratch.batchTransfer(batch, mode).getResults().size();
+        batch.clear();
+      }
+      sink += scratch.getBalanceMinorUnits(from);
+      if (!liveIds.isEmpty()) {
+        String liveId = liveIds.get(i % liveIds.size());
+        Account account = live.getAccount(liveId);
+        sink += account == null ? 0 : account.getBalanceMinorUnits();
+        sink += live.getBalanceMinorUnits(liveId);
+      }
+      if (i % 256 == 0) {
+        sink += live.listAccounts(0L, 100).getAccounts().size();
+      }
+    }
+    return sink;
+  }
+}
@@ -1,34 +1,142 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
-import lombok.Data;
-import org.hibernate.validator.constraints.NotBlank;
+import lombok.Getter;
 import org.hibernate.validator.constraints.NotEmpty;
 
-@Data
+@Getter
 public class Account {
 
+  /**
+   * Number of decimal places balances and transfer amounts are held at.
+   */
+  public static final int BALANCE_SCALE = Money.SCALE;
+
+  private static final long NO_BALANCE = Long.MIN_VALUE;
+
+  private static final AtomicLongFieldUpdater<Account> BALANCE =
+    AtomicLongFieldUpdater.newUpdater(Account.class, "balanceMinorUnits");
+
   @NotNull
   @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  /*
+   * Balance in minor units (e.g. cents). Debits and credits are CAS loops on this value, so a
+   * single account can be updated without taking any lock. A volatile field updated through
+   * BALANCE rather than an AtomicLong, so an account is one object instead of two, which matters
+   * to the heap and the garbage collector when millions of accounts are loaded at once.
+   */
+  @Getter(lombok.AccessLevel.NONE)
+  private volatile long balanceMinorUnits;
 
   public Account(String accountId) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.balanceMinorUnits = 0L;
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
     @JsonProperty("balance") BigDecimal balance) {
     this.accountId = accountId;
-    this.balance = balance;
+    this.balanceMinorUnits = balance == null ? NO_BALANCE : toMinorUnits(balance);
+  }
+
+  protected Account(String accountId, long balanceMinorUnits) {
+    this.accountId = accountId;
+    this.balanceMinorUnits = balanceMinorUnits;
+  }
+
+  /**
+   * Creates an account holding {@code balanceMinorUnits}, without going through a
+   * {@link BigDecimal}; for rebuilding millions of accounts from stored balances.
+   */
+  public static Account ofMinorUnits(String accountId, long balanceMinorUnits) {
+    return new Account(accountId, balanceMinorUnits);
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  public BigDecimal getBalance() {
+    long units = getBalanceMinorUnits();
+    return units == NO_BALANCE ? null : BigDecimal.valueOf(units, BALANCE_SCALE);
+  }
+
+  public void setBalance(BigDecimal balance) {
+    balanceMinorUnits = balance == null ? NO_BALANCE : toMinorUnits(balance);
+  }
+
+  @JsonIgnore
+  public long getBalanceMinorUnits() {
+    return balanceMinorUnits;
+  }
+
+  /**
+   * Atomically subtracts {@code amount} minor units unless that would take the balance below
+   * zero.
+   *
+   * @return the balance after the debit, or {@code -1} if the balance was insufficient, in which
+   *     case nothing changed
+   */
+  public long tryDebit(long amount) {
+    for (;;) {
+      long current = balanceMinorUnits;
+      if (current == NO_BALANCE || current < amount) {
+        return -1L;
+      }
+      if (BALANCE.compareAndSet(this, current, current - amount)) {
+        return current - amount;
+      }
+    }
+  }
+
+  /**
+   * @return the balance after the credit
+   */
+  public long credit(long amount) {
+    return BALANCE.addAndGet(this, amount);
+  }
+
+  /**
+   * Converts a decimal amount into minor units, failing if it has more than
+   * {@link #BALANCE_SCALE} decimal places rather than silently rounding it.
+   */
+  public static long toMinorUnits(BigDecimal amount) {
+    return Money.toMinorUnits(amount);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Account)) {
+      return false;
+    }
+    Account other = (Account) o;
+    return (accountId == null ? other.accountId == null : accountId.equals(other.accountId))
+      && getBalanceMinorUnits() == other.getBalanceMinorUnits();
+  }
+
+  @Override
+  public int hashCode() {
+    int result = accountId == null ? 43 : accountId.hashCode();
+    long units = getBalanceMinorUnits();
+    return result * 59 + (int) (units ^ (units >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder out = new StringBuilder(64).append("Account(accountId=").append(accountId)
+      .append(", balance=");
+    long units = getBalanceMinorUnits();
+    return (units == NO_BALANCE ? out.append("null") : Money.format(units, out)).append(')')
+      .toString();
   }
 }
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * One page of an account listing.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountPage {
+
+  private final List<AccountView> accounts;
+
+  /**
+   * Cursor to pass to get the next page, or {@code null} once the listing has reached the last
+   * account.
+   */
+  private final Long nextCursor;
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+/**
+ * Immutable snapshot of an account as served to readers, taken from a single atomic read of its
+ * balance.
+ */
+@Data
+public class AccountView {
+
+  private final String accountId;
+
+  private final Money balance;
+
+  public static AccountView of(String accountId, long balanceMinorUnits) {
+    return new AccountView(accountId, Money.ofMinorUnits(balanceMinorUnits));
+  }
+
+  /**
+   * Entity tag of the view of an account with this balance. The id is part of the URL, so the
+   * balance alone tells two representations apart.
+   */
+  public static String eTagFor(long balanceMinorUnits) {
+    return "\"" + Long.toHexString(balanceMinorUnits) + "\"";
+  }
+}
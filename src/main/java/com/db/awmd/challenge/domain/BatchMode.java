@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.domain;
+
+public enum BatchMode {
+
+  /**
+   * Either every transfer in the batch is applied or none is. Transfers are netted first, so the
+   * batch only fails if an account would end up overdrawn once all of them are applied.
+   */
+  ALL_OR_NOTHING,
+
+  /**
+   * Transfers are applied in order, and those that are invalid or would overdraw their source
+   * account are rejected individually.
+   */
+  BEST_EFFORT
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+@Data
+public class BatchTransfer {
+
+  @NotNull
+  private final BatchMode mode;
+
+  @NotNull
+  @NotEmpty
+  @Valid
+  private final List<Transfer> transfers;
+
+  @JsonCreator
+  public BatchTransfer(@JsonProperty("mode") BatchMode mode,
+    @JsonProperty("transfers") List<Transfer> transfers) {
+    this.mode = mode == null ? BatchMode.ALL_OR_NOTHING : mode;
+    this.transfers = transfers;
+  }
+}
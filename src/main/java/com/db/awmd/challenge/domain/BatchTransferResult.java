@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+
+@Data
+public class BatchTransferResult {
+
+  private final BatchMode mode;
+
+  private final int completed;
+
+  private final int rejected;
+
+  private final List<TransferOutcome> results;
+
+  /**
+   * Balance of every account the batch changed, right after it was applied.
+   */
+  private final Map<String, Money> balances;
+}
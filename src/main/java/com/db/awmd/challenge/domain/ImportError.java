@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+@Data
+public class ImportError {
+
+  private final long line;
+
+  private final String message;
+}
@@ -0,0 +1,38 @@
+package com.db.awmd.challenge.domain;
+
+import org.springframework.http.MediaType;
+
+public enum ImportFormat {
+
+  /**
+   * One JSON account per line, e.g. {@code {"accountId":"Id-1","balance":100.00}}.
+   */
+  NDJSON(MediaType.valueOf("application/x-ndjson")),
+
+  /**
+   * {@code accountId,balance} per line, with an optional header line.
+   */
+  CSV(MediaType.valueOf("text/csv"));
+
+  public static final String NDJSON_VALUE = "application/x-ndjson";
+
+  public static final String CSV_VALUE = "text/csv";
+
+  private final MediaType mediaType;
+
+  ImportFormat(MediaType mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  /**
+   * @return the format for the given content type, or {@code null} if it is neither
+   */
+  public static ImportFormat of(MediaType contentType) {
+    for (ImportFormat format : values()) {
+      if (format.mediaType.includes(contentType)) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
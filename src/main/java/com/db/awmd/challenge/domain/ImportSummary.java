@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class ImportSummary {
+
+  private final long rows;
+
+  private final long created;
+
+  private final long duplicates;
+
+  private final long invalid;
+
+  /**
+   * The first invalid rows, up to the configured limit, in no particular order.
+   */
+  private final List<ImportError> errors;
+}
@@ -0,0 +1,110 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a whole number of minor units (e.g. cents) at a fixed scale of
+ * {@link #SCALE} decimal places. Arithmetic is plain {@code long} arithmetic that fails rather than
+ * overflows, and nothing is ever rounded: a decimal with more places than the scale is refused.
+ *
+ * <p>Every account is held in the same currency, so an amount carries no currency of its own. In
+ * JSON it is a plain decimal number.
+ */
+public final class Money implements Comparable<Money> {
+
+  public static final int SCALE = 2;
+
+  public static final Money ZERO = new Money(0L);
+
+  private static final long MINOR_UNITS_PER_MAJOR = 100L;
+
+  private final long minorUnits;
+
+  private Money(long minorUnits) {
+    this.minorUnits = minorUnits;
+  }
+
+  public static Money ofMinorUnits(long minorUnits) {
+    return minorUnits == 0L ? ZERO : new Money(minorUnits);
+  }
+
+  /**
+   * @throws ArithmeticException if {@code amount} has more than {@link #SCALE} decimal places or
+   *     does not fit
+   */
+  @JsonCreator
+  public static Money of(BigDecimal amount) {
+    return ofMinorUnits(toMinorUnits(amount));
+  }
+
+  /**
+   * Converts a decimal amount into minor units, failing rather than rounding it.
+   *
+   * @throws ArithmeticException if {@code amount} has more than {@link #SCALE} decimal places or
+   *     does not fit
+   */
+  public static long toMinorUnits(BigDecimal amount) {
+    return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+  }
+
+  public long getMinorUnits() {
+    return minorUnits;
+  }
+
+  public int signum() {
+    return Long.signum(minorUnits);
+  }
+
+  public Money plus(Money other) {
+    return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+  }
+
+  public Money minus(Money other) {
+    return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+  }
+
+  @JsonValue
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  /**
+   * Appends the amount as a plain decimal, e.g. {@code 1234.50}, without creating a
+   * {@link BigDecimal}.
+   */
+  public static StringBuilder format(long minorUnits, StringBuilder out) {
+    long major = minorUnits / MINOR_UNITS_PER_MAJOR;
+    long fraction = Math.abs(minorUnits % MINOR_UNITS_PER_MAJOR);
+    if (minorUnits < 0 && major == 0) {
+      out.append('-');
+    }
+    out.append(major).append('.');
+    if (fraction < 10) {
+      out.append('0');
+    }
+    return out.append(fraction);
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o == this || o instanceof Money && ((Money) o).minorUnits == minorUnits;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(minorUnits);
+  }
+
+  @Override
+  public String toString() {
+    return format(minorUnits, new StringBuilder(24)).toString();
+  }
+}
@@ -0,0 +1,42 @@
+package com.db.awmd.challenge.domain;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import javax.validation.Constraint;
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+import javax.validation.Payload;
+
+/**
+ * The annotated {@link Money} must be more than zero. {@code null} is valid.
+ */
+@Documented
+@Constraint(validatedBy = Positive.Validator.class)
+@Target({FIELD, METHOD, PARAMETER})
+@Retention(RUNTIME)
+public @interface Positive {
+
+  String message() default "must be positive";
+
+  Class<?>[] groups() default {};
+
+  Class<? extends Payload>[] payload() default {};
+
+  class Validator implements ConstraintValidator<Positive, Money> {
+
+    @Override
+    public void initialize(Positive constraint) {
+    }
+
+    @Override
+    public boolean isValid(Money value, ConstraintValidatorContext context) {
+      return value == null || value.signum() > 0;
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * Why a transfer, on its own or within a batch, was rejected.
+ */
+public enum RejectionReason {
+
+  INVALID_AMOUNT,
+
+  SAME_ACCOUNT,
+
+  UNKNOWN_ACCOUNT,
+
+  INSUFFICIENT_FUNDS,
+
+  LIMIT_EXCEEDED,
+
+  /**
+   * The transfer was valid, but another transfer of its all-or-nothing batch was not.
+   */
+  BATCH_REJECTED
+}
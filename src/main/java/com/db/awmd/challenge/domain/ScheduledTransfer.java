@@ -0,0 +1,57 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * A transfer to be made at {@code executeAt}, an ISO-8601 instant. With {@code intervalSeconds}
+ * it is a standing order repeated at that interval, {@code occurrences} times in all or until
+ * cancelled if that is left out.
+ */
+@Data
+public class ScheduledTransfer {
+
+  @NotNull
+  @NotEmpty
+  private final String toAccountId;
+
+  @NotNull
+  @NotEmpty
+  private final String fromAccountId;
+
+  @NotNull
+  @Positive(message = "Amount must be positive.")
+  private final Money amount;
+
+  @NotNull
+  @NotEmpty
+  private final String executeAt;
+
+  @Min(1)
+  private final Long intervalSeconds;
+
+  @Min(1)
+  private final Integer occurrences;
+
+  @JsonCreator
+  public ScheduledTransfer(@JsonProperty("toAccountId") String toAccountId,
+    @JsonProperty("fromAccountId") String fromAccountId, @JsonProperty("amount") Money amount,
+    @JsonProperty("executeAt") String executeAt,
+    @JsonProperty("intervalSeconds") Long intervalSeconds,
+    @JsonProperty("occurrences") Integer occurrences) {
+    this.toAccountId = toAccountId;
+    this.fromAccountId = fromAccountId;
+    this.amount = amount;
+    this.executeAt = executeAt;
+    this.intervalSeconds = intervalSeconds;
+    this.occurrences = occurrences;
+  }
+
+  public Transfer toTransfer() {
+    return new Transfer(toAccountId, fromAccountId, amount);
+  }
+}
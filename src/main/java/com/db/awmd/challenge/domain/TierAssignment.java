@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * The limits tier an account is to be moved to, one of those configured under
+ * {@code limits.tiers}.
+ */
+@Data
+public class TierAssignment {
+
+  @NotNull
+  @NotEmpty
+  private final String tier;
+
+  @JsonCreator
+  public TierAssignment(@JsonProperty("tier") String tier) {
+    this.tier = tier;
+  }
+}
@@ -2,8 +2,8 @@ package com.db.awmd.challenge.domain;
 
 import java.math.BigDecimal;
 
-import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 import org.hibernate.validator.constraints.NotEmpty;
 
@@ -24,17 +24,32 @@ public class Transfer {
 	  private final String fromAccountId;
 
 	  @NotNull
-	  @Min(value = 0, message = "Amount must be positive.")
-	  private BigDecimal amount;
+	  @Positive(message = "Amount must be positive.")
+	  private Money amount;
+
+	  /**
+	   * Optional client-chosen key. Submitting a transfer again with the same key returns the
+	   * outcome of the first submission instead of transferring twice.
+	   */
+	  @Size(max = 128)
+	  private String idempotencyKey;
 
 	  public Transfer(String toAccountId, String fromAccountId) {
 	    this.toAccountId = toAccountId;
 	    this.fromAccountId = fromAccountId;
 	  }
 
+	  public Transfer(String toAccountId, String fromAccountId, BigDecimal amount) {
+	    this(toAccountId, fromAccountId, amount == null ? null : Money.of(amount));
+	  }
+
+	  /*
+	   * The amount is converted to minor units as the request is read, so an amount with more than
+	   * two decimal places is refused here rather than rounded.
+	   */
 	  @JsonCreator
 	  public Transfer(@JsonProperty("toAccountId") String toAccountId, @JsonProperty("fromAccountId") String fromAccountId,
-	    @JsonProperty("amount") BigDecimal amount) {
+	    @JsonProperty("amount") Money amount) {
 		  	this.toAccountId = toAccountId;
 		    this.fromAccountId = fromAccountId;
 		    this.amount = amount;
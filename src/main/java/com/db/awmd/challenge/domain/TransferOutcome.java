@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * Result of one transfer within a batch, identified by its position in the request.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferOutcome {
+
+  private final int index;
+
+  private final TransferState state;
+
+  private final String message;
+
+  /**
+   * Why the transfer was rejected, for auditing and metrics; {@code null} unless it was.
+   */
+  @JsonIgnore
+  private final RejectionReason reason;
+
+  public TransferOutcome(int index, TransferState state, String message) {
+    this(index, state, message, null);
+  }
+
+  public TransferOutcome(int index, TransferState state, String message, RejectionReason reason) {
+    this.index = index;
+    this.state = state;
+    this.message = message;
+    this.reason = reason;
+  }
+}
@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+/**
+ * Outcome of a committed transfer, with both balances as they were right after the transfer was
+ * applied.
+ *
+ * <p>Amounts are kept as minor units, so creating a receipt is the only allocation a transfer
+ * makes; the {@link Money} getters are for the edges (JSON, notifications).
+ */
+@Data
+public class TransferReceipt {
+
+  private final String fromAccountId;
+
+  private final String toAccountId;
+
+  @JsonIgnore
+  private final long amountMinorUnits;
+
+  @JsonIgnore
+  private final long fromBalanceMinorUnits;
+
+  @JsonIgnore
+  private final long toBalanceMinorUnits;
+
+  public Money getAmount() {
+    return Money.ofMinorUnits(amountMinorUnits);
+  }
+
+  public Money getFromBalance() {
+    return Money.ofMinorUnits(fromBalanceMinorUnits);
+  }
+
+  public Money getToBalance() {
+    return Money.ofMinorUnits(toBalanceMinorUnits);
+  }
+}
@@ -0,0 +1,42 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * What is known about a submitted transfer. Only completed transfers carry a receipt, and only
+ * rejected or failed ones carry a message.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferStatus {
+
+  private final String transferId;
+
+  private final TransferState state;
+
+  private final TransferReceipt receipt;
+
+  private final String message;
+
+  /**
+   * Why the transfer was rejected, for choosing the response; {@code null} unless it was.
+   */
+  @JsonIgnore
+  private final RejectionReason reason;
+
+  public TransferStatus(String transferId, TransferState state, TransferReceipt receipt,
+    String message) {
+    this(transferId, state, receipt, message, null);
+  }
+
+  public TransferStatus(String transferId, TransferState state, TransferReceipt receipt,
+    String message, RejectionReason reason) {
+    this.transferId = transferId;
+    this.state = state;
+    this.receipt = receipt;
+    this.message = message;
+    this.reason = reason;
+  }
+}
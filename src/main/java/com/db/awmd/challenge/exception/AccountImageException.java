@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.exception;
+
+public class AccountImageException extends RuntimeException {
+
+  public AccountImageException(String message) {
+    super(message);
+  }
+
+  public AccountImageException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
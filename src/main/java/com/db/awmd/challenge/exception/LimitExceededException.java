@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.exception;
+
+import lombok.Getter;
+
+public class LimitExceededException extends RuntimeException {
+
+  /**
+   * Earliest the same transfer could pass, as far as the breached window is concerned.
+   */
+  @Getter
+  private final long retryAfterSeconds;
+
+  public LimitExceededException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
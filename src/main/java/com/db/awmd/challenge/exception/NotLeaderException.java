@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class NotLeaderException extends RuntimeException {
+
+  public NotLeaderException(String message) {
+    super(message);
+  }
+}
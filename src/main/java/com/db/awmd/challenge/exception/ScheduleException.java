@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.exception;
+
+public class ScheduleException extends RuntimeException {
+
+  public ScheduleException(String message) {
+    super(message);
+  }
+
+  public ScheduleException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.ledger;
+
+import com.db.awmd.challenge.domain.Money;
+import lombok.Data;
+
+/**
+ * One committed transfer as recorded in the {@link TransferLedger}. The timestamp is an ISO-8601
+ * instant.
+ */
+@Data
+public class LedgerEntry {
+
+  private final long transferId;
+
+  private final String fromAccountId;
+
+  private final String toAccountId;
+
+  private final Money amount;
+
+  private final String timestamp;
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.ledger;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ledger")
+public class LedgerProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Most transfers the ledger holds. Each takes about 32 bytes; once the ledger is full further
+   * transfers are still applied but are dropped from it and counted.
+   */
+  private int maxEntries = 20_000_000;
+}
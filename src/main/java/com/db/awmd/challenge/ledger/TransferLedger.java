@@ -0,0 +1,248 @@
+package com.db.awmd.challenge.ledger;
+
+import com.db.awmd.challenge.domain.Money;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only, in-memory record of committed transfers.
+ *
+ * <p>Entries are stored column by column in chunks of primitive arrays: source and destination as
+ * account ordinals, the amount in minor units and the time in epoch milliseconds. With both account
+ * indexes that comes to about 32 bytes an entry, against well over 100 for a
+ * {@code List<Transfer>}. The position of an entry in the
+ * ledger is its transfer id. Every account keeps the positions of the entries it appears in, in
+ * order, so its latest transfers are read from the end of that list and a time range is found
+ * by binary search, whatever the size of the ledger.
+ *
+ * <p>Appends take one lock for a handful of array stores. Reads take no lock: everything an entry
+ * refers to is written before the volatile count that publishes it.
+ */
+@Component
+public class TransferLedger {
+
+  private static final int CHUNK_BITS = 16;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final boolean enabled;
+
+  private final int maxEntries;
+
+  private final int[][] fromColumn;
+
+  private final int[][] toColumn;
+
+  private final long[][] amountColumn;
+
+  private final long[][] timeColumn;
+
+  private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+
+  private volatile String[] accountIds = new String[1024];
+
+  private volatile Postings[] postings = new Postings[1024];
+
+  private volatile int size;
+
+  private long lastTimestamp;
+
+  private final LongAdder dropped = new LongAdder();
+
+  @Autowired
+  public TransferLedger(LedgerProperties properties) {
+    this.enabled = properties.isEnabled();
+    this.maxEntries = properties.getMaxEntries();
+    int chunks = (maxEntries + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+    this.fromColumn = new int[chunks][];
+    this.toColumn = new int[chunks][];
+    this.amountColumn = new long[chunks][];
+    this.timeColumn = new long[chunks][];
+  }
+
+  /**
+   * Appends a committed transfer.
+   *
+   * @return the id of the new entry, or {@code -1} if the ledger is disabled or full
+   */
+  public long record(String fromAccountId, String toAccountId, long amountMinorUnits) {
+    if (!enabled) {
+      return -1;
+    }
+    synchronized (this) {
+      int position = size;
+      if (position >= maxEntries) {
+        dropped.increment();
+        return -1;
+      }
+      int chunk = position >>> CHUNK_BITS;
+      if (fromColumn[chunk] == null) {
+        fromColumn[chunk] = new int[CHUNK_SIZE];
+        toColumn[chunk] = new int[CHUNK_SIZE];
+        amountColumn[chunk] = new long[CHUNK_SIZE];
+        timeColumn[chunk] = new long[CHUNK_SIZE];
+      }
+      // Kept non-decreasing so that an account's entries can be searched by time.
+      lastTimestamp = Math.max(lastTimestamp, System.currentTimeMillis());
+
+      int from = ordinal(fromAccountId);
+      int to = ordinal(toAccountId);
+      int offset = position & CHUNK_MASK;
+      fromColumn[chunk][offset] = from;
+      toColumn[chunk][offset] = to;
+      amountColumn[chunk][offset] = amountMinorUnits;
+      timeColumn[chunk][offset] = lastTimestamp;
+      postings[from].add(position);
+      postings[to].add(position);
+      size = position + 1;
+      return position;
+    }
+  }
+
+  /**
+   * @return up to {@code limit} of the account's transfers, newest first
+   */
+  public List<LedgerEntry> latest(String accountId, int limit) {
+    Postings account = postingsOf(accountId);
+    if (account == null) {
+      return Collections.emptyList();
+    }
+    return collect(account, account.count - 1, 0, limit);
+  }
+
+  /**
+   * @return up to {@code limit} of the account's transfers recorded from {@code fromMillis}
+   *     inclusive to {@code toMillis} exclusive, newest first
+   */
+  public List<LedgerEntry> between(String accountId, long fromMillis, long toMillis, int limit) {
+    Postings account = postingsOf(accountId);
+    if (account == null || fromMillis >= toMillis) {
+      return Collections.emptyList();
+    }
+    int count = account.count;
+    int[] positions = account.positions;
+    int first = firstAtOrAfter(positions, count, fromMillis);
+    int end = firstAtOrAfter(positions, count, toMillis);
+    return collect(account, end - 1, first, limit);
+  }
+
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @return the number of transfers not recorded because the ledger was full
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Forgets every entry, for when all accounts are cleared.
+   */
+  public synchronized void clear() {
+    for (Postings account : postings) {
+      if (account != null) {
+        account.count = 0;
+      }
+    }
+    size = 0;
+  }
+
+  private List<LedgerEntry> collect(Postings account, int newest, int oldest, int limit) {
+    int[] positions = account.positions;
+    List<LedgerEntry> entries = new ArrayList<>(Math.max(0, Math.min(limit, newest - oldest + 1)));
+    for (int i = newest; i >= oldest && entries.size() < limit; i--) {
+      entries.add(entryAt(positions[i]));
+    }
+    return entries;
+  }
+
+  private LedgerEntry entryAt(int position) {
+    int chunk = position >>> CHUNK_BITS;
+    int offset = position & CHUNK_MASK;
+    String[] ids = accountIds;
+    return new LedgerEntry(position, ids[fromColumn[chunk][offset]], ids[toColumn[chunk][offset]],
+      Money.ofMinorUnits(amountColumn[chunk][offset]),
+      Instant.ofEpochMilli(timeColumn[chunk][offset]).toString());
+  }
+
+  /**
+   * @return the index of the first of the account's entries recorded at or after {@code millis},
+   *     or {@code count} if there is none
+   */
+  private int firstAtOrAfter(int[] positions, int count, long millis) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int position = positions[middle];
+      if (timeColumn[position >>> CHUNK_BITS][position & CHUNK_MASK] < millis) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private Postings postingsOf(String accountId) {
+    Integer ordinal = ordinals.get(accountId);
+    return ordinal == null ? null : postings[ordinal];
+  }
+
+  /*
+   * Called with the lock held. The id and its postings are in place before the ordinal becomes
+   * visible to readers.
+   */
+  private int ordinal(String accountId) {
+    Integer known = ordinals.get(accountId);
+    if (known != null) {
+      return known;
+    }
+    int ordinal = ordinals.size();
+    if (ordinal == accountIds.length) {
+      accountIds = Arrays.copyOf(accountIds, ordinal * 2);
+      postings = Arrays.copyOf(postings, ordinal * 2);
+    }
+    accountIds[ordinal] = accountId;
+    postings[ordinal] = new Postings();
+    ordinals.put(accountId, ordinal);
+    return ordinal;
+  }
+
+  /**
+   * Positions of one account's entries, in ledger order.
+   */
+  private static final class Postings {
+
+    private volatile int[] positions = new int[4];
+
+    private volatile int count;
+
+    /*
+     * Called with the ledger lock held. A reader that sees the new count also sees an array
+     * holding at least that many positions.
+     */
+    void add(int position) {
+      int[] current = positions;
+      int next = count;
+      if (next == current.length) {
+        current = Arrays.copyOf(current, next * 2);
+        positions = current;
+      }
+      current[next] = position;
+      count = next + 1;
+    }
+  }
+}
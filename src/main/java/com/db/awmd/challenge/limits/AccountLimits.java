@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.limits;
+
+import java.util.List;
+import lombok.Data;
+
+/**
+ * An account's tier and what it has used of each window its limits are kept over.
+ */
+@Data
+public class AccountLimits {
+
+  private final String accountId;
+
+  private final String tier;
+
+  private final List<WindowUsage> windows;
+}
@@ -0,0 +1,84 @@
+package com.db.awmd.challenge.limits;
+
+import com.db.awmd.challenge.domain.Money;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rolling windows outflow is limited over. Each is a ring of equal buckets, so a transfer is
+ * forgotten between zero and one bucket after it leaves its window; limits err on the strict side.
+ */
+public enum LimitWindow {
+
+  TRANSFERS_PER_MINUTE(TimeUnit.MINUTES.toMillis(1), 6, false, "per minute transfer cap"),
+
+  AMOUNT_PER_HOUR(TimeUnit.HOURS.toMillis(1), 12, true, "hourly outflow limit"),
+
+  AMOUNT_PER_DAY(TimeUnit.DAYS.toMillis(1), 24, true, "daily outflow limit"),
+
+  TRANSFERS_PER_DAY(TimeUnit.DAYS.toMillis(1), 24, false, "daily transfer cap");
+
+  private final long spanMillis;
+
+  private final int buckets;
+
+  private final boolean amount;
+
+  private final String description;
+
+  LimitWindow(long spanMillis, int buckets, boolean amount, String description) {
+    this.spanMillis = spanMillis;
+    this.buckets = buckets;
+    this.amount = amount;
+    this.description = description;
+  }
+
+  long getSpanMillis() {
+    return spanMillis;
+  }
+
+  int getBuckets() {
+    return buckets;
+  }
+
+  long getBucketMillis() {
+    return spanMillis / buckets;
+  }
+
+  /**
+   * @return {@code true} if the window adds up amounts in minor units, {@code false} if it counts
+   *     transfers
+   */
+  boolean isAmount() {
+    return amount;
+  }
+
+  String getDescription() {
+    return description;
+  }
+
+  /**
+   * @return the tier's limit for this window, in minor units or transfers, or {@code -1} if the
+   *     tier sets none
+   */
+  long limitOf(LimitsProperties.Tier tier) {
+    switch (this) {
+      case TRANSFERS_PER_MINUTE:
+        return count(tier.getMaxTransfersPerMinute());
+      case AMOUNT_PER_HOUR:
+        return amount(tier.getMaxAmountPerHour());
+      case AMOUNT_PER_DAY:
+        return amount(tier.getMaxAmountPerDay());
+      default:
+        return count(tier.getMaxTransfersPerDay());
+    }
+  }
+
+  private static long count(Integer limit) {
+    return limit == null ? -1L : limit;
+  }
+
+  private static long amount(BigDecimal limit) {
+    return limit == null ? -1L : Money.toMinorUnits(limit);
+  }
+}
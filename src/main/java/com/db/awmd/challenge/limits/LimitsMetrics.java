@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.limits;
+
+import lombok.Data;
+
+/**
+ * Point-in-time view of the transfer limits.
+ */
+@Data
+public class LimitsMetrics {
+
+  private final boolean enabled;
+
+  /**
+   * Accounts holding window counters, that is accounts with limits that sent money recently.
+   */
+  private final int trackedAccounts;
+
+  /**
+   * Counters dropped because every window of their account had gone idle.
+   */
+  private final long evicted;
+}
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.limits;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "limits")
+public class LimitsProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Tier of every account not listed in {@code account-tiers}. A tier missing from {@code tiers}
+   * has no limits, so accounts are only limited once moved to a configured tier.
+   */
+  private String defaultTier = "unlimited";
+
+  /**
+   * Limits by tier name. A tier without any limit set costs nothing on the transfer path.
+   */
+  private Map<String, Tier> tiers = new LinkedHashMap<>();
+
+  /**
+   * Tier of individual accounts, by account id.
+   */
+  private Map<String, String> accountTiers = new LinkedHashMap<>();
+
+  /**
+   * Limits on what leaves an account over a rolling window. Unset limits do not apply.
+   */
+  @Data
+  public static class Tier {
+
+    private Integer maxTransfersPerMinute;
+
+    private BigDecimal maxAmountPerHour;
+
+    private BigDecimal maxAmountPerDay;
+
+    private Integer maxTransfersPerDay;
+  }
+}
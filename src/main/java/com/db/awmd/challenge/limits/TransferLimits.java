@@ -0,0 +1,422 @@
+package com.db.awmd.challenge.limits;
+
+import com.db.awmd.challenge.exception.LimitExceededException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Velocity and outflow limits per account, configured by tier.
+ *
+ * <p>What leaves an account is counted in a ring of buckets for every {@link LimitWindow} some
+ * tier limits. Each bucket is a single long holding the bucket's number in its top bits and the
+ * amount or count in the rest, so a bucket that has rotated out of its window reads as empty and
+ * is reset by the next compare-and-set that lands on it; nothing is locked and nothing is
+ * allocated per transfer. A transfer is added to every window first and taken back out if that
+ * took one over its limit, so racing transfers from the same account can never overshoot a limit
+ * together, though near it both may be refused where one would have passed.
+ *
+ * <p>Next to each ring sits a running total that only ever overestimates what the ring holds, as
+ * buckets rotating out are not taken off it. While that total is within the limit the ring is not
+ * read at all; otherwise the ring is summed and the total brought back down to the exact figure.
+ * An account well within its limits so costs one compare-and-set and one add per window. The
+ * totals share the first cache line of the account's counters with the time it last sent money,
+ * which is only written again once it is a second old.
+ *
+ * <p>Only accounts of a tier with limits, and only while they have recently sent money, hold
+ * counters. Once every window of an account has gone idle its counters are dropped, either by the
+ * account's next transfer or by a sweep that a small share of transfers run over a few entries,
+ * so memory follows the number of active accounts rather than the number of accounts.
+ */
+@Component
+public class TransferLimits {
+
+  /**
+   * Returned by {@link #reserve} when nothing had to be reserved.
+   */
+  public static final long NOT_RESERVED = -1L;
+
+  private static final int VALUE_BITS = 40;
+
+  private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+  private static final long STAMP_MASK = (1L << (Long.SIZE - VALUE_BITS)) - 1;
+
+  private static final long EVICTED = Long.MIN_VALUE;
+
+  /** Cell holding the time counters were last used, or EVICTED. */
+  private static final int LAST_USED = 0;
+
+  /** Cell of the first window's running total. */
+  private static final int TOTALS = 1;
+
+  /** How stale the time counters were last used may get. */
+  private static final long TOUCH_MILLIS = 1_000L;
+
+  /** One transfer in this many, rounded to a power of two, sweeps for idle counters. */
+  private static final int SWEEP_EVERY_MASK = 255;
+
+  private static final int SWEEP_BATCH = 64;
+
+  private final boolean enabled;
+
+  private final String defaultTier;
+
+  private final LimitWindow[] windows;
+
+  /** Offset of each window's ring among an account's cells. */
+  private final int[] offsets;
+
+  private final int cells;
+
+  /** Limit per window by tier, {@code -1} where there is none; {@code null} for no limits. */
+  private final Map<String, long[]> tiers;
+
+  private final long[] defaultLimits;
+
+  private final Map<String, String> accountTiers = new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<String, AtomicLongArray> usages = new ConcurrentHashMap<>();
+
+  private final long idleMillis;
+
+  private final LongSupplier clock;
+
+  private final LongAdder evicted = new LongAdder();
+
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+
+  /** Guarded by sweeping. */
+  private Iterator<Map.Entry<String, AtomicLongArray>> sweepCursor;
+
+  @Autowired
+  public TransferLimits(LimitsProperties properties) {
+    this(properties, System::currentTimeMillis);
+  }
+
+  /**
+   * @param clock current time in milliseconds
+   */
+  public TransferLimits(LimitsProperties properties, LongSupplier clock) {
+    this.enabled = properties.isEnabled();
+    this.defaultTier = properties.getDefaultTier();
+    this.clock = clock;
+
+    List<LimitWindow> limited = new ArrayList<>();
+    for (LimitWindow window : LimitWindow.values()) {
+      for (LimitsProperties.Tier tier : properties.getTiers().values()) {
+        if (window.limitOf(tier) >= 0) {
+          limited.add(window);
+          break;
+        }
+      }
+    }
+    this.windows = limited.toArray(new LimitWindow[0]);
+    this.offsets = new int[windows.length];
+    int cellCount = TOTALS + limited.size();
+    long longest = 0L;
+    for (int w = 0; w < windows.length; w++) {
+      offsets[w] = cellCount;
+      cellCount += windows[w].getBuckets();
+      longest = Math.max(longest, windows[w].getSpanMillis());
+    }
+    this.cells = cellCount;
+    this.idleMillis = longest;
+
+    this.tiers = new HashMap<>();
+    properties.getTiers().forEach((name, tier) -> tiers.put(name, compile(name, tier)));
+    tiers.putIfAbsent(defaultTier, null);
+    this.defaultLimits = tiers.get(defaultTier);
+    properties.getAccountTiers().forEach((accountId, tier) -> {
+      if (!assignTier(accountId, tier)) {
+        throw new IllegalArgumentException(
+          "limits.account-tiers." + accountId + " names unknown tier " + tier);
+      }
+    });
+  }
+
+  /**
+   * Counts a transfer of {@code amount} minor units out of the account against every window of
+   * its tier, refusing it if that would take the account over one of its limits. What was
+   * reserved must be handed back through {@link #release} if the transfer is not applied.
+   *
+   * @return the reservation, to be passed to {@link #release}
+   * @throws LimitExceededException if the transfer would breach a limit
+   */
+  public long reserve(String accountId, long amount) {
+    long[] limits = enabled ? limitsOf(accountId) : null;
+    if (limits == null) {
+      return NOT_RESERVED;
+    }
+    long now = clock.getAsLong();
+    AtomicLongArray counters = countersOf(accountId, now);
+    for (int w = 0; w < windows.length; w++) {
+      long delta = windows[w].isAmount() ? amount : 1L;
+      add(counters, w, now, delta);
+      // The bucket goes first, so the ring never holds more than the total once both are done.
+      long total = counters.addAndGet(TOTALS + w, delta);
+      if (limits[w] >= 0 && total > limits[w] && !withinLimit(counters, w, now, limits[w], total)) {
+        for (int u = 0; u <= w; u++) {
+          remove(counters, u, now, windows[u].isAmount() ? amount : 1L);
+        }
+        throw new LimitExceededException("Transfer would exceed the "
+          + windows[w].getDescription() + " of account " + accountId,
+          retryAfterSeconds(counters, w, now));
+      }
+    }
+    if ((ThreadLocalRandom.current().nextInt() & SWEEP_EVERY_MASK) == 0) {
+      sweep(now);
+    }
+    return now;
+  }
+
+  /**
+   * Takes back what {@link #reserve} counted for a transfer that was not applied. Whatever has
+   * already left its window is left alone.
+   */
+  public void release(String accountId, long amount, long reservation) {
+    if (reservation == NOT_RESERVED) {
+      return;
+    }
+    AtomicLongArray counters = usages.get(accountId);
+    if (counters != null) {
+      for (int w = 0; w < windows.length; w++) {
+        remove(counters, w, reservation, windows[w].isAmount() ? amount : 1L);
+      }
+    }
+  }
+
+  /**
+   * Moves an account to another tier. What it sent while in a tier with limits keeps counting
+   * against the new tier's. Assignments made here last until the service restarts.
+   *
+   * @return {@code false} if there is no such tier
+   */
+  public boolean assignTier(String accountId, String tier) {
+    if (!tiers.containsKey(tier)) {
+      return false;
+    }
+    if (tier.equals(defaultTier)) {
+      accountTiers.remove(accountId);
+    } else {
+      accountTiers.put(accountId, tier);
+    }
+    return true;
+  }
+
+  public String tierOf(String accountId) {
+    return accountTiers.getOrDefault(accountId, defaultTier);
+  }
+
+  public AccountLimits getLimits(String accountId) {
+    long[] limits = tiers.get(tierOf(accountId));
+    AtomicLongArray counters = usages.get(accountId);
+    long now = clock.getAsLong();
+    List<WindowUsage> windowUsages = new ArrayList<>(windows.length);
+    for (int w = 0; w < windows.length; w++) {
+      long limit = limits == null ? -1L : limits[w];
+      long used = counters == null ? 0L : used(counters, w, now);
+      int scale = windows[w].isAmount() ? 2 : 0;
+      windowUsages.add(new WindowUsage(windows[w],
+        limit < 0 ? null : BigDecimal.valueOf(limit, scale), BigDecimal.valueOf(used, scale)));
+    }
+    return new AccountLimits(accountId, tierOf(accountId),
+      enabled ? windowUsages : Collections.emptyList());
+  }
+
+  public LimitsMetrics getMetrics() {
+    return new LimitsMetrics(enabled, usages.size(), evicted.sum());
+  }
+
+  private long[] limitsOf(String accountId) {
+    if (accountTiers.isEmpty()) {
+      return defaultLimits;
+    }
+    String tier = accountTiers.get(accountId);
+    return tier == null ? defaultLimits : tiers.get(tier);
+  }
+
+  /*
+   * An account's counters are replaced rather than reused once idle for longer than its longest
+   * window, so that a bucket number wrapping around in its few bits can never bring back an old
+   * count.
+   */
+  private AtomicLongArray countersOf(String accountId, long now) {
+    while (true) {
+      AtomicLongArray counters = usages.get(accountId);
+      if (counters == null) {
+        AtomicLongArray created = new AtomicLongArray(cells);
+        created.set(LAST_USED, now);
+        counters = usages.putIfAbsent(accountId, created);
+        if (counters == null) {
+          return created;
+        }
+      }
+      long lastUsed = counters.get(LAST_USED);
+      if (!idle(lastUsed, now)) {
+        if (now - lastUsed < TOUCH_MILLIS
+          || counters.compareAndSet(LAST_USED, lastUsed, now)) {
+          return counters;
+        }
+      } else {
+        evict(accountId, counters, lastUsed);
+      }
+    }
+  }
+
+  private boolean idle(long lastUsed, long now) {
+    return lastUsed == EVICTED || now - lastUsed >= idleMillis + TOUCH_MILLIS;
+  }
+
+  private void sweep(long now) {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      for (int n = 0; n < SWEEP_BATCH; n++) {
+        if (sweepCursor == null || !sweepCursor.hasNext()) {
+          sweepCursor = usages.entrySet().iterator();
+          if (!sweepCursor.hasNext()) {
+            return;
+          }
+        }
+        Map.Entry<String, AtomicLongArray> entry = sweepCursor.next();
+        long lastUsed = entry.getValue().get(LAST_USED);
+        if (idle(lastUsed, now)) {
+          evict(entry.getKey(), entry.getValue(), lastUsed);
+        }
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  /*
+   * Marking the counters evicted first makes a transfer that raced to renew them either win, and
+   * keep them, or see the mark and start afresh.
+   */
+  private void evict(String accountId, AtomicLongArray counters, long lastUsed) {
+    if ((lastUsed == EVICTED || counters.compareAndSet(LAST_USED, lastUsed, EVICTED))
+      && usages.remove(accountId, counters)) {
+      evicted.increment();
+    }
+  }
+
+  /*
+   * Sums the ring once the running total has gone over the limit, and if the window is in fact
+   * within it lowers the total to the sum. That only happens if the total is still the one read
+   * before summing: anything added to the total since may have been missed by the sum, while
+   * anything added before was already in its bucket.
+   */
+  private boolean withinLimit(AtomicLongArray counters, int w, long millis, long limit,
+    long total) {
+    long used = used(counters, w, millis);
+    if (used > limit) {
+      return false;
+    }
+    counters.compareAndSet(TOTALS + w, total, used);
+    return true;
+  }
+
+  private void add(AtomicLongArray counters, int w, long millis, long delta) {
+    LimitWindow window = windows[w];
+    long bucket = millis / window.getBucketMillis();
+    int cell = offsets[w] + (int) Math.floorMod(bucket, (long) window.getBuckets());
+    long stamp = (bucket & STAMP_MASK) << VALUE_BITS;
+    while (true) {
+      long current = counters.get(cell);
+      long next = (current & ~VALUE_MASK) == stamp
+        ? stamp | Math.min(VALUE_MASK, (current & VALUE_MASK) + delta)
+        : stamp | Math.min(VALUE_MASK, delta);
+      if (counters.compareAndSet(cell, current, next)) {
+        return;
+      }
+    }
+  }
+
+  /*
+   * Takes delta back out of the bucket of millis, and out of the running total as long as the
+   * bucket was still there to take it from.
+   */
+  private void remove(AtomicLongArray counters, int w, long millis, long delta) {
+    LimitWindow window = windows[w];
+    long bucket = millis / window.getBucketMillis();
+    int cell = offsets[w] + (int) Math.floorMod(bucket, (long) window.getBuckets());
+    long stamp = (bucket & STAMP_MASK) << VALUE_BITS;
+    while (true) {
+      long current = counters.get(cell);
+      if ((current & ~VALUE_MASK) != stamp) {
+        // The bucket has rotated, and what was to be taken back went with it.
+        return;
+      }
+      long next = stamp | Math.max(0L, (current & VALUE_MASK) - delta);
+      if (counters.compareAndSet(cell, current, next)) {
+        counters.addAndGet(TOTALS + w, -delta);
+        return;
+      }
+    }
+  }
+
+  private long used(AtomicLongArray counters, int w, long millis) {
+    LimitWindow window = windows[w];
+    int buckets = window.getBuckets();
+    long bucket = millis / window.getBucketMillis();
+    int slot = (int) Math.floorMod(bucket, (long) buckets);
+    long used = 0L;
+    for (int age = 0; age < buckets; age++) {
+      long value = counters.get(offsets[w] + slot);
+      if (value >>> VALUE_BITS == ((bucket - age) & STAMP_MASK)) {
+        used += value & VALUE_MASK;
+      }
+      slot = slot == 0 ? buckets - 1 : slot - 1;
+    }
+    return used;
+  }
+
+  /*
+   * Seconds until the oldest bucket still counting towards the window rotates out of it.
+   */
+  private long retryAfterSeconds(AtomicLongArray counters, int w, long millis) {
+    LimitWindow window = windows[w];
+    long bucket = millis / window.getBucketMillis();
+    for (int age = window.getBuckets() - 1; age >= 0; age--) {
+      if (valueOf(counters, w, bucket - age) > 0) {
+        long expiry = (bucket - age + window.getBuckets()) * window.getBucketMillis();
+        return Math.max(1L, (expiry - millis + 999L) / 1000L);
+      }
+    }
+    return Math.max(1L, window.getSpanMillis() / 1000L);
+  }
+
+  private long valueOf(AtomicLongArray counters, int w, long bucket) {
+    long value = counters.get(
+      offsets[w] + (int) Math.floorMod(bucket, (long) windows[w].getBuckets()));
+    return value >>> VALUE_BITS == (bucket & STAMP_MASK) ? value & VALUE_MASK : 0L;
+  }
+
+  private long[] compile(String name, LimitsProperties.Tier tier) {
+    long[] limits = new long[windows.length];
+    boolean any = false;
+    for (int w = 0; w < windows.length; w++) {
+      limits[w] = windows[w].limitOf(tier);
+      if (limits[w] == 0 || limits[w] < -1L || limits[w] > VALUE_MASK) {
+        throw new IllegalArgumentException("limits.tiers." + name + " has an out of range "
+          + windows[w].getDescription());
+      }
+      any |= limits[w] > 0;
+    }
+    return any ? limits : null;
+  }
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.limits;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.math.BigDecimal;
+import lombok.Data;
+
+/**
+ * How much of one window's limit an account has used. Amounts are in major units; counts are
+ * whole numbers of transfers.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WindowUsage {
+
+  private final LimitWindow window;
+
+  /**
+   * {@code null} if the account's tier sets no limit for this window.
+   */
+  private final BigDecimal limit;
+
+  private final BigDecimal used;
+}
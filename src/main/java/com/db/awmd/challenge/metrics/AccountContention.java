@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+@Data
+public class AccountContention {
+
+  private final String accountId;
+
+  /**
+   * Approximate number of times a transfer had to wait for this account's lock.
+   */
+  private final long contendedLocks;
+}
@@ -0,0 +1,57 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Approximate heavy-hitter counter for contended accounts, in a fixed table.
+ *
+ * <p>Each account hashes to one slot. A slot counts up for the account it holds and down for any
+ * other account that lands on it, and is handed over once its count reaches zero, so accounts that
+ * are contended much more often than their neighbours keep their slot. Counts are lower bounds.
+ */
+class ContentionTracker {
+
+  private final AtomicReferenceArray<String> accountIds;
+
+  private final AtomicLongArray counts;
+
+  private final int mask;
+
+  ContentionTracker(int slots) {
+    this.accountIds = new AtomicReferenceArray<>(slots);
+    this.counts = new AtomicLongArray(slots);
+    this.mask = slots - 1;
+  }
+
+  void record(String accountId) {
+    int h = accountId.hashCode();
+    int slot = (h ^ (h >>> 16)) & mask;
+    String holder = accountIds.get(slot);
+    if (holder == null && accountIds.compareAndSet(slot, null, accountId)) {
+      holder = accountId;
+    }
+    if (accountId.equals(holder)) {
+      counts.incrementAndGet(slot);
+    } else if (counts.decrementAndGet(slot) <= 0
+      && accountIds.compareAndSet(slot, holder, accountId)) {
+      counts.set(slot, 1L);
+    }
+  }
+
+  List<AccountContention> top(int limit) {
+    List<AccountContention> contended = new ArrayList<>();
+    for (int slot = 0; slot < counts.length(); slot++) {
+      String accountId = accountIds.get(slot);
+      long count = counts.get(slot);
+      if (accountId != null && count > 0) {
+        contended.add(new AccountContention(accountId, count));
+      }
+    }
+    contended.sort(Comparator.comparingLong(AccountContention::getContendedLocks).reversed());
+    return contended.size() > limit ? new ArrayList<>(contended.subList(0, limit)) : contended;
+  }
+}
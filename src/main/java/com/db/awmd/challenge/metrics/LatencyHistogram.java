@@ -0,0 +1,92 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, allocation-free histogram of nanosecond latencies.
+ *
+ * <p>Buckets are log-linear in the style of HdrHistogram: values below {@value #SUB_BUCKETS} get a
+ * bucket each, and every power of two above that is split into {@value #SUB_BUCKETS} equal
+ * buckets, so any recorded value is known to within about 3%. Recording is a couple of atomic
+ * increments on a fixed array.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  private final LongAdder total = new LongAdder();
+
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    counts.incrementAndGet(indexFor(value));
+    total.add(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * Summarizes the values recorded so far. Values recorded while this runs may or may not be
+   * included.
+   */
+  public LatencySummary summarize() {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    long maxNanos = max.get();
+    if (count == 0L) {
+      return new LatencySummary(0L, 0L, 0L, 0L, 0L, 0L, 0L);
+    }
+    return new LatencySummary(count, total.sum() / count,
+      percentile(snapshot, count, 0.50, maxNanos), percentile(snapshot, count, 0.90, maxNanos),
+      percentile(snapshot, count, 0.99, maxNanos), percentile(snapshot, count, 0.999, maxNanos),
+      maxNanos);
+  }
+
+  static int indexFor(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the largest value that falls into bucket {@code index}
+   */
+  static long highestValueIn(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private static long percentile(long[] snapshot, long count, double percentile, long maxNanos) {
+    long rank = Math.max(1L, (long) Math.ceil(count * percentile));
+    long seen = 0L;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+}
@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+/**
+ * Point-in-time view of a {@link LatencyHistogram}. Percentiles are accurate to about 3%.
+ */
+@Data
+public class LatencySummary {
+
+  private final long count;
+
+  private final long meanNanos;
+
+  private final long p50Nanos;
+
+  private final long p90Nanos;
+
+  private final long p99Nanos;
+
+  private final long p999Nanos;
+
+  private final long maxNanos;
+}
@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "metrics")
+public class MetricsProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Time one in this many transfers; 1 times every transfer. Counters are kept for all of them.
+   */
+  private int sampleEvery = 1;
+
+  private int hottestAccounts = 10;
+}
@@ -0,0 +1,151 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Instrumentation of the transfer path: latency histograms, rejection counts and the accounts
+ * whose locks are most contended.
+ *
+ * <p>Callers ask {@link #sample()} once per transfer and only read the clock when it says yes, so
+ * with metrics disabled or a transfer not sampled the cost is a single branch. Nothing allocates
+ * while recording.
+ */
+@Component
+public class TransferMetrics {
+
+  /**
+   * Records nothing; for repositories and services created outside Spring.
+   */
+  public static final TransferMetrics NONE = new TransferMetrics(false, 1, 0);
+
+  private static final int CONTENTION_SLOTS = 1024;
+
+  private final boolean enabled;
+
+  private final int sampleEvery;
+
+  private final int hottestAccounts;
+
+  private final LatencyHistogram transferLatency = new LatencyHistogram();
+
+  private final LatencyHistogram lockWait = new LatencyHistogram();
+
+  private final LatencyHistogram lockHold = new LatencyHistogram();
+
+  private final LatencyHistogram notificationDispatch = new LatencyHistogram();
+
+  private final LongAdder completed = new LongAdder();
+
+  private final LongAdder insufficientFunds = new LongAdder();
+
+  private final LongAdder sameAccount = new LongAdder();
+
+  private final LongAdder unknownAccount = new LongAdder();
+
+  private final LongAdder invalidAmount = new LongAdder();
+
+  private final LongAdder limitExceeded = new LongAdder();
+
+  private final LongAdder batchRejected = new LongAdder();
+
+  private final ContentionTracker contention = new ContentionTracker(CONTENTION_SLOTS);
+
+  @Autowired
+  public TransferMetrics(MetricsProperties properties) {
+    this(properties.isEnabled(), properties.getSampleEvery(), properties.getHottestAccounts());
+  }
+
+  private TransferMetrics(boolean enabled, int sampleEvery, int hottestAccounts) {
+    if (sampleEvery < 1) {
+      throw new IllegalArgumentException("metrics.sample-every must be at least 1: " + sampleEvery);
+    }
+    this.enabled = enabled;
+    this.sampleEvery = sampleEvery;
+    this.hottestAccounts = hottestAccounts;
+  }
+
+  /**
+   * @return whether the current transfer should be timed
+   */
+  public boolean sample() {
+    return enabled && (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0);
+  }
+
+  public void recordTransfer(long nanos) {
+    transferLatency.record(nanos);
+  }
+
+  public void recordLocking(long waitNanos, long holdNanos) {
+    lockWait.record(waitNanos);
+    lockHold.record(holdNanos);
+  }
+
+  public void recordNotificationDispatch(long nanos) {
+    notificationDispatch.record(nanos);
+  }
+
+  /**
+   * Notes that a transfer between the two accounts had to wait for a lock held by another thread.
+   */
+  public void recordContention(String fromAccountId, String toAccountId) {
+    if (enabled) {
+      contention.record(fromAccountId);
+      contention.record(toAccountId);
+    }
+  }
+
+  public void countCompleted() {
+    if (enabled) {
+      completed.increment();
+    }
+  }
+
+  public void countInsufficientFunds() {
+    if (enabled) {
+      insufficientFunds.increment();
+    }
+  }
+
+  public void countSameAccount() {
+    if (enabled) {
+      sameAccount.increment();
+    }
+  }
+
+  public void countUnknownAccount() {
+    if (enabled) {
+      unknownAccount.increment();
+    }
+  }
+
+  public void countInvalidAmount() {
+    if (enabled) {
+      invalidAmount.increment();
+    }
+  }
+
+  public void countLimitExceeded() {
+    if (enabled) {
+      limitExceeded.increment();
+    }
+  }
+
+  /**
+   * Counts a valid transfer refused because another transfer of its all-or-nothing batch was not.
+   */
+  public void countBatchRejected() {
+    if (enabled) {
+      batchRejected.increment();
+    }
+  }
+
+  public TransferMetricsSnapshot snapshot() {
+    return new TransferMetricsSnapshot(enabled, sampleEvery, completed.sum(),
+      insufficientFunds.sum(), sameAccount.sum(), unknownAccount.sum(), invalidAmount.sum(),
+      limitExceeded.sum(), batchRejected.sum(), transferLatency.summarize(), lockWait.summarize(),
+      lockHold.summarize(), notificationDispatch.summarize(), contention.top(hottestAccounts));
+  }
+}
@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Point-in-time view of the transfer path.
+ */
+@Data
+public class TransferMetricsSnapshot {
+
+  private final boolean enabled;
+
+  private final int sampleEvery;
+
+  private final long completed;
+
+  private final long insufficientFundsRejections;
+
+  private final long sameAccountRejections;
+
+  private final long unknownAccountRejections;
+
+  private final long invalidAmountRejections;
+
+  private final long limitRejections;
+
+  /**
+   * Valid transfers refused with the rest of an all-or-nothing batch.
+   */
+  private final long batchRejections;
+
+  /**
+   * Time from entering the service to the transfer being committed and its notifications queued.
+   */
+  private final LatencySummary transferLatency;
+
+  private final LatencySummary lockWait;
+
+  private final LatencySummary lockHold;
+
+  /**
+   * Time spent handing the notifications of a committed transfer to the dispatcher.
+   */
+  private final LatencySummary notificationDispatch;
+
+  private final List<AccountContention> hottestAccounts;
+}
@@ -0,0 +1,398 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.AccountImageException;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary image of every account, for booting a node straight into the state another one
+ * left off in.
+ *
+ * <p>The file is a header, the accounts in chunks and an index of the chunks:
+ *
+ * <pre>
+ *   header   magic:int version:int
+ *   chunk    (idLength:ushort id:utf8 balance:long)*
+ *   index    (offset:long length:int accounts:int crc32:int)*
+ *   trailer  indexOffset:long chunks:int accounts:long magic:int
+ * </pre>
+ *
+ * <p>Accounts are written in creation order, and every chunk stands on its own: the index tells
+ * where it is, how many accounts it holds and so at which position of the creation order they
+ * start. Loading maps the chunks into memory and decodes them on several threads at once, each
+ * putting its accounts straight into a repository sized for the total, so a load costs little
+ * more than creating the account objects.
+ */
+public final class AccountImage {
+
+  private static final int MAGIC = 0x41494d47;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 8;
+
+  private static final int INDEX_ENTRY_BYTES = 20;
+
+  private static final int TRAILER_BYTES = 24;
+
+  private static final int MAX_ID_BYTES = 0xffff;
+
+  private static final int MAX_CHUNK_BYTES = 1 << 26;
+
+  private AccountImage() {
+  }
+
+  /**
+   * Writes every account of {@code repository}, with balances as of a single point in time, to
+   * {@code file}. The image is written next to it first and moved into place once complete, so a
+   * crash never leaves a partial image behind.
+   *
+   * @return how many accounts were written
+   */
+  public static long write(AccountsRepository repository, Path file, int chunkSize)
+    throws IOException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    ChunkWriter writer;
+    try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writer = new ChunkWriter(out, chunkSize);
+      repository.exportAccounts(writer::add);
+      writer.finish();
+      out.flush();
+      stream.getFD().sync();
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+    return writer.accounts;
+  }
+
+  /**
+   * Loads the image at {@code file} into {@code repository}, which must be empty, decoding its
+   * chunks on up to {@code threads} threads.
+   *
+   * @return how many accounts were loaded
+   * @throws AccountImageException if the file is not an image or is damaged, in which case the
+   *     repository is left empty
+   */
+  public static long load(Path file, AccountsRepositoryInMemory repository, int threads)
+    throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      Index index = readIndex(file, channel);
+      repository.restoreBulk(index.accounts, sink -> decodeAll(channel, index, threads, sink));
+      return index.accounts;
+    }
+  }
+
+  /**
+   * Loads the image at {@code file} into any kind of repository through
+   * {@link AccountsRepository#createAccount}, one account at a time in creation order. Much slower
+   * than {@link #load(Path, AccountsRepositoryInMemory, int)}, but every account goes through the
+   * repository's own write path, journal included.
+   *
+   * @return how many accounts were loaded
+   */
+  public static long load(Path file, AccountsRepository repository) throws IOException {
+    if (repository instanceof AccountsRepositoryInMemory) {
+      return load(file, (AccountsRepositoryInMemory) repository, 1);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      Index index = readIndex(file, channel);
+      repository.reserveCapacity((int) Math.min(index.accounts, Integer.MAX_VALUE));
+      for (int chunk = 0; chunk < index.chunks(); chunk++) {
+        decodeChunk(channel, index, chunk, (position, accountId, balance) ->
+          repository.createAccount(Account.ofMinorUnits(accountId, balance)));
+      }
+      return index.accounts;
+    }
+  }
+
+  private static Index readIndex(Path file, FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < HEADER_BYTES + TRAILER_BYTES) {
+      throw new AccountImageException("Not an account image: " + file);
+    }
+    ByteBuffer header = read(channel, 0, HEADER_BYTES);
+    ByteBuffer trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+    if (header.getInt() != MAGIC || trailer.getInt(TRAILER_BYTES - 4) != MAGIC) {
+      throw new AccountImageException("Not an account image: " + file);
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new AccountImageException(
+        "Unsupported account image version " + version + ": " + file);
+    }
+    long indexOffset = trailer.getLong();
+    int chunks = trailer.getInt();
+    long accounts = trailer.getLong();
+    if (chunks < 0 || accounts < 0 || indexOffset < HEADER_BYTES
+      || indexOffset + (long) chunks * INDEX_ENTRY_BYTES != size - TRAILER_BYTES) {
+      throw new AccountImageException("Damaged account image index: " + file);
+    }
+
+    ByteBuffer entries = read(channel, indexOffset, chunks * INDEX_ENTRY_BYTES);
+    Index index = new Index(file, accounts, chunks);
+    long expectedOffset = HEADER_BYTES;
+    long position = 0;
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      long offset = entries.getLong();
+      int length = entries.getInt();
+      int count = entries.getInt();
+      int crc = entries.getInt();
+      if (offset != expectedOffset || length < 0 || count < 0) {
+        throw new AccountImageException("Damaged account image index: " + file);
+      }
+      index.offsets[chunk] = offset;
+      index.lengths[chunk] = length;
+      index.counts[chunk] = count;
+      index.crcs[chunk] = crc;
+      index.firstPositions[chunk] = position;
+      expectedOffset += length;
+      position += count;
+    }
+    if (expectedOffset != indexOffset || position != accounts) {
+      throw new AccountImageException("Damaged account image index: " + file);
+    }
+    return index;
+  }
+
+  /*
+   * Workers take the next undecoded chunk until there are none left, so one slow chunk does not
+   * hold up the others. The first failure stops them all and is rethrown here.
+   */
+  private static void decodeAll(FileChannel channel, Index index, int threads,
+    AccountsRepositoryInMemory.BulkSink sink) throws IOException {
+    int workers = Math.max(1, Math.min(threads, index.chunks()));
+    AtomicInteger nextChunk = new AtomicInteger();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Runnable worker = () -> {
+      int chunk;
+      while (failure.get() == null && (chunk = nextChunk.getAndIncrement()) < index.chunks()) {
+        try {
+          decodeChunk(channel, index, chunk, sink);
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+      }
+    };
+    if (workers == 1) {
+      worker.run();
+    } else {
+      List<Thread> started = new ArrayList<>(workers);
+      for (int i = 0; i < workers; i++) {
+        Thread thread = new Thread(worker, "account-image-" + i);
+        thread.setDaemon(true);
+        thread.start();
+        started.add(thread);
+      }
+      try {
+        for (Thread thread : started) {
+          thread.join();
+        }
+      } catch (InterruptedException e) {
+        failure.compareAndSet(null, e);
+        started.forEach(Thread::interrupt);
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    Throwable cause = failure.get();
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    } else if (cause != null) {
+      throw new AccountImageException("Account image load interrupted: " + index.file, cause);
+    }
+  }
+
+  private static void decodeChunk(FileChannel channel, Index index, int chunk,
+    AccountsRepositoryInMemory.BulkSink sink) throws IOException {
+    int length = index.lengths[chunk];
+    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, index.offsets[chunk],
+      length);
+    CRC32 crc = new CRC32();
+    crc.update(mapped.duplicate());
+    if ((int) crc.getValue() != index.crcs[chunk]) {
+      throw new AccountImageException("Checksum mismatch in chunk " + chunk + ": " + index.file);
+    }
+
+    ByteBuffer in = mapped.order(ByteOrder.BIG_ENDIAN);
+    byte[] id = new byte[64];
+    long position = index.firstPositions[chunk];
+    try {
+      for (int i = 0; i < index.counts[chunk]; i++) {
+        int idLength = in.getShort() & MAX_ID_BYTES;
+        if (idLength > id.length) {
+          id = new byte[idLength];
+        }
+        in.get(id, 0, idLength);
+        sink.accept(position + i, new String(id, 0, idLength, StandardCharsets.UTF_8),
+          in.getLong());
+      }
+    } catch (BufferUnderflowException e) {
+      throw new AccountImageException("Truncated chunk " + chunk + ": " + index.file, e);
+    }
+    if (in.hasRemaining()) {
+      throw new AccountImageException("Trailing bytes in chunk " + chunk + ": " + index.file);
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long offset, int length)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new AccountImageException("Unexpected end of account image");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static final class Index {
+
+    private final Path file;
+
+    private final long accounts;
+
+    private final long[] offsets;
+
+    private final int[] lengths;
+
+    private final int[] counts;
+
+    private final int[] crcs;
+
+    private final long[] firstPositions;
+
+    private Index(Path file, long accounts, int chunks) {
+      this.file = file;
+      this.accounts = accounts;
+      this.offsets = new long[chunks];
+      this.lengths = new int[chunks];
+      this.counts = new int[chunks];
+      this.crcs = new int[chunks];
+      this.firstPositions = new long[chunks];
+    }
+
+    private int chunks() {
+      return offsets.length;
+    }
+  }
+
+  /*
+   * Each chunk is encoded in memory first, so its length and checksum are known before it is
+   * written out. The index entries are kept until the end, where they are written after the last
+   * chunk.
+   */
+  private static final class ChunkWriter {
+
+    private final DataOutputStream out;
+
+    private final int chunkSize;
+
+    private final ChunkBuffer chunkBytes = new ChunkBuffer();
+
+    private final DataOutputStream chunk = new DataOutputStream(chunkBytes);
+
+    private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream index = new DataOutputStream(indexBytes);
+
+    private final CRC32 crc = new CRC32();
+
+    private long offset = HEADER_BYTES;
+
+    private int chunkAccounts;
+
+    private int chunks;
+
+    private long accounts;
+
+    private ChunkWriter(DataOutputStream out, int chunkSize) {
+      this.out = out;
+      this.chunkSize = chunkSize;
+    }
+
+    private void add(String accountId, long balance) throws IOException {
+      byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+      if (id.length > MAX_ID_BYTES) {
+        throw new AccountImageException("Account id too long for an image: " + accountId);
+      }
+      chunk.writeShort(id.length);
+      chunk.write(id);
+      chunk.writeLong(balance);
+      accounts++;
+      if (++chunkAccounts == chunkSize || chunkBytes.size() >= MAX_CHUNK_BYTES) {
+        flushChunk();
+      }
+    }
+
+    private void flushChunk() throws IOException {
+      if (chunkAccounts == 0) {
+        return;
+      }
+      crc.reset();
+      crc.update(chunkBytes.bytes(), 0, chunkBytes.size());
+      index.writeLong(offset);
+      index.writeInt(chunkBytes.size());
+      index.writeInt(chunkAccounts);
+      index.writeInt((int) crc.getValue());
+      chunkBytes.writeTo(out);
+      offset += chunkBytes.size();
+      chunkBytes.reset();
+      chunkAccounts = 0;
+      chunks++;
+    }
+
+    private void finish() throws IOException {
+      flushChunk();
+      indexBytes.writeTo(out);
+      out.writeLong(offset);
+      out.writeInt(chunks);
+      out.writeLong(accounts);
+      out.writeInt(MAGIC);
+    }
+  }
+
+  private static final class ChunkBuffer extends ByteArrayOutputStream {
+
+    private ChunkBuffer() {
+      super(1 << 20);
+    }
+
+    private byte[] bytes() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.List;
+
+/**
+ * Write-ahead log of the changes {@link AccountsRepositoryInMemory} makes.
+ *
+ * <p>The append methods are called while the affected accounts are still locked, so the order of
+ * records for any one account matches the order the changes were made in. They only buffer the
+ * record and return its position; callers then release their locks and wait in
+ * {@link #awaitDurable(long)} until the record has reached disk.
+ *
+ * <p>Callers check {@link #checkWritable()} once the accounts are locked and before changing any
+ * of them, so that a journal which takes no more records refuses the change before it is made in
+ * memory, rather than after, when it could no longer be undone.
+ */
+public interface AccountsJournal {
+
+  /**
+   * Journal that records nothing, for a purely in-memory repository.
+   */
+  AccountsJournal NONE = new AccountsJournal() {
+
+    @Override
+    public long appendCreate(String accountId, long balance) {
+      return 0L;
+    }
+
+    @Override
+    public long appendTransfer(String fromAccountId, String toAccountId, long amount) {
+      return 0L;
+    }
+
+    @Override
+    public long appendDeltas(List<String> accountIds, long[] deltas) {
+      return 0L;
+    }
+
+    @Override
+    public long appendClear() {
+      return 0L;
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+    }
+
+    @Override
+    public void checkWritable() {
+    }
+  };
+
+  long appendCreate(String accountId, long balance);
+
+  long appendTransfer(String fromAccountId, String toAccountId, long amount);
+
+  /**
+   * Records the net balance changes of a batch; zero deltas are skipped.
+   */
+  long appendDeltas(List<String> accountIds, long[] deltas);
+
+  long appendClear();
+
+  void awaitDurable(long position);
+
+  /**
+   * Throws if no more records would reach the journal, for instance because a write already
+   * failed.
+   */
+  void checkWritable();
+}
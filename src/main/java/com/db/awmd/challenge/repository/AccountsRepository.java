@@ -1,10 +1,17 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
 import com.db.awmd.challenge.exception.SameAccountIdException;
+import java.io.IOException;
+import java.util.List;
 
 public interface AccountsRepository {
 
@@ -12,7 +19,44 @@ public interface AccountsRepository {
 
   Account getAccount(String accountId);
 
+  /**
+   * @return the account's balance in minor units, or {@code -1} if there is no such account
+   */
+  default long getBalanceMinorUnits(String accountId) {
+    Account account = getAccount(accountId);
+    return account == null ? -1L : account.getBalanceMinorUnits();
+  }
+
   void clearAccounts();
 
-  void instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException;
+  /**
+   * Returns up to {@code limit} accounts starting at {@code cursor}, which is zero for the first
+   * page and {@link AccountPage#getNextCursor()} for the ones after. Accounts keep their position
+   * while they exist, so paging neither skips nor repeats any.
+   */
+  AccountPage listAccounts(long cursor, int limit);
+
+  /**
+   * Passes every account to {@code consumer} with its balance as of one point in time, without
+   * holding any account lock while doing so. Accounts created after that point are left out.
+   */
+  void exportAccounts(BalanceConsumer consumer) throws IOException;
+
+  /**
+   * Prepares for about {@code additionalAccounts} more accounts to be created, e.g. before a bulk
+   * import. Only a hint; repositories that cannot use it ignore it.
+   */
+  default void reserveCapacity(int additionalAccounts) {
+  }
+
+  /**
+   * @throws AccountNotFoundException if either account does not exist
+   */
+  TransferReceipt instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException;
+
+  /**
+   * Applies a batch of transfers, netting them so that every account involved is updated once.
+   * Invalid transfers and overdrafts are reported per transfer instead of being thrown.
+   */
+  BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode);
 }
@@ -1,30 +1,127 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientFundsException;
 import com.db.awmd.challenge.exception.SameAccountIdException;
-import com.db.awmd.challenge.service.EmailNotificationService;
-
-import java.math.BigDecimal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 @Repository
+@ConditionalOnProperty(prefix = "accounts.repository", name = "engine", havingValue = "in-memory",
+  matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  private static final int DEFAULT_LOCK_STRIPES = 1024;
+
+  /*
+   * Only replaced by reserveCapacity and clearAccounts, with every stripe locked; volatile for the
+   * readers that do not lock. Replacing rather than clearing leaves a running export its own
+   * consistent copy.
+   */
+  private volatile Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+  private volatile CreationOrder creationOrder = new CreationOrder();
+
+  private final ExportCuts exportCuts = new ExportCuts();
+
+  private final StripedLocks locks;
+
+  private final BalanceMode balanceMode;
+
+  private final AccountsJournal journal;
+
+  private final TransferMetrics metrics;
+
+  private final Set<String> hotAccountIds;
+
+  public AccountsRepositoryInMemory() {
+    this(DEFAULT_LOCK_STRIPES, BalanceMode.LOCKED);
+  }
+
+  public AccountsRepositoryInMemory(int lockStripes, BalanceMode balanceMode) {
+    this(lockStripes, balanceMode, TransferMetrics.NONE);
+  }
+
+  public AccountsRepositoryInMemory(int lockStripes, BalanceMode balanceMode,
+    TransferMetrics metrics) {
+    this(lockStripes, balanceMode, AccountsJournal.NONE, metrics);
+  }
+
+  /**
+   * @param hotAccounts ids of the accounts to keep as {@link HotAccount}s, whose credits take no
+   *     lock and are buffered until the next debit
+   */
+  @Autowired
+  public AccountsRepositoryInMemory(@Value("${accounts.lock-stripes:1024}") int lockStripes,
+    @Value("${accounts.balance-mode:LOCKED}") BalanceMode balanceMode,
+    @Value("${accounts.hot-accounts:}") String[] hotAccounts, TransferMetrics metrics) {
+    this(lockStripes, balanceMode, AccountsJournal.NONE, hotAccounts, metrics);
+  }
+
+  /**
+   * Creates a repository that records every change in {@code journal}. Journaling relies on the
+   * account locks to keep each account's records in order, so it requires
+   * {@link BalanceMode#LOCKED}.
+   */
+  public AccountsRepositoryInMemory(int lockStripes, BalanceMode balanceMode,
+    AccountsJournal journal, TransferMetrics metrics) {
+    this(lockStripes, balanceMode, journal, new String[0], metrics);
+  }
+
+  public AccountsRepositoryInMemory(int lockStripes, BalanceMode balanceMode,
+    AccountsJournal journal, String[] hotAccounts, TransferMetrics metrics) {
+    if (journal != AccountsJournal.NONE && balanceMode != BalanceMode.LOCKED) {
+      throw new IllegalArgumentException("A journaled repository must use balance mode LOCKED");
+    }
+    this.locks = new StripedLocks(lockStripes);
+    this.balanceMode = balanceMode;
+    this.journal = journal;
+    this.metrics = metrics;
+    this.hotAccountIds = hotAccounts.length == 0 ? Collections.emptySet()
+      : Collections.unmodifiableSet(new HashSet<>(Arrays.asList(hotAccounts)));
+  }
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
-    	System.out.println("Account id " + account.getAccountId() + " already exists!");
-      throw new DuplicateAccountIdException(
-        "Account id " + account.getAccountId() + " already exists!");
+    int stripe = locks.stripeFor(account.getAccountId());
+    long position;
+    locks.lock(stripe);
+    try {
+      journal.checkWritable();
+      if (accounts.containsKey(account.getAccountId())) {
+        throw new DuplicateAccountIdException(
+          "Account id " + account.getAccountId() + " already exists!");
+      }
+      position = journal.appendCreate(account.getAccountId(), account.getBalanceMinorUnits());
+      accounts.put(account.getAccountId(), hotAccountIds.contains(account.getAccountId())
+        ? new HotAccount(account.getAccountId(), account.getBalanceMinorUnits()) : account);
+      creationOrder.append(account.getAccountId());
+    } finally {
+      locks.unlock(stripe);
     }
+    journal.awaitDurable(position);
   }
 
   @Override
@@ -34,61 +131,431 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 
   @Override
   public void clearAccounts() {
-    accounts.clear();
-  }
-
-@Override
-public synchronized void instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException {
-	// TODO Auto-generated method stub
-	
-	EmailNotificationService notify = new EmailNotificationService();
-	
-	String toAccount = transfer.getToAccountId();
-	String fromAccount = transfer.getFromAccountId();
-	BigDecimal amount = transfer.getAmount();
-	
-	if(toAccount.equals(fromAccount)){
-		System.out.println("Provided 'To' and 'From' accounts are same");
-		throw new SameAccountIdException("Provided 'To' and 'From' accounts are same");
-	}
-	
-	Account toAccountDetails = accounts.get(toAccount);
-	Account fromAccountDetails = accounts.get(fromAccount);
-	
-	if(amount.compareTo(fromAccountDetails.getBalance()) > 0){
-		System.out.println("This account does not have sufficient fund to transfer");
-		throw new InsufficientFundsException("This account does not have sufficient fund to transfer");
-	}
-	
-		// Would be simulating DB Access here
-		
-		/*
-		 * Accquiring lock on 'fromAccountDetails' till the update operation is completed and commited in DB. 
-		 * */
-		
-		synchronized (fromAccountDetails) {
-			System.out.println("Updated fromAccount detaiils: "+(fromAccountDetails.getBalance()).subtract(amount));
-			fromAccountDetails.setBalance((fromAccountDetails.getBalance()).subtract(amount));
-			String messagefrom = "Updated balance is: "+fromAccountDetails.getBalance();
-
-			// Notifying user about transfer status.			
-			notify.notifyAboutTransfer(fromAccountDetails, messagefrom);
-			
-			/*
-			 * Accquiring lock on 'toAccountDetails' till the update operation is completed and commited in DB.
-			 * */
-			
-			synchronized (toAccountDetails) {
-				System.out.println("Updated toAccount detaiils "+(toAccountDetails.getBalance()).add(amount));
-				toAccountDetails.setBalance((toAccountDetails.getBalance()).add(amount));
-				String messageto = "Updated balance is: "+toAccountDetails.getBalance();
-
-				// Notifying user about transfer status.
-				notify.notifyAboutTransfer(toAccountDetails, messageto);
-			}
-			
-		}
-		
-}
+    long position;
+    locks.lockAllStripes();
+    try {
+      journal.checkWritable();
+      position = journal.appendClear();
+      accounts = new ConcurrentHashMap<>();
+      creationOrder = new CreationOrder();
+    } finally {
+      locks.unlockAllStripes();
+    }
+    journal.awaitDurable(position);
+  }
+
+  /*
+   * Pages follow the order accounts were created in. A page stops early at an id whose append is
+   * still in flight, and the cursor returned points at it.
+   */
+  @Override
+  public AccountPage listAccounts(long cursor, int limit) {
+    CreationOrder order = creationOrder;
+    Map<String, Account> current = accounts;
+    List<AccountView> page = new ArrayList<>(limit);
+    long position = cursor;
+    String accountId;
+    while (page.size() < limit && (accountId = order.get(position)) != null) {
+      Account account = current.get(accountId);
+      if (account != null) {
+        page.add(AccountView.of(accountId, account.getBalanceMinorUnits()));
+      }
+      position++;
+    }
+    return new AccountPage(page, position >= order.size() ? null : position);
+  }
+
+  /*
+   * The export walks the creation order up to where it was at the cut, so later accounts are not
+   * included. In LOCK_FREE mode single transfers do not take the stripe locks, so one in flight
+   * at the cut can show up half applied; only LOCKED mode gives an exactly consistent export.
+   */
+  @Override
+  public void exportAccounts(BalanceConsumer consumer) throws IOException {
+    exportAccounts(consumer, () -> { });
+  }
+
+  /**
+   * Exports like {@link #exportAccounts(BalanceConsumer)}, running {@code atCut} while every
+   * stripe is locked for the cut, so it sees exactly the state the export reflects.
+   */
+  void exportAccounts(BalanceConsumer consumer, CutAction atCut) throws IOException {
+    ExportCuts.Cut cut;
+    Map<String, Account> exported;
+    CreationOrder order;
+    long end;
+    locks.lockAllStripes();
+    try {
+      cut = exportCuts.open();
+      exported = accounts;
+      // Credits to hot accounts are made without their stripe, so without offering the cut their
+      // balance first; it is taken now, while nothing can change.
+      for (String hotAccountId : hotAccountIds) {
+        Account hot = exported.get(hotAccountId);
+        if (hot != null) {
+          exportCuts.beforeChange(hotAccountId, hot.getBalanceMinorUnits());
+        }
+      }
+      order = creationOrder;
+      end = order.size();
+      try {
+        atCut.run();
+      } catch (IOException | RuntimeException e) {
+        exportCuts.close(cut);
+        throw e;
+      }
+    } finally {
+      locks.unlockAllStripes();
+    }
+    try {
+      for (long position = 0; position < end; position++) {
+        String accountId = order.get(position);
+        Account account = exported.get(accountId);
+        if (account != null) {
+          consumer.accept(accountId, cut.balanceAt(accountId, account.getBalanceMinorUnits()));
+        }
+      }
+    } finally {
+      exportCuts.close(cut);
+    }
+  }
+
+  /*
+   * Growing a ConcurrentHashMap to millions of entries rehashes it over and over. When a large
+   * import is announced the map is instead copied once into one sized for the final count.
+   */
+  @Override
+  public void reserveCapacity(int additionalAccounts) {
+    locks.lockAllStripes();
+    try {
+      if (additionalAccounts > accounts.size()) {
+        long expected = (long) accounts.size() + additionalAccounts;
+        Map<String, Account> presized =
+          new ConcurrentHashMap<>((int) Math.min(expected * 4 / 3 + 1, 1 << 30));
+        presized.putAll(accounts);
+        accounts = presized;
+      }
+    } finally {
+      locks.unlockAllStripes();
+    }
+  }
+
+  /*
+   * In LOCKED mode only the stripes guarding the two accounts involved are locked, always in
+   * ascending stripe order, so transfers on disjoint account pairs run in parallel and opposite
+   * transfers between the same pair cannot deadlock. In LOCK_FREE mode the debit and credit are
+   * individual atomic updates and no lock is taken at all.
+   *
+   * A credit to a hot account takes only the source's stripe: it lands in one of the account's
+   * buffers, which need no lock. It is journaled before it becomes visible, so any debit that
+   * could have relied on it is journaled after it, even though the account itself is not locked.
+   */
+  @Override
+  public TransferReceipt instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException {
+    String toAccount = transfer.getToAccountId();
+    String fromAccount = transfer.getFromAccountId();
+    long amount = transfer.getAmount().getMinorUnits();
+
+    if (toAccount.equals(fromAccount)) {
+      throw new SameAccountIdException("Provided 'To' and 'From' accounts are same");
+    }
+
+    Account toAccountDetails = accounts.get(toAccount);
+    Account fromAccountDetails = accounts.get(fromAccount);
+    if (fromAccountDetails == null || toAccountDetails == null) {
+      throw new AccountNotFoundException(
+        "Account id " + (fromAccountDetails == null ? fromAccount : toAccount) + " does not exist");
+    }
+
+    if (balanceMode == BalanceMode.LOCK_FREE) {
+      return debitAndCredit(fromAccountDetails, toAccountDetails, amount);
+    }
+
+    TransferReceipt receipt;
+    long position;
+    boolean buffered = toAccountDetails instanceof HotAccount;
+    int fromStripe = locks.stripeFor(fromAccount);
+    int toStripe = buffered ? fromStripe : locks.stripeFor(toAccount);
+    boolean sampled = metrics.sample();
+    long start = sampled ? System.nanoTime() : 0L;
+    boolean contended = locks.lockPair(fromStripe, toStripe);
+    long acquired = sampled ? System.nanoTime() : 0L;
+    try {
+      journal.checkWritable();
+      exportCuts.beforeChange(fromAccount, fromAccountDetails.getBalanceMinorUnits());
+      if (buffered) {
+        long fromBalance = debit(fromAccountDetails, amount);
+        position = journal.appendTransfer(fromAccount, toAccount, amount);
+        receipt = new TransferReceipt(fromAccount, toAccount, amount, fromBalance,
+          toAccountDetails.credit(amount));
+      } else {
+        exportCuts.beforeChange(toAccount, toAccountDetails.getBalanceMinorUnits());
+        receipt = debitAndCredit(fromAccountDetails, toAccountDetails, amount);
+        position = journal.appendTransfer(fromAccount, toAccount, amount);
+      }
+    } finally {
+      locks.unlockPair(fromStripe, toStripe);
+      if (sampled) {
+        metrics.recordLocking(acquired - start, System.nanoTime() - acquired);
+      }
+      if (contended) {
+        metrics.recordContention(fromAccount, toAccount);
+      }
+    }
+    journal.awaitDurable(position);
+    return receipt;
+  }
+
+  private TransferReceipt debitAndCredit(Account fromAccountDetails, Account toAccountDetails,
+    long amount) {
+    long fromBalance = debit(fromAccountDetails, amount);
+    long toBalance = toAccountDetails.credit(amount);
+
+    return new TransferReceipt(fromAccountDetails.getAccountId(), toAccountDetails.getAccountId(),
+      amount, fromBalance, toBalance);
+  }
+
+  private static long debit(Account fromAccountDetails, long amount) {
+    // The debit checks and updates the balance in one atomic step, so two concurrent debits can
+    // never both pass the check and overdraw the account.
+    long fromBalance = fromAccountDetails.tryDebit(amount);
+    if (fromBalance < 0) {
+      throw new InsufficientFundsException("This account does not have sufficient fund to transfer");
+    }
+    return fromBalance;
+  }
+
+  /*
+   * Every account in the batch is locked once, in stripe order, for the whole batch. The batch is
+   * evaluated against a snapshot of their balances and only the net change per account is written.
+   * In LOCK_FREE mode single transfers do not take these locks, so a net debit can still fail; the
+   * debits already applied are then reverted and the batch is evaluated again on fresh balances.
+   */
+  @Override
+  public BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode) {
+    NettedBatch batch = new NettedBatch(transfers, accounts::containsKey);
+    List<String> accountIds = batch.getAccountIds();
+    if (journal != AccountsJournal.NONE
+      && JournalRecords.maxDeltasSize(accountIds) > JournalRecords.MAX_RECORD_SIZE) {
+      throw new IllegalArgumentException(
+        "Batch touches too many accounts to journal: " + accountIds.size());
+    }
+    int count = accountIds.size();
+    Account[] batchAccounts = new Account[count];
+    int[] stripes = new int[count];
+    for (int a = 0; a < count; a++) {
+      batchAccounts[a] = accounts.get(accountIds.get(a));
+      stripes[a] = locks.stripeFor(accountIds.get(a));
+    }
+
+    long[] balances = new long[count];
+    long position = 0L;
+    int locked = locks.lockAll(stripes);
+    try {
+      journal.checkWritable();
+      while (true) {
+        for (int a = 0; a < count; a++) {
+          balances[a] = batchAccounts[a].getBalanceMinorUnits();
+          exportCuts.beforeChange(accountIds.get(a), balances[a]);
+        }
+        if (!batch.evaluate(balances, mode)) {
+          break;
+        }
+        if (applyDeltas(batchAccounts, batch.getDeltas(), balances)) {
+          position = journal.appendDeltas(accountIds, batch.getDeltas());
+          break;
+        }
+      }
+    } finally {
+      locks.unlockAll(stripes, locked);
+    }
+    journal.awaitDurable(position);
+    return batch.toResult(mode, balances);
+  }
 
+  /*
+   * Debits go first so that a failing one can be undone before any credit has been made visible.
+   * On success the new balance of every changed account is written to balances.
+   */
+  private static boolean applyDeltas(Account[] batchAccounts, long[] deltas, long[] balances) {
+    for (int a = 0; a < deltas.length; a++) {
+      if (deltas[a] < 0) {
+        long balance = batchAccounts[a].tryDebit(-deltas[a]);
+        if (balance < 0) {
+          for (int r = 0; r < a; r++) {
+            if (deltas[r] < 0) {
+              batchAccounts[r].credit(-deltas[r]);
+            }
+          }
+          return false;
+        }
+        balances[a] = balance;
+      }
+    }
+    for (int a = 0; a < deltas.length; a++) {
+      if (deltas[a] > 0) {
+        balances[a] = batchAccounts[a].credit(deltas[a]);
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Used to rebuild the repository from a snapshot and journal. These bypass the journal and the
+   * overdraft checks, since every change being restored was already checked when it was made.
+   */
+
+  void restoreAccount(String accountId, long balance) {
+    Account account = newAccount(accountId, balance);
+    if (accounts.put(accountId, account) == null) {
+      creationOrder.append(accountId);
+    }
+  }
+
+  void restoreDelta(String accountId, long delta) {
+    Account account = accounts.get(accountId);
+    if (account != null) {
+      account.credit(delta);
+    }
+  }
+
+  void restoreClear() {
+    accounts = new ConcurrentHashMap<>();
+    creationOrder = new CreationOrder();
+  }
+
+  /*
+   * Used by a follower to apply the records its leader replicated while it keeps serving reads.
+   * Each record's accounts change under their stripes, as they did on the leader, so an export
+   * never sees a record half applied.
+   */
+
+  void replicateAccount(String accountId, long balance) {
+    int stripe = locks.stripeFor(accountId);
+    locks.lock(stripe);
+    try {
+      restoreAccount(accountId, balance);
+    } finally {
+      locks.unlock(stripe);
+    }
+  }
+
+  void replicateDeltas(List<String> accountIds, long[] deltas) {
+    int count = accountIds.size();
+    int[] stripes = new int[count];
+    for (int a = 0; a < count; a++) {
+      stripes[a] = locks.stripeFor(accountIds.get(a));
+    }
+    int locked = locks.lockAll(stripes);
+    try {
+      for (int a = 0; a < count; a++) {
+        Account account = accounts.get(accountIds.get(a));
+        if (account != null) {
+          exportCuts.beforeChange(accountIds.get(a), account.getBalanceMinorUnits());
+        }
+      }
+      // Debits first, as on the leader, so the money is never counted twice.
+      for (int a = 0; a < count; a++) {
+        if (deltas[a] < 0) {
+          restoreDelta(accountIds.get(a), deltas[a]);
+        }
+      }
+      for (int a = 0; a < count; a++) {
+        if (deltas[a] > 0) {
+          restoreDelta(accountIds.get(a), deltas[a]);
+        }
+      }
+    } finally {
+      locks.unlockAll(stripes, locked);
+    }
+  }
+
+  void replicateClear() {
+    locks.lockAllStripes();
+    try {
+      restoreClear();
+    } finally {
+      locks.unlockAllStripes();
+    }
+  }
+
+  /**
+   * Fills this repository, which must be empty, with the {@code count} accounts {@code load}
+   * hands to its sink, from as many threads as it likes. The map is sized for all of them up
+   * front and every position of the creation order is claimed at once, so each account goes in
+   * with one put and lands at the position it is given whatever thread delivers it. Every stripe
+   * stays locked until the load returns, and nothing is published if it fails.
+   */
+  void restoreBulk(long count, BulkLoad load) throws IOException {
+    locks.lockAllStripes();
+    try {
+      if (!accounts.isEmpty()) {
+        throw new IllegalStateException("Accounts can only be bulk loaded into an empty repository");
+      }
+      Map<String, Account> loaded =
+        new ConcurrentHashMap<>((int) Math.min(count * 4 / 3 + 1, 1 << 30));
+      CreationOrder order = new CreationOrder();
+      order.reserve(count);
+      load.into((position, accountId, balance) -> {
+        if (position < 0 || position >= count) {
+          throw new IllegalArgumentException("Position " + position + " is out of the load");
+        }
+        if (loaded.putIfAbsent(accountId, newAccount(accountId, balance)) != null) {
+          throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+        }
+        order.set(position, accountId);
+      });
+      if (loaded.size() != count) {
+        throw new IllegalStateException(
+          "Bulk load delivered " + loaded.size() + " of " + count + " accounts");
+      }
+      accounts = loaded;
+      creationOrder = order;
+    } finally {
+      locks.unlockAllStripes();
+    }
+  }
+
+  /**
+   * Delivers the accounts of a {@link #restoreBulk bulk load}.
+   */
+  @FunctionalInterface
+  interface BulkLoad {
+
+    void into(BulkSink sink) throws IOException;
+  }
+
+  @FunctionalInterface
+  interface BulkSink {
+
+    void accept(long position, String accountId, long balanceMinorUnits);
+  }
+
+  @FunctionalInterface
+  interface CutAction {
+
+    void run() throws IOException;
+  }
+
+  /**
+   * Runs {@code action} with every stripe locked, so no create, transfer or clear is in progress
+   * and nothing is appended to the journal until it returns.
+   */
+  <T> T withAllStripesLocked(Callable<T> action) throws Exception {
+    locks.lockAllStripes();
+    try {
+      return action.call();
+    } finally {
+      locks.unlockAllStripes();
+    }
+  }
+
+  Collection<Account> accounts() {
+    return accounts.values();
+  }
+
+  private Account newAccount(String accountId, long balance) {
+    return hotAccountIds.contains(accountId) ? new HotAccount(accountId, balance)
+      : Account.ofMinorUnits(accountId, balance);
+  }
 }
@@ -0,0 +1,296 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Durable {@link AccountsRepository}: an {@link AccountsRepositoryInMemory} whose every change is
+ * written ahead to a {@link FileJournal}.
+ *
+ * <p>A snapshot is a point-in-time export: the journal is rotated to a new segment at the export's
+ * cut, which locks every account only for as long as it takes to open it, and the balances are
+ * then read and written out without holding any lock, after which the segments the snapshot
+ * covers are deleted. On startup the latest snapshot is loaded and only the segments written after it are
+ * replayed.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "accounts.repository", name = "engine", havingValue = "journal")
+public class AccountsRepositoryJournaled implements AccountsRepository, AutoCloseable {
+
+  private static final int SNAPSHOT_MAGIC = 0x41534e50;
+
+  private static final String SNAPSHOT_FILE = "snapshot.dat";
+
+  private final Path directory;
+
+  private final FileJournal journal;
+
+  private final AccountsRepositoryInMemory accounts;
+
+  private final ScheduledExecutorService snapshotScheduler;
+
+  public AccountsRepositoryJournaled(JournalProperties properties, int lockStripes)
+    throws IOException {
+    this(properties, lockStripes, new String[0], TransferMetrics.NONE);
+  }
+
+  @Autowired
+  public AccountsRepositoryJournaled(JournalProperties properties,
+    @Value("${accounts.lock-stripes:1024}") int lockStripes,
+    @Value("${accounts.hot-accounts:}") String[] hotAccounts, TransferMetrics metrics)
+    throws IOException {
+    this.directory = Paths.get(properties.getDirectory());
+    Files.createDirectories(directory);
+
+    long[] segments = FileJournal.listSegments(directory);
+    long lastSegment = segments.length == 0 ? 0L : segments[segments.length - 1];
+    this.journal = new FileJournal(directory, lastSegment + 1, properties.getGroupCommitMicros());
+    this.accounts = new AccountsRepositoryInMemory(lockStripes, BalanceMode.LOCKED, journal,
+      hotAccounts, metrics);
+    recover(segments);
+
+    if (properties.getSnapshotIntervalSeconds() > 0) {
+      this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+        properties.getSnapshotIntervalSeconds(), properties.getSnapshotIntervalSeconds(),
+        TimeUnit.SECONDS);
+    } else {
+      this.snapshotScheduler = null;
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    accounts.createAccount(account);
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    return accounts.getAccount(accountId);
+  }
+
+  @Override
+  public void clearAccounts() {
+    accounts.clearAccounts();
+  }
+
+  @Override
+  public void reserveCapacity(int additionalAccounts) {
+    accounts.reserveCapacity(additionalAccounts);
+  }
+
+  @Override
+  public AccountPage listAccounts(long cursor, int limit) {
+    return accounts.listAccounts(cursor, limit);
+  }
+
+  @Override
+  public void exportAccounts(BalanceConsumer consumer) throws IOException {
+    accounts.exportAccounts(consumer);
+  }
+
+  @Override
+  public TransferReceipt instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException {
+    return accounts.instantTransfer(transfer);
+  }
+
+  @Override
+  public BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode) {
+    return accounts.batchTransfer(transfers, mode);
+  }
+
+  /**
+   * Writes a snapshot of all balances and deletes the journal segments it makes redundant.
+   */
+  public synchronized void snapshot() throws Exception {
+    long nextSegment = journal.getSegment() + 1;
+    List<String> ids = new ArrayList<>();
+    LongList balances = new LongList();
+    accounts.exportAccounts((accountId, balance) -> {
+      ids.add(accountId);
+      balances.add(balance);
+    }, () -> journal.rotate(nextSegment));
+    SnapshotCut cut = new SnapshotCut(nextSegment, ids, balances.toArray(), ids.size());
+
+    Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+      CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+      DataOutputStream out = new DataOutputStream(checked);
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(cut.firstSegment);
+      out.writeInt(cut.count);
+      for (int i = 0; i < cut.count; i++) {
+        out.writeUTF(cut.ids.get(i));
+        out.writeLong(cut.balances[i]);
+      }
+      out.writeInt((int) checked.getChecksum().getValue());
+      out.flush();
+      file.getFD().sync();
+    }
+    Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+
+    for (long segment : FileJournal.listSegments(directory)) {
+      if (segment < cut.firstSegment) {
+        Files.deleteIfExists(FileJournal.segmentPath(directory, segment));
+      }
+    }
+    log.info("Snapshot of {} accounts written, journal continues at segment {}", cut.count,
+      cut.firstSegment);
+  }
+
+  @PreDestroy
+  @Override
+  public void close() throws Exception {
+    if (snapshotScheduler != null) {
+      snapshotScheduler.shutdownNow();
+    }
+    journal.close();
+  }
+
+  private void scheduledSnapshot() {
+    try {
+      snapshot();
+    } catch (Exception e) {
+      log.error("Snapshot failed, journal segments are kept", e);
+    }
+  }
+
+  private void recover(long[] segments) throws IOException {
+    long firstSegment = loadSnapshot();
+    JournalRecords.Visitor replay = new JournalRecords.Visitor() {
+
+      @Override
+      public void onCreate(String accountId, long balance) {
+        accounts.restoreAccount(accountId, balance);
+      }
+
+      @Override
+      public void onDelta(String accountId, long delta) {
+        accounts.restoreDelta(accountId, delta);
+      }
+
+      @Override
+      public void onClear() {
+        accounts.restoreClear();
+      }
+    };
+
+    long records = 0;
+    for (long segment : segments) {
+      if (segment < firstSegment) {
+        continue;
+      }
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(FileJournal.segmentPath(directory, segment))))) {
+        while (JournalRecords.read(in, replay)) {
+          records++;
+        }
+      }
+    }
+    log.info("Recovered accounts from snapshot and {} journal records", records);
+  }
+
+  /**
+   * @return the first journal segment not covered by the snapshot
+   */
+  private long loadSnapshot() throws IOException {
+    Path snapshot = directory.resolve(SNAPSHOT_FILE);
+    if (!Files.exists(snapshot)) {
+      return 0L;
+    }
+    try (InputStream file = Files.newInputStream(snapshot)) {
+      CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file), new CRC32());
+      DataInputStream in = new DataInputStream(checked);
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new JournalException("Not a snapshot file: " + snapshot);
+      }
+      long firstSegment = in.readLong();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        accounts.restoreAccount(in.readUTF(), in.readLong());
+      }
+      int expected = (int) checked.getChecksum().getValue();
+      if (in.readInt() != expected) {
+        throw new JournalException("Snapshot checksum mismatch: " + snapshot);
+      }
+      return firstSegment;
+    }
+  }
+
+  private static final class LongList {
+
+    private long[] values = new long[16];
+
+    private int size;
+
+    private void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    private long[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  private static final class SnapshotCut {
+
+    private final long firstSegment;
+
+    private final List<String> ids;
+
+    private final long[] balances;
+
+    private final int count;
+
+    private SnapshotCut(long firstSegment, List<String> ids, long[] balances, int count) {
+      this.firstSegment = firstSegment;
+      this.ids = ids;
+      this.balances = balances;
+      this.count = count;
+    }
+  }
+}
@@ -0,0 +1,482 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * {@link AccountsRepository} keeping accounts off-heap in a memory-mapped, open-addressing hash
+ * table, so that tens of millions of accounts cost neither heap nor GC time.
+ *
+ * <p>Every account is one 64 byte slot: a meta word holding the id length and 56 bits of the id
+ * hash, the balance in minor units, and the id itself as up to {@value #MAX_ID_LENGTH} UTF-16
+ * chars. Collisions are resolved by linear probing. Slots are only ever filled, never freed
+ * individually, so lookups can probe without taking a lock. A slot is filled holding its account's
+ * stripe lock, and balances are written under the same striped account locks as the in-memory
+ * repository and read optimistically against them, so whoever reads a balance sees the slot
+ * complete. The probe itself reads plain memory with no ordering against an insert in progress:
+ * a lookup racing with the insert of the id it looks for may miss it, as if it had come first.
+ *
+ * <p>The mapped file is the persistent image: reopening it restores every account. Pages reach
+ * the file through the OS page cache and are forced to disk on shutdown.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "accounts.repository", name = "engine", havingValue = "mapped")
+public class AccountsRepositoryMapped implements AccountsRepository, AutoCloseable {
+
+  public static final int MAX_ID_LENGTH = 24;
+
+  private static final int SLOT_SIZE = 64;
+
+  private static final int META = 0;
+
+  private static final int BALANCE = 8;
+
+  private static final int ID = 16;
+
+  private static final int HEADER_SIZE = 4096;
+
+  private static final int MAGIC = 0x41434d50;
+
+  private static final int VERSION = 1;
+
+  private static final int SLOTS_PER_REGION_SHIFT = 24;
+
+  private static final long HASH_MASK = (1L << 56) - 1;
+
+  private static final int OPTIMISTIC_READ_ATTEMPTS = 8;
+
+  private final FileChannel channel;
+
+  private final MappedByteBuffer header;
+
+  private final MappedByteBuffer[] regions;
+
+  private final long slotCount;
+
+  private final long slotMask;
+
+  private final long maxAccounts;
+
+  private final StripedLocks locks;
+
+  private final TransferMetrics metrics;
+
+  private final Object insertLock = new Object();
+
+  private final ExportCuts exportCuts = new ExportCuts();
+
+  private volatile long size;
+
+  @Autowired
+  public AccountsRepositoryMapped(MappedStoreProperties properties,
+    @Value("${accounts.lock-stripes:1024}") int lockStripes, TransferMetrics metrics)
+    throws IOException {
+    this(Paths.get(properties.getFile()), properties.getCapacity(), lockStripes, metrics);
+  }
+
+  public AccountsRepositoryMapped(Path file, long capacity, int lockStripes) throws IOException {
+    this(file, capacity, lockStripes, TransferMetrics.NONE);
+  }
+
+  /**
+   * Opens the table in {@code file}, creating it with {@code capacity} slots if it does not exist.
+   * An existing file keeps the capacity it was created with.
+   */
+  public AccountsRepositoryMapped(Path file, long capacity, int lockStripes,
+    TransferMetrics metrics) throws IOException {
+    if (capacity <= 0 || Long.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    boolean existing = Files.exists(file) && Files.size(file) >= HEADER_SIZE;
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE);
+    this.header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+    if (existing) {
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException("Not an account store: " + file);
+      }
+      this.slotCount = header.getLong(8);
+      this.size = header.getLong(16);
+    } else {
+      header.putInt(0, MAGIC);
+      header.putInt(4, VERSION);
+      header.putLong(8, capacity);
+      header.putLong(16, 0L);
+      this.slotCount = capacity;
+      this.size = 0L;
+    }
+    this.slotMask = slotCount - 1;
+    this.maxAccounts = slotCount - (slotCount >> 2);
+    this.locks = new StripedLocks(lockStripes);
+    this.metrics = metrics;
+
+    long slotsPerRegion = 1L << SLOTS_PER_REGION_SHIFT;
+    int regionCount = (int) Math.max(1, slotCount / slotsPerRegion);
+    long regionBytes = Math.min(slotCount, slotsPerRegion) * SLOT_SIZE;
+    this.regions = new MappedByteBuffer[regionCount];
+    for (int r = 0; r < regionCount; r++) {
+      regions[r] = channel.map(MapMode.READ_WRITE, HEADER_SIZE + r * regionBytes, regionBytes);
+    }
+    log.info("Opened account store {} with {} of {} slots used", file, size, slotCount);
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    if (accountId.length() > MAX_ID_LENGTH) {
+      throw new IllegalArgumentException(
+        "Account id " + accountId + " is longer than " + MAX_ID_LENGTH + " characters");
+    }
+    long hash = hash(accountId);
+    synchronized (insertLock) {
+      long slot = hash & slotMask;
+      while (true) {
+        long meta = getLong(slot, META);
+        if (meta == 0L) {
+          break;
+        }
+        if (matches(slot, meta, hash, accountId)) {
+          throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+        }
+        slot = (slot + 1) & slotMask;
+      }
+      if (size >= maxAccounts) {
+        throw new IllegalStateException("Account store is full (" + size + " accounts)");
+      }
+      int stripe = locks.stripeFor(accountId);
+      locks.lock(stripe);
+      try {
+        exportCuts.created(accountId);
+        putLong(slot, BALANCE, account.getBalanceMinorUnits());
+        for (int i = 0; i < accountId.length(); i++) {
+          region(slot).putChar(offset(slot) + ID + 2 * i, accountId.charAt(i));
+        }
+        putLong(slot, META, ((long) accountId.length() << 56) | (hash & HASH_MASK));
+      } finally {
+        locks.unlock(stripe);
+      }
+      header.putLong(16, size + 1);
+      size = size + 1;
+    }
+  }
+
+  /**
+   * Returns a detached copy of the account; changing it does not change the stored balance.
+   */
+  @Override
+  public Account getAccount(String accountId) {
+    long slot = findSlot(accountId);
+    if (slot < 0) {
+      return null;
+    }
+    return new Account(accountId, BigDecimal.valueOf(readBalance(accountId, slot), Account.BALANCE_SCALE));
+  }
+
+  @Override
+  public long getBalanceMinorUnits(String accountId) {
+    long slot = findSlot(accountId);
+    return slot < 0 ? -1L : readBalance(accountId, slot);
+  }
+
+  @Override
+  public void clearAccounts() {
+    synchronized (insertLock) {
+      locks.lockAllStripes();
+      try {
+        for (MappedByteBuffer region : regions) {
+          for (int offset = 0; offset < region.capacity(); offset += 8) {
+            region.putLong(offset, 0L);
+          }
+        }
+        header.putLong(16, 0L);
+        size = 0L;
+      } finally {
+        locks.unlockAllStripes();
+      }
+    }
+  }
+
+  @Override
+  public TransferReceipt instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException {
+    String toAccount = transfer.getToAccountId();
+    String fromAccount = transfer.getFromAccountId();
+    long amount = transfer.getAmount().getMinorUnits();
+
+    if (toAccount.equals(fromAccount)) {
+      throw new SameAccountIdException("Provided 'To' and 'From' accounts are same");
+    }
+
+    long fromSlot = findSlot(fromAccount);
+    long toSlot = findSlot(toAccount);
+    if (fromSlot < 0 || toSlot < 0) {
+      throw new AccountNotFoundException(
+        "Account id " + (fromSlot < 0 ? fromAccount : toAccount) + " does not exist");
+    }
+
+    long fromBalance;
+    long toBalance;
+    int fromStripe = locks.stripeFor(fromAccount);
+    int toStripe = locks.stripeFor(toAccount);
+    boolean sampled = metrics.sample();
+    long start = sampled ? System.nanoTime() : 0L;
+    boolean contended = locks.lockPair(fromStripe, toStripe);
+    long acquired = sampled ? System.nanoTime() : 0L;
+    try {
+      fromBalance = getLong(fromSlot, BALANCE);
+      if (fromBalance < amount) {
+        throw new InsufficientFundsException("This account does not have sufficient fund to transfer");
+      }
+      toBalance = getLong(toSlot, BALANCE);
+      exportCuts.beforeChange(fromAccount, fromBalance);
+      exportCuts.beforeChange(toAccount, toBalance);
+      fromBalance -= amount;
+      toBalance += amount;
+      putLong(fromSlot, BALANCE, fromBalance);
+      putLong(toSlot, BALANCE, toBalance);
+    } finally {
+      locks.unlockPair(fromStripe, toStripe);
+      if (sampled) {
+        metrics.recordLocking(acquired - start, System.nanoTime() - acquired);
+      }
+      if (contended) {
+        metrics.recordContention(fromAccount, toAccount);
+      }
+    }
+    return new TransferReceipt(fromAccount, toAccount, amount, fromBalance, toBalance);
+  }
+
+  @Override
+  public BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode) {
+    NettedBatch batch = new NettedBatch(transfers, accountId -> findSlot(accountId) >= 0);
+    List<String> accountIds = batch.getAccountIds();
+    int count = accountIds.size();
+    long[] slots = new long[count];
+    int[] stripes = new int[count];
+    for (int a = 0; a < count; a++) {
+      slots[a] = findSlot(accountIds.get(a));
+      stripes[a] = locks.stripeFor(accountIds.get(a));
+    }
+
+    long[] balances = new long[count];
+    int locked = locks.lockAll(stripes);
+    try {
+      for (int a = 0; a < count; a++) {
+        balances[a] = getLong(slots[a], BALANCE);
+        exportCuts.beforeChange(accountIds.get(a), balances[a]);
+      }
+      // Every writer holds the stripe locks, so the evaluated deltas always apply.
+      if (batch.evaluate(balances, mode)) {
+        long[] deltas = batch.getDeltas();
+        for (int a = 0; a < count; a++) {
+          if (deltas[a] != 0) {
+            balances[a] += deltas[a];
+            putLong(slots[a], BALANCE, balances[a]);
+          }
+        }
+      }
+    } finally {
+      locks.unlockAll(stripes, locked);
+    }
+    return batch.toResult(mode, balances);
+  }
+
+  /*
+   * Slots never move, so the slot index is the cursor and pages follow the table's hash order.
+   */
+  @Override
+  public AccountPage listAccounts(long cursor, int limit) {
+    List<AccountView> page = new ArrayList<>(limit);
+    long slot = size == 0L ? slotCount : Math.max(0L, cursor);
+    for (; slot < slotCount && page.size() < limit; slot++) {
+      long meta = getLong(slot, META);
+      String accountId = meta == 0L ? null : readId(slot, meta);
+      if (accountId != null) {
+        page.add(AccountView.of(accountId, readBalance(accountId, slot)));
+      }
+    }
+    return new AccountPage(page, slot >= slotCount ? null : slot);
+  }
+
+  /*
+   * Accounts created after the cut are recorded in it and skipped. Slots filled before it are
+   * complete here, since the cut is opened holding every stripe lock they were filled under.
+   * Clearing the store while an export runs ends the export early, since the slots it has not
+   * reached yet are gone.
+   */
+  @Override
+  public void exportAccounts(BalanceConsumer consumer) throws IOException {
+    ExportCuts.Cut cut;
+    locks.lockAllStripes();
+    try {
+      cut = exportCuts.open();
+    } finally {
+      locks.unlockAllStripes();
+    }
+    try {
+      long slots = size == 0L ? 0L : slotCount;
+      for (long slot = 0; slot < slots; slot++) {
+        long meta = getLong(slot, META);
+        String accountId = meta == 0L ? null : readId(slot, meta);
+        if (accountId != null) {
+          long balance = cut.balanceAt(accountId, readBalance(accountId, slot));
+          if (balance >= 0) {
+            consumer.accept(accountId, balance);
+          }
+        }
+      }
+    } finally {
+      exportCuts.close(cut);
+    }
+  }
+
+  public long size() {
+    return size;
+  }
+
+  @PreDestroy
+  @Override
+  public void close() throws IOException {
+    for (MappedByteBuffer region : regions) {
+      region.force();
+    }
+    header.force();
+    channel.close();
+  }
+
+  /*
+   * Optimistic read: a transfer writing this stripe meanwhile invalidates the stamp and the read
+   * is retried. Only a reader that keeps losing to writers falls back to taking the lock.
+   */
+  private long readBalance(String accountId, long slot) {
+    int stripe = locks.stripeFor(accountId);
+    for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+      long stamp = locks.tryOptimisticRead(stripe);
+      long balance = getLong(slot, BALANCE);
+      if (locks.validate(stripe, stamp)) {
+        return balance;
+      }
+    }
+    locks.lock(stripe);
+    try {
+      return getLong(slot, BALANCE);
+    } finally {
+      locks.unlock(stripe);
+    }
+  }
+
+  /*
+   * Plain reads of the table: a slot being filled meanwhile may show its meta word before its id,
+   * which then fails to match and the probe goes on. Whoever goes on to read or write the balance
+   * does so through the stripe lock the slot was filled under, so sees it complete.
+   */
+  private long findSlot(String accountId) {
+    if (size == 0L || accountId.length() > MAX_ID_LENGTH) {
+      return -1L;
+    }
+    long hash = hash(accountId);
+    long slot = hash & slotMask;
+    while (true) {
+      long meta = getLong(slot, META);
+      if (meta == 0L) {
+        return -1L;
+      }
+      if (matches(slot, meta, hash, accountId)) {
+        return slot;
+      }
+      slot = (slot + 1) & slotMask;
+    }
+  }
+
+  private boolean matches(long slot, long meta, long hash, String accountId) {
+    if ((meta & HASH_MASK) != (hash & HASH_MASK) || (int) (meta >>> 56) != accountId.length()) {
+      return false;
+    }
+    MappedByteBuffer region = region(slot);
+    int base = offset(slot) + ID;
+    for (int i = 0; i < accountId.length(); i++) {
+      if (region.getChar(base + 2 * i) != accountId.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Returns null for a slot whose id is not completely visible yet, being filled by an insert
+   * this thread has no ordering with: the id read then does not hash to the meta word.
+   */
+  private String readId(long slot, long meta) {
+    int length = (int) (meta >>> 56);
+    char[] chars = new char[length];
+    MappedByteBuffer region = region(slot);
+    int base = offset(slot) + ID;
+    for (int i = 0; i < length; i++) {
+      chars[i] = region.getChar(base + 2 * i);
+    }
+    String accountId = new String(chars);
+    return (hash(accountId) & HASH_MASK) == (meta & HASH_MASK) ? accountId : null;
+  }
+
+  private long getLong(long slot, int field) {
+    return region(slot).getLong(offset(slot) + field);
+  }
+
+  private void putLong(long slot, int field, long value) {
+    region(slot).putLong(offset(slot) + field, value);
+  }
+
+  private MappedByteBuffer region(long slot) {
+    return regions[(int) (slot >>> SLOTS_PER_REGION_SHIFT)];
+  }
+
+  private static int offset(long slot) {
+    return (int) (slot & ((1L << SLOTS_PER_REGION_SHIFT) - 1)) * SLOT_SIZE;
+  }
+
+  /*
+   * 64 bit FNV-1a over the id's chars followed by a final avalanche step, computed without
+   * allocating.
+   */
+  private static long hash(String accountId) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < accountId.length(); i++) {
+      h ^= accountId.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+}
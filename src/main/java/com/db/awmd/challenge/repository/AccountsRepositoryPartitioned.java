@@ -0,0 +1,590 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * {@link AccountsRepository} that splits the accounts into partitions by id hash and gives each
+ * partition one thread, the only one that ever changes its balances. Nothing takes a lock to
+ * transfer: callers hand each operation to the owning thread through a lock-free queue and wait
+ * for the outcome.
+ *
+ * <p>A transfer within one partition is checked, debited and credited in one step by its owner.
+ * One across partitions is done in two: the source partition checks the funds and debits, which
+ * reserves the amount, then forwards the same command to the target partition, which commits it
+ * by crediting. In between the amount is in neither balance but in the target's queue.
+ *
+ * <p>Batches, exports and clears need several partitions to hold still at once. They queue a
+ * barrier on each partition involved and run once every one of them has reached it.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "accounts.repository", name = "engine", havingValue = "partitioned")
+public class AccountsRepositoryPartitioned implements AccountsRepository, AutoCloseable {
+
+  private static final int SPINS = 256;
+
+  private static final int YIELDS = 64;
+
+  private static final Object DONE = new Object();
+
+  private static final AtomicLongFieldUpdater<Cell> BALANCE =
+    AtomicLongFieldUpdater.newUpdater(Cell.class, "balance");
+
+  /*
+   * Only replaced by clearAccounts, with every partition stopped; volatile for the callers that
+   * look accounts up. Entries are only added by the owning partition's thread.
+   */
+  private volatile Map<String, Cell> accounts = new ConcurrentHashMap<>();
+
+  private volatile CreationOrder creationOrder = new CreationOrder();
+
+  private final ExportCuts exportCuts = new ExportCuts();
+
+  private final Partition[] partitions;
+
+  /**
+   * Held while stopping partitions, so that two barriers never wait for each other.
+   */
+  private final Object barrierLock = new Object();
+
+  private volatile boolean closed;
+
+  @Autowired
+  public AccountsRepositoryPartitioned(PartitionedProperties properties) {
+    this(properties.getPartitions());
+  }
+
+  public AccountsRepositoryPartitioned(int partitionCount) {
+    if (partitionCount < 1) {
+      throw new IllegalArgumentException("There must be at least one partition");
+    }
+    this.partitions = new Partition[partitionCount];
+    for (int p = 0; p < partitionCount; p++) {
+      partitions[p] = new Partition(p);
+    }
+    for (Partition partition : partitions) {
+      partition.thread.start();
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    Cell cell = new Cell(accountId, partitionFor(accountId), account.getBalanceMinorUnits());
+    partitions[cell.partition].call(new CreateCommand(cell));
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    Cell cell = accounts.get(accountId);
+    return cell == null ? null
+      : new Account(accountId, BigDecimal.valueOf(cell.balance, Account.BALANCE_SCALE));
+  }
+
+  @Override
+  public long getBalanceMinorUnits(String accountId) {
+    Cell cell = accounts.get(accountId);
+    return cell == null ? -1L : cell.balance;
+  }
+
+  @Override
+  public void clearAccounts() {
+    synchronized (barrierLock) {
+      Barrier barrier = stop(allPartitions());
+      try {
+        accounts = new ConcurrentHashMap<>();
+        creationOrder = new CreationOrder();
+      } finally {
+        barrier.release();
+      }
+    }
+  }
+
+  /*
+   * Pages follow the order accounts were created in, as in the in-memory repository.
+   */
+  @Override
+  public AccountPage listAccounts(long cursor, int limit) {
+    CreationOrder order = creationOrder;
+    Map<String, Cell> current = accounts;
+    List<AccountView> page = new ArrayList<>(limit);
+    long position = cursor;
+    String accountId;
+    while (page.size() < limit && (accountId = order.get(position)) != null) {
+      Cell cell = current.get(accountId);
+      if (cell != null) {
+        page.add(AccountView.of(accountId, cell.balance));
+      }
+      position++;
+    }
+    return new AccountPage(page, position >= order.size() ? null : position);
+  }
+
+  /*
+   * The cut is opened with every partition stopped. A cross-partition transfer can be reserved but
+   * not yet committed at that point; its amount is then still queued on the target partition, so
+   * the queues are scanned for it and it is counted in the target's balance at the cut.
+   */
+  @Override
+  public void exportAccounts(BalanceConsumer consumer) throws IOException {
+    ExportCuts.Cut cut;
+    Map<String, Cell> exported;
+    CreationOrder order;
+    long end;
+    Map<Cell, Long> inFlight = new IdentityHashMap<>();
+    synchronized (barrierLock) {
+      Barrier barrier = stop(allPartitions());
+      try {
+        cut = exportCuts.open();
+        exported = accounts;
+        order = creationOrder;
+        end = order.size();
+        for (Partition partition : partitions) {
+          partition.queue.forEachQueued(node -> {
+            if (node instanceof TransferCommand && ((TransferCommand) node).reserved) {
+              TransferCommand transfer = (TransferCommand) node;
+              inFlight.merge(transfer.to, transfer.amount, Long::sum);
+            }
+          });
+        }
+      } finally {
+        barrier.release();
+      }
+    }
+    try {
+      for (long position = 0; position < end; position++) {
+        String accountId = order.get(position);
+        Cell cell = exported.get(accountId);
+        if (cell != null) {
+          consumer.accept(accountId,
+            cut.balanceAt(accountId, cell.balance) + inFlight.getOrDefault(cell, 0L));
+        }
+      }
+    } finally {
+      exportCuts.close(cut);
+    }
+  }
+
+  @Override
+  public TransferReceipt instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException {
+    String toAccount = transfer.getToAccountId();
+    String fromAccount = transfer.getFromAccountId();
+
+    if (toAccount.equals(fromAccount)) {
+      throw new SameAccountIdException("Provided 'To' and 'From' accounts are same");
+    }
+
+    Map<String, Cell> current = accounts;
+    Cell from = current.get(fromAccount);
+    Cell to = current.get(toAccount);
+    if (from == null || to == null) {
+      throw new AccountNotFoundException(
+        "Account id " + (from == null ? fromAccount : toAccount) + " does not exist");
+    }
+
+    TransferCommand command = new TransferCommand(from, to, transfer.getAmount().getMinorUnits());
+    partitions[from.partition].call(command);
+    return new TransferReceipt(fromAccount, toAccount, command.amount, command.fromBalance,
+      command.toBalance);
+  }
+
+  /*
+   * Only the partitions owning the batch's accounts are stopped. The batch is then evaluated and
+   * applied by the calling thread, which is the only one touching those balances until it
+   * releases them.
+   */
+  @Override
+  public BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode) {
+    Map<String, Cell> current = accounts;
+    NettedBatch batch = new NettedBatch(transfers, current::containsKey);
+    List<String> accountIds = batch.getAccountIds();
+    int count = accountIds.size();
+    Cell[] cells = new Cell[count];
+    boolean[] involved = new boolean[partitions.length];
+    for (int a = 0; a < count; a++) {
+      cells[a] = current.get(accountIds.get(a));
+      involved[cells[a].partition] = true;
+    }
+
+    long[] balances = new long[count];
+    synchronized (barrierLock) {
+      Barrier barrier = stop(involved);
+      try {
+        for (int a = 0; a < count; a++) {
+          balances[a] = cells[a].balance;
+          exportCuts.beforeChange(accountIds.get(a), balances[a]);
+        }
+        if (batch.evaluate(balances, mode)) {
+          long[] deltas = batch.getDeltas();
+          for (int a = 0; a < count; a++) {
+            if (deltas[a] != 0) {
+              balances[a] += deltas[a];
+              cells[a].setBalance(balances[a]);
+            }
+          }
+        }
+      } finally {
+        barrier.release();
+      }
+    }
+    return batch.toResult(mode, balances);
+  }
+
+  public int getPartitionCount() {
+    return partitions.length;
+  }
+
+  @PreDestroy
+  @Override
+  public void close() throws InterruptedException {
+    closed = true;
+    for (Partition partition : partitions) {
+      LockSupport.unpark(partition.thread);
+    }
+    for (Partition partition : partitions) {
+      partition.thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  private int partitionFor(String accountId) {
+    int h = accountId.hashCode();
+    return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % partitions.length;
+  }
+
+  private boolean[] allPartitions() {
+    boolean[] all = new boolean[partitions.length];
+    Arrays.fill(all, true);
+    return all;
+  }
+
+  /**
+   * Must be called holding {@link #barrierLock}. Returns once every selected partition has
+   * finished what was queued before and is waiting for the barrier to be released.
+   */
+  private Barrier stop(boolean[] selected) {
+    int count = 0;
+    for (boolean s : selected) {
+      count += s ? 1 : 0;
+    }
+    Barrier barrier = new Barrier(count);
+    for (int p = 0; p < partitions.length; p++) {
+      if (selected[p]) {
+        // A queue links its nodes through the nodes themselves, so each partition gets its own.
+        partitions[p].submit(new BarrierCommand(barrier));
+      }
+    }
+    awaitUninterruptibly(barrier.arrived);
+    return barrier;
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * An account. Its balance is only written by the owning partition's thread, or by a batch while
+   * that thread is stopped, and may be read by any thread.
+   */
+  private static final class Cell {
+
+    private final String accountId;
+
+    private final int partition;
+
+    volatile long balance;
+
+    private Cell(String accountId, int partition, long balance) {
+      this.accountId = accountId;
+      this.partition = partition;
+      this.balance = balance;
+    }
+
+    /*
+     * There is a single writer, so an ordered store is enough to publish the new balance; it
+     * avoids the full fence of a volatile write on every transfer.
+     */
+    private void setBalance(long value) {
+      BALANCE.lazySet(this, value);
+    }
+  }
+
+  private final class Partition implements Runnable {
+
+    private final int index;
+
+    private final PartitionQueue queue = new PartitionQueue();
+
+    private final Thread thread;
+
+    private volatile boolean sleeping;
+
+    /**
+     * Set once the thread has left its loop; from then on whoever holds this partition's monitor
+     * is the queue's consumer, and fails what it takes off it.
+     */
+    private volatile boolean stopped;
+
+    private Partition(int index) {
+      this.index = index;
+      this.thread = new Thread(this, "partition-" + index);
+      thread.setDaemon(true);
+    }
+
+    /*
+     * A command offered after the thread has stopped would never be taken off the queue, so the
+     * producer fails it itself. Offering before reading stopped, while the thread sets stopped
+     * before its last look at the queue, means every command is seen by one side or the other.
+     */
+    void submit(Command command) {
+      queue.offer(command);
+      if (sleeping) {
+        LockSupport.unpark(thread);
+      }
+      if (stopped) {
+        failQueued();
+      }
+    }
+
+    /**
+     * Runs {@code command} on this partition's thread and waits for it to complete, rethrowing
+     * what it failed with.
+     */
+    void call(Command command) {
+      if (closed) {
+        throw new IllegalStateException("The repository is closed");
+      }
+      submit(command);
+      command.await();
+      if (command.outcome instanceof RuntimeException) {
+        throw (RuntimeException) command.outcome;
+      }
+    }
+
+    /*
+     * An idle partition spins briefly, then yields, then parks. It announces that it is about to
+     * park before checking the queue one last time, and producers unpark it only if it announced
+     * so, which keeps the common case free of unpark calls without losing a wake-up.
+     */
+    @Override
+    public void run() {
+      int idle = 0;
+      while (!closed) {
+        Command command = (Command) queue.poll();
+        if (command != null) {
+          idle = 0;
+          try {
+            command.execute(this);
+          } catch (RuntimeException e) {
+            command.finish(e);
+          }
+        } else if (++idle <= SPINS) {
+          continue;
+        } else if (idle <= SPINS + YIELDS) {
+          Thread.yield();
+        } else {
+          sleeping = true;
+          if (queue.isEmpty() && !closed) {
+            LockSupport.park(this);
+          }
+          sleeping = false;
+          idle = 0;
+        }
+      }
+      stopped = true;
+      failQueued();
+    }
+
+    /*
+     * An empty poll may only mean a producer is still linking its command in, so this goes on
+     * until the queue is empty including commands being offered.
+     */
+    private synchronized void failQueued() {
+      while (!queue.isEmpty()) {
+        Command command = (Command) queue.poll();
+        if (command == null) {
+          Thread.yield();
+        } else {
+          command.finish(new IllegalStateException("The repository is closed"));
+        }
+      }
+    }
+  }
+
+  private abstract static class Command extends PartitionQueue.Node {
+
+    private final Thread caller = Thread.currentThread();
+
+    private volatile boolean callerParked;
+
+    /**
+     * {@link #DONE} or the exception the command failed with; {@code null} while it runs.
+     */
+    private volatile Object outcome;
+
+    /**
+     * Runs on the thread of {@code partition}, which must eventually {@link #finish} the command
+     * or hand it to another partition.
+     */
+    abstract void execute(Partition partition);
+
+    final void finish(Object result) {
+      outcome = result;
+      if (callerParked) {
+        LockSupport.unpark(caller);
+      }
+    }
+
+    /*
+     * The caller spins first, since most commands complete within microseconds, and only then
+     * parks, announcing it as the partition does when idle.
+     */
+    final void await() {
+      for (int i = 0; i < SPINS && outcome == null; i++) {
+        Thread.yield();
+      }
+      if (outcome == null) {
+        callerParked = true;
+        while (outcome == null) {
+          LockSupport.park(this);
+        }
+      }
+    }
+  }
+
+  private final class CreateCommand extends Command {
+
+    private final Cell cell;
+
+    private CreateCommand(Cell cell) {
+      this.cell = cell;
+    }
+
+    @Override
+    void execute(Partition partition) {
+      Map<String, Cell> current = accounts;
+      if (current.containsKey(cell.accountId)) {
+        finish(new DuplicateAccountIdException(
+          "Account id " + cell.accountId + " already exists!"));
+        return;
+      }
+      current.put(cell.accountId, cell);
+      creationOrder.append(cell.accountId);
+      finish(DONE);
+    }
+  }
+
+  private final class TransferCommand extends Command {
+
+    private final Cell from;
+
+    private final Cell to;
+
+    private final long amount;
+
+    /**
+     * Set once the source partition has debited, before the command is queued on the target.
+     */
+    private boolean reserved;
+
+    private long fromBalance;
+
+    private long toBalance;
+
+    private TransferCommand(Cell from, Cell to, long amount) {
+      this.from = from;
+      this.to = to;
+      this.amount = amount;
+    }
+
+    @Override
+    void execute(Partition partition) {
+      if (!reserved) {
+        long balance = from.balance;
+        if (balance < amount) {
+          finish(new InsufficientFundsException(
+            "This account does not have sufficient fund to transfer"));
+          return;
+        }
+        exportCuts.beforeChange(from.accountId, balance);
+        fromBalance = balance - amount;
+        from.setBalance(fromBalance);
+        if (to.partition != partition.index) {
+          reserved = true;
+          partitions[to.partition].submit(this);
+          return;
+        }
+      }
+      long balance = to.balance;
+      exportCuts.beforeChange(to.accountId, balance);
+      toBalance = balance + amount;
+      to.setBalance(toBalance);
+      finish(DONE);
+    }
+  }
+
+  private static final class Barrier {
+
+    private final CountDownLatch arrived;
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private Barrier(int partitions) {
+      this.arrived = new CountDownLatch(partitions);
+    }
+
+    void release() {
+      released.countDown();
+    }
+  }
+
+  private static final class BarrierCommand extends Command {
+
+    private final Barrier barrier;
+
+    private BarrierCommand(Barrier barrier) {
+      this.barrier = barrier;
+    }
+
+    @Override
+    void execute(Partition partition) {
+      barrier.arrived.countDown();
+      awaitUninterruptibly(barrier.released);
+    }
+  }
+}
@@ -0,0 +1,533 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.NotLeaderException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * One node of a replicated {@link AccountsRepository}.
+ *
+ * <p>The leader runs an {@link AccountsRepositoryInMemory} whose journal is a
+ * {@link ReplicationLog}: transfers are ordered by the account locks as usual, and a change is
+ * only reported once a quorum of nodes holds its record. A shipper thread sends each follower the
+ * records appended since its last message, in batches of up to {@code max-batch-bytes}, without
+ * waiting for earlier batches to be acknowledged as long as less than {@code max-in-flight-bytes}
+ * are outstanding. Followers apply the records they receive in log order, each under the stripes
+ * of its accounts as on the leader, and only then append them to their own log. They serve reads
+ * such as {@link #getAccount(String)}; writes are refused with {@link NotLeaderException}.
+ * Follower reads may trail the leader by the replication lag.
+ *
+ * <p>There is no automatic election. When the leader is lost, the follower that holds the most of
+ * the log is {@link #promote() promoted} under a new epoch; since every committed change is held
+ * by a quorum, it has all of them. The other followers adopt the new leader when they hear from
+ * it, and a former leader that hears of a newer epoch is reset from a snapshot, since its log may
+ * hold changes nobody else has.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "accounts.repository", name = "engine", havingValue = "replicated")
+public class AccountsRepositoryReplicated implements AccountsRepository, AutoCloseable {
+
+  private final String nodeId;
+
+  private final int quorum;
+
+  private final int maxBatchBytes;
+
+  private final long maxInFlightBytes;
+
+  private final long heartbeatNanos;
+
+  private final ReplicationTransport transport;
+
+  private final ReplicationLog replicationLog;
+
+  private final AccountsRepositoryInMemory accounts;
+
+  private final JournalRecords.Visitor replay;
+
+  /** Guards the role, the epoch and the peers' replication state. */
+  private final Object lock = new Object();
+
+  private final Map<String, Peer> peers = new LinkedHashMap<>();
+
+  private volatile boolean leader;
+
+  private volatile long epoch;
+
+  private volatile String leaderId;
+
+  /** Set when this node stopped leading; its log is replaced by the next snapshot it gets. */
+  private boolean divergent;
+
+  private volatile Thread shipper;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public AccountsRepositoryReplicated(ReplicationProperties properties,
+    @Value("${accounts.lock-stripes:1024}") int lockStripes, TransferMetrics metrics) {
+    this(properties, new SocketReplicationTransport(addresses(properties.getNodes())), lockStripes,
+      metrics);
+  }
+
+  public AccountsRepositoryReplicated(ReplicationProperties properties,
+    ReplicationTransport transport, int lockStripes, TransferMetrics metrics) {
+    this.nodeId = properties.getNodeId();
+    if (!properties.getNodes().isEmpty() && !properties.getNodes().containsKey(nodeId)) {
+      throw new IllegalArgumentException("Node " + nodeId + " is not one of the cluster's nodes");
+    }
+    for (String peerId : properties.getNodes().keySet()) {
+      if (!peerId.equals(nodeId)) {
+        peers.put(peerId, new Peer(peerId));
+      }
+    }
+    this.quorum = (peers.size() + 1) / 2 + 1;
+    this.maxBatchBytes = properties.getMaxBatchBytes();
+    this.maxInFlightBytes = properties.getMaxInFlightBytes();
+    this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(properties.getHeartbeatMillis());
+    this.transport = transport;
+
+    boolean leading = nodeId.equals(properties.getInitialLeader());
+    this.replicationLog = new ReplicationLog(properties.getRetainedBytes(),
+      properties.getCommitTimeoutMillis(), !leading, this::wakeShipper);
+    this.accounts = new AccountsRepositoryInMemory(lockStripes, BalanceMode.LOCKED, replicationLog,
+      metrics);
+    this.replay = new JournalRecords.Visitor() {
+
+      @Override
+      public void onCreate(String accountId, long balance) {
+        accounts.replicateAccount(accountId, balance);
+      }
+
+      @Override
+      public void onDelta(String accountId, long delta) {
+        accounts.replicateDeltas(Collections.singletonList(accountId), new long[] {delta});
+      }
+
+      @Override
+      public void onTransfer(String fromAccountId, String toAccountId, long amount) {
+        accounts.replicateDeltas(Arrays.asList(fromAccountId, toAccountId),
+          new long[] {-amount, amount});
+      }
+
+      @Override
+      public void onDeltas(List<String> accountIds, long[] deltas) {
+        accounts.replicateDeltas(accountIds, deltas);
+      }
+
+      @Override
+      public void onClear() {
+        accounts.replicateClear();
+      }
+    };
+
+    this.epoch = 1L;
+    this.leaderId = properties.getInitialLeader();
+    if (!peers.isEmpty()) {
+      transport.start(nodeId, this::receive);
+    }
+    if (leading) {
+      synchronized (lock) {
+        becomeLeader();
+      }
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    checkLeader();
+    accounts.createAccount(account);
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    return accounts.getAccount(accountId);
+  }
+
+  @Override
+  public void clearAccounts() {
+    checkLeader();
+    accounts.clearAccounts();
+  }
+
+  @Override
+  public void reserveCapacity(int additionalAccounts) {
+    accounts.reserveCapacity(additionalAccounts);
+  }
+
+  @Override
+  public AccountPage listAccounts(long cursor, int limit) {
+    return accounts.listAccounts(cursor, limit);
+  }
+
+  @Override
+  public void exportAccounts(BalanceConsumer consumer) throws IOException {
+    accounts.exportAccounts(consumer);
+  }
+
+  @Override
+  public TransferReceipt instantTransfer(Transfer transfer) throws SameAccountIdException, InsufficientFundsException {
+    checkLeader();
+    return accounts.instantTransfer(transfer);
+  }
+
+  @Override
+  public BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode) {
+    checkLeader();
+    return accounts.batchTransfer(transfers, mode);
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public boolean isLeader() {
+    return leader;
+  }
+
+  /**
+   * @return the node this one last heard from as leader, or itself while leading
+   */
+  public String getLeaderId() {
+    return leaderId;
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * @return the end of this node's log; a follower applies records before appending them, so
+   *     everything up to here is visible to its reads
+   */
+  public long getLogPosition() {
+    return replicationLog.end();
+  }
+
+  /**
+   * @return the end of the log held by a quorum, as far as this node knows
+   */
+  public long getCommittedPosition() {
+    return replicationLog.committed();
+  }
+
+  /**
+   * Makes this node the leader under a new epoch, for instance after the leader was lost. Only the
+   * follower holding the most of the log should be promoted.
+   */
+  public void promote() {
+    synchronized (lock) {
+      if (leader) {
+        return;
+      }
+      epoch++;
+      becomeLeader();
+      log.info("Node {} leads the cluster from epoch {} at log position {}", nodeId, epoch,
+        replicationLog.end());
+    }
+  }
+
+  @PreDestroy
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    synchronized (lock) {
+      leader = false;
+      replicationLog.fence();
+    }
+    Thread thread = shipper;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    transport.close();
+  }
+
+  private void checkLeader() {
+    if (!leader) {
+      throw new NotLeaderException(
+        "Node " + nodeId + " does not lead the cluster, its leader is " + leaderId);
+    }
+  }
+
+  private void becomeLeader() {
+    leader = true;
+    leaderId = nodeId;
+    divergent = false;
+    long end = replicationLog.end();
+    for (Peer peer : peers.values()) {
+      peer.next = end;
+      peer.acknowledged = 0L;
+      peer.needsSnapshot = false;
+      peer.lastSentNanos = 0L;
+    }
+    replicationLog.unfence();
+    updateCommitted();
+    Thread thread = new Thread(this::ship, "replication-leader-" + nodeId);
+    thread.setDaemon(true);
+    shipper = thread;
+    thread.start();
+  }
+
+  private void wakeShipper() {
+    Thread thread = shipper;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void receive(ReplicationMessage message) {
+    synchronized (lock) {
+      if (!running || message.getEpoch() < epoch) {
+        return;
+      }
+      if (message.getEpoch() > epoch) {
+        follow(message);
+      }
+      switch (message.getType()) {
+        case APPEND:
+          if (!leader) {
+            onAppend(message);
+          }
+          break;
+        case SNAPSHOT:
+          if (!leader) {
+            onSnapshot(message);
+          }
+          break;
+        case ACK:
+          if (leader) {
+            onAck(message);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Adopts the newer epoch of {@code message}, stepping down if this node was leading.
+   */
+  private void follow(ReplicationMessage message) {
+    epoch = message.getEpoch();
+    leaderId = message.getType() == ReplicationMessage.Type.ACK ? null : message.getFrom();
+    if (leader) {
+      leader = false;
+      divergent = true;
+      replicationLog.fence();
+      log.info("Node {} steps down, epoch {} is led by {}", nodeId, epoch, leaderId);
+    }
+  }
+
+  private void onAppend(ReplicationMessage message) {
+    String from = message.getFrom();
+    if (divergent) {
+      transport.send(from, ReplicationMessage.ack(epoch, nodeId, -1L, true));
+      return;
+    }
+    long end = replicationLog.end();
+    long position = message.getPosition();
+    if (position > end) {
+      transport.send(from, ReplicationMessage.ack(epoch, nodeId, end, true));
+      return;
+    }
+    byte[] records = message.getRecords();
+    int known = (int) Math.min(end - position, records.length);
+    if (known < records.length) {
+      // Applied first, so the log position never covers records readers cannot see yet.
+      apply(records, known, records.length - known);
+      replicationLog.appendReplicated(records, known, records.length - known);
+    }
+    end = replicationLog.end();
+    replicationLog.commitTo(Math.min(message.getCommitted(), end));
+    transport.send(from, ReplicationMessage.ack(epoch, nodeId, end, false));
+  }
+
+  private void onSnapshot(ReplicationMessage message) {
+    accounts.replicateClear();
+    byte[] records = message.getRecords();
+    apply(records, 0, records.length);
+    replicationLog.reset(message.getPosition());
+    divergent = false;
+    log.info("Node {} installed a snapshot of {} bytes at log position {}", nodeId,
+      records.length, message.getPosition());
+    transport.send(message.getFrom(),
+      ReplicationMessage.ack(epoch, nodeId, message.getPosition(), false));
+  }
+
+  private void onAck(ReplicationMessage message) {
+    Peer peer = peers.get(message.getFrom());
+    if (peer == null) {
+      return;
+    }
+    long position = message.getPosition();
+    if (message.isRejected()) {
+      if (position < 0 || position < replicationLog.base()) {
+        peer.needsSnapshot = true;
+      } else {
+        peer.next = position;
+      }
+      peer.acknowledged = Math.max(0L, position);
+    } else {
+      peer.acknowledged = Math.max(peer.acknowledged, Math.min(position, replicationLog.end()));
+      peer.next = Math.max(peer.next, peer.acknowledged);
+    }
+    updateCommitted();
+    wakeShipper();
+  }
+
+  /**
+   * The committed position is the highest one held by a quorum, counting this node's whole log.
+   */
+  private void updateCommitted() {
+    long[] positions = new long[peers.size() + 1];
+    positions[0] = replicationLog.end();
+    long slowest = positions[0];
+    int i = 1;
+    for (Peer peer : peers.values()) {
+      positions[i++] = peer.acknowledged;
+      slowest = Math.min(slowest, peer.acknowledged);
+    }
+    Arrays.sort(positions);
+    replicationLog.commitTo(positions[positions.length - quorum]);
+    replicationLog.release(slowest);
+  }
+
+  private void ship() {
+    while (running && leader) {
+      synchronized (lock) {
+        if (!leader) {
+          break;
+        }
+        updateCommitted();
+        long now = System.nanoTime();
+        for (Peer peer : peers.values()) {
+          if (peer.needsSnapshot) {
+            sendSnapshot(peer);
+            peer.lastSentNanos = now;
+            continue;
+          }
+          boolean sent = false;
+          long end = replicationLog.end();
+          while (peer.next < end && peer.next - peer.acknowledged < maxInFlightBytes) {
+            byte[] records = replicationLog.read(peer.next, maxBatchBytes);
+            if (records == null) {
+              peer.needsSnapshot = true;
+              break;
+            }
+            transport.send(peer.nodeId, ReplicationMessage.append(epoch, nodeId, peer.next,
+              replicationLog.committed(), records));
+            peer.next += records.length;
+            sent = true;
+          }
+          if (sent || now - peer.lastSentNanos >= heartbeatNanos) {
+            if (!sent) {
+              transport.send(peer.nodeId, ReplicationMessage.append(epoch, nodeId, peer.next,
+                replicationLog.committed(), new byte[0]));
+            }
+            peer.lastSentNanos = now;
+          }
+        }
+      }
+      // Appends and acknowledgements unpark this thread as soon as there is more to send.
+      LockSupport.parkNanos(this, heartbeatNanos);
+    }
+  }
+
+  /*
+   * With every stripe locked nothing is being appended, so the balances copied are exactly those
+   * at the end of the log.
+   */
+  private void sendSnapshot(Peer peer) {
+    try {
+      ReplicationMessage snapshot = accounts.withAllStripesLocked(() -> {
+        int size = JournalRecords.maxClearSize();
+        for (Account account : accounts.accounts()) {
+          size += JournalRecords.maxCreateSize(account.getAccountId());
+        }
+        ByteBuffer records = ByteBuffer.allocate(size);
+        for (Account account : accounts.accounts()) {
+          JournalRecords.writeCreate(records, account.getAccountId(),
+            account.getBalanceMinorUnits());
+        }
+        return ReplicationMessage.snapshot(epoch, nodeId, replicationLog.end(),
+          Arrays.copyOf(records.array(), records.position()));
+      });
+      transport.send(peer.nodeId, snapshot);
+      peer.next = snapshot.getPosition();
+      peer.needsSnapshot = false;
+    } catch (Exception e) {
+      log.error("Could not send a snapshot to {}", peer.nodeId, e);
+    }
+  }
+
+  private void apply(byte[] records, int offset, int length) {
+    try (DataInputStream in = new DataInputStream(
+      new ByteArrayInputStream(records, offset, length))) {
+      while (JournalRecords.read(in, replay)) {
+        // Applied by the visitor.
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Map<String, InetSocketAddress> addresses(Map<String, String> nodes) {
+    Map<String, InetSocketAddress> addresses = new LinkedHashMap<>();
+    for (Map.Entry<String, String> node : nodes.entrySet()) {
+      addresses.put(node.getKey(), SocketReplicationTransport.parseAddress(node.getValue()));
+    }
+    return addresses;
+  }
+
+  /**
+   * What the leader knows of one follower. Guarded by the node's lock.
+   */
+  private static final class Peer {
+
+    private final String nodeId;
+
+    /** Position of the next record to send. */
+    private long next;
+
+    /** End of the follower's log as it last reported it. */
+    private long acknowledged;
+
+    private boolean needsSnapshot;
+
+    private long lastSentNanos;
+
+    private Peer(String nodeId) {
+      this.nodeId = nodeId;
+    }
+  }
+}
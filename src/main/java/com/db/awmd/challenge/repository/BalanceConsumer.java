@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.IOException;
+
+/**
+ * Receives accounts one at a time from {@link AccountsRepository#exportAccounts}.
+ */
+@FunctionalInterface
+public interface BalanceConsumer {
+
+  void accept(String accountId, long balanceMinorUnits) throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * How {@link AccountsRepositoryInMemory} makes a transfer's debit and credit safe.
+ */
+public enum BalanceMode {
+
+  /**
+   * Both accounts are locked for the duration of the transfer, so readers never observe money
+   * that has left one account but not yet arrived in the other.
+   */
+  LOCKED,
+
+  /**
+   * The debit is a single CAS on the source account that rejects overdrafts, followed by an
+   * atomic credit of the target. No locks are taken, so hot accounts do not serialize transfers,
+   * but a concurrent reader may briefly see the amount in flight.
+   */
+  LOCK_FREE
+}
@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only log of account ids in the order they were created, so that a position in it is a
+ * stable listing cursor. Ids are kept in fixed-size chunks allocated on demand; appending never
+ * copies what is already there.
+ */
+final class CreationOrder {
+
+  private static final int CHUNK_BITS = 14;
+
+  private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+  private static final int MAX_CHUNKS = 1 << 16;
+
+  private final AtomicReferenceArray<AtomicReferenceArray<String>> chunks =
+    new AtomicReferenceArray<>(MAX_CHUNKS);
+
+  private final AtomicLong size = new AtomicLong();
+
+  void append(String accountId) {
+    set(size.getAndIncrement(), accountId);
+  }
+
+  /**
+   * Claims the next {@code count} positions at once, for a bulk load to fill in any order with
+   * {@link #set}. Until a position is filled it reads as still being appended.
+   *
+   * @return the first of the claimed positions
+   */
+  long reserve(long count) {
+    long first = size.getAndAdd(count);
+    if ((first + count - 1) >>> CHUNK_BITS >= MAX_CHUNKS) {
+      throw new IllegalStateException(
+        "Too many accounts to keep in creation order: " + (first + count));
+    }
+    return first;
+  }
+
+  void set(long position, String accountId) {
+    int chunkIndex = (int) (position >>> CHUNK_BITS);
+    if (chunkIndex >= MAX_CHUNKS) {
+      throw new IllegalStateException("Too many accounts to keep in creation order: " + position);
+    }
+    AtomicReferenceArray<String> chunk = chunks.get(chunkIndex);
+    if (chunk == null) {
+      chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(1 << CHUNK_BITS));
+      chunk = chunks.get(chunkIndex);
+    }
+    chunk.set((int) position & CHUNK_MASK, accountId);
+  }
+
+  /**
+   * @return the id at {@code position}, or {@code null} if it is past the end or still being
+   *     appended
+   */
+  String get(long position) {
+    if (position < 0 || position >= size.get()) {
+      return null;
+    }
+    AtomicReferenceArray<String> chunk = chunks.get((int) (position >>> CHUNK_BITS));
+    return chunk == null ? null : chunk.get((int) position & CHUNK_MASK);
+  }
+
+  long size() {
+    return size.get();
+  }
+}
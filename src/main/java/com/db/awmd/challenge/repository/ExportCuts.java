@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Point-in-time cuts for exports that run while transfers go on.
+ *
+ * <p>A cut is opened with every stripe locked, or with every partition stopped, so no change is
+ * half applied at that moment. From then on, every writer that is about to change a balance first
+ * offers the current value to each open cut, which keeps the first value it is offered. Reading an
+ * account's current balance and then asking the cut for {@link Cut#balanceAt} therefore always
+ * gives its balance at the cut. A cut's memory grows only with the number of accounts changed
+ * while it is open.
+ */
+final class ExportCuts {
+
+  private static final Cut[] NONE = new Cut[0];
+
+  private volatile Cut[] open = NONE;
+
+  /**
+   * Must be called holding every stripe, or with every partition stopped.
+   */
+  synchronized Cut open() {
+    Cut cut = new Cut();
+    Cut[] cuts = Arrays.copyOf(open, open.length + 1);
+    cuts[cuts.length - 1] = cut;
+    open = cuts;
+    return cut;
+  }
+
+  synchronized void close(Cut cut) {
+    Cut[] cuts = open;
+    for (int i = 0; i < cuts.length; i++) {
+      if (cuts[i] == cut) {
+        Cut[] remaining = new Cut[cuts.length - 1];
+        System.arraycopy(cuts, 0, remaining, 0, i);
+        System.arraycopy(cuts, i + 1, remaining, i, cuts.length - i - 1);
+        open = remaining.length == 0 ? NONE : remaining;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Must be called holding the account's stripe, or on its partition's thread, before its balance
+   * changes.
+   */
+  void beforeChange(String accountId, long balance) {
+    for (Cut cut : open) {
+      cut.preImages.putIfAbsent(accountId, balance);
+    }
+  }
+
+  /**
+   * Must be called before the new account becomes visible to readers.
+   */
+  void created(String accountId) {
+    for (Cut cut : open) {
+      cut.created.add(accountId);
+    }
+  }
+
+  static final class Cut {
+
+    private final Map<String, Long> preImages = new ConcurrentHashMap<>();
+
+    private final Set<String> created = ConcurrentHashMap.newKeySet();
+
+    private Cut() {
+    }
+
+    /**
+     * @param currentBalance the account's balance, read before calling this
+     * @return the account's balance at the cut, or {@code -1} if it was created after the cut
+     */
+    long balanceAt(String accountId, long currentBalance) {
+      if (created.contains(accountId)) {
+        return -1L;
+      }
+      Long preImage = preImages.get(accountId);
+      return preImage != null ? preImage : currentBalance;
+    }
+  }
+}
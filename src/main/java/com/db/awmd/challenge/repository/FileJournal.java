@@ -0,0 +1,348 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.exception.JournalException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AccountsJournal} writing to numbered segment files with group commit.
+ *
+ * <p>Appends only copy the record into an in-memory buffer, under a lock held for nothing but
+ * that copy. A single flusher thread swaps that buffer out, writes it with one
+ * {@link FileChannel#write} and makes it durable with one {@link FileChannel#force}, then wakes
+ * the callers whose records were in it and no others. Waiting up to the group commit window
+ * before flushing lets more concurrent transfers share the same fsync.
+ *
+ * <p>A failed write is final. The flusher stops, every caller waiting on a record is failed, and
+ * {@link #checkWritable()} refuses every change from then on, so memory never runs ahead of disk
+ * by more than the changes that were in flight when the write failed.
+ */
+@Slf4j
+public class FileJournal implements AccountsJournal, AutoCloseable {
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final Path directory;
+
+  private final long groupCommitNanos;
+
+  /** Guards the pending buffer and the appended position. */
+  private final ReentrantLock appendLock = new ReentrantLock();
+
+  private final ReentrantLock ioLock = new ReentrantLock();
+
+  private final Thread flusher;
+
+  /** Callers waiting for their record to be durable, lowest position first. */
+  private final ConcurrentSkipListSet<Waiter> waiters = new ConcurrentSkipListSet<>();
+
+  private final AtomicLong waiterIds = new AtomicLong();
+
+  private ByteBuffer pending = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+  private ByteBuffer flushing = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+  private volatile long appendedPosition;
+
+  private volatile long durablePosition;
+
+  private FileChannel channel;
+
+  private volatile long segment;
+
+  private volatile IOException failure;
+
+  private volatile boolean running = true;
+
+  /**
+   * Opens a new segment numbered {@code segment} in {@code directory}. Existing segments are left
+   * untouched; recovering them is up to the caller.
+   */
+  public FileJournal(Path directory, long segment, long groupCommitMicros) throws IOException {
+    this.directory = directory;
+    this.groupCommitNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitMicros);
+    this.segment = segment;
+    this.channel = openSegment(segment);
+    this.flusher = new Thread(this::runFlusher, "journal-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  public static Path segmentPath(Path directory, long segment) {
+    return directory.resolve(String.format("journal-%016d.log", segment));
+  }
+
+  /**
+   * @return numbers of the segments in {@code directory}, in ascending order
+   */
+  public static long[] listSegments(Path directory) {
+    File[] files = directory.toFile().listFiles((dir, name) -> name.matches("journal-\\d{16}\\.log"));
+    if (files == null) {
+      return new long[0];
+    }
+    long[] segments = new long[files.length];
+    for (int i = 0; i < files.length; i++) {
+      segments[i] = Long.parseLong(files[i].getName().substring(8, 24));
+    }
+    Arrays.sort(segments);
+    return segments;
+  }
+
+  @Override
+  public long appendCreate(String accountId, long balance) {
+    appendLock.lock();
+    try {
+      ensureCapacity(JournalRecords.maxCreateSize(accountId));
+      JournalRecords.writeCreate(pending, accountId, balance);
+      return appended();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public long appendTransfer(String fromAccountId, String toAccountId, long amount) {
+    appendLock.lock();
+    try {
+      ensureCapacity(JournalRecords.maxTransferSize(fromAccountId, toAccountId));
+      JournalRecords.writeTransfer(pending, fromAccountId, toAccountId, amount);
+      return appended();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public long appendDeltas(List<String> accountIds, long[] deltas) {
+    appendLock.lock();
+    try {
+      ensureCapacity(JournalRecords.maxDeltasSize(accountIds));
+      JournalRecords.writeDeltas(pending, accountIds, deltas);
+      return appended();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public long appendClear() {
+    appendLock.lock();
+    try {
+      ensureCapacity(JournalRecords.maxClearSize());
+      JournalRecords.writeClear(pending);
+      return appended();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /*
+   * The waiter is registered before durablePosition is checked again, and the flusher advances
+   * durablePosition before it looks for waiters, so one of the two always sees the other.
+   */
+  @Override
+  public void awaitDurable(long position) {
+    if (durablePosition >= position) {
+      return;
+    }
+    Waiter waiter = new Waiter(position, waiterIds.incrementAndGet(), Thread.currentThread());
+    waiters.add(waiter);
+    boolean interrupted = false;
+    try {
+      while (durablePosition < position) {
+        if (failure != null) {
+          throw new JournalException("Journal write failed", failure);
+        }
+        if (!running) {
+          throw new JournalException("Journal closed before record was written");
+        }
+        LockSupport.park(this);
+        interrupted |= Thread.interrupted();
+      }
+    } finally {
+      waiters.remove(waiter);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void checkWritable() {
+    if (failure != null) {
+      throw new JournalException("Journal write failed, no more changes are accepted", failure);
+    }
+    if (!running) {
+      throw new JournalException("Journal is closed");
+    }
+  }
+
+  /**
+   * Flushes everything appended so far to the current segment and starts segment
+   * {@code nextSegment}. The caller must make sure nothing is appended concurrently, so that the
+   * switch falls on a consistent cut of the repository.
+   */
+  public void rotate(long nextSegment) throws IOException {
+    ioLock.lock();
+    try {
+      flushPending();
+      channel.close();
+      channel = openSegment(nextSegment);
+      segment = nextSegment;
+    } finally {
+      ioLock.unlock();
+    }
+  }
+
+  public long getSegment() {
+    return segment;
+  }
+
+  @Override
+  public void close() throws IOException, InterruptedException {
+    running = false;
+    LockSupport.unpark(flusher);
+    flusher.join(TimeUnit.SECONDS.toMillis(5));
+    ioLock.lock();
+    try {
+      if (failure == null) {
+        flushPending();
+      }
+      channel.close();
+    } finally {
+      ioLock.unlock();
+    }
+    wakeAll();
+  }
+
+  /*
+   * Must be called holding appendLock.
+   */
+  private long appended() {
+    long position = appendedPosition + 1;
+    appendedPosition = position;
+    if (position == durablePosition + 1) {
+      LockSupport.unpark(flusher);
+    }
+    return position;
+  }
+
+  /*
+   * Must be called holding appendLock.
+   */
+  private void ensureCapacity(int size) {
+    if (pending.remaining() < size) {
+      ByteBuffer larger = ByteBuffer.allocateDirect(
+        Math.max(pending.capacity() * 2, pending.position() + size));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+  }
+
+  private void runFlusher() {
+    while (running) {
+      // appended() unparks this thread when the first record after a flush arrives.
+      if (appendedPosition == durablePosition) {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+        continue;
+      }
+      if (groupCommitNanos > 0) {
+        LockSupport.parkNanos(this, groupCommitNanos);
+      }
+      ioLock.lock();
+      try {
+        flushPending();
+      } catch (IOException e) {
+        log.error("Journal write to segment {} failed", segment, e);
+        failure = e;
+        wakeAll();
+        return;
+      } finally {
+        ioLock.unlock();
+      }
+    }
+  }
+
+  /*
+   * Must be called holding ioLock. Appends continue into the other buffer while this one is being
+   * written and forced.
+   */
+  private void flushPending() throws IOException {
+    long batchEnd;
+    ByteBuffer batch;
+    appendLock.lock();
+    try {
+      if (appendedPosition == durablePosition) {
+        return;
+      }
+      batch = pending;
+      pending = flushing;
+      flushing = batch;
+      batchEnd = appendedPosition;
+    } finally {
+      appendLock.unlock();
+    }
+    batch.flip();
+    while (batch.hasRemaining()) {
+      channel.write(batch);
+    }
+    channel.force(false);
+    batch.clear();
+    durablePosition = batchEnd;
+    for (Waiter waiter : waiters) {
+      if (waiter.position > batchEnd) {
+        break;
+      }
+      LockSupport.unpark(waiter.thread);
+    }
+  }
+
+  private void wakeAll() {
+    for (Waiter waiter : waiters) {
+      LockSupport.unpark(waiter.thread);
+    }
+  }
+
+  private FileChannel openSegment(long number) throws IOException {
+    return FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * A caller parked in {@link #awaitDurable}, ordered by the position it waits for.
+   */
+  private static final class Waiter implements Comparable<Waiter> {
+
+    private final long position;
+
+    /** Tells apart callers waiting for the same position. */
+    private final long id;
+
+    private final Thread thread;
+
+    private Waiter(long position, long id, Thread thread) {
+      this.position = position;
+      this.id = id;
+      this.thread = thread;
+    }
+
+    @Override
+    public int compareTo(Waiter other) {
+      int byPosition = Long.compare(position, other.position);
+      return byPosition != 0 ? byPosition : Long.compare(id, other.id);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An account on the receiving end of a large share of all transfers, such as a fee collector or a
+ * merchant's settlement account, whose credits would otherwise all queue on one lock and one
+ * balance.
+ *
+ * <p>Credits are added to one of several cells, picked by the crediting thread and each on its
+ * own cache line, so concurrent credits rarely touch the same memory and never wait for each
+ * other. A debit first folds every cell into the main balance, so it is checked against every
+ * credit made before it, exactly as for a plain account. Reads add the cells to the main balance
+ * without folding; a fold bumps a sequence number around the move, like a seqlock, and a read
+ * that overlaps one is retried, so no credit is ever seen twice or missed.
+ */
+final class HotAccount extends Account {
+
+  /*
+   * Longs per cache line; cells are this far apart so two of them never share a line.
+   */
+  private static final int SPACING = 8;
+
+  private static final int MAX_CELLS = 64;
+
+  private final AtomicLongArray cells;
+
+  private final int mask;
+
+  /*
+   * Odd while a fold is moving the cells into the main balance.
+   */
+  private final AtomicLong folds = new AtomicLong();
+
+  HotAccount(String accountId, long balanceMinorUnits) {
+    super(accountId, balanceMinorUnits);
+    int wanted = Math.min(MAX_CELLS, 2 * Runtime.getRuntime().availableProcessors());
+    int count = Integer.highestOneBit(Math.max(2, wanted) * 2 - 1);
+    this.cells = new AtomicLongArray(count * SPACING);
+    this.mask = count - 1;
+  }
+
+  /**
+   * The credit itself never waits. The balance it reports goes through the same read as
+   * {@link #getBalanceMinorUnits}, since it ends up in receipts, notifications and the audit
+   * trail; that read only yields, and only while a fold is moving the cells.
+   *
+   * @return a balance that includes this credit; concurrent credits may or may not be included
+   */
+  @Override
+  public long credit(long amount) {
+    cells.getAndAdd(cell(), amount);
+    return getBalanceMinorUnits();
+  }
+
+  /*
+   * Credits that land in a cell after the fold only raise the balance, so the debit never
+   * overdraws. One refused while such credits are pending is retried with them folded in.
+   */
+  @Override
+  public long tryDebit(long amount) {
+    for (;;) {
+      fold();
+      long balance = super.tryDebit(amount);
+      if (balance >= 0) {
+        return getBalanceMinorUnits();
+      }
+      if (pending() <= 0) {
+        return balance;
+      }
+    }
+  }
+
+  @Override
+  public long getBalanceMinorUnits() {
+    for (;;) {
+      long sequence = folds.get();
+      if ((sequence & 1) == 0) {
+        long balance = super.getBalanceMinorUnits() + pending();
+        if (folds.get() == sequence) {
+          return balance;
+        }
+      }
+      Thread.yield();
+    }
+  }
+
+  /*
+   * Credits still in the cells predate the new balance, so they are dropped with it, under the
+   * fold sequence so that no read adds them to the new balance.
+   */
+  @Override
+  public void setBalance(BigDecimal balance) {
+    long sequence = beginFold();
+    try {
+      for (int i = 0; i < cells.length(); i += SPACING) {
+        cells.set(i, 0);
+      }
+      super.setBalance(balance);
+    } finally {
+      folds.set(sequence + 2);
+    }
+  }
+
+  private void fold() {
+    long sequence = beginFold();
+    try {
+      long folded = 0;
+      for (int i = 0; i < cells.length(); i += SPACING) {
+        if (cells.get(i) != 0) {
+          folded += cells.getAndSet(i, 0);
+        }
+      }
+      if (folded != 0) {
+        super.credit(folded);
+      }
+    } finally {
+      folds.set(sequence + 2);
+    }
+  }
+
+  /**
+   * @return the even sequence number the fold started from, to be set to that plus two once done
+   */
+  private long beginFold() {
+    long sequence;
+    while (((sequence = folds.get()) & 1) != 0 || !folds.compareAndSet(sequence, sequence + 1)) {
+      Thread.yield();
+    }
+    return sequence;
+  }
+
+  private long pending() {
+    long pending = 0;
+    for (int i = 0; i < cells.length(); i += SPACING) {
+      pending += cells.get(i);
+    }
+    return pending;
+  }
+
+  private int cell() {
+    int h = (int) Thread.currentThread().getId() * 0x9e3779b9;
+    return ((h ^ (h >>> 16)) & mask) * SPACING;
+  }
+}
@@ -0,0 +1,110 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link ReplicationTransport} between nodes in the same JVM, for running a whole cluster in one
+ * process. Each node's messages are queued to its own delivery thread, so nodes still run
+ * concurrently as they would over a network.
+ */
+@Slf4j
+public class InProcessReplicationTransport implements ReplicationTransport {
+
+  private static final int INBOX_CAPACITY = 10_000;
+
+  private final Network network;
+
+  private final BlockingQueue<ReplicationMessage> inbox =
+    new ArrayBlockingQueue<>(INBOX_CAPACITY);
+
+  private volatile String nodeId;
+
+  private volatile Thread deliverer;
+
+  /**
+   * The nodes that can reach each other. A node can be cut off to simulate a network partition or
+   * a crash, in which case messages to and from it are dropped.
+   */
+  public static final class Network {
+
+    private final Map<String, InProcessReplicationTransport> nodes = new ConcurrentHashMap<>();
+
+    private final Set<String> disconnected = ConcurrentHashMap.newKeySet();
+
+    public InProcessReplicationTransport transport() {
+      return new InProcessReplicationTransport(this);
+    }
+
+    public void disconnect(String nodeId) {
+      disconnected.add(nodeId);
+    }
+
+    public void reconnect(String nodeId) {
+      disconnected.remove(nodeId);
+    }
+
+    private void deliver(String fromNodeId, String toNodeId, ReplicationMessage message) {
+      InProcessReplicationTransport target = nodes.get(toNodeId);
+      if (target != null && !disconnected.contains(fromNodeId)
+        && !disconnected.contains(toNodeId)) {
+        target.inbox.offer(message);
+      }
+    }
+  }
+
+  private InProcessReplicationTransport(Network network) {
+    this.network = network;
+  }
+
+  @Override
+  public void start(String nodeId, Consumer<ReplicationMessage> receiver) {
+    this.nodeId = nodeId;
+    Thread thread = new Thread(() -> {
+      while (true) {
+        ReplicationMessage message;
+        try {
+          message = inbox.take();
+        } catch (InterruptedException e) {
+          return;
+        }
+        try {
+          receiver.accept(message);
+        } catch (RuntimeException e) {
+          log.error("Node {} failed to handle {}", nodeId, message, e);
+        }
+      }
+    }, "replication-" + nodeId);
+    thread.setDaemon(true);
+    this.deliverer = thread;
+    network.nodes.put(nodeId, this);
+    thread.start();
+  }
+
+  @Override
+  public void send(String toNodeId, ReplicationMessage message) {
+    network.deliver(nodeId, toNodeId, message);
+  }
+
+  @Override
+  public void close() {
+    if (nodeId != null) {
+      network.nodes.remove(nodeId, this);
+    }
+    Thread thread = deliverer;
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.journal")
+public class JournalProperties {
+
+  /**
+   * Directory holding the journal segments and the latest snapshot.
+   */
+  private String directory = "data/journal";
+
+  /**
+   * How long the flusher waits after the first pending record before forcing to disk, so that
+   * concurrent transfers can share one fsync. Zero flushes as soon as possible.
+   */
+  private long groupCommitMicros = 1_000;
+
+  /**
+   * Interval between snapshots. Zero disables periodic snapshots.
+   */
+  private long snapshotIntervalSeconds = 300;
+}
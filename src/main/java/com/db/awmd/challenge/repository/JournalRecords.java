@@ -0,0 +1,224 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of journal records.
+ *
+ * <p>Each record is framed as {@code int length | byte type | payload | int crc32}, where the
+ * length and checksum cover the type and payload. Strings are written as an unsigned short byte
+ * count followed by UTF-8 bytes. A record that is cut short or fails its checksum marks the end
+ * of the readable log.
+ */
+public final class JournalRecords {
+
+  public static final byte CREATE = 1;
+
+  public static final byte TRANSFER = 2;
+
+  public static final byte DELTAS = 3;
+
+  public static final byte CLEAR = 4;
+
+  private static final int FRAME_OVERHEAD = 4 + 1 + 4;
+
+  /**
+   * Largest record body written or read. A length above it can only come from a corrupt header,
+   * which is then treated as the end of the log rather than trusted with an allocation.
+   */
+  public static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+  private static final int MAX_STRING_BYTES = 0xFFFF;
+
+  /**
+   * Receives the changes held in decoded records.
+   */
+  public interface Visitor {
+
+    void onCreate(String accountId, long balance);
+
+    void onDelta(String accountId, long delta);
+
+    void onClear();
+
+    /**
+     * A transfer is a debit and a credit of the same amount; replay applies it without checking
+     * for overdrafts because it was already checked when it was first applied.
+     */
+    default void onTransfer(String fromAccountId, String toAccountId, long amount) {
+      onDelta(fromAccountId, -amount);
+      onDelta(toAccountId, amount);
+    }
+
+    /**
+     * The net changes of a batch, which were applied together.
+     */
+    default void onDeltas(List<String> accountIds, long[] deltas) {
+      for (int a = 0; a < deltas.length; a++) {
+        onDelta(accountIds.get(a), deltas[a]);
+      }
+    }
+  }
+
+  private JournalRecords() {
+  }
+
+  public static int maxCreateSize(String accountId) {
+    return FRAME_OVERHEAD + maxStringSize(accountId) + 8;
+  }
+
+  public static int maxTransferSize(String fromAccountId, String toAccountId) {
+    return FRAME_OVERHEAD + maxStringSize(fromAccountId) + maxStringSize(toAccountId) + 8;
+  }
+
+  public static int maxDeltasSize(List<String> accountIds) {
+    int size = FRAME_OVERHEAD + 4;
+    for (String accountId : accountIds) {
+      size += maxStringSize(accountId) + 8;
+    }
+    return size;
+  }
+
+  public static int maxClearSize() {
+    return FRAME_OVERHEAD;
+  }
+
+  public static void writeCreate(ByteBuffer out, String accountId, long balance) {
+    int start = begin(out, CREATE);
+    writeString(out, accountId);
+    out.putLong(balance);
+    end(out, start);
+  }
+
+  public static void writeTransfer(ByteBuffer out, String fromAccountId, String toAccountId,
+    long amount) {
+    int start = begin(out, TRANSFER);
+    writeString(out, fromAccountId);
+    writeString(out, toAccountId);
+    out.putLong(amount);
+    end(out, start);
+  }
+
+  public static void writeDeltas(ByteBuffer out, List<String> accountIds, long[] deltas) {
+    int start = begin(out, DELTAS);
+    int countAt = out.position();
+    out.putInt(0);
+    int count = 0;
+    for (int a = 0; a < deltas.length; a++) {
+      if (deltas[a] != 0) {
+        writeString(out, accountIds.get(a));
+        out.putLong(deltas[a]);
+        count++;
+      }
+    }
+    out.putInt(countAt, count);
+    end(out, start);
+  }
+
+  public static void writeClear(ByteBuffer out) {
+    end(out, begin(out, CLEAR));
+  }
+
+  /**
+   * Reads the next record and passes its changes to the visitor.
+   *
+   * @return {@code false} at the end of the stream or at the first torn or corrupt record
+   */
+  public static boolean read(DataInputStream in, Visitor visitor) throws IOException {
+    int length;
+    byte[] body;
+    int checksum;
+    try {
+      length = in.readInt();
+      if (length <= 0 || length > MAX_RECORD_SIZE) {
+        return false;
+      }
+      body = new byte[length];
+      in.readFully(body);
+      checksum = in.readInt();
+    } catch (EOFException endOfLog) {
+      return false;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(body, 0, length);
+    if ((int) crc.getValue() != checksum) {
+      return false;
+    }
+    return decode(ByteBuffer.wrap(body), visitor);
+  }
+
+  /**
+   * Decodes a single record body (type and payload, without the frame).
+   */
+  static boolean decode(ByteBuffer body, Visitor visitor) {
+    byte type = body.get();
+    switch (type) {
+      case CREATE:
+        visitor.onCreate(readString(body), body.getLong());
+        return true;
+      case TRANSFER:
+        visitor.onTransfer(readString(body), readString(body), body.getLong());
+        return true;
+      case DELTAS:
+        int count = body.getInt();
+        List<String> accountIds = new ArrayList<>(count);
+        long[] deltas = new long[count];
+        for (int i = 0; i < count; i++) {
+          accountIds.add(readString(body));
+          deltas[i] = body.getLong();
+        }
+        visitor.onDeltas(accountIds, deltas);
+        return true;
+      case CLEAR:
+        visitor.onClear();
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int begin(ByteBuffer out, byte type) {
+    int start = out.position();
+    out.putInt(0);
+    out.put(type);
+    return start;
+  }
+
+  private static void end(ByteBuffer out, int start) {
+    int length = out.position() - start - 4;
+    out.putInt(start, length);
+    ByteBuffer body = out.duplicate();
+    body.limit(out.position()).position(start + 4);
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    out.putInt((int) crc.getValue());
+  }
+
+  private static int maxStringSize(String value) {
+    return 2 + 3 * value.length();
+  }
+
+  private static void writeString(ByteBuffer out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_STRING_BYTES) {
+      throw new IllegalArgumentException("Account id too long to journal: " + value.length());
+    }
+    out.putShort((short) bytes.length);
+    out.put(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getShort() & 0xFFFF;
+    String value = new String(in.array(), in.arrayOffset() + in.position(), length,
+      StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.mapped")
+public class MappedStoreProperties {
+
+  /**
+   * Memory-mapped file holding the account table.
+   */
+  private String file = "data/accounts.map";
+
+  /**
+   * Number of slots of a newly created table, a power of two. At most three quarters of them are
+   * used, and each takes 64 bytes.
+   */
+  private long capacity = 1L << 20;
+}
@@ -0,0 +1,218 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.RejectionReason;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Engine independent part of a batch transfer.
+ *
+ * <p>The constructor validates every transfer in a single pass and gives each distinct account a
+ * dense index. {@link #evaluate(long[], BatchMode)} then decides which transfers go through
+ * against a snapshot of those accounts' balances and nets them into one delta per account, which
+ * the repository applies while holding each account once.
+ */
+public class NettedBatch {
+
+  private static final String INSUFFICIENT_FUNDS =
+    "This account does not have sufficient fund to transfer";
+
+  private final int size;
+
+  private final Map<String, Integer> indexes = new HashMap<>();
+
+  private final List<String> accountIds = new ArrayList<>();
+
+  private final int[] fromIndex;
+
+  private final int[] toIndex;
+
+  private final long[] amounts;
+
+  private final String[] rejections;
+
+  private final RejectionReason[] rejectionReasons;
+
+  private final String[] evaluated;
+
+  private final RejectionReason[] evaluatedReasons;
+
+  private final boolean anyInvalid;
+
+  private long[] deltas;
+
+  private int completed;
+
+  public NettedBatch(List<Transfer> transfers, Predicate<String> accountExists) {
+    this.size = transfers.size();
+    this.fromIndex = new int[size];
+    this.toIndex = new int[size];
+    this.amounts = new long[size];
+    this.rejections = new String[size];
+    this.rejectionReasons = new RejectionReason[size];
+    this.evaluated = new String[size];
+    this.evaluatedReasons = new RejectionReason[size];
+    boolean invalid = false;
+    for (int i = 0; i < size; i++) {
+      Transfer transfer = transfers.get(i);
+      RejectionReason reason = validate(transfer, accountExists);
+      if (reason == null) {
+        amounts[i] = transfer.getAmount().getMinorUnits();
+      }
+      if (reason != null) {
+        rejections[i] = rejectionMessage(reason, transfer, accountExists);
+        rejectionReasons[i] = reason;
+        fromIndex[i] = -1;
+        toIndex[i] = -1;
+        invalid = true;
+      } else {
+        fromIndex[i] = indexOf(transfer.getFromAccountId());
+        toIndex[i] = indexOf(transfer.getToAccountId());
+      }
+    }
+    this.anyInvalid = invalid;
+  }
+
+  /**
+   * Ids of the distinct accounts touched by valid transfers, in index order.
+   */
+  public List<String> getAccountIds() {
+    return accountIds;
+  }
+
+  /**
+   * Decides the outcome of every transfer given the current balances of the batch's accounts and
+   * computes the resulting net delta per account. May be called again with fresh balances if
+   * applying the deltas failed.
+   *
+   * @param balances balance in minor units of each account, aligned with {@link #getAccountIds()}
+   * @return {@code false} if nothing is to be applied
+   */
+  public boolean evaluate(long[] balances, BatchMode mode) {
+    long[] working = Arrays.copyOf(balances, balances.length);
+    System.arraycopy(rejections, 0, evaluated, 0, size);
+    System.arraycopy(rejectionReasons, 0, evaluatedReasons, 0, size);
+    completed = 0;
+
+    if (mode == BatchMode.ALL_OR_NOTHING) {
+      if (!anyInvalid) {
+        for (int i = 0; i < size; i++) {
+          working[fromIndex[i]] -= amounts[i];
+          working[toIndex[i]] += amounts[i];
+        }
+        for (int a = 0; a < working.length; a++) {
+          if (working[a] < 0) {
+            reject("Batch would overdraw account " + accountIds.get(a),
+              RejectionReason.INSUFFICIENT_FUNDS);
+            deltas = new long[balances.length];
+            return false;
+          }
+        }
+        completed = size;
+      } else {
+        reject("Batch contains invalid transfers", RejectionReason.BATCH_REJECTED);
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        if (evaluated[i] != null) {
+          continue;
+        }
+        if (working[fromIndex[i]] < amounts[i]) {
+          evaluated[i] = INSUFFICIENT_FUNDS;
+          evaluatedReasons[i] = RejectionReason.INSUFFICIENT_FUNDS;
+          continue;
+        }
+        working[fromIndex[i]] -= amounts[i];
+        working[toIndex[i]] += amounts[i];
+        completed++;
+      }
+    }
+
+    deltas = new long[balances.length];
+    for (int a = 0; a < balances.length; a++) {
+      deltas[a] = working[a] - balances[a];
+    }
+    return completed > 0;
+  }
+
+  /**
+   * Net change in minor units per account from the last {@link #evaluate(long[], BatchMode)}.
+   */
+  public long[] getDeltas() {
+    return deltas;
+  }
+
+  public BatchTransferResult toResult(BatchMode mode, long[] finalBalances) {
+    List<TransferOutcome> results = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      results.add(evaluated[i] == null
+        ? new TransferOutcome(i, TransferState.COMPLETED, null)
+        : new TransferOutcome(i, TransferState.REJECTED, evaluated[i], evaluatedReasons[i]));
+    }
+    Map<String, Money> balances = new LinkedHashMap<>();
+    for (int a = 0; a < accountIds.size(); a++) {
+      if (deltas != null && deltas[a] != 0) {
+        balances.put(accountIds.get(a), Money.ofMinorUnits(finalBalances[a]));
+      }
+    }
+    return new BatchTransferResult(mode, completed, size - completed, results, balances);
+  }
+
+  private static RejectionReason validate(Transfer transfer, Predicate<String> accountExists) {
+    if (transfer.getAmount() == null || transfer.getAmount().signum() <= 0) {
+      return RejectionReason.INVALID_AMOUNT;
+    }
+    if (transfer.getToAccountId().equals(transfer.getFromAccountId())) {
+      return RejectionReason.SAME_ACCOUNT;
+    }
+    if (!accountExists.test(transfer.getFromAccountId())
+      || !accountExists.test(transfer.getToAccountId())) {
+      return RejectionReason.UNKNOWN_ACCOUNT;
+    }
+    return null;
+  }
+
+  private static String rejectionMessage(RejectionReason reason, Transfer transfer,
+    Predicate<String> accountExists) {
+    switch (reason) {
+      case INVALID_AMOUNT:
+        return "Amount must be positive.";
+      case SAME_ACCOUNT:
+        return "Provided 'To' and 'From' accounts are same";
+      default:
+        String missing = accountExists.test(transfer.getFromAccountId())
+          ? transfer.getToAccountId() : transfer.getFromAccountId();
+        return "Account id " + missing + " does not exist";
+    }
+  }
+
+  private int indexOf(String accountId) {
+    Integer index = indexes.get(accountId);
+    if (index == null) {
+      index = accountIds.size();
+      indexes.put(accountId, index);
+      accountIds.add(accountId);
+    }
+    return index;
+  }
+
+  private void reject(String message, RejectionReason reason) {
+    for (int i = 0; i < size; i++) {
+      if (evaluated[i] == null) {
+        evaluated[i] = message;
+        evaluatedReasons[i] = reason;
+      }
+    }
+  }
+}
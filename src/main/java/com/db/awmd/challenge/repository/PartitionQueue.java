@@ -0,0 +1,112 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free, unbounded, multi-producer single-consumer queue of intrusive nodes (Vyukov's
+ * algorithm). Offering is one atomic exchange and one ordered store, whatever the number of
+ * producers; polling is done by the one consumer thread without any atomic operation. The nodes
+ * themselves are the links, so nothing is allocated per element, and a node handed out by
+ * {@link #poll()} is fully detached and may be offered to another queue straight away.
+ *
+ * <p>Methods for the consumer thread may be called from another thread once the consumer has
+ * stopped polling, as long as calls are serialized and ordered after its last poll.
+ */
+final class PartitionQueue {
+
+  static class Node {
+
+    volatile Node next;
+  }
+
+  private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+    AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+  private final Node stub = new Node();
+
+  /**
+   * Producer end: the node most recently offered.
+   */
+  private final AtomicReference<Node> last = new AtomicReference<>(stub);
+
+  /**
+   * Consumer end; only the consumer thread reads or writes it.
+   */
+  private Node first = stub;
+
+  void offer(Node node) {
+    NEXT.lazySet(node, null);
+    Node previous = last.getAndSet(node);
+    // Until this store the node is queued but not yet reachable from the consumer end.
+    previous.next = node;
+  }
+
+  /**
+   * Consumer thread only.
+   *
+   * @return the oldest node, or {@code null} if the queue is empty or its oldest node is still
+   *     being linked in by a producer
+   */
+  Node poll() {
+    Node head = first;
+    Node next = head.next;
+    if (head == stub) {
+      if (next == null) {
+        return null;
+      }
+      first = next;
+      head = next;
+      next = next.next;
+    }
+    if (next != null) {
+      first = next;
+      return head;
+    }
+    if (head != last.get()) {
+      return null;
+    }
+    // The head is the only node left; put the stub behind it so that it can be handed out.
+    offer(stub);
+    next = head.next;
+    if (next != null) {
+      first = next;
+      return head;
+    }
+    return null;
+  }
+
+  /**
+   * Consumer thread only. A producer in the middle of offering counts as not empty.
+   */
+  boolean isEmpty() {
+    // Anything but the stub at the consumer end has not been handed out yet.
+    Node head = first;
+    return head == stub && head.next == null && last.get() == stub;
+  }
+
+  /**
+   * Passes every node queued so far, oldest first, to {@code visitor}. Only safe while the
+   * consumer thread is known not to be polling, e.g. parked at a barrier; producers may keep
+   * offering meanwhile, and nodes offered after this was called may or may not be visited.
+   */
+  void forEachQueued(Consumer<Node> visitor) {
+    Node end = last.get();
+    Node node = first;
+    while (true) {
+      if (node != stub) {
+        visitor.accept(node);
+      }
+      if (node == end) {
+        return;
+      }
+      Node next;
+      while ((next = node.next) == null) {
+        // A producer has exchanged itself in but not linked yet; it is about to.
+        Thread.yield();
+      }
+      node = next;
+    }
+  }
+}
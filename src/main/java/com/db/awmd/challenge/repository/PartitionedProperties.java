@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.partitioned")
+public class PartitionedProperties {
+
+  /**
+   * Number of partitions, each owned by one thread. More partitions than cores only adds
+   * cross-partition transfers.
+   */
+  private int partitions = Runtime.getRuntime().availableProcessors();
+}
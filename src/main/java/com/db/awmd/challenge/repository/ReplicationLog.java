@@ -0,0 +1,261 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.exception.NotLeaderException;
+import com.db.awmd.challenge.exception.ReplicationException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The replicated log of a node: the {@link AccountsJournal} of its accounts while it leads, and
+ * the records received from the leader while it follows.
+ *
+ * <p>Records use the {@link JournalRecords} format and are addressed by byte position since the
+ * start of the log. Only the tail is kept in memory; once the buffer is full, bytes every peer has
+ * acknowledged are dropped, and so are bytes more than {@code retainedBytes} behind the end, in
+ * which case a peer that still needed them is sent a snapshot instead.
+ *
+ * <p>A change is durable once a quorum of nodes holds it, which the leader reports through
+ * {@link #commitTo(long)}. Appending is refused once the log is fenced, when the node stops
+ * leading, and anyone still waiting for a change to be committed is failed.
+ */
+final class ReplicationLog implements AccountsJournal {
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private static final int FRAME_OVERHEAD = 4 + 4;
+
+  private final long retainedBytes;
+
+  private final long commitTimeoutMillis;
+
+  private final Runnable onAppend;
+
+  private final Object commitLock = new Object();
+
+  private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+  /** Position of the first byte in the buffer. */
+  private long base;
+
+  /** Position up to which every peer has acknowledged the log. */
+  private long released;
+
+  private volatile boolean fenced;
+
+  /** Guarded by commitLock. */
+  private long committed;
+
+  /**
+   * @param onAppend called after every record appended while leading, with the log locked
+   */
+  ReplicationLog(long retainedBytes, long commitTimeoutMillis, boolean fenced, Runnable onAppend) {
+    this.retainedBytes = retainedBytes;
+    this.commitTimeoutMillis = commitTimeoutMillis;
+    this.fenced = fenced;
+    this.onAppend = onAppend;
+  }
+
+  @Override
+  public synchronized long appendCreate(String accountId, long balance) {
+    ensureWritable(JournalRecords.maxCreateSize(accountId));
+    JournalRecords.writeCreate(buffer, accountId, balance);
+    return appended();
+  }
+
+  @Override
+  public synchronized long appendTransfer(String fromAccountId, String toAccountId, long amount) {
+    ensureWritable(JournalRecords.maxTransferSize(fromAccountId, toAccountId));
+    JournalRecords.writeTransfer(buffer, fromAccountId, toAccountId, amount);
+    return appended();
+  }
+
+  @Override
+  public synchronized long appendDeltas(List<String> accountIds, long[] deltas) {
+    ensureWritable(JournalRecords.maxDeltasSize(accountIds));
+    JournalRecords.writeDeltas(buffer, accountIds, deltas);
+    return appended();
+  }
+
+  @Override
+  public synchronized long appendClear() {
+    ensureWritable(JournalRecords.maxClearSize());
+    JournalRecords.writeClear(buffer);
+    return appended();
+  }
+
+  /**
+   * Waits until a quorum holds the log up to {@code position}. The change has already been
+   * applied locally; if it is never committed this throws, and the change may or may not survive
+   * a failover.
+   */
+  @Override
+  public void awaitDurable(long position) {
+    boolean interrupted = false;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitTimeoutMillis);
+    synchronized (commitLock) {
+      while (committed < position) {
+        if (fenced) {
+          throw new ReplicationException("Leadership was lost before the change was replicated");
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new ReplicationException(
+            "Change was not replicated to a quorum within " + commitTimeoutMillis + " ms");
+        }
+        try {
+          TimeUnit.NANOSECONDS.timedWait(commitLock, remaining);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void checkWritable() {
+    if (fenced) {
+      throw new NotLeaderException("This node no longer leads the cluster");
+    }
+  }
+
+  /**
+   * Appends records received from the leader.
+   */
+  synchronized void appendReplicated(byte[] records, int offset, int length) {
+    ensureCapacity(length);
+    buffer.put(records, offset, length);
+  }
+
+  /**
+   * Copies whole records starting at {@code position}, as many as fit in {@code maxBytes} but at
+   * least one.
+   *
+   * @return the records, empty at the end of the log, or {@code null} if the bytes at
+   *     {@code position} were already dropped
+   */
+  synchronized byte[] read(long position, int maxBytes) {
+    if (position < base || position > end()) {
+      return null;
+    }
+    int start = (int) (position - base);
+    int limit = buffer.position();
+    int stop = start;
+    while (stop < limit) {
+      int next = stop + FRAME_OVERHEAD + buffer.getInt(stop);
+      if (stop > start && next - start > maxBytes) {
+        break;
+      }
+      stop = next;
+    }
+    return Arrays.copyOfRange(buffer.array(), start, stop);
+  }
+
+  synchronized long end() {
+    return base + buffer.position();
+  }
+
+  synchronized long base() {
+    return base;
+  }
+
+  /**
+   * Allows the bytes before {@code position}, which every peer holds, to be dropped.
+   */
+  synchronized void release(long position) {
+    released = Math.max(released, position);
+  }
+
+  /**
+   * Empties the log so that it continues at {@code position}, after a snapshot was installed.
+   */
+  void reset(long position) {
+    synchronized (this) {
+      buffer.clear();
+      base = position;
+      released = position;
+    }
+    synchronized (commitLock) {
+      committed = position;
+    }
+  }
+
+  void commitTo(long position) {
+    synchronized (commitLock) {
+      if (position > committed) {
+        committed = position;
+        commitLock.notifyAll();
+      }
+    }
+  }
+
+  long committed() {
+    synchronized (commitLock) {
+      return committed;
+    }
+  }
+
+  /**
+   * Refuses further appends and fails every change still waiting to be committed.
+   */
+  void fence() {
+    synchronized (this) {
+      fenced = true;
+    }
+    synchronized (commitLock) {
+      commitLock.notifyAll();
+    }
+  }
+
+  void unfence() {
+    fenced = false;
+  }
+
+  private long appended() {
+    onAppend.run();
+    return end();
+  }
+
+  private void ensureWritable(int size) {
+    checkWritable();
+    ensureCapacity(size);
+  }
+
+  private void ensureCapacity(int size) {
+    if (buffer.remaining() >= size) {
+      return;
+    }
+    long end = end();
+    long target = Math.min(end, Math.max(released, end - retainedBytes));
+    int drop = boundaryAtOrAfter((int) Math.max(0L, target - base));
+    if (drop > 0) {
+      byte[] array = buffer.array();
+      System.arraycopy(array, drop, array, 0, buffer.position() - drop);
+      buffer.position(buffer.position() - drop);
+      base += drop;
+    }
+    if (buffer.remaining() < size) {
+      ByteBuffer larger = ByteBuffer.allocate(
+        Math.max(buffer.capacity() * 2, buffer.position() + size));
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+  }
+
+  /**
+   * @return the offset of the first record starting at or after {@code offset}
+   */
+  private int boundaryAtOrAfter(int offset) {
+    int boundary = 0;
+    int limit = buffer.position();
+    while (boundary < offset && boundary < limit) {
+      boundary += FRAME_OVERHEAD + buffer.getInt(boundary);
+    }
+    return boundary;
+  }
+}
@@ -0,0 +1,87 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * What replicated nodes send each other.
+ *
+ * <p>The leader sends {@link Type#APPEND} with the journal records that start at
+ * {@code position} of its log, or none as a heartbeat, and {@link Type#SNAPSHOT} with a create
+ * record per account as of {@code position} to a follower it no longer holds the log for. A
+ * follower answers both with {@link Type#ACK} carrying the end of its log; a rejected ack asks the
+ * leader to resend from there, or to send a snapshot if the position is negative. Every message
+ * carries the sender's epoch, and a node ignores messages from an older one.
+ */
+@Data
+@ToString(exclude = "records")
+public final class ReplicationMessage {
+
+  public enum Type {
+
+    APPEND,
+
+    SNAPSHOT,
+
+    ACK
+  }
+
+  private static final byte[] NO_RECORDS = new byte[0];
+
+  private final Type type;
+
+  private final long epoch;
+
+  private final String from;
+
+  private final long position;
+
+  /**
+   * End of the log known to be held by a quorum, as of when the leader sent the message.
+   */
+  private final long committed;
+
+  private final boolean rejected;
+
+  private final byte[] records;
+
+  public static ReplicationMessage append(long epoch, String from, long position, long committed,
+    byte[] records) {
+    return new ReplicationMessage(Type.APPEND, epoch, from, position, committed, false, records);
+  }
+
+  public static ReplicationMessage snapshot(long epoch, String from, long position,
+    byte[] records) {
+    return new ReplicationMessage(Type.SNAPSHOT, epoch, from, position, position, false, records);
+  }
+
+  public static ReplicationMessage ack(long epoch, String from, long position, boolean rejected) {
+    return new ReplicationMessage(Type.ACK, epoch, from, position, 0L, rejected, NO_RECORDS);
+  }
+
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeByte(type.ordinal());
+    out.writeLong(epoch);
+    out.writeUTF(from);
+    out.writeLong(position);
+    out.writeLong(committed);
+    out.writeBoolean(rejected);
+    out.writeInt(records.length);
+    out.write(records);
+  }
+
+  public static ReplicationMessage readFrom(DataInputStream in) throws IOException {
+    Type type = Type.values()[in.readUnsignedByte()];
+    long epoch = in.readLong();
+    String from = in.readUTF();
+    long position = in.readLong();
+    long committed = in.readLong();
+    boolean rejected = in.readBoolean();
+    byte[] records = new byte[in.readInt()];
+    in.readFully(records);
+    return new ReplicationMessage(type, epoch, from, position, committed, rejected, records);
+  }
+}
@@ -0,0 +1,55 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.replication")
+public class ReplicationProperties {
+
+  /**
+   * Id of this node; must be one of {@link #nodes}.
+   */
+  private String nodeId = "node-1";
+
+  /**
+   * Every node of the cluster, this one included, by id, with the {@code host:port} it listens on
+   * for replication.
+   */
+  private Map<String, String> nodes = new LinkedHashMap<>();
+
+  /**
+   * Node that leads when the cluster starts. The others follow until one of them is promoted.
+   */
+  private String initialLeader = "node-1";
+
+  /**
+   * Most bytes of records the leader sends to a follower in one message.
+   */
+  private int maxBatchBytes = 256 * 1024;
+
+  /**
+   * Most bytes the leader sends to a follower ahead of its acknowledgements.
+   */
+  private int maxInFlightBytes = 4 * 1024 * 1024;
+
+  /**
+   * Interval at which the leader contacts an idle follower.
+   */
+  private long heartbeatMillis = 50L;
+
+  /**
+   * How long a change waits to be held by a quorum before it is reported as failed.
+   */
+  private long commitTimeoutMillis = 5_000L;
+
+  /**
+   * Bytes of log kept in memory for followers that fall behind. A follower further behind is sent
+   * a snapshot of every account instead.
+   */
+  private long retainedBytes = 64L * 1024 * 1024;
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link ReplicationMessage}s between the nodes of a replicated cluster.
+ *
+ * <p>Sending never blocks on the network. Messages from one node to another arrive in the order
+ * they were sent, but any of them may be lost, for instance while a peer is down; the protocol
+ * recovers from lost messages by itself.
+ */
+public interface ReplicationTransport extends AutoCloseable {
+
+  /**
+   * Starts delivering the messages sent to {@code nodeId} to {@code receiver}.
+   */
+  void start(String nodeId, Consumer<ReplicationMessage> receiver);
+
+  void send(String nodeId, ReplicationMessage message);
+
+  @Override
+  void close();
+}
@@ -0,0 +1,224 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.exception.ReplicationException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link ReplicationTransport} over TCP.
+ *
+ * <p>Each node listens on its own address and keeps one outgoing connection per peer, written by
+ * a thread of its own that sends everything queued for that peer before flushing, so messages
+ * sent in quick succession share a packet. A message that cannot be queued or written is dropped
+ * and the connection is retried; the protocol resends what was lost.
+ */
+@Slf4j
+public class SocketReplicationTransport implements ReplicationTransport {
+
+  private static final int QUEUE_CAPACITY = 10_000;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+
+  private static final long RETRY_MILLIS = 100L;
+
+  private final Map<String, InetSocketAddress> addresses;
+
+  private final Map<String, Outbound> outbound = new ConcurrentHashMap<>();
+
+  private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+
+  private volatile ServerSocket server;
+
+  private volatile boolean running = true;
+
+  /**
+   * @param addresses the address of every node of the cluster, this one included
+   */
+  public SocketReplicationTransport(Map<String, InetSocketAddress> addresses) {
+    this.addresses = addresses;
+  }
+
+  /**
+   * Parses an address written as {@code host:port}.
+   */
+  public static InetSocketAddress parseAddress(String address) {
+    int colon = address.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Expected host:port but got " + address);
+    }
+    return new InetSocketAddress(address.substring(0, colon),
+      Integer.parseInt(address.substring(colon + 1)));
+  }
+
+  @Override
+  public void start(String nodeId, Consumer<ReplicationMessage> receiver) {
+    InetSocketAddress address = addresses.get(nodeId);
+    if (address == null) {
+      throw new IllegalArgumentException("No address configured for node " + nodeId);
+    }
+    try {
+      ServerSocket socket = new ServerSocket();
+      socket.setReuseAddress(true);
+      socket.bind(address);
+      this.server = socket;
+    } catch (IOException e) {
+      throw new ReplicationException("Could not listen on " + address, e);
+    }
+    Thread acceptor = new Thread(() -> accept(nodeId, receiver), "replication-accept-" + nodeId);
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  @Override
+  public void send(String nodeId, ReplicationMessage message) {
+    if (running) {
+      outbound.computeIfAbsent(nodeId, Outbound::new).queue.offer(message);
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    closeQuietly(server);
+    for (Socket socket : inbound) {
+      closeQuietly(socket);
+    }
+    for (Outbound peer : outbound.values()) {
+      peer.close();
+    }
+  }
+
+  private void accept(String nodeId, Consumer<ReplicationMessage> receiver) {
+    while (running) {
+      Socket socket;
+      try {
+        socket = server.accept();
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        if (running) {
+          log.warn("Node {} stopped accepting replication connections", nodeId, e);
+        }
+        return;
+      }
+      inbound.add(socket);
+      Thread reader = new Thread(() -> read(socket, receiver), "replication-in-" + nodeId);
+      reader.setDaemon(true);
+      reader.start();
+    }
+  }
+
+  private void read(Socket socket, Consumer<ReplicationMessage> receiver) {
+    try (DataInputStream in = new DataInputStream(
+      new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE))) {
+      while (running) {
+        receiver.accept(ReplicationMessage.readFrom(in));
+      }
+    } catch (EOFException closed) {
+      // The peer closed the connection; it reconnects when it has something to send.
+    } catch (IOException e) {
+      if (running) {
+        log.debug("Replication connection from {} failed", socket.getRemoteSocketAddress(), e);
+      }
+    } finally {
+      inbound.remove(socket);
+      closeQuietly(socket);
+    }
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (Exception ignored) {
+        // Nothing left to do with it.
+      }
+    }
+  }
+
+  /**
+   * The connection to one peer and the messages waiting to be written to it.
+   */
+  private final class Outbound {
+
+    private final String nodeId;
+
+    private final BlockingQueue<ReplicationMessage> queue =
+      new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final Thread writer;
+
+    private volatile Socket socket;
+
+    private DataOutputStream out;
+
+    private Outbound(String nodeId) {
+      this.nodeId = nodeId;
+      this.writer = new Thread(this::write, "replication-out-" + nodeId);
+      this.writer.setDaemon(true);
+      this.writer.start();
+    }
+
+    private void write() {
+      while (running) {
+        try {
+          ReplicationMessage message = queue.take();
+          DataOutputStream out = connect();
+          message.writeTo(out);
+          while ((message = queue.poll()) != null) {
+            message.writeTo(out);
+          }
+          out.flush();
+        } catch (InterruptedException e) {
+          return;
+        } catch (IOException e) {
+          log.debug("Replication connection to {} failed", nodeId, e);
+          closeQuietly(socket);
+          socket = null;
+          queue.clear();
+          try {
+            Thread.sleep(RETRY_MILLIS);
+          } catch (InterruptedException interrupted) {
+            return;
+          }
+        }
+      }
+    }
+
+    private DataOutputStream connect() throws IOException {
+      if (socket == null) {
+        InetSocketAddress address = addresses.get(nodeId);
+        if (address == null) {
+          throw new IOException("No address configured for node " + nodeId);
+        }
+        Socket connected = new Socket();
+        connected.setTcpNoDelay(true);
+        connected.connect(address, CONNECT_TIMEOUT_MILLIS);
+        socket = connected;
+        out = new DataOutputStream(
+          new BufferedOutputStream(connected.getOutputStream(), BUFFER_SIZE));
+      }
+      return out;
+    }
+
+    private void close() {
+      writer.interrupt();
+      closeQuietly(socket);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Fixed pool of {@link StampedLock}s keyed by account id.
+ *
+ * <p>Writers take the locks exclusively, always in ascending stripe order, so two transfers
+ * touching the same accounts in opposite directions (A to B and B to A) cannot deadlock. Accounts
+ * that hash to the same stripe simply share a lock. The locks are not reentrant.
+ *
+ * <p>Readers do not lock: they take a stamp with {@link #tryOptimisticRead(int)}, read, and keep
+ * the values only if {@link #validate(int, long)} shows no writer held the stripe in between, like
+ * a seqlock. A reader therefore never delays a transfer.
+ */
+public class StripedLocks {
+
+  private final StampedLock[] locks;
+
+  private final int mask;
+
+  public StripedLocks(int stripes) {
+    if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("Number of lock stripes must be a power of two: " + stripes);
+    }
+    this.locks = new StampedLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.locks[i] = new StampedLock();
+    }
+    this.mask = stripes - 1;
+  }
+
+  public int stripeFor(String key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  public void lock(int stripe) {
+    locks[stripe].writeLock();
+  }
+
+  public void unlock(int stripe) {
+    locks[stripe].tryUnlockWrite();
+  }
+
+  /**
+   * @return a stamp to validate after reading, or zero if a writer holds the stripe right now
+   */
+  public long tryOptimisticRead(int stripe) {
+    return locks[stripe].tryOptimisticRead();
+  }
+
+  /**
+   * @return {@code true} if no writer has held the stripe since {@code stamp} was taken, so the
+   *     values read in between are consistent
+   */
+  public boolean validate(int stripe, long stamp) {
+    return stamp != 0L && locks[stripe].validate(stamp);
+  }
+
+  /**
+   * @return {@code true} if either lock was held by another thread and had to be waited for
+   */
+  public boolean lockPair(int first, int second) {
+    if (first == second) {
+      return acquire(locks[first]);
+    } else if (first < second) {
+      return acquire(locks[first]) | acquire(locks[second]);
+    } else {
+      return acquire(locks[second]) | acquire(locks[first]);
+    }
+  }
+
+  public void unlockPair(int first, int second) {
+    locks[first].tryUnlockWrite();
+    if (first != second) {
+      locks[second].tryUnlockWrite();
+    }
+  }
+
+  /**
+   * Sorts and de-duplicates the given stripes in place and locks them in ascending order.
+   *
+   * @return number of distinct stripes locked, i.e. the prefix of {@code stripes} to pass to
+   *     {@link #unlockAll(int[], int)}
+   */
+  public int lockAll(int[] stripes) {
+    Arrays.sort(stripes);
+    int distinct = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      if (distinct == 0 || stripes[distinct - 1] != stripes[i]) {
+        stripes[distinct++] = stripes[i];
+      }
+    }
+    for (int i = 0; i < distinct; i++) {
+      locks[stripes[i]].writeLock();
+    }
+    return distinct;
+  }
+
+  public void unlockAll(int[] stripes, int count) {
+    for (int i = count - 1; i >= 0; i--) {
+      locks[stripes[i]].tryUnlockWrite();
+    }
+  }
+
+  /**
+   * Locks every stripe, excluding all other lock holders until {@link #unlockAllStripes()}.
+   */
+  public void lockAllStripes() {
+    for (StampedLock lock : locks) {
+      lock.writeLock();
+    }
+  }
+
+  public void unlockAllStripes() {
+    for (int i = locks.length - 1; i >= 0; i--) {
+      locks[i].tryUnlockWrite();
+    }
+  }
+
+  public int size() {
+    return locks.length;
+  }
+
+  private static boolean acquire(StampedLock lock) {
+    if (lock.tryWriteLock() != 0L) {
+      return false;
+    }
+    lock.writeLock();
+    return true;
+  }
+}
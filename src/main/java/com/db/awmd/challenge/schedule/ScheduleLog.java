@@ -0,0 +1,141 @@
+package com.db.awmd.challenge.schedule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only file of changes to the pending orders of a {@link TimerWheel}.
+ *
+ * <p>Every record starts with a type byte: an added order with all of its fields, a removed
+ * order, or an order moved on to its next occurrence. Opening the file replays it into the wheel
+ * and then rewrites it with one added record per order still pending, so the file never grows
+ * much beyond the orders it holds. A torn record at the end, left by a crash mid-write, is
+ * ignored.
+ *
+ * <p>Records are flushed to the operating system after each change, not forced to disk.
+ */
+@Slf4j
+final class ScheduleLog implements AutoCloseable {
+
+  private static final byte ADDED = 1;
+
+  private static final byte REMOVED = 2;
+
+  private static final byte MOVED = 3;
+
+  private final DataOutputStream out;
+
+  private ScheduleLog(Path file) throws IOException {
+    this.out = new DataOutputStream(
+      new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 64 * 1024));
+  }
+
+  /**
+   * Replays {@code file} into {@code wheel}, compacts it and opens it for appending.
+   */
+  static ScheduleLog open(Path file, TimerWheel wheel) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    if (Files.exists(file)) {
+      replay(file, wheel);
+    }
+    wheel.restored();
+
+    Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream rewrite = new DataOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(compacted), 64 * 1024))) {
+      IOException[] failure = new IOException[1];
+      wheel.forEach(slot -> {
+        if (failure[0] == null) {
+          try {
+            writeAdded(rewrite, wheel, slot);
+          } catch (IOException e) {
+            failure[0] = e;
+          }
+        }
+      });
+      if (failure[0] != null) {
+        throw failure[0];
+      }
+    }
+    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+    return new ScheduleLog(file);
+  }
+
+  void added(TimerWheel wheel, int slot) throws IOException {
+    writeAdded(out, wheel, slot);
+  }
+
+  void removed(long id) throws IOException {
+    out.writeByte(REMOVED);
+    out.writeLong(id);
+  }
+
+  void moved(long id, long dueAtMillis, int remainingOccurrences) throws IOException {
+    out.writeByte(MOVED);
+    out.writeLong(id);
+    out.writeLong(dueAtMillis);
+    out.writeInt(remainingOccurrences);
+  }
+
+  void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private static void writeAdded(DataOutputStream out, TimerWheel wheel, int slot)
+    throws IOException {
+    out.writeByte(ADDED);
+    out.writeLong(wheel.idOf(slot));
+    out.writeUTF(wheel.fromAccountId(slot));
+    out.writeUTF(wheel.toAccountId(slot));
+    out.writeLong(wheel.amount(slot));
+    out.writeLong(wheel.dueMillis(slot));
+    out.writeLong(wheel.intervalMillis(slot));
+    out.writeInt(wheel.remaining(slot));
+  }
+
+  private static void replay(Path file, TimerWheel wheel) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+      new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+      while (true) {
+        int type = in.read();
+        if (type < 0) {
+          return;
+        }
+        switch (type) {
+          case ADDED:
+            wheel.restore(in.readLong(), in.readUTF(), in.readUTF(), in.readLong(), in.readLong(),
+              in.readLong(), in.readInt());
+            break;
+          case REMOVED:
+            wheel.remove(in.readLong());
+            break;
+          case MOVED:
+            wheel.reschedule(in.readLong(), in.readLong(), in.readInt());
+            break;
+          default:
+            throw new IOException("Unknown record type " + type + " in " + file);
+        }
+      }
+    } catch (EOFException e) {
+      log.warn("Ignoring incomplete record at the end of {}", file);
+    }
+  }
+}
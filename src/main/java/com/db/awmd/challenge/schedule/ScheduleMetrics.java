@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.schedule;
+
+import lombok.Data;
+
+/**
+ * Point-in-time view of the transfer scheduler.
+ */
+@Data
+public class ScheduleMetrics {
+
+  private final int pending;
+
+  private final long fired;
+
+  /**
+   * Occurrences that came due but were rejected, for instance for insufficient funds.
+   */
+  private final long failed;
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.schedule;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "schedule")
+public class ScheduleProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Resolution of the timer wheel. Orders fire within one tick after they are due.
+   */
+  private long tickMillis = 100L;
+
+  /**
+   * Most due orders fired together as one best effort batch transfer.
+   */
+  private int batchSize = 1000;
+
+  /**
+   * File the pending orders are kept in across restarts.
+   */
+  private String file = "data/schedule.log";
+}
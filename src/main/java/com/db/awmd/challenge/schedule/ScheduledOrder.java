@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.domain.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * A pending scheduled transfer. The next execution is an ISO-8601 instant; the interval is zero
+ * for a one-off transfer and the remaining occurrences are left out for a standing order that
+ * repeats until cancelled.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScheduledOrder {
+
+  private final long id;
+
+  private final String fromAccountId;
+
+  private final String toAccountId;
+
+  private final Money amount;
+
+  private final String nextExecution;
+
+  private final long intervalSeconds;
+
+  private final Integer remainingOccurrences;
+}
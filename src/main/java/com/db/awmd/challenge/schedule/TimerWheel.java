@@ -0,0 +1,426 @@
+package com.db.awmd.challenge.schedule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pending transfer orders kept in primitive columns and indexed by a hierarchical timer wheel.
+ *
+ * <p>Each order occupies one slot of the columns; its id is the slot combined with a generation
+ * that changes whenever the slot is reused, so a stale id never reaches a newer order. Account
+ * ids are stored once in a dictionary and referred to by ordinal, which keeps an order at about
+ * 52 bytes however many are pending.
+ *
+ * <p>The wheel has four levels of 256 buckets. An order due within 256 ticks sits in a level 0
+ * bucket, one due within 65536 ticks in level 1, and so on; each bucket is an intrusive doubly
+ * linked list through the {@code next} and {@code prev} columns, so placing and cancelling an
+ * order is constant time. Whenever level 0 wraps, the next bucket of the level above is
+ * redistributed into the levels below, as in the classic kernel timer wheel. Expired orders are
+ * moved to a due list from which {@link #pollDue()} takes them.
+ *
+ * <p>Not thread-safe; {@link TransferScheduler} guards every call.
+ */
+final class TimerWheel {
+
+  static final int LEVELS = 4;
+
+  private static final int BITS = 8;
+
+  private static final int BUCKETS = 1 << BITS;
+
+  private static final int MASK = BUCKETS - 1;
+
+  /** Head index in {@link #heads} of the list of orders waiting to be fired. */
+  private static final int DUE = LEVELS * BUCKETS;
+
+  private static final int NONE = -1;
+
+  /** Location of an order taken from the due list and not yet {@link #fired}. */
+  private static final int FIRING = -2;
+
+  private static final int FREE = -3;
+
+  /** Orders due further ahead than this many ticks wait in the last bucket of level 3. */
+  private static final long HORIZON = (1L << (LEVELS * BITS)) - 1;
+
+  private final long tickMillis;
+
+  private final int[] heads = new int[DUE + 1];
+
+  private long currentTick;
+
+  private long[] dueMillis;
+
+  private long[] amounts;
+
+  private long[] intervals;
+
+  private int[] remaining;
+
+  private int[] from;
+
+  private int[] to;
+
+  private int[] generations;
+
+  private int[] next;
+
+  private int[] prev;
+
+  private int[] locations;
+
+  private int highWater;
+
+  private int freeHead = NONE;
+
+  private int size;
+
+  private final Map<String, Integer> ordinals = new HashMap<>();
+
+  private final List<String> accountIds = new ArrayList<>();
+
+  TimerWheel(long tickMillis, long nowMillis, int initialCapacity) {
+    this.tickMillis = tickMillis;
+    this.currentTick = nowMillis / tickMillis;
+    Arrays.fill(heads, NONE);
+    allocate(Math.max(16, initialCapacity));
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param remainingOccurrences how many more times the order fires, or -1 for no limit
+   * @return the new order's id
+   */
+  long add(String fromAccountId, String toAccountId, long amountMinorUnits, long dueAtMillis,
+    long intervalMillis, int remainingOccurrences) {
+    int slot;
+    if (freeHead != NONE) {
+      slot = freeHead;
+      freeHead = next[slot];
+    } else {
+      if (highWater == dueMillis.length) {
+        allocate(highWater * 2);
+      }
+      slot = highWater++;
+    }
+    generations[slot]++;
+    store(slot, fromAccountId, toAccountId, amountMinorUnits, dueAtMillis, intervalMillis,
+      remainingOccurrences);
+    return idOf(slot);
+  }
+
+  /**
+   * Puts back an order read from the schedule file under the id it was given originally.
+   */
+  void restore(long id, String fromAccountId, String toAccountId, long amountMinorUnits,
+    long dueAtMillis, long intervalMillis, int remainingOccurrences) {
+    int slot = (int) id;
+    while (slot >= dueMillis.length) {
+      allocate(dueMillis.length * 2);
+    }
+    while (highWater <= slot) {
+      locations[highWater] = FREE;
+      highWater++;
+    }
+    if (locations[slot] != FREE) {
+      unlink(slot);
+      size--;
+    }
+    generations[slot] = (int) (id >>> 32);
+    store(slot, fromAccountId, toAccountId, amountMinorUnits, dueAtMillis, intervalMillis,
+      remainingOccurrences);
+  }
+
+  /**
+   * Links the slots left free by {@link #restore} into the free list once the file is read.
+   */
+  void restored() {
+    freeHead = NONE;
+    for (int slot = highWater - 1; slot >= 0; slot--) {
+      if (locations[slot] == FREE) {
+        next[slot] = freeHead;
+        freeHead = slot;
+      }
+    }
+  }
+
+  /**
+   * @return {@code false} if there is no such order
+   */
+  boolean remove(long id) {
+    int slot = slotOf(id);
+    if (slot == NONE) {
+      return false;
+    }
+    if (locations[slot] != FIRING) {
+      unlink(slot);
+    }
+    release(slot);
+    return true;
+  }
+
+  /**
+   * Moves an order to its next occurrence.
+   */
+  boolean reschedule(long id, long dueAtMillis, int remainingOccurrences) {
+    int slot = slotOf(id);
+    if (slot == NONE) {
+      return false;
+    }
+    if (locations[slot] != FIRING) {
+      unlink(slot);
+    }
+    dueMillis[slot] = dueAtMillis;
+    remaining[slot] = remainingOccurrences;
+    place(slot);
+    return true;
+  }
+
+  /**
+   * Advances the wheel to the tick containing {@code nowMillis}, moving every order that has
+   * become due to the due list. A jump of more than a full turn of level 1, after the service
+   * was paused or down, re-places every order instead of stepping through each tick.
+   */
+  void advanceTo(long nowMillis) {
+    long target = nowMillis / tickMillis;
+    if (target - currentTick > (long) BUCKETS * BUCKETS) {
+      currentTick = target;
+      for (int bucket = 0; bucket < DUE; bucket++) {
+        redistribute(bucket);
+      }
+      return;
+    }
+    while (currentTick < target) {
+      currentTick++;
+      int index = (int) (currentTick & MASK);
+      if (index == 0) {
+        cascade();
+      }
+      redistribute(index);
+    }
+  }
+
+  /**
+   * Takes the next order off the due list. It stays allocated until {@link #fired} is called
+   * for it, or it is removed.
+   *
+   * @return the order's slot, or -1 if nothing is due
+   */
+  int pollDue() {
+    int slot = heads[DUE];
+    if (slot == NONE) {
+      return NONE;
+    }
+    unlink(slot);
+    locations[slot] = FIRING;
+    return slot;
+  }
+
+  /**
+   * Schedules the next occurrence of an order that has just fired, or frees it after its last
+   * one. Orders that were removed while firing are ignored.
+   *
+   * @return {@code true} if the order is still pending
+   */
+  boolean fired(long id, long nowMillis) {
+    int slot = slotOf(id);
+    if (slot == NONE) {
+      return false;
+    }
+    long interval = intervals[slot];
+    int left = remaining[slot];
+    if (interval <= 0 || left == 1) {
+      release(slot);
+      return false;
+    }
+    // An order that fell behind, say while the service was down, fires once and then picks up
+    // its regular cadence rather than firing for every occurrence it missed.
+    long due = dueMillis[slot] + interval;
+    if (due <= nowMillis) {
+      due += ((nowMillis - due) / interval + 1) * interval;
+    }
+    dueMillis[slot] = due;
+    remaining[slot] = left < 0 ? left : left - 1;
+    place(slot);
+    return true;
+  }
+
+  /**
+   * @return the slot of a pending order, or -1 if the id is unknown or out of date
+   */
+  int slotOf(long id) {
+    int slot = (int) id;
+    if (slot < 0 || slot >= highWater || locations[slot] == FREE
+      || generations[slot] != (int) (id >>> 32)) {
+      return NONE;
+    }
+    return slot;
+  }
+
+  long idOf(int slot) {
+    return ((long) generations[slot] << 32) | slot;
+  }
+
+  String fromAccountId(int slot) {
+    return accountIds.get(from[slot]);
+  }
+
+  String toAccountId(int slot) {
+    return accountIds.get(to[slot]);
+  }
+
+  long amount(int slot) {
+    return amounts[slot];
+  }
+
+  long dueMillis(int slot) {
+    return dueMillis[slot];
+  }
+
+  long intervalMillis(int slot) {
+    return intervals[slot];
+  }
+
+  int remaining(int slot) {
+    return remaining[slot];
+  }
+
+  /**
+   * Calls back with the slot of every pending order, including any being fired.
+   */
+  void forEach(SlotConsumer consumer) {
+    for (int slot = 0; slot < highWater; slot++) {
+      if (locations[slot] != FREE) {
+        consumer.accept(slot);
+      }
+    }
+  }
+
+  @FunctionalInterface
+  interface SlotConsumer {
+
+    void accept(int slot);
+  }
+
+  private void store(int slot, String fromAccountId, String toAccountId, long amountMinorUnits,
+    long dueAtMillis, long intervalMillis, int remainingOccurrences) {
+    from[slot] = ordinal(fromAccountId);
+    to[slot] = ordinal(toAccountId);
+    amounts[slot] = amountMinorUnits;
+    dueMillis[slot] = dueAtMillis;
+    intervals[slot] = intervalMillis;
+    remaining[slot] = remainingOccurrences;
+    size++;
+    place(slot);
+  }
+
+  private void release(int slot) {
+    locations[slot] = FREE;
+    next[slot] = freeHead;
+    freeHead = slot;
+    size--;
+  }
+
+  private void place(int slot) {
+    // Rounded up so an order never fires before its time.
+    long dueTick = (dueMillis[slot] + tickMillis - 1) / tickMillis;
+    long delta = dueTick - currentTick;
+    int bucket;
+    if (delta <= 0) {
+      bucket = DUE;
+    } else if (delta < BUCKETS) {
+      bucket = (int) (dueTick & MASK);
+    } else if (delta < 1L << (2 * BITS)) {
+      bucket = BUCKETS + (int) ((dueTick >>> BITS) & MASK);
+    } else if (delta < 1L << (3 * BITS)) {
+      bucket = 2 * BUCKETS + (int) ((dueTick >>> (2 * BITS)) & MASK);
+    } else {
+      long capped = currentTick + Math.min(delta, HORIZON);
+      bucket = 3 * BUCKETS + (int) ((capped >>> (3 * BITS)) & MASK);
+    }
+    link(slot, bucket);
+  }
+
+  /**
+   * Redistributes the current bucket of each higher level that has come round, starting from
+   * level 1 and going up only while the level below has wrapped as well.
+   */
+  private void cascade() {
+    for (int level = 1; level < LEVELS; level++) {
+      int index = (int) ((currentTick >>> (level * BITS)) & MASK);
+      redistribute(level * BUCKETS + index);
+      if (index != 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Places every order of {@code bucket} again against the current tick, which moves those now
+   * due to the due list.
+   */
+  private void redistribute(int bucket) {
+    int slot = heads[bucket];
+    heads[bucket] = NONE;
+    while (slot != NONE) {
+      int following = next[slot];
+      place(slot);
+      slot = following;
+    }
+  }
+
+  private void link(int slot, int bucket) {
+    int head = heads[bucket];
+    next[slot] = head;
+    prev[slot] = NONE;
+    if (head != NONE) {
+      prev[head] = slot;
+    }
+    heads[bucket] = slot;
+    locations[slot] = bucket;
+  }
+
+  private void unlink(int slot) {
+    int before = prev[slot];
+    int after = next[slot];
+    if (before != NONE) {
+      next[before] = after;
+    } else {
+      heads[locations[slot]] = after;
+    }
+    if (after != NONE) {
+      prev[after] = before;
+    }
+  }
+
+  private int ordinal(String accountId) {
+    Integer ordinal = ordinals.get(accountId);
+    if (ordinal == null) {
+      ordinal = accountIds.size();
+      ordinals.put(accountId, ordinal);
+      accountIds.add(accountId);
+    }
+    return ordinal;
+  }
+
+  private void allocate(int capacity) {
+    int previous = dueMillis == null ? 0 : dueMillis.length;
+    dueMillis = dueMillis == null ? new long[capacity] : Arrays.copyOf(dueMillis, capacity);
+    amounts = amounts == null ? new long[capacity] : Arrays.copyOf(amounts, capacity);
+    intervals = intervals == null ? new long[capacity] : Arrays.copyOf(intervals, capacity);
+    remaining = remaining == null ? new int[capacity] : Arrays.copyOf(remaining, capacity);
+    from = from == null ? new int[capacity] : Arrays.copyOf(from, capacity);
+    to = to == null ? new int[capacity] : Arrays.copyOf(to, capacity);
+    generations = generations == null ? new int[capacity] : Arrays.copyOf(generations, capacity);
+    next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+    prev = prev == null ? new int[capacity] : Arrays.copyOf(prev, capacity);
+    locations = locations == null ? new int[capacity] : Arrays.copyOf(locations, capacity);
+    Arrays.fill(locations, previous, capacity, FREE);
+  }
+}
@@ -0,0 +1,290 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.exception.ScheduleException;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+/**
+ * Future-dated and recurring transfers.
+ *
+ * <p>Pending orders live in a {@link TimerWheel}, so holding millions of them costs a few tens of
+ * bytes each and no thread or task per order. One thread advances the wheel every tick and fires
+ * whatever came due as best effort batch transfers of up to {@code schedule.batch-size} orders,
+ * which the engine nets and applies holding each account once. An occurrence that is rejected,
+ * for instance for insufficient funds, is counted as failed; a standing order still moves on to
+ * its next occurrence.
+ *
+ * <p>Every change is appended to the schedule file so pending orders survive a restart. Orders
+ * that came due while the service was down fire as soon as it is back, once the account image
+ * they may draw on has been loaded. An occurrence is recorded as fired before it is applied, so
+ * each fires at most once: one that was being applied when the service went down is not made up
+ * for after the restart.
+ */
+@Slf4j
+@Component
+@DependsOn("accountsBoot")
+public class TransferScheduler implements AutoCloseable {
+
+  private final boolean enabled;
+
+  private final long tickMillis;
+
+  private final int batchSize;
+
+  private final Function<List<Transfer>, BatchTransferResult> executor;
+
+  private final TimerWheel wheel;
+
+  private final ScheduleLog scheduleLog;
+
+  private final LongAdder fired = new LongAdder();
+
+  private final LongAdder failed = new LongAdder();
+
+  private final Thread ticker;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public TransferScheduler(ScheduleProperties properties, AccountsService accountsService)
+    throws IOException {
+    this(properties, transfers ->
+        accountsService.batchTransfer(new BatchTransfer(BatchMode.BEST_EFFORT, transfers)),
+      System.currentTimeMillis(), properties.isEnabled());
+  }
+
+  /**
+   * Creates a scheduler without a ticking thread, for callers that drive it through
+   * {@link #runDue(long)}.
+   *
+   * @param executor applies a batch of due transfers in best effort mode
+   */
+  public TransferScheduler(ScheduleProperties properties,
+    Function<List<Transfer>, BatchTransferResult> executor, long nowMillis) throws IOException {
+    this(properties, executor, nowMillis, false);
+  }
+
+  private TransferScheduler(ScheduleProperties properties,
+    Function<List<Transfer>, BatchTransferResult> executor, long nowMillis, boolean tick)
+    throws IOException {
+    if (properties.getTickMillis() <= 0 || properties.getBatchSize() <= 0) {
+      throw new IllegalArgumentException(
+        "schedule.tick-millis and schedule.batch-size must be positive");
+    }
+    this.enabled = properties.isEnabled();
+    this.tickMillis = properties.getTickMillis();
+    this.batchSize = properties.getBatchSize();
+    this.executor = executor;
+    this.wheel = new TimerWheel(tickMillis, nowMillis, 1024);
+    this.scheduleLog = enabled ? ScheduleLog.open(Paths.get(properties.getFile()), wheel) : null;
+    if (enabled && wheel.size() > 0) {
+      log.info("Restored {} scheduled transfers from {}", wheel.size(), properties.getFile());
+    }
+    if (tick) {
+      this.ticker = new Thread(this::runTicker, "transfer-scheduler");
+      this.ticker.setDaemon(true);
+      this.ticker.start();
+    } else {
+      this.ticker = null;
+    }
+  }
+
+  /**
+   * Schedules {@code transfer} for {@code executeAtMillis}, then every {@code intervalMillis}
+   * after that if it is positive.
+   *
+   * @param occurrences how many times a recurring transfer is made, or {@code null} for no limit
+   */
+  public ScheduledOrder schedule(Transfer transfer, long executeAtMillis, long intervalMillis,
+    Integer occurrences) {
+    if (!enabled) {
+      throw new ScheduleException("Scheduled transfers are disabled");
+    }
+    int remaining = intervalMillis <= 0 ? 1 : occurrences == null ? -1 : occurrences;
+    synchronized (wheel) {
+      long id = wheel.add(transfer.getFromAccountId(), transfer.getToAccountId(),
+        transfer.getAmount().getMinorUnits(), executeAtMillis, Math.max(0L, intervalMillis),
+        remaining);
+      int slot = wheel.slotOf(id);
+      try {
+        scheduleLog.added(wheel, slot);
+        scheduleLog.flush();
+      } catch (IOException e) {
+        wheel.remove(id);
+        throw new ScheduleException("Could not record scheduled transfer", e);
+      }
+      return view(slot);
+    }
+  }
+
+  /**
+   * @return the pending order, or {@code null} if there is none with that id
+   */
+  public ScheduledOrder getOrder(long id) {
+    synchronized (wheel) {
+      int slot = wheel.slotOf(id);
+      return slot < 0 ? null : view(slot);
+    }
+  }
+
+  /**
+   * @return {@code false} if there is no pending order with that id
+   */
+  public boolean cancel(long id) {
+    synchronized (wheel) {
+      if (!wheel.remove(id)) {
+        return false;
+      }
+      try {
+        scheduleLog.removed(id);
+        scheduleLog.flush();
+      } catch (IOException e) {
+        throw new ScheduleException("Could not record cancelled transfer", e);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Fires every order due by {@code nowMillis}. Each occurrence is recorded as fired before it is
+   * applied, so a crash in between skips it rather than firing it again on restart. If that
+   * record cannot be written the batch is not applied, and counts as failed.
+   *
+   * @return the number of orders fired
+   */
+  public int runDue(long nowMillis) {
+    int total = 0;
+    while (true) {
+      List<Transfer> transfers = new ArrayList<>(Math.min(batchSize, 64));
+      boolean recorded = true;
+      synchronized (wheel) {
+        wheel.advanceTo(nowMillis);
+        int slot;
+        while (transfers.size() < batchSize && (slot = wheel.pollDue()) >= 0) {
+          long id = wheel.idOf(slot);
+          transfers.add(new Transfer(wheel.toAccountId(slot), wheel.fromAccountId(slot),
+            Money.ofMinorUnits(wheel.amount(slot))));
+          recorded &= recordFired(id, nowMillis);
+        }
+        recorded &= flushFired();
+      }
+      int count = transfers.size();
+      if (count == 0) {
+        return total;
+      }
+
+      int rejected = count;
+      if (recorded) {
+        try {
+          BatchTransferResult result = executor.apply(transfers);
+          rejected = 0;
+          for (TransferOutcome outcome : result.getResults()) {
+            if (outcome.getState() != TransferState.COMPLETED) {
+              rejected++;
+            }
+          }
+        } catch (RuntimeException e) {
+          log.error("Scheduled batch of {} transfers failed", count, e);
+        }
+      }
+      fired.add(count - rejected);
+      failed.add(rejected);
+      total += count;
+    }
+  }
+
+  /*
+   * Moves the order on to its next occurrence, or drops it after its last one.
+   */
+  private boolean recordFired(long id, long nowMillis) {
+    boolean recurs = wheel.fired(id, nowMillis);
+    try {
+      if (recurs) {
+        int slot = wheel.slotOf(id);
+        scheduleLog.moved(id, wheel.dueMillis(slot), wheel.remaining(slot));
+      } else {
+        scheduleLog.removed(id);
+      }
+      return true;
+    } catch (IOException e) {
+      log.error("Could not record fired scheduled transfer {}", id, e);
+      return false;
+    }
+  }
+
+  private boolean flushFired() {
+    try {
+      scheduleLog.flush();
+      return true;
+    } catch (IOException e) {
+      log.error("Could not record fired scheduled transfers, not applying them", e);
+      return false;
+    }
+  }
+
+  public ScheduleMetrics getMetrics() {
+    int pending;
+    synchronized (wheel) {
+      pending = wheel.size();
+    }
+    return new ScheduleMetrics(pending, fired.sum(), failed.sum());
+  }
+
+  @PreDestroy
+  @Override
+  public void close() throws IOException, InterruptedException {
+    running = false;
+    if (ticker != null) {
+      ticker.interrupt();
+      ticker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    if (scheduleLog != null) {
+      synchronized (wheel) {
+        scheduleLog.close();
+      }
+    }
+  }
+
+  private void runTicker() {
+    while (running) {
+      try {
+        Thread.sleep(tickMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        runDue(System.currentTimeMillis());
+      } catch (RuntimeException e) {
+        log.error("Scheduled transfers could not be fired", e);
+      }
+    }
+  }
+
+  private ScheduledOrder view(int slot) {
+    int remaining = wheel.remaining(slot);
+    return new ScheduledOrder(wheel.idOf(slot), wheel.fromAccountId(slot),
+      wheel.toAccountId(slot), Money.ofMinorUnits(wheel.amount(slot)),
+      Instant.ofEpochMilli(wheel.dueMillis(slot)).toString(),
+      TimeUnit.MILLISECONDS.toSeconds(wheel.intervalMillis(slot)),
+      remaining < 0 ? null : remaining);
+  }
+}
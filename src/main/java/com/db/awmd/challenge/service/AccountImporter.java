@@ -0,0 +1,246 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportError;
+import com.db.awmd.challenge.domain.ImportFormat;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Creates accounts from a stream of NDJSON or CSV rows.
+ *
+ * <p>The calling thread only splits the stream into chunks of lines; parsing, validation and
+ * insertion run on a pool of workers. At most two chunks per worker are in flight at a time, so
+ * memory use does not depend on the size of the import. Rows that cannot be imported are counted
+ * rather than thrown, and the first few are reported with their line numbers.
+ */
+@Slf4j
+@Service
+public class AccountImporter {
+
+  private final AccountsRepository accountsRepository;
+
+  private final Validator validator;
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  private final int chunkSize;
+
+  private final int parallelism;
+
+  private final int maxReportedErrors;
+
+  @Autowired
+  public AccountImporter(AccountsRepository accountsRepository, Validator validator,
+    ImportProperties properties) {
+    this.accountsRepository = accountsRepository;
+    this.validator = validator;
+    this.chunkSize = properties.getChunkSize();
+    this.parallelism = properties.getParallelism();
+    this.maxReportedErrors = properties.getMaxReportedErrors();
+  }
+
+  /**
+   * Imports every row of {@code in}.
+   *
+   * @param sizeHint expected number of accounts, used to size the repository up front; zero if
+   *     unknown
+   */
+  public ImportSummary importAccounts(InputStream in, ImportFormat format, int sizeHint)
+    throws IOException, InterruptedException {
+    if (sizeHint > 0) {
+      accountsRepository.reserveCapacity(sizeHint);
+    }
+    Progress progress = new Progress(maxReportedErrors);
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+    Semaphore inFlight = new Semaphore(2 * parallelism);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      long lineNumber = 0;
+      long firstLine = 1;
+      List<String> chunk = new ArrayList<>(chunkSize);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        chunk.add(line);
+        if (chunk.size() == chunkSize) {
+          submit(workers, inFlight, chunk, firstLine, format, progress);
+          chunk = new ArrayList<>(chunkSize);
+          firstLine = lineNumber + 1;
+        }
+      }
+      if (!chunk.isEmpty()) {
+        submit(workers, inFlight, chunk, firstLine, format, progress);
+      }
+    } finally {
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+    ImportSummary summary = progress.summary();
+    log.info("Imported {} of {} rows, {} duplicates, {} invalid", summary.getCreated(),
+      summary.getRows(), summary.getDuplicates(), summary.getInvalid());
+    return summary;
+  }
+
+  private void submit(ExecutorService workers, Semaphore inFlight, List<String> chunk,
+    long firstLine, ImportFormat format, Progress progress) throws InterruptedException {
+    inFlight.acquire();
+    workers.execute(() -> {
+      try {
+        for (int i = 0; i < chunk.size(); i++) {
+          importRow(chunk.get(i), firstLine + i, format, progress);
+        }
+      } catch (RuntimeException e) {
+        log.error("Import of the chunk starting at line {} failed", firstLine, e);
+      } finally {
+        inFlight.release();
+      }
+    });
+  }
+
+  private void importRow(String line, long lineNumber, ImportFormat format, Progress progress) {
+    if (line.trim().isEmpty() || (format == ImportFormat.CSV && lineNumber == 1 && isCsvHeader(line))) {
+      return;
+    }
+    progress.rows.increment();
+    try {
+      Account account = format == ImportFormat.CSV ? parseCsv(line) : parseJson(line);
+      Set<ConstraintViolation<Account>> violations = validator.validate(account);
+      if (!violations.isEmpty()) {
+        ConstraintViolation<Account> violation = violations.iterator().next();
+        progress.invalid(lineNumber, violation.getPropertyPath() + ": " + violation.getMessage());
+        return;
+      }
+      accountsRepository.createAccount(account);
+      progress.created.increment();
+    } catch (DuplicateAccountIdException daie) {
+      progress.duplicates.increment();
+    } catch (JsonProcessingException jpe) {
+      progress.invalid(lineNumber, "Malformed JSON: " + jpe.getOriginalMessage());
+    } catch (NumberFormatException nfe) {
+      progress.invalid(lineNumber, "balance: not a number");
+    } catch (ArithmeticException ae) {
+      progress.invalid(lineNumber, "balance: more than " + Account.BALANCE_SCALE + " decimal places");
+    } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+      progress.invalid(lineNumber, e.getMessage());
+    }
+  }
+
+  private Account parseJson(String line) throws IOException {
+    String accountId = null;
+    BigDecimal balance = null;
+    try (JsonParser parser = jsonFactory.createParser(line)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("Expected a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("accountId".equals(field) && value == JsonToken.VALUE_STRING) {
+          accountId = parser.getText();
+        } else if ("balance".equals(field) && value.isNumeric()) {
+          balance = parser.getDecimalValue();
+        } else if ("balance".equals(field) && value == JsonToken.VALUE_STRING) {
+          balance = new BigDecimal(parser.getText());
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return new Account(accountId, balance);
+  }
+
+  private static Account parseCsv(String line) {
+    int comma = line.indexOf(',');
+    if (comma < 0) {
+      throw new IllegalArgumentException("Expected accountId,balance");
+    }
+    String accountId = unquote(line.substring(0, comma));
+    String balance = unquote(line.substring(comma + 1));
+    return new Account(accountId, balance.isEmpty() ? null : new BigDecimal(balance));
+  }
+
+  private static boolean isCsvHeader(String line) {
+    return unquote(line.substring(0, Math.max(0, line.indexOf(',')))).equals("accountId");
+  }
+
+  private static String unquote(String field) {
+    String trimmed = field.trim();
+    if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"') {
+      return trimmed.substring(1, trimmed.length() - 1);
+    }
+    return trimmed;
+  }
+
+  private static final class Progress {
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder created = new LongAdder();
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder invalid = new LongAdder();
+
+    private final List<ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+
+    private final int maxReportedErrors;
+
+    private Progress(int maxReportedErrors) {
+      this.maxReportedErrors = maxReportedErrors;
+    }
+
+    private void invalid(long line, String message) {
+      invalid.increment();
+      if (errors.size() < maxReportedErrors) {
+        errors.add(new ImportError(line, message));
+      }
+    }
+
+    private ImportSummary summary() {
+      List<ImportError> reported;
+      synchronized (errors) {
+        reported = new ArrayList<>(errors.subList(0, Math.min(errors.size(), maxReportedErrors)));
+      }
+      return new ImportSummary(rows.sum(), created.sum(), duplicates.sum(), invalid.sum(), reported);
+    }
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "account-import-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
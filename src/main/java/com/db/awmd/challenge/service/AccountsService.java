@@ -1,8 +1,39 @@
 package com.db.awmd.challenge.service;
 
+import com.db.awmd.challenge.audit.AuditEventType;
+import com.db.awmd.challenge.audit.AuditLog;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.RejectionReason;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.LimitExceededException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.ledger.LedgerEntry;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.limits.AccountLimits;
+import com.db.awmd.challenge.limits.TransferLimits;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -13,21 +44,399 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final TransferMetrics transferMetrics;
+
+  private final AuditLog auditLog;
+
+  private final TransferLedger transferLedger;
+
+  private final BalanceStream balanceStream;
+
+  private final TransferLimits transferLimits;
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository,
+    NotificationDispatcher notificationDispatcher, TransferMetrics transferMetrics,
+    AuditLog auditLog, TransferLedger transferLedger, BalanceStream balanceStream,
+    TransferLimits transferLimits) {
     this.accountsRepository = accountsRepository;
+    this.notificationDispatcher = notificationDispatcher;
+    this.transferMetrics = transferMetrics;
+    this.auditLog = auditLog;
+    this.transferLedger = transferLedger;
+    this.balanceStream = balanceStream;
+    this.transferLimits = transferLimits;
   }
 
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    try {
+      this.accountsRepository.createAccount(account);
+    } catch (DuplicateAccountIdException daie) {
+      auditLog.duplicateAccount(account);
+      throw daie;
+    }
+    auditLog.accountCreated(account);
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
 
-public void instantTransfer(Transfer transfer) {
-	this.accountsRepository.instantTransfer(transfer);
-	
-}
+  /**
+   * Removes every account, and with them every transfer in their history, so that an account
+   * created again under the same id starts with none.
+   */
+  public void clearAccounts() {
+    this.accountsRepository.clearAccounts();
+    this.transferLedger.clear();
+  }
+
+  /**
+   * @return the account's balance in minor units, or {@code -1} if there is no such account
+   */
+  public long getBalanceMinorUnits(String accountId) {
+    return this.accountsRepository.getBalanceMinorUnits(accountId);
+  }
+
+  public AccountPage listAccounts(long cursor, int limit) {
+    return this.accountsRepository.listAccounts(cursor, limit);
+  }
+
+  /**
+   * Writes every account to {@code out} as one JSON object per line, with balances as of a single
+   * point in time. Each line is written as soon as it is read, so memory use does not depend on
+   * the number of accounts.
+   */
+  public void exportAccounts(OutputStream out) throws IOException {
+    JsonGenerator generator = jsonFactory.createGenerator(out);
+    generator.setRootValueSeparator(null);
+    this.accountsRepository.exportAccounts((accountId, balance) -> {
+      generator.writeStartObject();
+      generator.writeStringField("accountId", accountId);
+      generator.writeNumberField("balance", BigDecimal.valueOf(balance, Account.BALANCE_SCALE));
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    });
+    generator.flush();
+  }
+
+  /**
+   * @return up to {@code limit} of the account's committed transfers, newest first
+   */
+  public List<LedgerEntry> getTransferHistory(String accountId, int limit) {
+    return this.transferLedger.latest(accountId, limit);
+  }
+
+  /**
+   * @return up to {@code limit} of the account's transfers committed from {@code fromMillis}
+   *     inclusive to {@code toMillis} exclusive, newest first
+   */
+  public List<LedgerEntry> getTransferHistory(String accountId, long fromMillis, long toMillis,
+    int limit) {
+    return this.transferLedger.between(accountId, fromMillis, toMillis, limit);
+  }
+
+  /**
+   * @return the account's limits tier and what it has used of each limited window, or
+   *     {@code null} if there is no such account
+   */
+  public AccountLimits getLimits(String accountId) {
+    return getBalanceMinorUnits(accountId) < 0 ? null : this.transferLimits.getLimits(accountId);
+  }
+
+  /**
+   * @return {@code false} if there is no such tier
+   * @throws AccountNotFoundException if there is no such account
+   */
+  public boolean assignTier(String accountId, String tier) {
+    if (getBalanceMinorUnits(accountId) < 0) {
+      throw new AccountNotFoundException("Account id " + accountId + " does not exist");
+    }
+    return this.transferLimits.assignTier(accountId, tier);
+  }
+
+  /**
+   * Refuses a transfer that cannot succeed whatever the balances are: one without a positive
+   * amount, between an account and itself, or involving an account that does not exist. This
+   * costs two lookups and takes no lock, so such transfers never reach the repository or a worker
+   * thread. Whether the funds suffice is left to the repository, which checks it atomically with
+   * the debit.
+   *
+   * @throws InvalidAmountException if the amount is missing, zero or negative
+   * @throws SameAccountIdException if both accounts are the same
+   * @throws AccountNotFoundException if either account does not exist
+   */
+  public void validate(Transfer transfer) {
+    Money amount = transfer.getAmount();
+    if (amount == null || amount.signum() <= 0) {
+      transferMetrics.countInvalidAmount();
+      auditLog.rejected(AuditEventType.INVALID_AMOUNT, transfer);
+      throw new InvalidAmountException("Amount must be positive.");
+    }
+    String fromAccountId = transfer.getFromAccountId();
+    String toAccountId = transfer.getToAccountId();
+    if (toAccountId.equals(fromAccountId)) {
+      transferMetrics.countSameAccount();
+      auditLog.rejected(AuditEventType.SAME_ACCOUNT, transfer);
+      throw new SameAccountIdException("Provided 'To' and 'From' accounts are same");
+    }
+    String missing = getBalanceMinorUnits(fromAccountId) < 0 ? fromAccountId
+      : getBalanceMinorUnits(toAccountId) < 0 ? toAccountId : null;
+    if (missing != null) {
+      transferMetrics.countUnknownAccount();
+      auditLog.rejected(AuditEventType.UNKNOWN_ACCOUNT, transfer);
+      throw new AccountNotFoundException("Account id " + missing + " does not exist");
+    }
+  }
+
+  /**
+   * Counts a validated transfer against the limits of the account it leaves. The reservation is
+   * handed back by {@link #applyTransfer} if the transfer is not applied after all.
+   *
+   * @return the reservation to pass to {@link #applyTransfer}
+   * @throws LimitExceededException if the transfer would breach a limit of its source account
+   */
+  long reserveLimits(Transfer transfer) {
+    try {
+      return transferLimits.reserve(transfer.getFromAccountId(),
+        transfer.getAmount().getMinorUnits());
+    } catch (LimitExceededException lee) {
+      transferMetrics.countLimitExceeded();
+      auditLog.rejected(AuditEventType.LIMIT_EXCEEDED, transfer);
+      throw lee;
+    }
+  }
+
+  /**
+   * Hands back a reservation made by {@link #reserveLimits} for a transfer that was not applied.
+   */
+  void releaseLimits(Transfer transfer, long reservation) {
+    transferLimits.release(transfer.getFromAccountId(), transfer.getAmount().getMinorUnits(),
+      reservation);
+  }
+
+  public TransferReceipt instantTransfer(Transfer transfer) {
+    validate(transfer);
+    return applyTransfer(transfer, reserveLimits(transfer));
+  }
+
+  /*
+   * Applies a transfer that has already passed validate and reserveLimits. Notifications and
+   * audit events are only queued once the transfer has committed and no account lock is held, so
+   * a slow notification backend or audit sink cannot stretch the time accounts stay locked.
+   */
+  TransferReceipt applyTransfer(Transfer transfer, long reservation) {
+    boolean sampled = transferMetrics.sample();
+    long start = sampled ? System.nanoTime() : 0L;
+    TransferReceipt receipt = null;
+    try {
+      receipt = this.accountsRepository.instantTransfer(transfer);
+    } catch (InsufficientFundsException ife) {
+      transferMetrics.countInsufficientFunds();
+      auditLog.rejected(AuditEventType.INSUFFICIENT_FUNDS, transfer);
+      throw ife;
+    } catch (AccountNotFoundException anfe) {
+      // Validated, but the accounts were cleared before the transfer ran.
+      transferMetrics.countUnknownAccount();
+      auditLog.rejected(AuditEventType.UNKNOWN_ACCOUNT, transfer);
+      throw anfe;
+    } finally {
+      if (receipt == null) {
+        releaseLimits(transfer, reservation);
+      }
+    }
+    auditLog.transfer(receipt);
+    transferLedger.record(receipt.getFromAccountId(), receipt.getToAccountId(),
+      receipt.getAmountMinorUnits());
+    long committed = sampled ? System.nanoTime() : 0L;
+    notificationDispatcher.dispatch(
+      Account.ofMinorUnits(receipt.getFromAccountId(), receipt.getFromBalanceMinorUnits()),
+      balanceMessage(receipt.getFromBalanceMinorUnits()));
+    notificationDispatcher.dispatch(
+      Account.ofMinorUnits(receipt.getToAccountId(), receipt.getToBalanceMinorUnits()),
+      balanceMessage(receipt.getToBalanceMinorUnits()));
+    balanceStream.changed(receipt.getFromAccountId());
+    balanceStream.changed(receipt.getToAccountId());
+    transferMetrics.countCompleted();
+    if (sampled) {
+      long end = System.nanoTime();
+      transferMetrics.recordNotificationDispatch(end - committed);
+      transferMetrics.recordTransfer(end - start);
+    }
+    return receipt;
+  }
+
+  /*
+   * Every applied transfer of the batch goes into the ledger, but each account the batch changed
+   * is notified once with its final balance rather than once per transfer. Transfers are counted
+   * against their source account's limits before the batch reaches the repository; one that would
+   * breach a limit is rejected on its own in best effort mode and fails the whole batch otherwise.
+   * Every transfer of the batch is counted and audited on its own, whether it was applied or
+   * rejected.
+   * Reservations are handed back for every transfer that was not applied, including all of them
+   * when the repository throws.
+   */
+  public BatchTransferResult batchTransfer(BatchTransfer batchTransfer) {
+    List<Transfer> transfers = batchTransfer.getTransfers();
+    long[] reservations = new long[transfers.size()];
+    String[] breaches = reserveLimits(transfers, reservations);
+    BatchTransferResult result;
+    try {
+      result = breaches == null
+        ? this.accountsRepository.batchTransfer(transfers, batchTransfer.getMode())
+        : batchWithinLimits(transfers, batchTransfer.getMode(), breaches);
+    } catch (RuntimeException e) {
+      // Nothing of the batch was applied, so none of it may count against the limits.
+      for (int i = 0; i < reservations.length; i++) {
+        if (reservations[i] != TransferLimits.NOT_RESERVED) {
+          releaseLimits(transfers.get(i), reservations[i]);
+        }
+      }
+      throw e;
+    }
+    for (TransferOutcome outcome : result.getResults()) {
+      Transfer transfer = transfers.get(outcome.getIndex());
+      if (outcome.getState() == TransferState.COMPLETED) {
+        transferMetrics.countCompleted();
+        auditLog.batchedTransfer(transfer);
+        transferLedger.record(transfer.getFromAccountId(), transfer.getToAccountId(),
+          transfer.getAmount().getMinorUnits());
+        continue;
+      }
+      if (reservations[outcome.getIndex()] != TransferLimits.NOT_RESERVED) {
+        releaseLimits(transfer, reservations[outcome.getIndex()]);
+      }
+      // Limit breaches were counted and recorded when the limits refused them.
+      if (outcome.getReason() != RejectionReason.LIMIT_EXCEEDED) {
+        countRejected(outcome.getReason());
+        auditLog.rejected(auditEventType(outcome.getReason()), transfer);
+      }
+    }
+    for (Map.Entry<String, Money> balance : result.getBalances().entrySet()) {
+      notificationDispatcher.dispatch(
+        Account.ofMinorUnits(balance.getKey(), balance.getValue().getMinorUnits()),
+        balanceMessage(balance.getValue().getMinorUnits()));
+      balanceStream.changed(balance.getKey());
+    }
+    return result;
+  }
+
+  /*
+   * Transfers the repository will reject as invalid anyway are not counted.
+   *
+   * @return the reason each transfer over a limit was refused, or null if none was
+   */
+  private String[] reserveLimits(List<Transfer> transfers, long[] reservations) {
+    String[] breaches = null;
+    for (int i = 0; i < transfers.size(); i++) {
+      Transfer transfer = transfers.get(i);
+      reservations[i] = TransferLimits.NOT_RESERVED;
+      if (transfer.getAmount() == null || transfer.getAmount().signum() <= 0
+        || transfer.getToAccountId().equals(transfer.getFromAccountId())) {
+        continue;
+      }
+      try {
+        reservations[i] = reserveLimits(transfer);
+      } catch (LimitExceededException lee) {
+        if (breaches == null) {
+          breaches = new String[transfers.size()];
+        }
+        breaches[i] = lee.getMessage();
+      }
+    }
+    return breaches;
+  }
+
+  /*
+   * Applies the transfers of a batch that are within their limits and reports the others as
+   * rejected, keeping every outcome at its index in the original batch.
+   */
+  private BatchTransferResult batchWithinLimits(List<Transfer> transfers, BatchMode mode,
+    String[] breaches) {
+    List<Transfer> admitted = new ArrayList<>(transfers.size());
+    List<Integer> indexes = new ArrayList<>(transfers.size());
+    if (mode == BatchMode.BEST_EFFORT) {
+      for (int i = 0; i < transfers.size(); i++) {
+        if (breaches[i] == null) {
+          admitted.add(transfers.get(i));
+          indexes.add(i);
+        }
+      }
+    }
+    TransferOutcome[] outcomes = new TransferOutcome[transfers.size()];
+    int completed = 0;
+    Map<String, Money> balances = Collections.emptyMap();
+    if (!admitted.isEmpty()) {
+      BatchTransferResult applied = this.accountsRepository.batchTransfer(admitted, mode);
+      for (TransferOutcome outcome : applied.getResults()) {
+        int index = indexes.get(outcome.getIndex());
+        outcomes[index] = new TransferOutcome(index, outcome.getState(), outcome.getMessage(),
+          outcome.getReason());
+      }
+      completed = applied.getCompleted();
+      balances = applied.getBalances();
+    }
+    for (int i = 0; i < outcomes.length; i++) {
+      if (outcomes[i] == null) {
+        outcomes[i] = breaches[i] != null
+          ? new TransferOutcome(i, TransferState.REJECTED, breaches[i],
+            RejectionReason.LIMIT_EXCEEDED)
+          : new TransferOutcome(i, TransferState.REJECTED,
+            "Batch contains transfers over their limits", RejectionReason.BATCH_REJECTED);
+      }
+    }
+    List<TransferOutcome> results = new ArrayList<>(outcomes.length);
+    Collections.addAll(results, outcomes);
+    return new BatchTransferResult(mode, completed, outcomes.length - completed, results,
+      balances);
+  }
+
+  private void countRejected(RejectionReason reason) {
+    switch (reason) {
+      case INVALID_AMOUNT:
+        transferMetrics.countInvalidAmount();
+        break;
+      case SAME_ACCOUNT:
+        transferMetrics.countSameAccount();
+        break;
+      case UNKNOWN_ACCOUNT:
+        transferMetrics.countUnknownAccount();
+        break;
+      case INSUFFICIENT_FUNDS:
+        transferMetrics.countInsufficientFunds();
+        break;
+      case LIMIT_EXCEEDED:
+        transferMetrics.countLimitExceeded();
+        break;
+      default:
+        transferMetrics.countBatchRejected();
+        break;
+    }
+  }
+
+  private static AuditEventType auditEventType(RejectionReason reason) {
+    switch (reason) {
+      case INVALID_AMOUNT:
+        return AuditEventType.INVALID_AMOUNT;
+      case SAME_ACCOUNT:
+        return AuditEventType.SAME_ACCOUNT;
+      case UNKNOWN_ACCOUNT:
+        return AuditEventType.UNKNOWN_ACCOUNT;
+      case INSUFFICIENT_FUNDS:
+        return AuditEventType.INSUFFICIENT_FUNDS;
+      case LIMIT_EXCEEDED:
+        return AuditEventType.LIMIT_EXCEEDED;
+      default:
+        return AuditEventType.BATCH_REJECTED;
+    }
+  }
+
+  private static String balanceMessage(long balanceMinorUnits) {
+    return Money.format(balanceMinorUnits, new StringBuilder(48).append("Updated balance is: "))
+      .toString();
+  }
 }
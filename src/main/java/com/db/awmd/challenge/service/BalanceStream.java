@@ -0,0 +1,119 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes balance changes to the subscribers of an account, such as server-sent event streams.
+ *
+ * <p>A change only marks the account as pending; one dispatch thread later reads its balance and
+ * hands it to every subscriber. Changes made in the meantime are folded into that one event, each
+ * event carries the latest balance whatever order transfers committed in, and a slow subscriber
+ * delays other subscribers, never a transfer. Accounts nobody subscribed to cost one map lookup
+ * per change.
+ */
+@Slf4j
+@Component
+public class BalanceStream {
+
+  private final AccountsRepository accountsRepository;
+
+  private final Map<String, List<Consumer<AccountView>>> subscribers = new ConcurrentHashMap<>();
+
+  private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+  private final ThreadPoolExecutor dispatcher;
+
+  private final LongAdder dropped = new LongAdder();
+
+  @Autowired
+  public BalanceStream(AccountsRepository accountsRepository, BalanceStreamProperties properties) {
+    this.accountsRepository = accountsRepository;
+    this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(properties.getQueueCapacity()), runnable -> {
+        Thread thread = new Thread(runnable, "balance-stream");
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  /**
+   * Registers {@code subscriber} for the account's balance changes, starting with its current
+   * balance.
+   *
+   * @return cancels the subscription
+   */
+  public Runnable subscribe(String accountId, Consumer<AccountView> subscriber) {
+    subscribers.compute(accountId, (id, list) -> {
+      List<Consumer<AccountView>> updated = list == null ? new CopyOnWriteArrayList<>() : list;
+      updated.add(subscriber);
+      return updated;
+    });
+    changed(accountId);
+    return () -> subscribers.computeIfPresent(accountId, (id, list) -> {
+      list.remove(subscriber);
+      return list.isEmpty() ? null : list;
+    });
+  }
+
+  /**
+   * Notes that the account's balance has changed. Call only once the change has committed.
+   */
+  public void changed(String accountId) {
+    if (!subscribers.containsKey(accountId) || !pending.add(accountId)) {
+      return;
+    }
+    try {
+      dispatcher.execute(() -> dispatch(accountId));
+    } catch (RejectedExecutionException full) {
+      pending.remove(accountId);
+      dropped.increment();
+    }
+  }
+
+  public BalanceStreamMetrics getMetrics() {
+    return new BalanceStreamMetrics(subscribers.size(), pending.size(), dropped.sum());
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    dispatcher.shutdownNow();
+    dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  /*
+   * The account leaves the pending set before its balance is read, so a change committed after
+   * the read queues a new event rather than being lost.
+   */
+  private void dispatch(String accountId) {
+    pending.remove(accountId);
+    List<Consumer<AccountView>> accountSubscribers = subscribers.get(accountId);
+    long balance = accountsRepository.getBalanceMinorUnits(accountId);
+    if (accountSubscribers == null || balance < 0) {
+      return;
+    }
+    AccountView view = AccountView.of(accountId, balance);
+    for (Consumer<AccountView> subscriber : accountSubscribers) {
+      try {
+        subscriber.accept(view);
+      } catch (RuntimeException e) {
+        log.warn("Balance subscriber of {} failed", accountId, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+
+/**
+ * Point-in-time view of the balance change streams.
+ */
+@Data
+public class BalanceStreamMetrics {
+
+  private final int subscribedAccounts;
+
+  /**
+   * Accounts with a change waiting to be pushed.
+   */
+  private final int pending;
+
+  private final long dropped;
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "balance-stream")
+public class BalanceStreamProperties {
+
+  /**
+   * Accounts whose change may wait to be pushed to subscribers at once. Further changes are
+   * dropped until there is room again.
+   */
+  private int queueCapacity = 10_000;
+
+  /**
+   * How long a subscription stays open before the client has to reconnect.
+   */
+  private long timeoutMillis = 1_800_000L;
+}
@@ -0,0 +1,162 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded map from idempotency key to what was submitted under it, forgetting keys once they are
+ * older than the time to live or when there is no room left.
+ *
+ * <p>Keys are spread over independently locked stripes, each an insertion-ordered map. As every
+ * key lives for the same time, the oldest key of a stripe is always the first to expire, so
+ * expiry and eviction only ever look at the head of the map and every operation is O(1). Expired
+ * keys are swept when a new key is stored; a hit only checks its own entry and allocates nothing.
+ */
+public class IdempotencyCache<V> {
+
+  private final Stripe<V>[] stripes;
+
+  private final int mask;
+
+  private final int capacity;
+
+  private final long ttlNanos;
+
+  private final LongSupplier nanoClock;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  private final LongAdder expirations = new LongAdder();
+
+  public IdempotencyCache(int capacity, long ttl, TimeUnit unit, int stripes) {
+    this(capacity, ttl, unit, stripes, System::nanoTime);
+  }
+
+  /**
+   * @param nanoClock current time in nanoseconds, only ever compared with itself
+   */
+  @SuppressWarnings("unchecked")
+  public IdempotencyCache(int capacity, long ttl, TimeUnit unit, int stripes,
+    LongSupplier nanoClock) {
+    if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("Number of stripes must be a power of two: " + stripes);
+    }
+    this.capacity = capacity;
+    this.ttlNanos = unit.toNanos(ttl);
+    this.nanoClock = nanoClock;
+    this.mask = stripes - 1;
+    this.stripes = (Stripe<V>[]) new Stripe<?>[stripes];
+    int perStripe = Math.max(1, capacity / stripes);
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new Stripe<>(perStripe, evictions);
+    }
+  }
+
+  /**
+   * Remembers {@code value} under {@code key} unless a live value is already there.
+   *
+   * @return the value already remembered under the key, or {@code null} if {@code value} was
+   *     stored
+   */
+  public V putIfAbsent(String key, V value) {
+    Stripe<V> stripe = stripeFor(key);
+    long now = nanoClock.getAsLong();
+    synchronized (stripe) {
+      Stored<V> existing = stripe.get(key);
+      if (existing != null && existing.deadlineNanos - now > 0) {
+        hits.increment();
+        return existing.value;
+      }
+      misses.increment();
+      stripe.expire(now, expirations);
+      stripe.put(key, new Stored<>(value, now + ttlNanos));
+      return null;
+    }
+  }
+
+  /**
+   * Forgets {@code key} if it still maps to {@code value}, e.g. when what was submitted under it
+   * never ran.
+   */
+  public void remove(String key, V value) {
+    Stripe<V> stripe = stripeFor(key);
+    synchronized (stripe) {
+      Stored<V> existing = stripe.get(key);
+      if (existing != null && existing.value == value) {
+        stripe.remove(key);
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe<V> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  public IdempotencyMetrics getMetrics() {
+    return new IdempotencyMetrics(size(), capacity, hits.sum(), misses.sum(), evictions.sum(),
+      expirations.sum());
+  }
+
+  private Stripe<V> stripeFor(String key) {
+    int h = key.hashCode();
+    return stripes[(h ^ (h >>> 16)) & mask];
+  }
+
+  private static final class Stored<V> {
+
+    private final V value;
+
+    private final long deadlineNanos;
+
+    Stored(V value, long deadlineNanos) {
+      this.value = value;
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+
+  private static final class Stripe<V> extends LinkedHashMap<String, Stored<V>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    private final LongAdder evictions;
+
+    Stripe(int capacity, LongAdder evictions) {
+      super(16, 0.75f, false);
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    void expire(long now, LongAdder expirations) {
+      Iterator<Stored<V>> oldest = values().iterator();
+      while (oldest.hasNext() && oldest.next().deadlineNanos - now <= 0) {
+        oldest.remove();
+        expirations.increment();
+      }
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Stored<V>> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+
+/**
+ * Point-in-time view of the idempotency key cache. Hits are retried submissions answered with
+ * the original transfer; evictions are keys forgotten for lack of room before they expired.
+ */
+@Data
+public class IdempotencyMetrics {
+
+  private final int size;
+
+  private final int capacity;
+
+  private final long hits;
+
+  private final long misses;
+
+  private final long evictions;
+
+  private final long expirations;
+}
@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfers.idempotency")
+public class IdempotencyProperties {
+
+  /**
+   * Most idempotency keys remembered. Once full the oldest key is forgotten first.
+   */
+  private int capacity = 100_000;
+
+  /**
+   * How long a key is remembered. A retry after this runs the transfer again.
+   */
+  private long ttlSeconds = 86_400;
+
+  /**
+   * Number of independently locked segments; must be a power of two.
+   */
+  private int stripes = 64;
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.import")
+public class ImportProperties {
+
+  /**
+   * Rows parsed, validated and inserted together by one worker.
+   */
+  private int chunkSize = 10_000;
+
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Number of invalid rows listed individually in the import summary.
+   */
+  private int maxReportedErrors = 100;
+}
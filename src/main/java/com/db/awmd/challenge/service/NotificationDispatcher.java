@@ -0,0 +1,327 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Delivers transfer notifications off the caller's thread.
+ *
+ * <p>Notifications are put on a bounded queue and delivered by a small pool of worker threads,
+ * which drain the queue in batches and hand each batch to the {@link NotificationService} in one
+ * call. When the queue is full the configured {@link OverflowPolicy} decides whether the caller
+ * waits, the notification is dropped, or it is spilled to a local file.
+ *
+ * <p>Spilled notifications are replayed a batch at a time between batches taken off the queue,
+ * so the spill file drains under sustained load too, not only once the queue is idle. A replay
+ * interrupted by a shutdown starts over from the beginning of the file on the next start, so a
+ * spilled notification may be delivered twice, never lost.
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+  private static final long IDLE_POLL_MILLIS = 100;
+
+  private final NotificationService notificationService;
+
+  private final BlockingQueue<PendingNotification> queue;
+
+  private final int batchSize;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final File spillFile;
+
+  private final File replayFile;
+
+  private final Object spillLock = new Object();
+
+  private DataOutputStream spillOut;
+
+  private DataInputStream replayIn;
+
+  /*
+   * Whether there may be spilled notifications left to replay. Set under spillLock, read by the
+   * workers to decide whether to wait on an empty queue.
+   */
+  private volatile boolean spillPending;
+
+  private final List<Thread> workers = new ArrayList<>();
+
+  private volatile boolean running = true;
+
+  private final LongAdder dispatched = new LongAdder();
+
+  private final LongAdder failed = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final LongAdder spilled = new LongAdder();
+
+  private final LongAdder totalLatencyNanos = new LongAdder();
+
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  @Autowired
+  public NotificationDispatcher(NotificationService notificationService,
+    NotificationProperties properties) {
+    this.notificationService = notificationService;
+    this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    this.batchSize = properties.getBatchSize();
+    this.overflowPolicy = properties.getOverflowPolicy();
+    this.spillFile = new File(properties.getSpillFile());
+    this.replayFile = new File(properties.getSpillFile() + ".replay");
+    this.spillPending = spillFile.exists() || replayFile.exists();
+    for (int i = 0; i < properties.getWorkers(); i++) {
+      Thread worker = new Thread(this::runWorker, "notification-dispatcher-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+  }
+
+  /**
+   * Queues a notification for delivery.
+   *
+   * @return {@code false} if the notification was dropped because the queue was full, or stayed
+   *     full until the dispatcher was shut down
+   */
+  public boolean dispatch(Account account, String transferDescription) {
+    PendingNotification notification =
+      new PendingNotification(account, transferDescription, System.nanoTime());
+    if (queue.offer(notification)) {
+      return true;
+    }
+    switch (overflowPolicy) {
+      case BLOCK:
+        // Waits only while the workers run: once shut down nothing drains the queue any more.
+        try {
+          while (running) {
+            if (queue.offer(notification, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+              return true;
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        dropped.increment();
+        return false;
+      case SPILL:
+        if (spill(notification)) {
+          return true;
+        }
+        dropped.increment();
+        return false;
+      default:
+        dropped.increment();
+        return false;
+    }
+  }
+
+  public NotificationMetrics getMetrics() {
+    long count = dispatched.sum() + failed.sum();
+    return new NotificationMetrics(queue.size(), queue.size() + queue.remainingCapacity(),
+      dispatched.sum(), failed.sum(), dropped.sum(), spilled.sum(),
+      count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum() / count),
+      TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get()));
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    for (Thread worker : workers) {
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    synchronized (spillLock) {
+      closeSpill();
+      closeReplay();
+    }
+  }
+
+  private void runWorker() {
+    List<PendingNotification> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingNotification first = spillPending
+          ? queue.poll() : queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+          deliver(batch);
+          batch.clear();
+        }
+        if (spillPending) {
+          readSpilled(batch);
+          deliver(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /*
+   * A batch is delivered or fails as a whole: the backend call either returns or throws, with no
+   * way to tell which of its notifications went out before it threw.
+   */
+  private void deliver(List<PendingNotification> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<Account> accounts = new ArrayList<>(batch.size());
+    List<String> descriptions = new ArrayList<>(batch.size());
+    for (PendingNotification notification : batch) {
+      accounts.add(notification.account);
+      descriptions.add(notification.description);
+    }
+    try {
+      notificationService.notifyAboutTransfers(accounts, descriptions);
+      dispatched.add(batch.size());
+    } catch (RuntimeException e) {
+      failed.add(batch.size());
+      log.warn("Failed to deliver a batch of {} notifications", batch.size(), e);
+    }
+    long now = System.nanoTime();
+    for (PendingNotification notification : batch) {
+      long latency = now - notification.enqueuedAt;
+      totalLatencyNanos.add(latency);
+      long max;
+      while (latency > (max = maxLatencyNanos.get())) {
+        if (maxLatencyNanos.compareAndSet(max, latency)) {
+          break;
+        }
+      }
+    }
+  }
+
+  private boolean spill(PendingNotification notification) {
+    synchronized (spillLock) {
+      try {
+        if (spillOut == null) {
+          spillOut = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(spillFile, true)));
+        }
+        spillOut.writeUTF(notification.account.getAccountId());
+        spillOut.writeUTF(notification.description);
+        spilled.increment();
+        spillPending = true;
+        return true;
+      } catch (IOException e) {
+        log.error("Could not spill notification to {}", spillFile, e);
+        return false;
+      }
+    }
+  }
+
+  /*
+   * Reads up to a batch of spilled notifications into the empty batch. The spill file is moved
+   * aside to be replayed, so that notifications spilled meanwhile go to a new one. The spill file
+   * only stores the account id and description, so a replayed notification carries an account
+   * with just its id.
+   */
+  private void readSpilled(List<PendingNotification> batch) {
+    synchronized (spillLock) {
+      try {
+        if (replayIn == null && !openReplay()) {
+          spillPending = false;
+          return;
+        }
+        while (batch.size() < batchSize) {
+          String accountId;
+          String description;
+          try {
+            accountId = replayIn.readUTF();
+            description = replayIn.readUTF();
+          } catch (EOFException endOfFile) {
+            // Whole file replayed; a record cut short by a crash while spilling is dropped.
+            closeReplay();
+            if (!replayFile.delete()) {
+              log.error("Could not delete replayed spill file {}", replayFile);
+            }
+            spillPending = spillFile.exists();
+            return;
+          }
+          batch.add(
+            new PendingNotification(new Account(accountId), description, System.nanoTime()));
+        }
+      } catch (IOException e) {
+        log.error("Could not replay spilled notifications from {}", replayFile, e);
+        closeReplay();
+        spillPending = false;
+      }
+    }
+  }
+
+  private boolean openReplay() throws IOException {
+    if (!replayFile.exists()) {
+      if (!spillFile.exists()) {
+        return false;
+      }
+      closeSpill();
+      if (!spillFile.renameTo(replayFile)) {
+        throw new IOException("Could not move " + spillFile + " to " + replayFile);
+      }
+    }
+    replayIn = new DataInputStream(new BufferedInputStream(new FileInputStream(replayFile)));
+    return true;
+  }
+
+  private void closeReplay() {
+    if (replayIn != null) {
+      try {
+        replayIn.close();
+      } catch (IOException e) {
+        log.warn("Could not close spill file {}", replayFile, e);
+      }
+      replayIn = null;
+    }
+  }
+
+  private void closeSpill() {
+    if (spillOut != null) {
+      try {
+        spillOut.close();
+      } catch (IOException e) {
+        log.warn("Could not close spill file {}", spillFile, e);
+      }
+      spillOut = null;
+    }
+  }
+
+  private static final class PendingNotification {
+
+    private final Account account;
+
+    private final String description;
+
+    private final long enqueuedAt;
+
+    private PendingNotification(Account account, String description, long enqueuedAt) {
+      this.account = account;
+      this.description = description;
+      this.enqueuedAt = enqueuedAt;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+
+/**
+ * Point-in-time view of the notification dispatch pipeline.
+ */
+@Data
+public class NotificationMetrics {
+
+  private final int queueDepth;
+
+  private final int queueCapacity;
+
+  private final long dispatched;
+
+  private final long failed;
+
+  private final long dropped;
+
+  private final long spilled;
+
+  /**
+   * Mean time from enqueue to the end of delivery, in microseconds.
+   */
+  private final long meanDispatchLatencyMicros;
+
+  private final long maxDispatchLatencyMicros;
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "notifications")
+public class NotificationProperties {
+
+  private int queueCapacity = 10_000;
+
+  private int batchSize = 64;
+
+  private int workers = 2;
+
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+  private String spillFile = "notifications.spill";
+}
@@ -1,8 +1,20 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import java.util.List;
 
 public interface NotificationService {
 
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  /**
+   * Tells the owner of each of {@code accounts} about the transfer description at the same
+   * index. Backends that can send several messages in one request should override this; by
+   * default the notifications are sent one at a time.
+   */
+  default void notifyAboutTransfers(List<Account> accounts, List<String> transferDescriptions) {
+    for (int i = 0; i < accounts.size(); i++) {
+      notifyAboutTransfer(accounts.get(i), transferDescriptions.get(i));
+    }
+  }
 }
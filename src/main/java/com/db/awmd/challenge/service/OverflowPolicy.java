@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.service;
+
+/**
+ * What {@link NotificationDispatcher} does with a notification when its queue is full.
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Discard the notification and count it as dropped.
+   */
+  DROP,
+
+  /**
+   * Make the caller wait until there is room in the queue.
+   */
+  BLOCK,
+
+  /**
+   * Append the notification to a local spill file, replayed once the queue drains.
+   */
+  SPILL
+}
@@ -0,0 +1,284 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.RejectionReason;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.LimitExceededException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.limits.TransferLimits;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs transfers on a fixed-size worker pool with a bounded queue in front of it.
+ *
+ * <p>Each submission gets its own id and future, so the caller can either wait for the outcome
+ * or come back later and poll for it. When the queue is full new submissions are refused with a
+ * {@link RejectedExecutionException} instead of piling up threads. Submissions made with an
+ * idempotency key are remembered in an {@link IdempotencyCache}, so a client retrying after a
+ * timeout gets the outcome of its first attempt rather than a second transfer.
+ */
+@Slf4j
+@Service
+public class TransferExecutor {
+
+  private final AccountsService accountsService;
+
+  private final ThreadPoolExecutor executor;
+
+  private final long responseTimeoutMillis;
+
+  private final int retainedResults;
+
+  private final Map<String, CompletableFuture<TransferReceipt>> transfers = new ConcurrentHashMap<>();
+
+  private final Queue<String> transferIds = new ConcurrentLinkedQueue<>();
+
+  private final IdempotencyCache<Submission> idempotencyCache;
+
+  @Autowired
+  public TransferExecutor(AccountsService accountsService, TransferExecutorProperties properties,
+    IdempotencyProperties idempotencyProperties) {
+    this.accountsService = accountsService;
+    this.idempotencyCache = new IdempotencyCache<>(idempotencyProperties.getCapacity(),
+      idempotencyProperties.getTtlSeconds(), TimeUnit.SECONDS, idempotencyProperties.getStripes());
+    this.responseTimeoutMillis = properties.getResponseTimeoutMillis();
+    this.retainedResults = properties.getRetainedResults();
+    this.executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+      0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+      new WorkerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * Queues the transfer and returns its id. A transfer carrying an idempotency key already seen
+   * within the key's time to live is not run again; the id of the original is returned instead.
+   * A transfer that fails {@link AccountsService#validate} or would breach a limit of its source
+   * account is refused here, before it takes a place in the queue.
+   *
+   * @throws LimitExceededException if the transfer would breach a limit
+   * @throws RejectedExecutionException if the executor is saturated
+   */
+  public String submit(Transfer transfer) {
+    accountsService.validate(transfer);
+    Submission submission =
+      new Submission(UUID.randomUUID().toString(), new CompletableFuture<>());
+    String idempotencyKey = transfer.getIdempotencyKey();
+    if (idempotencyKey != null) {
+      Submission original = idempotencyCache.putIfAbsent(idempotencyKey, submission);
+      if (original != null) {
+        retain(original);
+        return original.transferId;
+      }
+    }
+
+    CompletableFuture<TransferReceipt> future = submission.future;
+    long reservation = TransferLimits.NOT_RESERVED;
+    try {
+      reservation = accountsService.reserveLimits(transfer);
+      long reserved = reservation;
+      executor.execute(() -> {
+        try {
+          future.complete(accountsService.applyTransfer(transfer, reserved));
+        } catch (Throwable failure) {
+          future.completeExceptionally(failure);
+        }
+      });
+    } catch (LimitExceededException | RejectedExecutionException refused) {
+      // It never ran, so a retry with the same key must be allowed to. A retry that already
+      // picked this submission up from the cache is told it was refused rather than left waiting.
+      if (idempotencyKey != null) {
+        idempotencyCache.remove(idempotencyKey, submission);
+      }
+      accountsService.releaseLimits(transfer, reservation);
+      future.completeExceptionally(refused);
+      throw refused;
+    }
+    future.whenComplete((receipt, failure) -> {
+      if (failure != null && !isRejection(unwrap(failure))) {
+        log.error("Transfer {} failed", submission.transferId, unwrap(failure));
+      }
+    });
+    retain(submission);
+    return submission.transferId;
+  }
+
+  /**
+   * Waits up to the configured response timeout for the transfer to finish.
+   *
+   * @return the transfer's status, which is still {@link TransferState#PENDING} if it did not
+   *     finish in time
+   */
+  public TransferStatus await(String transferId) throws InterruptedException {
+    CompletableFuture<TransferReceipt> future = transfers.get(transferId);
+    if (future == null) {
+      return null;
+    }
+    try {
+      future.get(responseTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      // Reported through the status below.
+    }
+    return toStatus(transferId, future);
+  }
+
+  /**
+   * @return a future completed with the transfer's final status once it has finished, or
+   *     {@code null} if the id is unknown or its outcome is no longer retained
+   */
+  public CompletableFuture<TransferStatus> completion(String transferId) {
+    CompletableFuture<TransferReceipt> future = transfers.get(transferId);
+    return future == null ? null
+      : future.handle((receipt, failure) -> toStatus(transferId, future));
+  }
+
+  /**
+   * Runs {@code task} on the transfer workers, for other work that may wait on the repository,
+   * such as creating an account in a journaled repository.
+   *
+   * @throws RejectedExecutionException if the executor is saturated
+   */
+  public <T> CompletableFuture<T> supply(Supplier<T> task) {
+    return CompletableFuture.supplyAsync(task, executor);
+  }
+
+  public long getResponseTimeoutMillis() {
+    return responseTimeoutMillis;
+  }
+
+  /**
+   * @return the transfer's current status, or {@code null} if the id is unknown or its outcome is
+   *     no longer retained
+   */
+  public TransferStatus getStatus(String transferId) {
+    CompletableFuture<TransferReceipt> future = transfers.get(transferId);
+    return future == null ? null : toStatus(transferId, future);
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public IdempotencyMetrics getIdempotencyMetrics() {
+    return idempotencyCache.getMetrics();
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  private TransferStatus toStatus(String transferId, CompletableFuture<TransferReceipt> future) {
+    if (!future.isDone()) {
+      return new TransferStatus(transferId, TransferState.PENDING, null, null);
+    }
+    try {
+      return new TransferStatus(transferId, TransferState.COMPLETED, future.join(), null);
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      RejectionReason reason = rejectionReason(cause);
+      TransferState state = reason != null ? TransferState.REJECTED : TransferState.FAILED;
+      return new TransferStatus(transferId, state, null, cause.getMessage(), reason);
+    }
+  }
+
+  /*
+   * A retry may come after the original outcome has been evicted from the retained results, so
+   * the cached submission is put back for it to be awaited.
+   */
+  private void retain(Submission submission) {
+    if (transfers.putIfAbsent(submission.transferId, submission.future) == null) {
+      transferIds.add(submission.transferId);
+      evictOldResults();
+    }
+  }
+
+  private void evictOldResults() {
+    while (transfers.size() > retainedResults) {
+      String oldest = transferIds.poll();
+      if (oldest == null) {
+        return;
+      }
+      transfers.remove(oldest);
+    }
+  }
+
+  private static boolean isRejection(Throwable failure) {
+    return rejectionReason(failure) != null;
+  }
+
+  private static RejectionReason rejectionReason(Throwable failure) {
+    if (failure instanceof SameAccountIdException) {
+      return RejectionReason.SAME_ACCOUNT;
+    }
+    if (failure instanceof InsufficientFundsException) {
+      return RejectionReason.INSUFFICIENT_FUNDS;
+    }
+    if (failure instanceof AccountNotFoundException) {
+      return RejectionReason.UNKNOWN_ACCOUNT;
+    }
+    if (failure instanceof InvalidAmountException) {
+      return RejectionReason.INVALID_AMOUNT;
+    }
+    if (failure instanceof LimitExceededException) {
+      return RejectionReason.LIMIT_EXCEEDED;
+    }
+    return null;
+  }
+
+  private static Throwable unwrap(Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null
+      ? failure.getCause() : failure;
+  }
+
+  private static final class Submission {
+
+    private final String transferId;
+
+    private final CompletableFuture<TransferReceipt> future;
+
+    Submission(String transferId, CompletableFuture<TransferReceipt> future) {
+      this.transferId = transferId;
+      this.future = future;
+    }
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "transfer-executor-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
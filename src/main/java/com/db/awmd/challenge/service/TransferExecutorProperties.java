@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfers.executor")
+public class TransferExecutorProperties {
+
+  private int poolSize = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Transfers allowed to wait for a worker. Submissions beyond this are refused.
+   */
+  private int queueCapacity = 1_000;
+
+  /**
+   * How long a request waits for its transfer before answering with a transfer id to poll.
+   */
+  private long responseTimeoutMillis = 2_000;
+
+  /**
+   * Number of transfer outcomes kept for polling.
+   */
+  private int retainedResults = 10_000;
+}
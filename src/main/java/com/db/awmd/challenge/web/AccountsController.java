@@ -1,36 +1,83 @@
 package com.db.awmd.challenge.web;
 
+import com.db.awmd.challenge.boot.AccountImageSummary;
+import com.db.awmd.challenge.boot.AccountsBoot;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.ImportFormat;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.TierAssignment;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
-import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.LimitExceededException;
 import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.exception.ScheduleException;
+import com.db.awmd.challenge.ledger.LedgerEntry;
+import com.db.awmd.challenge.limits.AccountLimits;
+import com.db.awmd.challenge.schedule.ScheduledOrder;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import com.db.awmd.challenge.service.AccountImporter;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferExecutor;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
-public class AccountsController implements Runnable{
+public class AccountsController {
+
+  private static final int MAX_PAGE_SIZE = 1_000;
 
   private final AccountsService accountsService;
-  
-  private Transfer transfer;
+
+  private final TransferExecutor transferExecutor;
+
+  private final AccountImporter accountImporter;
+
+  private final TransferScheduler transferScheduler;
+
+  private final AccountsBoot accountsBoot;
 
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, TransferExecutor transferExecutor,
+    AccountImporter accountImporter, TransferScheduler transferScheduler,
+    AccountsBoot accountsBoot) {
     this.accountsService = accountsService;
+    this.transferExecutor = transferExecutor;
+    this.accountImporter = accountImporter;
+    this.transferScheduler = transferScheduler;
+    this.accountsBoot = accountsBoot;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -46,39 +93,202 @@ public class AccountsController implements Runnable{
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  @GetMapping
+  public AccountPage listAccounts(@RequestParam(defaultValue = "0") long cursor,
+    @RequestParam(defaultValue = "100") int limit) {
+    return this.accountsService.listAccounts(cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+  }
+
+  /*
+   * Streams every account as NDJSON straight to the response, with balances as of the moment the
+   * export started. Transfers keep running while it is written.
+   */
+  @GetMapping(path = "/export", produces = ImportFormat.NDJSON_VALUE)
+  public void exportAccounts(HttpServletResponse response) throws IOException {
+    log.info("Exporting all accounts");
+    response.setContentType(ImportFormat.NDJSON_VALUE);
+    this.accountsService.exportAccounts(response.getOutputStream());
+  }
+
+  /*
+   * Writes the binary account image a node started with boot.load-image picks up, for instance
+   * just before this one is replaced. Transfers keep running while it is written.
+   */
+  @PostMapping(path = "/image")
+  public AccountImageSummary writeImage() throws IOException {
+    log.info("Writing the account image");
+    return this.accountsBoot.writeImage();
+  }
+
+  /*
+   * The body is read straight from the request stream, so an import of millions of accounts is
+   * never held in memory. Duplicates and invalid rows are reported in the summary; the answer is
+   * 201 if at least one account was created, 400 otherwise.
+   */
+  @PostMapping(path = "/import", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE})
+  public ResponseEntity<Object> importAccounts(HttpServletRequest request,
+    @RequestParam(defaultValue = "0") int sizeHint) throws IOException, InterruptedException {
+    ImportFormat format = ImportFormat.of(MediaType.parseMediaType(request.getContentType()));
+    log.info("Importing accounts as {}", format);
+
+    ImportSummary summary =
+      this.accountImporter.importAccounts(request.getInputStream(), format, sizeHint);
+    return new ResponseEntity<>(summary,
+      summary.getCreated() > 0 ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST);
+  }
+
+  /*
+   * Served from one atomic read of the balance, so a read takes no account lock and never sees a
+   * transfer half applied. A client sending the ETag of an unchanged balance in If-None-Match gets
+   * 304 and nothing is serialized.
+   */
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
+  public AccountView getAccount(@PathVariable String accountId, WebRequest request) {
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    long balance = this.accountsService.getBalanceMinorUnits(accountId);
+    if (balance < 0 || request.checkNotModified(AccountView.eTagFor(balance))) {
+      return null;
+    }
+    return AccountView.of(accountId, balance);
   }
   
-  @RequestMapping("/instantTransfer")
-  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> instantTransfer(@RequestBody @Valid Transfer transfer) {
-	log.info("Initiating transfer {}", transfer);
-	this.transfer = transfer;
+  /*
+   * The account's committed transfers, newest first. With from and/or to (ISO-8601 instants) only
+   * those recorded in [from, to) are returned.
+   */
+  @GetMapping(path = "/{accountId}/transfers")
+  public List<LedgerEntry> getTransferHistory(@PathVariable String accountId,
+    @RequestParam(defaultValue = "100") int limit,
+    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
+    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant to) {
+    int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    if (from == null && to == null) {
+      return this.accountsService.getTransferHistory(accountId, pageSize);
+    }
+    return this.accountsService.getTransferHistory(accountId,
+      from == null ? Long.MIN_VALUE : from.toEpochMilli(),
+      to == null ? Long.MAX_VALUE : to.toEpochMilli(), pageSize);
+  }
+
+  @GetMapping(path = "/{accountId}/limits")
+  public ResponseEntity<Object> getLimits(@PathVariable String accountId) {
+    AccountLimits limits = this.accountsService.getLimits(accountId);
+    if (limits == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(limits, HttpStatus.OK);
+  }
+
+  /*
+   * Moves the account to another limits tier; 400 if the tier is not configured.
+   */
+  @PutMapping(path = "/{accountId}/limits", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> assignTier(@PathVariable String accountId,
+    @RequestBody @Valid TierAssignment assignment) {
+    log.info("Moving account {} to limits tier {}", accountId, assignment.getTier());
+
     try {
-    	/*
-    	 * Creating a thread based implementation, to add dynamic threads 
-    	 * for processing multiple request in the existing application.
-    	 * */
-    	
-    	Thread t1 = new Thread(this);
-    	t1.start(); // would invoke run method on 'this' class via thread 't1'
-    	
-    } catch (SameAccountIdException sameaccounts) {
-      return new ResponseEntity<>(sameaccounts.getMessage(), HttpStatus.BAD_REQUEST);
-    }catch (InsufficientFundsException fundsException) {
-        return new ResponseEntity<>(fundsException.getMessage(), HttpStatus.BAD_REQUEST);
+      if (!this.accountsService.assignTier(accountId, assignment.getTier())) {
+        return new ResponseEntity<>("Unknown limits tier " + assignment.getTier(),
+          HttpStatus.BAD_REQUEST);
+      }
+    } catch (AccountNotFoundException anfe) {
+      return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
     }
+    return new ResponseEntity<>(this.accountsService.getLimits(accountId), HttpStatus.OK);
+  }
 
-    return new ResponseEntity<>(HttpStatus.CREATED);
+  /*
+   * The transfer runs on the bounded transfer executor. If it finishes within the response timeout
+   * its real outcome is returned, otherwise 202 with the id to poll. Transfers that cannot succeed
+   * are refused before being queued: 404 for an unknown account, 429 for one that would breach a
+   * limit of its source account, 400 otherwise.
+   */
+  @PostMapping(path = "/instantTransfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> instantTransfer(@RequestBody @Valid Transfer transfer)
+    throws InterruptedException {
+    log.info("Initiating transfer {}", transfer);
+
+    String transferId;
+    try {
+      transferId = this.transferExecutor.submit(transfer);
+    } catch (AccountNotFoundException | SameAccountIdException | InvalidAmountException
+      | LimitExceededException | RejectedExecutionException refusal) {
+      return TransferResponses.refused(refusal);
+    }
+
+    return TransferResponses.of(this.transferExecutor.await(transferId));
   }
 
-@Override
-public void run() {
-	// calling instant transfer on thread 't1' to perform transfer operation.
-	this.accountsService.instantTransfer(transfer);
-}
+  /*
+   * Answers 201 if at least one transfer of the batch was applied, 400 otherwise. Per transfer
+   * outcomes are in the body either way.
+   */
+  @PostMapping(path = "/batchTransfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> batchTransfer(@RequestBody @Valid BatchTransfer batchTransfer) {
+    log.info("Initiating batch of {} transfers in {} mode", batchTransfer.getTransfers().size(),
+      batchTransfer.getMode());
+
+    BatchTransferResult result = this.accountsService.batchTransfer(batchTransfer);
+    return new ResponseEntity<>(result,
+      result.getCompleted() > 0 ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST);
+  }
+
+  @GetMapping(path = "/transfers/{transferId}")
+  public ResponseEntity<Object> getTransfer(@PathVariable String transferId) {
+    TransferStatus status = this.transferExecutor.getStatus(transferId);
+    if (status == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(status, HttpStatus.OK);
+  }
+
+  /*
+   * The transfer is checked the way an instant one is when it is scheduled, but funds are only
+   * looked at when it comes due. Answers 201 with the pending order.
+   */
+  @PostMapping(path = "/scheduledTransfers", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(
+    @RequestBody @Valid ScheduledTransfer scheduledTransfer) {
+    log.info("Scheduling transfer {}", scheduledTransfer);
 
+    Instant executeAt;
+    try {
+      executeAt = Instant.parse(scheduledTransfer.getExecuteAt());
+    } catch (DateTimeParseException e) {
+      return new ResponseEntity<>("executeAt must be an ISO-8601 instant", HttpStatus.BAD_REQUEST);
+    }
+    Long intervalSeconds = scheduledTransfer.getIntervalSeconds();
+    if (intervalSeconds == null && scheduledTransfer.getOccurrences() != null) {
+      return new ResponseEntity<>("occurrences needs intervalSeconds", HttpStatus.BAD_REQUEST);
+    }
+
+    ScheduledOrder order;
+    try {
+      this.accountsService.validate(scheduledTransfer.toTransfer());
+      order = this.transferScheduler.schedule(scheduledTransfer.toTransfer(),
+        executeAt.toEpochMilli(), intervalSeconds == null ? 0L : intervalSeconds * 1000L,
+        scheduledTransfer.getOccurrences());
+    } catch (AccountNotFoundException | SameAccountIdException | InvalidAmountException refusal) {
+      return TransferResponses.refused(refusal);
+    } catch (ScheduleException se) {
+      return new ResponseEntity<>(se.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    return new ResponseEntity<>(order, HttpStatus.CREATED);
+  }
+
+  @GetMapping(path = "/scheduledTransfers/{orderId}")
+  public ResponseEntity<Object> getScheduledTransfer(@PathVariable long orderId) {
+    ScheduledOrder order = this.transferScheduler.getOrder(orderId);
+    if (order == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(order, HttpStatus.OK);
+  }
+
+  @DeleteMapping(path = "/scheduledTransfers/{orderId}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable long orderId) {
+    return new ResponseEntity<>(this.transferScheduler.cancel(orderId)
+      ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+  }
 }
@@ -0,0 +1,166 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.LimitExceededException;
+import com.db.awmd.challenge.exception.SameAccountIdException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceStream;
+import com.db.awmd.challenge.service.BalanceStreamProperties;
+import com.db.awmd.challenge.service.TransferExecutor;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import javax.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Non-blocking variant of the account endpoints. Handlers return without waiting and the response
+ * is completed by whichever thread finishes the work, through Servlet 3 asynchronous requests, so
+ * no container thread is held while a transfer is queued, applied or made durable. A client can
+ * also follow an account's balance as a stream of server-sent events.
+ *
+ * <p>These endpoints stay on the Spring MVC stack of Spring Boot 1.5 instead of WebFlux, which
+ * would need Spring Boot 2 and Spring 5 for the whole application. What they save is container
+ * threads, not work: transfers still wait for the same workers and journal, so throughput stays
+ * close to that of the blocking endpoints and the gain shows mostly in tail latency under many
+ * concurrent clients.
+ */
+@RestController
+@RequestMapping("/v1/async/accounts")
+@Slf4j
+public class AsyncAccountsController {
+
+  private final AccountsService accountsService;
+
+  private final TransferExecutor transferExecutor;
+
+  private final BalanceStream balanceStream;
+
+  private final long streamTimeoutMillis;
+
+  @Autowired
+  public AsyncAccountsController(AccountsService accountsService,
+    TransferExecutor transferExecutor, BalanceStream balanceStream,
+    BalanceStreamProperties balanceStreamProperties) {
+    this.accountsService = accountsService;
+    this.transferExecutor = transferExecutor;
+    this.balanceStream = balanceStream;
+    this.streamTimeoutMillis = balanceStreamProperties.getTimeoutMillis();
+  }
+
+  /*
+   * Creation runs on the transfer workers, since with a journaled repository it waits for the
+   * journal write. The answers are those of the blocking endpoint.
+   */
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public DeferredResult<ResponseEntity<Object>> createAccount(@RequestBody @Valid Account account) {
+    log.info("Creating account {}", account);
+
+    DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+    try {
+      this.transferExecutor.supply(() -> {
+        this.accountsService.createAccount(account);
+        return account;
+      }).whenComplete((created, failure) -> {
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        if (cause == null) {
+          result.setResult(new ResponseEntity<>(HttpStatus.CREATED));
+        } else if (cause instanceof DuplicateAccountIdException) {
+          result.setResult(new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST));
+        } else {
+          result.setErrorResult(cause);
+        }
+      });
+    } catch (RejectedExecutionException saturated) {
+      result.setResult(TransferResponses.refused(saturated));
+    }
+    return result;
+  }
+
+  @GetMapping(path = "/{accountId}")
+  public ResponseEntity<AccountView> getAccount(@PathVariable String accountId) {
+    long balance = this.accountsService.getBalanceMinorUnits(accountId);
+    if (balance < 0) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(AccountView.of(accountId, balance), HttpStatus.OK);
+  }
+
+  /*
+   * Answers like the blocking endpoint: with the transfer's outcome as soon as it is known, or
+   * with 202 and the id to poll if that takes longer than the response timeout.
+   */
+  @PostMapping(path = "/instantTransfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public DeferredResult<ResponseEntity<Object>> instantTransfer(
+    @RequestBody @Valid Transfer transfer) {
+    log.info("Initiating transfer {}", transfer);
+
+    String transferId;
+    try {
+      transferId = this.transferExecutor.submit(transfer);
+    } catch (AccountNotFoundException | SameAccountIdException | InvalidAmountException
+      | LimitExceededException | RejectedExecutionException refusal) {
+      DeferredResult<ResponseEntity<Object>> refused = new DeferredResult<>();
+      refused.setResult(TransferResponses.refused(refusal));
+      return refused;
+    }
+
+    ResponseEntity<Object> pending = TransferResponses.of(
+      new TransferStatus(transferId, TransferState.PENDING, null, null));
+    DeferredResult<ResponseEntity<Object>> result =
+      new DeferredResult<>(this.transferExecutor.getResponseTimeoutMillis(), pending);
+    CompletableFuture<TransferStatus> completion = this.transferExecutor.completion(transferId);
+    if (completion == null) {
+      result.setResult(pending);
+    } else {
+      completion.thenAccept(status -> result.setResult(TransferResponses.of(status)));
+    }
+    return result;
+  }
+
+  /*
+   * Sends the current balance, then the balance after each change, as "balance" events. Changes
+   * in quick succession may arrive as one event with the latest balance.
+   */
+  @GetMapping(path = "/{accountId}/balances", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamBalance(@PathVariable String accountId) {
+    if (this.accountsService.getBalanceMinorUnits(accountId) < 0) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    log.info("Streaming balance of {}", accountId);
+
+    SseEmitter emitter = new SseEmitter(this.streamTimeoutMillis);
+    Runnable unsubscribe = this.balanceStream.subscribe(accountId, view -> {
+      try {
+        emitter.send(SseEmitter.event().name("balance").data(view, MediaType.APPLICATION_JSON));
+      } catch (IOException disconnected) {
+        emitter.completeWithError(disconnected);
+      } catch (IllegalStateException completed) {
+        // The stream ended meanwhile; its completion callback unsubscribes.
+      }
+    });
+    emitter.onCompletion(unsubscribe);
+    emitter.onTimeout(unsubscribe);
+    return new ResponseEntity<>(emitter, HttpStatus.OK);
+  }
+}
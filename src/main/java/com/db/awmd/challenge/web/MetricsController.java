@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.boot.AccountsBoot;
+import com.db.awmd.challenge.boot.BootMetrics;
+import com.db.awmd.challenge.limits.LimitsMetrics;
+import com.db.awmd.challenge.limits.TransferLimits;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetricsSnapshot;
+import com.db.awmd.challenge.schedule.ScheduleMetrics;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import com.db.awmd.challenge.service.BalanceStream;
+import com.db.awmd.challenge.service.BalanceStreamMetrics;
+import com.db.awmd.challenge.service.IdempotencyMetrics;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationMetrics;
+import com.db.awmd.challenge.service.TransferExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+  private final TransferMetrics transferMetrics;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final TransferExecutor transferExecutor;
+
+  private final BalanceStream balanceStream;
+
+  private final TransferScheduler transferScheduler;
+
+  private final TransferLimits transferLimits;
+
+  private final AccountsBoot accountsBoot;
+
+  @Autowired
+  public MetricsController(TransferMetrics transferMetrics,
+    NotificationDispatcher notificationDispatcher, TransferExecutor transferExecutor,
+    BalanceStream balanceStream, TransferScheduler transferScheduler,
+    TransferLimits transferLimits, AccountsBoot accountsBoot) {
+    this.transferMetrics = transferMetrics;
+    this.notificationDispatcher = notificationDispatcher;
+    this.transferExecutor = transferExecutor;
+    this.balanceStream = balanceStream;
+    this.transferScheduler = transferScheduler;
+    this.transferLimits = transferLimits;
+    this.accountsBoot = accountsBoot;
+  }
+
+  @GetMapping(path = "/transfers")
+  public TransferMetricsSnapshot getTransferMetrics() {
+    return this.transferMetrics.snapshot();
+  }
+
+  @GetMapping(path = "/notifications")
+  public NotificationMetrics getNotificationMetrics() {
+    return this.notificationDispatcher.getMetrics();
+  }
+
+  @GetMapping(path = "/idempotency")
+  public IdempotencyMetrics getIdempotencyMetrics() {
+    return this.transferExecutor.getIdempotencyMetrics();
+  }
+
+  @GetMapping(path = "/balance-stream")
+  public BalanceStreamMetrics getBalanceStreamMetrics() {
+    return this.balanceStream.getMetrics();
+  }
+
+  @GetMapping(path = "/schedule")
+  public ScheduleMetrics getScheduleMetrics() {
+    return this.transferScheduler.getMetrics();
+  }
+
+  @GetMapping(path = "/limits")
+  public LimitsMetrics getLimitsMetrics() {
+    return this.transferLimits.getMetrics();
+  }
+
+  @GetMapping(path = "/boot")
+  public BootMetrics getBootMetrics() {
+    return this.accountsBoot.getMetrics();
+  }
+}
@@ -0,0 +1,61 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.RejectionReason;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.LimitExceededException;
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * How the transfer endpoints, blocking and asynchronous alike, answer for each outcome.
+ */
+final class TransferResponses {
+
+  private TransferResponses() {
+  }
+
+  static ResponseEntity<Object> of(TransferStatus status) {
+    switch (status.getState()) {
+      case COMPLETED:
+        return new ResponseEntity<>(status, HttpStatus.CREATED);
+      case REJECTED:
+        return new ResponseEntity<>(status.getMessage(),
+          status.getReason() == RejectionReason.UNKNOWN_ACCOUNT
+            ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST);
+      case FAILED:
+        return new ResponseEntity<>(status.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+      default:
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(URI.create("/v1/accounts/transfers/" + status.getTransferId()));
+        return new ResponseEntity<>(status, headers, HttpStatus.ACCEPTED);
+    }
+  }
+
+  /**
+   * Answer for a transfer refused before it was queued: 404 for an unknown account, 429 with the
+   * time until the breached window makes room for a transfer over a limit, 503 if the executor is
+   * saturated, 400 otherwise.
+   */
+  static ResponseEntity<Object> refused(RuntimeException refusal) {
+    if (refusal instanceof AccountNotFoundException) {
+      return new ResponseEntity<>(refusal.getMessage(), HttpStatus.NOT_FOUND);
+    }
+    if (refusal instanceof LimitExceededException) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HttpHeaders.RETRY_AFTER,
+        Long.toString(((LimitExceededException) refusal).getRetryAfterSeconds()));
+      return new ResponseEntity<>(refusal.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+    if (refusal instanceof RejectedExecutionException) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HttpHeaders.RETRY_AFTER, "1");
+      return new ResponseEntity<>("Too many transfers in progress, retry later", headers,
+        HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    return new ResponseEntity<>(refusal.getMessage(), HttpStatus.BAD_REQUEST);
+  }
+}
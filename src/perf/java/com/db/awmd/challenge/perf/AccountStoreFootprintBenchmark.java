@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.perf;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares heap use, GC time and lookup latency of the in-memory and memory-mapped repositories.
+ *
+ * <p>Run with {@code gradle footprintBenchmark}, optionally passing the number of accounts. Give
+ * the JVM enough heap for the in-memory run, e.g. {@code -Xmx8g} for ten million accounts.
+ */
+public class AccountStoreFootprintBenchmark {
+
+  private static final int LOOKUPS = 5_000_000;
+
+  public static void main(String[] args) throws Exception {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+    System.out.printf("%-10s %14s %12s %16s%n", "store", "heap (MB)", "GC (ms)", "lookup (ns)");
+    measure("in-memory", new AccountsRepositoryInMemory(), accounts);
+
+    Path file = Files.createTempFile("accounts", ".map");
+    Files.delete(file);
+    long capacity = Long.highestOneBit(accounts * 2L - 1) * 2;
+    try (AccountsRepositoryMapped mapped = new AccountsRepositoryMapped(file, capacity, 1024)) {
+      measure("mapped", mapped, accounts);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static void measure(String name, AccountsRepository repository, int accounts) {
+    long heapBefore = usedHeap();
+    long gcBefore = gcMillis();
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+    long heap = Math.max(0, usedHeap() - heapBefore);
+
+    String[] ids = new String[1024];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = "Id-" + random.nextInt(accounts);
+    }
+    long sink = 0;
+    for (int i = 0; i < LOOKUPS; i++) {
+      sink += repository.getBalanceMinorUnits(ids[i & 1023]);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < LOOKUPS; i++) {
+      sink += repository.getBalanceMinorUnits(ids[i & 1023]);
+    }
+    long lookupNanos = (System.nanoTime() - start) / LOOKUPS;
+
+    System.out.printf("%-10s %14d %12d %16d%s%n", name, heap >> 20, gcMillis() - gcBefore,
+      lookupNanos, sink == 42 ? " " : "");
+    repository.clearAccounts();
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, collector.getCollectionTime());
+    }
+    return total;
+  }
+}
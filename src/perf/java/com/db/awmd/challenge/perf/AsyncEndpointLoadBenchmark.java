@@ -0,0 +1,139 @@
+package com.db.awmd.challenge.perf;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares the blocking and the asynchronous transfer endpoints under many concurrent clients
+ * against a server with few container threads. Runs the application on a random port with the
+ * journaled repository, so that every transfer waits for a group commit.
+ *
+ * <p>Run with {@code gradle asyncLoadBenchmark}. Arguments: concurrent clients, seconds per endpoint,
+ * container threads.
+ */
+public class AsyncEndpointLoadBenchmark {
+
+  private static final int ACCOUNTS = 10_000;
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int containerThreads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+    Path journal = Files.createTempDirectory("load-test-journal");
+    ConfigurableApplicationContext context = SpringApplication.run(DevChallengeApplication.class,
+      "--server.port=0",
+      "--server.tomcat.max-threads=" + containerThreads,
+      "--accounts.repository.engine=journal",
+      "--accounts.journal.directory=" + journal,
+      "--accounts.journal.snapshot-interval-seconds=0",
+      "--transfers.executor.pool-size=64",
+      "--transfers.executor.queue-capacity=" + clients * 2,
+      "--audit.enabled=false",
+      "--logging.level.root=WARN");
+    try {
+      AccountsService accountsService = context.getBean(AccountsService.class);
+      for (int i = 0; i < ACCOUNTS; i++) {
+        accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000000")));
+      }
+      String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+      System.out.printf("%d clients, %d container threads%n", clients, containerThreads);
+      System.out.printf("%-8s %14s %12s %12s%n", "endpoint", "transfers/sec", "p50 (ms)", "p99 (ms)");
+      run("blocking", base + "/v1/accounts/instantTransfer", clients, seconds);
+      run("async", base + "/v1/async/accounts/instantTransfer", clients, seconds);
+    } finally {
+      context.close();
+      try (Stream<Path> files = Files.walk(journal)) {
+        files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+    }
+  }
+
+  private static void run(String name, String url, int clients, int seconds) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    List<long[]> latencies = new ArrayList<>();
+    List<Thread> workers = new ArrayList<>();
+    for (int c = 0; c < clients; c++) {
+      long[] recorded = new long[1 << 16];
+      latencies.add(recorded);
+      Thread worker = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = 0;
+        while (System.nanoTime() < deadline && count < recorded.length - 1) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          long start = System.nanoTime();
+          post(url, "{\"toAccountId\":\"Id-" + to + "\",\"fromAccountId\":\"Id-" + from
+            + "\",\"amount\":1}");
+          recorded[++count] = System.nanoTime() - start;
+        }
+        recorded[0] = count;
+      });
+      workers.add(worker);
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    int total = 0;
+    for (long[] recorded : latencies) {
+      total += (int) recorded[0];
+    }
+    long[] all = new long[total];
+    int offset = 0;
+    for (long[] recorded : latencies) {
+      System.arraycopy(recorded, 1, all, offset, (int) recorded[0]);
+      offset += (int) recorded[0];
+    }
+    Arrays.sort(all);
+    System.out.printf("%-8s %14.0f %12.2f %12.2f%n", name, total / (double) seconds,
+      percentileMillis(all, 0.50), percentileMillis(all, 0.99));
+  }
+
+  private static double percentileMillis(long[] sorted, double percentile) {
+    return sorted.length == 0 ? 0
+      : sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+  }
+
+  private static void post(String url, String body) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+      int status = connection.getResponseCode();
+      try (InputStream in = status < 400 ? connection.getInputStream()
+        : connection.getErrorStream()) {
+        while (in != null && in.read() >= 0) {
+          // Drained so that the connection can be kept alive.
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.db.awmd.challenge.perf;
+
+import com.db.awmd.challenge.boot.AccountsBoot;
+import com.db.awmd.challenge.boot.BootProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountImage;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.BalanceMode;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a node takes to get its accounts back: creating them one at a time, as an
+ * import or replay would, against loading the account image on one and on every processor, and
+ * what the JIT warm-up adds on top of the load.
+ *
+ * <p>Run with {@code gradle startupBenchmark}, optionally passing the number of accounts and the
+ * decode threads. The JVM needs heap for one copy of the accounts, about 1.2 GB for ten million,
+ * and a young generation that can take a whole load, so that it runs without a collection.
+ */
+public class StartupTimeBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1])
+      : Runtime.getRuntime().availableProcessors();
+
+    Path file = Files.createTempFile("accounts", ".img");
+    try {
+      release();
+      AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+      long start = System.nanoTime();
+      for (int i = 0; i < accounts; i++) {
+        repository.createAccount(Account.ofMinorUnits("Id-" + i, i));
+      }
+      report("createAccount one at a time", accounts, start);
+
+      release();
+      start = System.nanoTime();
+      AccountImage.write(repository, file, new BootProperties().getChunkSize());
+      report("write image (" + (Files.size(file) >> 20) + " MB)", accounts, start);
+      repository = null;
+
+      for (int run = 0; run < 3; run++) {
+        release();
+        start = System.nanoTime();
+        AccountImage.load(file, new AccountsRepositoryInMemory(), 1);
+        report("load image, 1 decode thread", accounts, start);
+
+        release();
+        start = System.nanoTime();
+        AccountImage.load(file, new AccountsRepositoryInMemory(), threads);
+        report("load image, " + threads + " decode threads", accounts, start);
+      }
+
+      BootProperties properties = new BootProperties();
+      properties.setImageFile(file.toString());
+      properties.setLoadImage(true);
+      properties.setDecodeThreads(threads);
+      properties.setWarmUp(true);
+      release();
+      start = System.nanoTime();
+      new AccountsBoot(properties, new AccountsRepositoryInMemory(), 1024, BalanceMode.LOCKED);
+      report("load image and warm up", accounts, start);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static long gcAtStart;
+
+  private static void report(String step, int accounts, long startNanos) {
+    long nanos = System.nanoTime() - startNanos;
+    System.out.printf("%-34s %8d ms %8d ms GC %10d accounts/s%n", step,
+      TimeUnit.NANOSECONDS.toMillis(nanos), gcMillis() - gcAtStart,
+      accounts * 1_000_000_000L / Math.max(1, nanos));
+  }
+
+  private static void release() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    gcAtStart = gcMillis();
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, collector.getCollectionTime());
+    }
+    return total;
+  }
+}
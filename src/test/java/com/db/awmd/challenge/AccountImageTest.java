@@ -0,0 +1,135 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.boot.AccountsBoot;
+import com.db.awmd.challenge.boot.BootProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.AccountImageException;
+import com.db.awmd.challenge.repository.AccountImage;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+import com.db.awmd.challenge.repository.BalanceMode;
+import com.db.awmd.challenge.repository.JournalProperties;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountImageTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AccountsRepositoryInMemory populated(int accounts) {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(Account.ofMinorUnits("Id-" + i, i * 100L));
+    }
+    repository.createAccount(new Account("Konto-Größe-€", new BigDecimal("12.34")));
+    repository.instantTransfer(new Transfer("Id-1", "Id-2", new BigDecimal("0.50")));
+    return repository;
+  }
+
+  @Test
+  public void imageLoadsInCreationOrderWithEveryBalance() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("accounts.img");
+    assertThat(AccountImage.write(populated(1_000), file, 64)).isEqualTo(1_001);
+
+    AccountsRepositoryInMemory loaded = new AccountsRepositoryInMemory();
+    assertThat(AccountImage.load(file, loaded, 4)).isEqualTo(1_001);
+
+    List<AccountView> page = loaded.listAccounts(0L, 2_000).getAccounts();
+    assertThat(page).hasSize(1_001);
+    assertThat(page.get(0).getAccountId()).isEqualTo("Id-0");
+    assertThat(page.get(999).getAccountId()).isEqualTo("Id-999");
+    assertThat(page.get(1_000).getAccountId()).isEqualTo("Konto-Größe-€");
+    assertThat(loaded.getBalanceMinorUnits("Id-1")).isEqualTo(150L);
+    assertThat(loaded.getBalanceMinorUnits("Id-2")).isEqualTo(150L);
+    assertThat(loaded.getBalanceMinorUnits("Id-777")).isEqualTo(77_700L);
+    assertThat(loaded.getBalanceMinorUnits("Konto-Größe-€")).isEqualTo(1_234L);
+
+    // The loaded accounts are ordinary ones.
+    loaded.createAccount(new Account("Id-new", new BigDecimal("1")));
+    loaded.instantTransfer(new Transfer("Id-new", "Id-999", new BigDecimal("1")));
+    assertThat(loaded.getBalanceMinorUnits("Id-new")).isEqualTo(200L);
+    assertThat(loaded.listAccounts(1_001L, 10).getAccounts()).extracting("accountId")
+      .containsExactly("Id-new");
+
+    // Any engine can take an image through its own write path.
+    JournalProperties journal = new JournalProperties();
+    journal.setDirectory(folder.newFolder("journal").getPath());
+    journal.setSnapshotIntervalSeconds(0);
+    try (AccountsRepositoryJournaled journaled = new AccountsRepositoryJournaled(journal, 64)) {
+      assertThat(AccountImage.load(file, journaled)).isEqualTo(1_001);
+      assertThat(journaled.getBalanceMinorUnits("Konto-Größe-€")).isEqualTo(1_234L);
+    }
+  }
+
+  @Test
+  public void damagedImagesAreRefusedAndLoadNothing() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("accounts.img");
+    AccountImage.write(populated(100), file, 16);
+
+    AccountsRepositoryInMemory nonEmpty = new AccountsRepositoryInMemory();
+    nonEmpty.createAccount(new Account("Id-1", new BigDecimal("1")));
+    try {
+      AccountImage.load(file, nonEmpty, 2);
+      fail("Should only load into an empty repository");
+    } catch (IllegalStateException expected) {
+      assertThat(nonEmpty.listAccounts(0L, 10).getAccounts()).hasSize(1);
+    }
+
+    try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+      raw.seek(200);
+      raw.write(raw.read() ^ 0x10);
+    }
+    AccountsRepositoryInMemory loaded = new AccountsRepositoryInMemory();
+    try {
+      AccountImage.load(file, loaded, 2);
+      fail("Should have detected the flipped bit");
+    } catch (AccountImageException expected) {
+      assertThat(expected.getMessage()).contains("Checksum mismatch");
+    }
+    assertThat(loaded.listAccounts(0L, 10).getAccounts()).isEmpty();
+
+    try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+      raw.setLength(raw.length() - 1);
+    }
+    try {
+      AccountImage.load(file, loaded, 2);
+      fail("Should have detected the truncation");
+    } catch (AccountImageException expected) {
+      assertThat(expected.getMessage()).contains("Not an account image");
+    }
+  }
+
+  @Test
+  public void bootLoadsTheImageAndWarmsUpWithoutTouchingBalances() throws Exception {
+    BootProperties properties = new BootProperties();
+    properties.setImageFile(folder.getRoot().toPath().resolve("boot.img").toString());
+    properties.setChunkSize(100);
+    properties.setLoadImage(true);
+    properties.setWarmUp(true);
+    properties.setWarmUpIterations(5_000);
+
+    AccountsBoot first = new AccountsBoot(properties, populated(500), 64, BalanceMode.LOCKED);
+    assertThat(first.getMetrics().getImageAccounts()).isZero();
+    assertThat(first.writeImage().getAccounts()).isEqualTo(501);
+
+    properties.setDecodeThreads(3);
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    AccountsBoot second = new AccountsBoot(properties, repository, 64, BalanceMode.LOCKED);
+    assertThat(second.getMetrics().getImageAccounts()).isEqualTo(501);
+    assertThat(second.getMetrics().getWarmUpIterations()).isEqualTo(5_000);
+    assertThat(repository.listAccounts(0L, 1_000).getAccounts()).hasSize(501);
+    assertThat(repository.getBalanceMinorUnits("Id-1")).isEqualTo(150L);
+    assertThat(repository.getBalanceMinorUnits("Id-499")).isEqualTo(49_900L);
+  }
+}
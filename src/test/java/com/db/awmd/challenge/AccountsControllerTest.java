@@ -1,15 +1,23 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.Transfer;
 import com.db.awmd.challenge.service.AccountsService;
+import com.jayway.jsonpath.JsonPath;
 import java.math.BigDecimal;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,7 +48,7 @@ public class AccountsControllerTest {
     this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
 
     // Reset the existing accounts before each test.
-    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.clearAccounts();
   }
 
   @Test
@@ -92,6 +100,77 @@ public class AccountsControllerTest {
       .content("{\"accountId\":\"\",\"balance\":1000}")).andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void importAccountsFromNdjson() throws Exception {
+    this.accountsService.createAccount(new Account("Id-3", new BigDecimal("5")));
+
+    this.mockMvc.perform(post("/v1/accounts/import?sizeHint=4")
+      .contentType("application/x-ndjson")
+      .content("{\"accountId\":\"Id-1\",\"balance\":100.25}\n"
+        + "{\"accountId\":\"Id-2\",\"balance\":0}\n"
+        + "\n"
+        + "{\"accountId\":\"Id-3\",\"balance\":7}\n"
+        + "{\"accountId\":\"Id-4\",\"balance\":-1}\n"
+        + "{\"accountId\":\"Id-5\",\"balance\n"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.rows").value(5))
+      .andExpect(jsonPath("$.created").value(2))
+      .andExpect(jsonPath("$.duplicates").value(1))
+      .andExpect(jsonPath("$.invalid").value(2))
+      .andExpect(jsonPath("$.errors.length()").value(2));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.25");
+    assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("5");
+    assertThat(accountsService.getAccount("Id-4")).isNull();
+  }
+
+  @Test
+  public void importAccountsFromCsv() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv")
+      .content("accountId,balance\nId-1,10.50\n\"Id-2\",3\nId-3,1.001\nId-4\n"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.rows").value(4))
+      .andExpect(jsonPath("$.created").value(2))
+      .andExpect(jsonPath("$.invalid").value(2));
+
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("3");
+  }
+
+  @Test
+  public void listAccountsInPages() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+
+    String firstPage = this.mockMvc.perform(get("/v1/accounts?limit=3"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(3))
+      .andExpect(jsonPath("$.accounts[0].accountId").value("Id-0"))
+      .andReturn().getResponse().getContentAsString();
+    Number cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+    this.mockMvc.perform(get("/v1/accounts?limit=3&cursor=" + cursor))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts.length()").value(2))
+      .andExpect(jsonPath("$.accounts[1].accountId").value("Id-4"))
+      .andExpect(jsonPath("$.accounts[1].balance").value(4))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  public void exportAccounts() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10.50")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("3")));
+
+    String export = this.mockMvc.perform(get("/v1/accounts/export"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    assertThat(export.split("\n")).containsExactlyInAnyOrder(
+      "{\"accountId\":\"Id-1\",\"balance\":10.50}",
+      "{\"accountId\":\"Id-2\",\"balance\":3.00}");
+  }
+
   @Test
   public void getAccount() throws Exception {
     String uniqueAccountId = "Id-" + System.currentTimeMillis();
@@ -102,6 +181,56 @@ public class AccountsControllerTest {
       .andExpect(
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  public void transferHistory() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-3", new BigDecimal("100")));
+    this.accountsService.instantTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("10")));
+    this.accountsService.instantTransfer(new Transfer("Id-3", "Id-2", new BigDecimal("2.50")));
+    this.accountsService.instantTransfer(new Transfer("Id-1", "Id-3", new BigDecimal("1")));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-2/transfers"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.length()").value(2))
+      .andExpect(jsonPath("$[0].fromAccountId").value("Id-2"))
+      .andExpect(jsonPath("$[0].amount").value(2.5))
+      .andExpect(jsonPath("$[1].toAccountId").value("Id-2"));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transfers?limit=1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.length()").value(1))
+      .andExpect(jsonPath("$[0].fromAccountId").value("Id-3"));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transfers?from=2000-01-01T00:00:00Z"
+      + "&to=2000-01-02T00:00:00Z"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.length()").value(0));
+  }
+
+  @Test
+  public void getUnchangedAccountIsNotModified() throws Exception {
+    String uniqueAccountId = "Id-" + System.currentTimeMillis();
+    this.accountsService.createAccount(new Account(uniqueAccountId, new BigDecimal("123.45")));
+    this.accountsService.createAccount(new Account(uniqueAccountId + "-2", BigDecimal.ZERO));
+
+    String eTag = this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(eTag).isNotEmpty();
+
+    this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId).header("If-None-Match", eTag))
+      .andExpect(status().isNotModified())
+      .andExpect(content().string(""));
+
+    this.accountsService.instantTransfer(
+      new Transfer(uniqueAccountId + "-2", uniqueAccountId, new BigDecimal("0.45")));
+
+    this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId).header("If-None-Match", eTag))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.balance").value(123.0));
+  }
   
   /*Instant Transfer Test Cases: 10 scenarios identified*/
   
@@ -209,4 +338,251 @@ public class AccountsControllerTest {
     this.mockMvc.perform(post("/v1/accounts/instantTransfer").contentType(MediaType.APPLICATION_JSON).content("{\"toAccountId\":\"db123\",\"fromAccountId\":\"db123\"}")).andExpect(status().isBadRequest());
   }
   
+  /*Case 10. Polling the outcome of a submitted transfer*/
+  
+  @Test
+  public void getTransferStatus() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"db001\",\"balance\":1000}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"db123\",\"balance\":800}")).andExpect(status().isCreated());
+
+    String response = this.mockMvc.perform(post("/v1/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":100}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.state").value("COMPLETED"))
+      .andExpect(jsonPath("$.receipt.fromBalance").value(700.0))
+      .andReturn().getResponse().getContentAsString();
+    String transferId = JsonPath.read(response, "$.transferId");
+
+    this.mockMvc.perform(get("/v1/accounts/transfers/" + transferId))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.state").value("COMPLETED"));
+
+    this.mockMvc.perform(get("/v1/accounts/transfers/unknown"))
+      .andExpect(status().isNotFound());
+  }
+  
+  /*Case 11. Completed and rejected transfers show up in the transfer metrics*/
+  
+  @Test
+  public void transferMetrics() throws Exception {
+    String before = this.mockMvc.perform(get("/v1/metrics/transfers"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    int completed = JsonPath.read(before, "$.completed");
+    int rejected = JsonPath.read(before, "$.insufficientFundsRejections");
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"db001\",\"balance\":1000}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"db123\",\"balance\":800}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":100}"))
+      .andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":5000}"))
+      .andExpect(status().isBadRequest());
+
+    // Each transfer of a batch counts on its own.
+    this.mockMvc.perform(post("/v1/accounts/batchTransfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+        + "{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":100},"
+        + "{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":5000}]}"))
+      .andExpect(status().isCreated());
+
+    this.mockMvc.perform(get("/v1/metrics/transfers"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.completed").value(completed + 2))
+      .andExpect(jsonPath("$.insufficientFundsRejections").value(rejected + 2))
+      .andExpect(jsonPath("$.transferLatency.count").isNumber())
+      .andExpect(jsonPath("$.lockWait.p99Nanos").isNumber())
+      .andExpect(jsonPath("$.hottestAccounts").isArray());
+  }
+
+  /*Case 12. A retried transfer with the same idempotency key is not applied twice*/
+
+  @Test
+  public void retriedTransferIsAppliedOnce() throws Exception {
+    this.accountsService.createAccount(new Account("db001", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+    String body = "{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":100,"
+      + "\"idempotencyKey\":\"key-" + System.nanoTime() + "\"}";
+
+    String first = this.mockMvc.perform(post("/v1/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON).content(body))
+      .andExpect(status().isCreated())
+      .andReturn().getResponse().getContentAsString();
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON).content(body))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.transferId").value(JsonPath.<String>read(first, "$.transferId")))
+      .andExpect(jsonPath("$.receipt.fromBalance").value(700));
+
+    assertThat(accountsService.getAccount("db123").getBalance()).isEqualByComparingTo("700");
+    assertThat(accountsService.getAccount("db001").getBalance()).isEqualByComparingTo("1100");
+
+    this.mockMvc.perform(get("/v1/metrics/idempotency"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.hits").value(greaterThanOrEqualTo(1)));
+  }
+
+  /*Case 13. An amount with more than two decimal places is refused, not rounded*/
+
+  @Test
+  public void instantTransferWithTooManyDecimalPlaces() throws Exception {
+    this.accountsService.createAccount(new Account("db001", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":0.005}"))
+      .andExpect(status().isBadRequest());
+
+    assertThat(accountsService.getAccount("db123").getBalance()).isEqualByComparingTo("800");
+  }
+
+  /*Case 14. A transfer involving an unknown account is refused with 404 before it is queued*/
+
+  @Test
+  public void instantTransferToUnknownAccount() throws Exception {
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+    String before = this.mockMvc.perform(get("/v1/metrics/transfers"))
+      .andReturn().getResponse().getContentAsString();
+    int unknown = JsonPath.read(before, "$.unknownAccountRejections");
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db999\",\"fromAccountId\":\"db123\",\"amount\":10}"))
+      .andExpect(status().isNotFound())
+      .andExpect(content().string("Account id db999 does not exist"));
+
+    this.mockMvc.perform(get("/v1/metrics/transfers"))
+      .andExpect(jsonPath("$.unknownAccountRejections").value(unknown + 1));
+    assertThat(accountsService.getAccount("db123").getBalance()).isEqualByComparingTo("800");
+  }
+
+  /*Case 15. A zero amount is refused*/
+
+  @Test
+  public void instantTransferWithZeroAmount() throws Exception {
+    this.accountsService.createAccount(new Account("db001", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":0}"))
+      .andExpect(status().isBadRequest());
+  }
+
+  /*Case 16. A future-dated transfer is held as a pending order until cancelled*/
+
+  @Test
+  public void scheduleAndCancelFutureTransfer() throws Exception {
+    this.accountsService.createAccount(new Account("db001", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+
+    String created = this.mockMvc.perform(post("/v1/accounts/scheduledTransfers")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":10,"
+        + "\"executeAt\":\"2100-01-01T00:00:00Z\",\"intervalSeconds\":86400,\"occurrences\":3}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.nextExecution").value("2100-01-01T00:00:00Z"))
+      .andExpect(jsonPath("$.remainingOccurrences").value(3))
+      .andReturn().getResponse().getContentAsString();
+    long orderId = ((Number) JsonPath.read(created, "$.id")).longValue();
+
+    this.mockMvc.perform(get("/v1/accounts/scheduledTransfers/" + orderId))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.fromAccountId").value("db123"));
+    this.mockMvc.perform(delete("/v1/accounts/scheduledTransfers/" + orderId))
+      .andExpect(status().isNoContent());
+    this.mockMvc.perform(get("/v1/accounts/scheduledTransfers/" + orderId))
+      .andExpect(status().isNotFound());
+
+    this.mockMvc.perform(post("/v1/accounts/scheduledTransfers")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db999\",\"fromAccountId\":\"db123\",\"amount\":10,"
+        + "\"executeAt\":\"2100-01-01T00:00:00Z\"}"))
+      .andExpect(status().isNotFound());
+    this.mockMvc.perform(post("/v1/accounts/scheduledTransfers")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":10,"
+        + "\"executeAt\":\"tomorrow\"}"))
+      .andExpect(status().isBadRequest());
+  }
+
+  /*Case 17. A transfer over the hourly limit of its source account's tier is refused with 429*/
+
+  @Test
+  public void transferOverLimitIsRefused() throws Exception {
+    this.accountsService.createAccount(new Account("lim001", new BigDecimal("300000")));
+    this.accountsService.createAccount(new Account("lim002", new BigDecimal("0")));
+    // Accounts have no limits until moved to a limited tier.
+    this.mockMvc.perform(put("/v1/accounts/lim001/limits")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"tier\":\"standard\"}"))
+      .andExpect(status().isOk());
+
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"lim002\",\"fromAccountId\":\"lim001\",\"amount\":60000}"))
+      .andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"lim002\",\"fromAccountId\":\"lim001\",\"amount\":60000}"))
+      .andExpect(status().isTooManyRequests())
+      .andExpect(header().string("Retry-After", notNullValue()));
+    assertThat(this.accountsService.getBalanceMinorUnits("lim001")).isEqualTo(24_000_000L);
+
+    // Within a batch only the transfer over the limit is rejected.
+    this.mockMvc.perform(post("/v1/accounts/batchTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+        + "{\"toAccountId\":\"lim002\",\"fromAccountId\":\"lim001\",\"amount\":60000},"
+        + "{\"toAccountId\":\"lim001\",\"fromAccountId\":\"lim002\",\"amount\":100}]}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.results[0].state").value("REJECTED"))
+      .andExpect(jsonPath("$.results[1].state").value("COMPLETED"));
+
+    this.mockMvc.perform(get("/v1/accounts/lim001/limits"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.tier").value("standard"))
+      .andExpect(jsonPath("$.windows[1].window").value("AMOUNT_PER_HOUR"))
+      .andExpect(jsonPath("$.windows[1].used").value(60000));
+    this.mockMvc.perform(put("/v1/accounts/lim001/limits")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"tier\":\"gold\"}"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/v1/accounts/lim001/limits")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"tier\":\"premium\"}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.tier").value("premium"));
+    this.mockMvc.perform(post("/v1/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"lim002\",\"fromAccountId\":\"lim001\",\"amount\":60000}"))
+      .andExpect(status().isCreated());
+    this.mockMvc.perform(get("/v1/accounts/lim999/limits"))
+      .andExpect(status().isNotFound());
+  }
+
+  /*Case 18. The account image holds every account and is reported on once written*/
+
+  @Test
+  public void accountImageIsWritten() throws Exception {
+    this.accountsService.createAccount(new Account("img001", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("img002", new BigDecimal("20")));
+
+    this.mockMvc.perform(post("/v1/accounts/image"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.accounts").value(2))
+      .andExpect(jsonPath("$.bytes").value(greaterThan(0)));
+    this.mockMvc.perform(get("/v1/metrics/boot"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.imageAccounts").value(0));
+  }
 }
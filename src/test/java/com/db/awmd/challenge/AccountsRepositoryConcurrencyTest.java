@@ -0,0 +1,195 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsJournal;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryPartitioned;
+import com.db.awmd.challenge.repository.BalanceMode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.Test;
+
+public class AccountsRepositoryConcurrencyTest {
+
+  private static final int ACCOUNTS = 64;
+
+  private static final int THREADS = 8;
+
+  private static final int TRANSFERS_PER_THREAD = 250_000;
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+
+  @Test
+  public void totalBalanceIsConstantUnderRandomConcurrentTransfers() throws Exception {
+    assertTotalBalanceIsConstant(new AccountsRepositoryInMemory(1024, BalanceMode.LOCKED));
+  }
+
+  @Test
+  public void totalBalanceIsConstantUnderRandomLockFreeTransfers() throws Exception {
+    assertTotalBalanceIsConstant(new AccountsRepositoryInMemory(1024, BalanceMode.LOCK_FREE));
+  }
+
+  @Test
+  public void totalBalanceIsConstantWithHotAccounts() throws Exception {
+    assertTotalBalanceIsConstant(hotRepository(BalanceMode.LOCKED));
+    assertTotalBalanceIsConstant(hotRepository(BalanceMode.LOCK_FREE));
+  }
+
+  @Test
+  public void totalBalanceIsConstantUnderRandomPartitionedTransfers() throws Exception {
+    try (AccountsRepositoryPartitioned repository = new AccountsRepositoryPartitioned(4)) {
+      assertTotalBalanceIsConstant(repository);
+    }
+  }
+
+  private static AccountsRepository hotRepository(BalanceMode balanceMode) {
+    return new AccountsRepositoryInMemory(1024, balanceMode, AccountsJournal.NONE,
+      new String[] {"Id-0", "Id-1"}, TransferMetrics.NONE);
+  }
+
+  private void assertTotalBalanceIsConstant(AccountsRepository repository) throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, INITIAL_BALANCE));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      workers.add(executor.submit(() -> {
+        start.await();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = random.nextInt(ACCOUNTS - 1);
+          if (to >= from) {
+            to++;
+          }
+          BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 10_000), 2);
+          try {
+            repository.instantTransfer(new Transfer("Id-" + to, "Id-" + from, amount));
+          } catch (InsufficientFundsException ignored) {
+            // Rejected transfers must not move any money, which the final check covers.
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      BigDecimal balance = repository.getAccount("Id-" + i).getBalance();
+      assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS)));
+  }
+
+  @Test
+  public void opposingTransfersDoNotDeadlock() throws Exception {
+    AccountsRepository repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Id-A", INITIAL_BALANCE));
+    repository.createAccount(new Account("Id-B", INITIAL_BALANCE));
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<?> aToB = executor.submit(() -> {
+      for (int i = 0; i < 100_000; i++) {
+        repository.instantTransfer(new Transfer("Id-B", "Id-A", BigDecimal.ONE));
+      }
+    });
+    Future<?> bToA = executor.submit(() -> {
+      for (int i = 0; i < 100_000; i++) {
+        repository.instantTransfer(new Transfer("Id-A", "Id-B", BigDecimal.ONE));
+      }
+    });
+    aToB.get();
+    bToA.get();
+    executor.shutdown();
+
+    assertThat(repository.getAccount("Id-A").getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+    assertThat(repository.getAccount("Id-B").getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+  }
+
+  @Test
+  public void exportSeesOnePointInTimeWhileTransfersRun() throws Exception {
+    assertExportSeesOnePointInTime(new AccountsRepositoryInMemory(1024, BalanceMode.LOCKED));
+  }
+
+  @Test
+  public void exportWithHotAccountsSeesOnePointInTimeWhileTransfersRun() throws Exception {
+    assertExportSeesOnePointInTime(hotRepository(BalanceMode.LOCKED));
+  }
+
+  @Test
+  public void partitionedExportSeesOnePointInTimeWhileTransfersRun() throws Exception {
+    try (AccountsRepositoryPartitioned repository = new AccountsRepositoryPartitioned(4)) {
+      assertExportSeesOnePointInTime(repository);
+    }
+  }
+
+  private void assertExportSeesOnePointInTime(AccountsRepository repository) throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      repository.createAccount(new Account("Id-" + i, INITIAL_BALANCE));
+    }
+    long expectedTotal = Account.toMinorUnits(INITIAL_BALANCE) * ACCOUNTS;
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      workers.add(executor.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          try {
+            repository.instantTransfer(
+              new Transfer("Id-" + to, "Id-" + from, BigDecimal.valueOf(random.nextInt(1, 1000))));
+          } catch (InsufficientFundsException ignored) {
+            // Nothing moved.
+          }
+        }
+      }));
+    }
+
+    try {
+      for (int round = 0; round < 200; round++) {
+        LongAdder total = new LongAdder();
+        Set<String> exported = new HashSet<>();
+        repository.exportAccounts((accountId, balance) -> {
+          exported.add(accountId);
+          total.add(balance);
+        });
+        assertThat(exported).hasSize(ACCOUNTS);
+        assertThat(total.sum()).isEqualTo(expectedTotal);
+      }
+    } finally {
+      running.set(false);
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+import com.db.awmd.challenge.repository.BalanceMode;
+import com.db.awmd.challenge.repository.FileJournal;
+import com.db.awmd.challenge.repository.JournalProperties;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountsRepositoryJournaledTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JournalProperties properties;
+
+  @Before
+  public void setUp() {
+    properties = new JournalProperties();
+    properties.setDirectory(folder.getRoot().getPath());
+    properties.setGroupCommitMicros(200);
+    properties.setSnapshotIntervalSeconds(0);
+  }
+
+  @Test
+  public void balancesSurviveRestart() throws Exception {
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      repository.createAccount(new Account("Id-2", new BigDecimal("50")));
+      repository.instantTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("30.25")));
+      repository.batchTransfer(Arrays.asList(new Transfer("Id-1", "Id-2", new BigDecimal("10")),
+        new Transfer("Id-2", "Id-1", new BigDecimal("1"))), BatchMode.ALL_OR_NOTHING);
+    }
+
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("78.75");
+      assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("71.25");
+    }
+  }
+
+  @Test
+  public void restartReplaysOnlyJournalAfterSnapshot() throws Exception {
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      repository.createAccount(new Account("Id-2", new BigDecimal("0")));
+      repository.instantTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("40")));
+      repository.snapshot();
+      repository.instantTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("5")));
+    }
+
+    Path directory = folder.getRoot().toPath();
+    assertThat(FileJournal.listSegments(directory)).hasSize(1);
+
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("55");
+      assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("45");
+    }
+  }
+
+  @Test
+  public void tornTailIsIgnored() throws Exception {
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      repository.createAccount(new Account("Id-2", new BigDecimal("0")));
+      repository.instantTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("40")));
+    }
+
+    Path directory = folder.getRoot().toPath();
+    long[] segments = FileJournal.listSegments(directory);
+    try (RandomAccessFile segment = new RandomAccessFile(
+      FileJournal.segmentPath(directory, segments[segments.length - 1]).toFile(), "rw")) {
+      segment.setLength(segment.length() - 3);
+    }
+
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+      assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+    }
+  }
+
+  @Test
+  public void corruptRecordLengthIsTreatedAsTorn() throws Exception {
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    }
+
+    Path directory = folder.getRoot().toPath();
+    long[] segments = FileJournal.listSegments(directory);
+    try (RandomAccessFile segment = new RandomAccessFile(
+      FileJournal.segmentPath(directory, segments[segments.length - 1]).toFile(), "rw")) {
+      segment.seek(segment.length());
+      segment.writeInt(Integer.MAX_VALUE);
+      segment.writeInt(0);
+    }
+
+    try (AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, 64)) {
+      assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    }
+  }
+
+  @Test
+  public void failedJournalWriteRefusesEveryLaterChange() throws Exception {
+    Path full = Paths.get("/dev/full");
+    assumeTrue(Files.exists(full));
+    Path directory = folder.getRoot().toPath();
+    FileJournal journal = new FileJournal(directory, 1, 0);
+    try {
+      AccountsRepositoryInMemory repository =
+        new AccountsRepositoryInMemory(64, BalanceMode.LOCKED, journal, TransferMetrics.NONE);
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      repository.createAccount(new Account("Id-2", new BigDecimal("50")));
+
+      // Every write to the next segment fails with "no space left on device".
+      Files.createSymbolicLink(FileJournal.segmentPath(directory, 2), full);
+      journal.rotate(2);
+      assertThatThrownBy(() -> repository.instantTransfer(
+        new Transfer("Id-2", "Id-1", new BigDecimal("1")))).isInstanceOf(JournalException.class);
+      long payer = repository.getBalanceMinorUnits("Id-1");
+      long payee = repository.getBalanceMinorUnits("Id-2");
+
+      assertThatThrownBy(() -> repository.instantTransfer(
+        new Transfer("Id-2", "Id-1", new BigDecimal("1")))).isInstanceOf(JournalException.class);
+      assertThatThrownBy(() -> repository.batchTransfer(
+        Arrays.asList(new Transfer("Id-2", "Id-1", new BigDecimal("1"))), BatchMode.BEST_EFFORT))
+        .isInstanceOf(JournalException.class);
+      assertThatThrownBy(() -> repository.createAccount(
+        new Account("Id-3", new BigDecimal("1")))).isInstanceOf(JournalException.class);
+      assertThatThrownBy(repository::clearAccounts).isInstanceOf(JournalException.class);
+
+      assertThat(repository.getBalanceMinorUnits("Id-1")).isEqualTo(payer);
+      assertThat(repository.getBalanceMinorUnits("Id-2")).isEqualTo(payee);
+      assertThat(repository.getAccount("Id-3")).isNull();
+    } finally {
+      journal.close();
+    }
+  }
+}
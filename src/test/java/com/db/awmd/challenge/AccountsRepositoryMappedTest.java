@@ -0,0 +1,104 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountPage;
+import com.db.awmd.challenge.domain.AccountView;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountsRepositoryMappedTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void accountsSurviveReopening() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("accounts.map");
+    try (AccountsRepositoryMapped repository = new AccountsRepositoryMapped(file, 1024, 64)) {
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      repository.createAccount(new Account("Id-2", new BigDecimal("50")));
+      repository.instantTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("30.25")));
+      repository.batchTransfer(Arrays.asList(new Transfer("Id-1", "Id-2", new BigDecimal("10"))),
+        BatchMode.ALL_OR_NOTHING);
+    }
+
+    try (AccountsRepositoryMapped repository = new AccountsRepositoryMapped(file, 1024, 64)) {
+      assertThat(repository.size()).isEqualTo(2);
+      assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("79.75");
+      assertThat(repository.getBalanceMinorUnits("Id-2")).isEqualTo(7025);
+      assertThat(repository.getAccount("Id-3")).isNull();
+    }
+  }
+
+  @Test
+  public void collidingAccountsAreKeptApart() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("accounts.map");
+    try (AccountsRepositoryMapped repository = new AccountsRepositoryMapped(file, 16, 4)) {
+      for (int i = 0; i < 12; i++) {
+        repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+      }
+      for (int i = 0; i < 12; i++) {
+        assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(
+          BigDecimal.valueOf(i));
+      }
+
+      try {
+        repository.createAccount(new Account("Id-5", BigDecimal.ONE));
+        fail("Should have failed when adding duplicate account");
+      } catch (DuplicateAccountIdException expected) {
+        assertThat(expected.getMessage()).isEqualTo("Account id Id-5 already exists!");
+      }
+
+      try {
+        repository.createAccount(new Account("Id-12", BigDecimal.ONE));
+        fail("Should have failed when the store is full");
+      } catch (IllegalStateException expected) {
+        assertThat(repository.size()).isEqualTo(12);
+      }
+
+      repository.clearAccounts();
+      assertThat(repository.getAccount("Id-1")).isNull();
+    }
+  }
+
+  @Test
+  public void pagesAndExportCoverEveryAccount() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("accounts.map");
+    try (AccountsRepositoryMapped repository = new AccountsRepositoryMapped(file, 64, 8)) {
+      for (int i = 0; i < 20; i++) {
+        repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+      }
+
+      List<String> listed = new ArrayList<>();
+      long cursor = 0;
+      do {
+        AccountPage page = repository.listAccounts(cursor, 7);
+        assertThat(page.getAccounts().size()).isLessThanOrEqualTo(7);
+        for (AccountView view : page.getAccounts()) {
+          listed.add(view.getAccountId());
+        }
+        cursor = page.getNextCursor() == null ? -1 : page.getNextCursor();
+      } while (cursor >= 0);
+      assertThat(listed).hasSize(20).doesNotHaveDuplicates();
+
+      Map<String, Long> exported = new HashMap<>();
+      repository.exportAccounts(exported::put);
+      assertThat(exported).hasSize(20).containsEntry("Id-7", 700L);
+    }
+  }
+}
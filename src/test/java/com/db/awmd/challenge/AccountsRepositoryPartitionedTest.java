@@ -0,0 +1,114 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.repository.AccountsRepositoryPartitioned;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AccountsRepositoryPartitionedTest {
+
+  @Test
+  public void transfersWithinAndAcrossPartitions() throws Exception {
+    // With one partition every transfer stays within it; with several most cross over.
+    for (int partitions : new int[] {1, 4}) {
+      try (AccountsRepositoryPartitioned repository = new AccountsRepositoryPartitioned(partitions)) {
+        for (int i = 0; i < 16; i++) {
+          repository.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+        }
+        for (int i = 0; i < 16; i++) {
+          TransferReceipt receipt = repository.instantTransfer(
+            new Transfer("Id-" + (i + 1) % 16, "Id-" + i, new BigDecimal("10.50")));
+          assertThat(receipt.getFromBalance().getMinorUnits()).isEqualTo(i == 0 ? 8950 : 10_000);
+        }
+        for (int i = 0; i < 16; i++) {
+          assertThat(repository.getBalanceMinorUnits("Id-" + i)).isEqualTo(10_000);
+        }
+
+        try {
+          repository.instantTransfer(new Transfer("Id-1", "Id-0", new BigDecimal("100.01")));
+          fail("Should have failed when transferring more than the balance");
+        } catch (InsufficientFundsException expected) {
+          assertThat(repository.getBalanceMinorUnits("Id-0")).isEqualTo(10_000);
+        }
+        try {
+          repository.createAccount(new Account("Id-3", BigDecimal.ONE));
+          fail("Should have failed when adding duplicate account");
+        } catch (DuplicateAccountIdException expected) {
+          assertThat(repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("100");
+        }
+      }
+    }
+  }
+
+  @Test
+  public void batchAndExportStopOnlyForTheirDuration() throws Exception {
+    try (AccountsRepositoryPartitioned repository = new AccountsRepositoryPartitioned(4)) {
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      repository.createAccount(new Account("Id-2", new BigDecimal("0")));
+      repository.createAccount(new Account("Id-3", new BigDecimal("0")));
+
+      BatchTransferResult result = repository.batchTransfer(Arrays.asList(
+        new Transfer("Id-2", "Id-1", new BigDecimal("60")),
+        new Transfer("Id-3", "Id-1", new BigDecimal("60"))), BatchMode.BEST_EFFORT);
+      assertThat(result.getCompleted()).isEqualTo(1);
+      assertThat(result.getRejected()).isEqualTo(1);
+
+      repository.instantTransfer(new Transfer("Id-3", "Id-2", new BigDecimal("25")));
+      Map<String, Long> exported = new HashMap<>();
+      repository.exportAccounts(exported::put);
+      assertThat(exported).containsEntry("Id-1", 4000L).containsEntry("Id-2", 3500L)
+        .containsEntry("Id-3", 2500L);
+
+      repository.clearAccounts();
+      assertThat(repository.getAccount("Id-1")).isNull();
+      assertThat(repository.listAccounts(0, 10).getAccounts()).isEmpty();
+    }
+  }
+
+  @Test
+  public void callsRacingWithCloseAreFailedRatherThanLeftWaiting() throws Exception {
+    for (int round = 0; round < 20; round++) {
+      AccountsRepositoryPartitioned repository = new AccountsRepositoryPartitioned(2);
+      for (int i = 0; i < 8; i++) {
+        repository.createAccount(new Account("Id-" + i, new BigDecimal("1000000")));
+      }
+      List<Thread> callers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        int offset = t;
+        Thread caller = new Thread(() -> {
+          try {
+            for (int i = 0; ; i++) {
+              repository.instantTransfer(new Transfer("Id-" + (i + offset + 1) % 8,
+                "Id-" + (i + offset) % 8, BigDecimal.ONE));
+            }
+          } catch (IllegalStateException closed) {
+            // Expected once the repository is closed.
+          }
+        });
+        callers.add(caller);
+        caller.start();
+      }
+      Thread.sleep(5);
+      repository.close();
+      for (Thread caller : callers) {
+        caller.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(caller.isAlive()).as("caller still waiting after close").isFalse();
+      }
+    }
+  }
+}
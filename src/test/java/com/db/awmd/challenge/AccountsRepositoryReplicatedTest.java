@@ -0,0 +1,147 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.exception.NotLeaderException;
+import com.db.awmd.challenge.exception.ReplicationException;
+import com.db.awmd.challenge.repository.AccountsRepositoryReplicated;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.Test;
+
+public class AccountsRepositoryReplicatedTest {
+
+  private static final int ACCOUNTS = 20;
+
+  @Test
+  public void followersServeWhatTheLeaderCommitted() throws Exception {
+    try (LocalCluster inProcess = LocalCluster.inProcess(3, properties -> { });
+      LocalCluster loopback = LocalCluster.overLoopback(3, properties -> { })) {
+      for (LocalCluster cluster : Arrays.asList(inProcess, loopback)) {
+        AccountsRepositoryReplicated leader = cluster.leader();
+        for (int i = 0; i < ACCOUNTS; i++) {
+          leader.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+          leader.instantTransfer(new Transfer("Id-" + (i + 1) % ACCOUNTS, "Id-" + i,
+            new BigDecimal("10.50")));
+        }
+        leader.batchTransfer(Arrays.asList(new Transfer("Id-1", "Id-0", new BigDecimal("5")),
+          new Transfer("Id-0", "Id-2", new BigDecimal("500"))), BatchMode.BEST_EFFORT);
+        assertThat(leader.getCommittedPosition()).isEqualTo(leader.getLogPosition());
+
+        cluster.awaitReplication(5_000);
+        for (AccountsRepositoryReplicated follower : cluster.followers()) {
+          assertThat(follower.getBalanceMinorUnits("Id-0")).isEqualTo(9_500);
+          assertThat(follower.getBalanceMinorUnits("Id-1")).isEqualTo(10_500);
+          assertThat(follower.getBalanceMinorUnits("Id-5")).isEqualTo(10_000);
+          assertThat(follower.listAccounts(0, 100).getAccounts()).hasSize(ACCOUNTS);
+          try {
+            follower.instantTransfer(new Transfer("Id-1", "Id-0", BigDecimal.ONE));
+            fail("Should have refused a write on a follower");
+          } catch (NotLeaderException expected) {
+            assertThat(expected.getMessage()).contains("node-1");
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void committedTransfersSurviveFailoverAndRestartedNodesCatchUp() throws Exception {
+    // A small retained log makes the restarted node catch up from a snapshot.
+    try (LocalCluster cluster = LocalCluster.inProcess(3,
+      properties -> properties.setRetainedBytes(4_096))) {
+      long[] expected = new long[ACCOUNTS];
+      for (int i = 0; i < ACCOUNTS; i++) {
+        cluster.leader().createAccount(new Account("Id-" + i, new BigDecimal("100")));
+        expected[i] = 10_000;
+      }
+      transferConcurrently(cluster.leader(), expected, 4, 500);
+
+      AccountsRepositoryReplicated promoted = cluster.failover();
+      assertThat(promoted.isLeader()).isTrue();
+      assertThat(promoted.getEpoch()).isEqualTo(2);
+      assertBalances(promoted, expected);
+
+      transferConcurrently(promoted, expected, 4, 500);
+      cluster.awaitReplication(5_000);
+      for (AccountsRepositoryReplicated follower : cluster.followers()) {
+        assertThat(follower.getLeaderId()).isEqualTo(promoted.getNodeId());
+        assertBalances(follower, expected);
+      }
+
+      AccountsRepositoryReplicated restarted = cluster.restart("node-1");
+      cluster.awaitReplication(5_000);
+      assertThat(restarted.isLeader()).isFalse();
+      assertBalances(restarted, expected);
+    }
+  }
+
+  @Test
+  public void changesFailWithoutAQuorum() throws Exception {
+    try (LocalCluster cluster = LocalCluster.inProcess(3,
+      properties -> properties.setCommitTimeoutMillis(200))) {
+      AccountsRepositoryReplicated leader = cluster.leader();
+      leader.createAccount(new Account("Id-0", new BigDecimal("100")));
+      cluster.stop("node-2");
+      leader.createAccount(new Account("Id-1", new BigDecimal("100")));
+
+      cluster.stop("node-3");
+      try {
+        leader.createAccount(new Account("Id-2", new BigDecimal("100")));
+        fail("Should have failed without a quorum");
+      } catch (ReplicationException expected) {
+        assertThat(leader.getCommittedPosition()).isLessThan(leader.getLogPosition());
+      }
+    }
+  }
+
+  /*
+   * Every transfer the leader reported as done is added to expected.
+   */
+  private static void transferConcurrently(AccountsRepositoryReplicated leader, long[] expected,
+    int threads, int transfersPerThread) throws InterruptedException {
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int n = 0; n < transfersPerThread; n++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          long amount = random.nextInt(1, 1_000);
+          try {
+            leader.instantTransfer(new Transfer("Id-" + to, "Id-" + from,
+              BigDecimal.valueOf(amount, 2)));
+            synchronized (expected) {
+              expected[from] -= amount;
+              expected[to] += amount;
+            }
+          } catch (InsufficientFundsException ignored) {
+            // Not applied.
+          }
+        }
+      });
+      workers.add(worker);
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+  }
+
+  private static void assertBalances(AccountsRepositoryReplicated node, long[] expected) {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      assertThat(node.getBalanceMinorUnits("Id-" + i)).as(node.getNodeId() + " Id-" + i)
+        .isEqualTo(expected[i]);
+    }
+  }
+}
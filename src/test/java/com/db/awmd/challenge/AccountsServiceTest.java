@@ -4,9 +4,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
 import com.db.awmd.challenge.service.AccountsService;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,4 +51,96 @@ public class AccountsServiceTest {
     }
 
   }
+
+  @Test
+  public void instantTransfer_failsFastOnUnknownAccount() throws Exception {
+    String known = "Id-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(known, new BigDecimal("100")));
+
+    try {
+      this.accountsService.instantTransfer(new Transfer(known + "-missing", known, BigDecimal.TEN));
+      fail("Should have failed when transferring to an unknown account");
+    } catch (AccountNotFoundException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id " + known + "-missing does not exist");
+    }
+    try {
+      this.accountsService.instantTransfer(new Transfer(known + "-missing", known, BigDecimal.ZERO));
+      fail("Should have failed on a zero amount");
+    } catch (InvalidAmountException ex) {
+      assertThat(this.accountsService.getAccount(known).getBalance()).isEqualByComparingTo("100");
+    }
+  }
+
+  @Test
+  public void clearAccounts_forgetsTransferHistory() throws Exception {
+    String a = "Id-" + System.nanoTime();
+    String b = "Id-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(a, new BigDecimal("10")));
+    this.accountsService.createAccount(new Account(b, new BigDecimal("0")));
+    this.accountsService.instantTransfer(new Transfer(b, a, BigDecimal.ONE));
+    assertThat(this.accountsService.getTransferHistory(a, 10)).hasSize(1);
+
+    this.accountsService.clearAccounts();
+    this.accountsService.createAccount(new Account(a, new BigDecimal("10")));
+
+    assertThat(this.accountsService.getTransferHistory(a, 10)).isEmpty();
+  }
+
+  @Test
+  public void batchTransfer_netsOpposingFlows() throws Exception {
+    String a = "Id-" + System.nanoTime();
+    String b = "Id-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(a, new BigDecimal("10")));
+    this.accountsService.createAccount(new Account(b, new BigDecimal("0")));
+
+    // Each transfer on its own would overdraw, but the batch nets out to a 5.00 move from a to b.
+    BatchTransferResult result = this.accountsService.batchTransfer(new BatchTransfer(
+      BatchMode.ALL_OR_NOTHING, Arrays.asList(
+        new Transfer(b, a, new BigDecimal("100")),
+        new Transfer(a, b, new BigDecimal("95")))));
+
+    assertThat(result.getCompleted()).isEqualTo(2);
+    assertThat(this.accountsService.getAccount(a).getBalance()).isEqualByComparingTo("5");
+    assertThat(this.accountsService.getAccount(b).getBalance()).isEqualByComparingTo("5");
+    assertThat(result.getBalances().get(b).toBigDecimal()).isEqualByComparingTo("5");
+  }
+
+  @Test
+  public void batchTransfer_allOrNothingRejectsWholeBatch() throws Exception {
+    String a = "Id-" + System.nanoTime();
+    String b = "Id-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(a, new BigDecimal("10")));
+    this.accountsService.createAccount(new Account(b, new BigDecimal("0")));
+
+    BatchTransferResult result = this.accountsService.batchTransfer(new BatchTransfer(
+      BatchMode.ALL_OR_NOTHING, Arrays.asList(
+        new Transfer(b, a, new BigDecimal("5")),
+        new Transfer(b, a, new BigDecimal("6")))));
+
+    assertThat(result.getCompleted()).isZero();
+    assertThat(result.getResults()).extracting("state")
+      .containsOnly(TransferState.REJECTED);
+    assertThat(this.accountsService.getAccount(a).getBalance()).isEqualByComparingTo("10");
+    assertThat(this.accountsService.getAccount(b).getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  public void batchTransfer_bestEffortRejectsIndividually() throws Exception {
+    String a = "Id-" + System.nanoTime();
+    String b = "Id-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(a, new BigDecimal("10")));
+    this.accountsService.createAccount(new Account(b, new BigDecimal("0")));
+
+    BatchTransferResult result = this.accountsService.batchTransfer(new BatchTransfer(
+      BatchMode.BEST_EFFORT, Arrays.asList(
+        new Transfer(b, a, new BigDecimal("5")),
+        new Transfer(b, a, new BigDecimal("6")),
+        new Transfer(b, "unknown", new BigDecimal("1")),
+        new Transfer(b, a, new BigDecimal("5")))));
+
+    assertThat(result.getResults()).extracting("state").containsExactly(TransferState.COMPLETED,
+      TransferState.REJECTED, TransferState.REJECTED, TransferState.COMPLETED);
+    assertThat(this.accountsService.getAccount(a).getBalance()).isEqualByComparingTo("0");
+    assertThat(this.accountsService.getAccount(b).getBalance()).isEqualByComparingTo("10");
+  }
 }
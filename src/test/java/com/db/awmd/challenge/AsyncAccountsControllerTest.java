@@ -0,0 +1,113 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+import java.math.BigDecimal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class AsyncAccountsControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    // Reset the existing accounts before each test.
+    accountsService.clearAccounts();
+  }
+
+  @Test
+  public void createAccountAndTransfer() throws Exception {
+    MvcResult created = this.mockMvc.perform(post("/v1/async/accounts")
+      .contentType(MediaType.APPLICATION_JSON).content("{\"accountId\":\"db001\",\"balance\":1000}"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(created)).andExpect(status().isCreated());
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+
+    MvcResult transferred = this.mockMvc.perform(post("/v1/async/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db001\",\"fromAccountId\":\"db123\",\"amount\":100.50}"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(transferred))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.state").value("COMPLETED"))
+      .andExpect(jsonPath("$.receipt.fromBalance").value(699.5));
+
+    this.mockMvc.perform(get("/v1/async/accounts/db001"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"db001\",\"balance\":1100.50}"));
+    this.mockMvc.perform(get("/v1/async/accounts/db999")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void transferToUnknownAccountIsRefused() throws Exception {
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+
+    MvcResult refused = this.mockMvc.perform(post("/v1/async/accounts/instantTransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"toAccountId\":\"db999\",\"fromAccountId\":\"db123\",\"amount\":10}"))
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(refused)).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void balanceChangesAreStreamed() throws Exception {
+    this.accountsService.createAccount(new Account("db001", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("db123", new BigDecimal("800")));
+
+    MvcResult stream = this.mockMvc.perform(get("/v1/async/accounts/db001/balances"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.accountsService.instantTransfer(new Transfer("db001", "db123", new BigDecimal("25")));
+
+    String events = awaitContent(stream, "1025.00");
+    assertThat(events).startsWith("event:balance\ndata:{\"accountId\":\"db001\"");
+    assertThat(events).contains("\"balance\":1025.00}");
+
+    this.mockMvc.perform(get("/v1/async/accounts/db999/balances"))
+      .andExpect(status().isNotFound());
+  }
+
+  private static String awaitContent(MvcResult result, String expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 5_000;
+    String content = result.getResponse().getContentAsString();
+    while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      content = result.getResponse().getContentAsString();
+    }
+    return content;
+  }
+}
@@ -0,0 +1,152 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.audit.AuditEventType;
+import com.db.awmd.challenge.audit.AuditLog;
+import com.db.awmd.challenge.audit.AuditProperties;
+import com.db.awmd.challenge.audit.AuditSink;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferReceipt;
+import com.db.awmd.challenge.ledger.LedgerProperties;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.limits.LimitsProperties;
+import com.db.awmd.challenge.limits.TransferLimits;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceStream;
+import com.db.awmd.challenge.service.BalanceStreamProperties;
+import com.db.awmd.challenge.service.EmailNotificationService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationProperties;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writesEveryEventFromConcurrentPublishers() throws Exception {
+    File file = new File(folder.getRoot(), "audit.log");
+    AuditLog auditLog = new AuditLog(properties(file, 1024));
+
+    auditLog.accountCreated(new Account("Id-1", new BigDecimal("100")));
+    auditLog.rejected(AuditEventType.SAME_ACCOUNT, new Transfer("Id-1", "Id-1", BigDecimal.ONE));
+
+    TransferReceipt receipt = new TransferReceipt("Id-1", "Id-2", 100, 9_900, 100);
+    List<Thread> publishers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread publisher = new Thread(() -> {
+        for (int i = 0; i < 200; i++) {
+          auditLog.transfer(receipt);
+        }
+      });
+      publishers.add(publisher);
+      publisher.start();
+    }
+    for (Thread publisher : publishers) {
+      publisher.join();
+    }
+    auditLog.shutdown();
+
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(2 + 800 - (int) auditLog.getDropped());
+    assertThat(lines.get(0)).endsWith("ACCOUNT_CREATED account=Id-1 balance=100.00");
+    assertThat(lines.get(1)).endsWith("SAME_ACCOUNT from=Id-1 to=Id-1 amount=1.00");
+    assertThat(lines.get(2))
+      .endsWith("TRANSFER from=Id-1 to=Id-2 amount=1.00 fromBalance=99.00 toBalance=1.00");
+  }
+
+  @Test
+  public void missingBalanceIsToldApartFromNoBalance() throws Exception {
+    File file = new File(folder.getRoot(), "audit.log");
+    AuditLog auditLog = new AuditLog(properties(file, 16));
+
+    auditLog.accountCreated(new Account("Id-1", (BigDecimal) null));
+    auditLog.duplicateAccount(new Account("Id-1", new BigDecimal("100")));
+    auditLog.accountCreated(new Account("Id-2", BigDecimal.ZERO));
+    auditLog.shutdown();
+
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    assertThat(lines.get(0)).endsWith("ACCOUNT_CREATED account=Id-1 balance=null");
+    assertThat(lines.get(1)).endsWith("DUPLICATE_ACCOUNT account=Id-1");
+    assertThat(lines.get(2)).endsWith("ACCOUNT_CREATED account=Id-2 balance=0.00");
+  }
+
+  @Test
+  public void disabledAuditLogWritesNothing() throws Exception {
+    File file = new File(folder.getRoot(), "audit.log");
+    AuditProperties properties = properties(file, 16);
+    properties.setEnabled(false);
+    AuditLog auditLog = new AuditLog(properties);
+
+    auditLog.accountCreated(new Account("Id-1", new BigDecimal("100")));
+    auditLog.shutdown();
+
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void everyTransferOfABatchIsAudited() throws Exception {
+    File file = new File(folder.getRoot(), "audit.log");
+    AuditLog auditLog = new AuditLog(properties(file, 64));
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Id-1", new BigDecimal("10")));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    NotificationDispatcher notificationDispatcher =
+      new NotificationDispatcher(new EmailNotificationService(), new NotificationProperties());
+    BalanceStream balanceStream = new BalanceStream(repository, new BalanceStreamProperties());
+    LedgerProperties ledger = new LedgerProperties();
+    ledger.setMaxEntries(1024);
+    LimitsProperties limits = new LimitsProperties();
+    limits.setEnabled(false);
+    AccountsService accountsService = new AccountsService(repository, notificationDispatcher,
+      TransferMetrics.NONE, auditLog, new TransferLedger(ledger), balanceStream,
+      new TransferLimits(limits));
+    try {
+      accountsService.batchTransfer(new BatchTransfer(BatchMode.BEST_EFFORT, Arrays.asList(
+        new Transfer("Id-2", "Id-1", new BigDecimal("4")),
+        new Transfer("Id-2", "Id-1", new BigDecimal("7")),
+        new Transfer("Id-1", "Id-1", BigDecimal.ONE),
+        new Transfer("Id-3", "Id-1", BigDecimal.ONE))));
+      accountsService.batchTransfer(new BatchTransfer(BatchMode.ALL_OR_NOTHING, Arrays.asList(
+        new Transfer("Id-2", "Id-1", BigDecimal.ONE),
+        new Transfer("Id-2", "Id-1", BigDecimal.ZERO))));
+    } finally {
+      balanceStream.shutdown();
+      notificationDispatcher.shutdown();
+    }
+    auditLog.shutdown();
+
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(6);
+    assertThat(lines.get(0)).endsWith("TRANSFER from=Id-1 to=Id-2 amount=4.00");
+    assertThat(lines.get(1)).endsWith("INSUFFICIENT_FUNDS from=Id-1 to=Id-2 amount=7.00");
+    assertThat(lines.get(2)).endsWith("SAME_ACCOUNT from=Id-1 to=Id-1 amount=1.00");
+    assertThat(lines.get(3)).endsWith("UNKNOWN_ACCOUNT from=Id-1 to=Id-3 amount=1.00");
+    assertThat(lines.get(4)).endsWith("BATCH_REJECTED from=Id-1 to=Id-2 amount=1.00");
+    assertThat(lines.get(5)).endsWith("INVALID_AMOUNT from=Id-1 to=Id-2 amount=0.00");
+  }
+
+  private static AuditProperties properties(File file, int capacity) {
+    AuditProperties properties = new AuditProperties();
+    properties.setSink(AuditSink.FILE);
+    properties.setFile(file.getPath());
+    properties.setCapacity(capacity);
+    return properties;
+  }
+}
@@ -0,0 +1,140 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.InsufficientFundsException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsJournal;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+import com.db.awmd.challenge.repository.BalanceMode;
+import com.db.awmd.challenge.repository.JournalProperties;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HotAccountsTest {
+
+  private static final String[] HOT = {"fees"};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void debitsSeeEveryCreditMadeBeforeThem() throws Exception {
+    for (BalanceMode mode : BalanceMode.values()) {
+      AccountsRepositoryInMemory repository =
+        new AccountsRepositoryInMemory(64, mode, AccountsJournal.NONE, HOT, TransferMetrics.NONE);
+      repository.createAccount(new Account("fees", BigDecimal.ZERO));
+      repository.createAccount(new Account("sink", BigDecimal.ZERO));
+      for (int i = 0; i < 4; i++) {
+        repository.createAccount(new Account("payer-" + i, new BigDecimal("1000")));
+      }
+
+      AtomicBoolean paying = new AtomicBoolean(true);
+      List<Thread> payers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        String payer = "payer-" + i;
+        Thread thread = new Thread(() -> {
+          for (int n = 0; n < 10_000; n++) {
+            repository.instantTransfer(new Transfer("fees", payer, new BigDecimal("0.10")));
+          }
+        });
+        payers.add(thread);
+        thread.start();
+      }
+      Thread sweeper = new Thread(() -> {
+        while (paying.get()) {
+          try {
+            repository.instantTransfer(new Transfer("sink", "fees", new BigDecimal("7.00")));
+          } catch (InsufficientFundsException expected) {
+            // Not enough collected yet.
+          }
+        }
+      });
+      sweeper.start();
+      for (Thread payer : payers) {
+        payer.join();
+      }
+      paying.set(false);
+      sweeper.join();
+
+      long fees = repository.getBalanceMinorUnits("fees");
+      assertThat(fees).isNotNegative();
+      assertThat(fees + repository.getBalanceMinorUnits("sink")).isEqualTo(400_000L);
+      assertThat(repository.getAccount("fees").getBalance())
+        .isEqualByComparingTo(BigDecimal.valueOf(fees, 2));
+
+      // The exact balance can be taken out, and not a cent more.
+      repository.createAccount(new Account("payer-4", new BigDecimal("1")));
+      repository.instantTransfer(new Transfer("fees", "payer-4", new BigDecimal("1")));
+      repository.instantTransfer(new Transfer("sink", "fees", BigDecimal.valueOf(fees + 100, 2)));
+      try {
+        repository.instantTransfer(new Transfer("sink", "fees", new BigDecimal("0.01")));
+        fail("Should have refused to overdraw the hot account");
+      } catch (InsufficientFundsException expected) {
+        assertThat(repository.getBalanceMinorUnits("fees")).isZero();
+      }
+    }
+  }
+
+  @Test
+  public void hotAccountsTakePartInBatchesAndSurviveRestart() throws Exception {
+    JournalProperties properties = new JournalProperties();
+    properties.setDirectory(folder.getRoot().getPath());
+    properties.setSnapshotIntervalSeconds(0);
+    try (AccountsRepositoryJournaled repository =
+      new AccountsRepositoryJournaled(properties, 64, HOT, TransferMetrics.NONE)) {
+      repository.createAccount(new Account("fees", BigDecimal.ZERO));
+      repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+      for (int i = 0; i < 10; i++) {
+        repository.instantTransfer(new Transfer("fees", "Id-1", new BigDecimal("2.50")));
+      }
+      repository.batchTransfer(Arrays.asList(new Transfer("Id-1", "fees", new BigDecimal("25")),
+        new Transfer("fees", "Id-1", new BigDecimal("1"))), BatchMode.ALL_OR_NOTHING);
+      assertBalances(repository, 99L * 100, 1L * 100);
+      repository.instantTransfer(new Transfer("fees", "Id-1", new BigDecimal("3")));
+    }
+
+    try (AccountsRepositoryJournaled repository =
+      new AccountsRepositoryJournaled(properties, 64, HOT, TransferMetrics.NONE)) {
+      assertBalances(repository, 96L * 100, 4L * 100);
+      repository.snapshot();
+      repository.instantTransfer(new Transfer("fees", "Id-1", new BigDecimal("1")));
+    }
+
+    try (AccountsRepositoryJournaled repository =
+      new AccountsRepositoryJournaled(properties, 64, HOT, TransferMetrics.NONE)) {
+      assertBalances(repository, 95L * 100, 5L * 100);
+    }
+  }
+
+  @Test
+  public void settingTheBalanceDropsBufferedCredits() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(64,
+      BalanceMode.LOCKED, AccountsJournal.NONE, HOT, TransferMetrics.NONE);
+    repository.createAccount(new Account("fees", BigDecimal.ZERO));
+    repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    repository.instantTransfer(new Transfer("fees", "Id-1", new BigDecimal("2.50")));
+
+    repository.getAccount("fees").setBalance(BigDecimal.TEN);
+    assertThat(repository.getBalanceMinorUnits("fees")).isEqualTo(10L * 100);
+    repository.instantTransfer(new Transfer("Id-1", "fees", BigDecimal.TEN));
+    assertBalances(repository, 10_750L, 0L);
+  }
+
+  private static void assertBalances(AccountsRepository repository, long payer, long fees) {
+    assertThat(repository.getBalanceMinorUnits("Id-1")).isEqualTo(payer);
+    assertThat(repository.getBalanceMinorUnits("fees")).isEqualTo(fees);
+  }
+}
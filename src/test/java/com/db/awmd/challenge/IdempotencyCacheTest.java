@@ -0,0 +1,50 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.service.IdempotencyCache;
+import com.db.awmd.challenge.service.IdempotencyMetrics;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class IdempotencyCacheTest {
+
+  @Test
+  public void keysAreForgottenWhenFullOrExpired() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    IdempotencyCache<String> cache =
+      new IdempotencyCache<>(4, 50, TimeUnit.MILLISECONDS, 1, clock::get);
+
+    assertThat(cache.putIfAbsent("key-1", "first")).isNull();
+    assertThat(cache.putIfAbsent("key-1", "second")).isEqualTo("first");
+    for (int i = 2; i <= 5; i++) {
+      assertThat(cache.putIfAbsent("key-" + i, "value-" + i)).isNull();
+    }
+    // key-1 was the oldest, so it made room for key-5.
+    assertThat(cache.size()).isEqualTo(4);
+    assertThat(cache.putIfAbsent("key-2", "again")).isEqualTo("value-2");
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+    assertThat(cache.putIfAbsent("key-2", "after expiry")).isNull();
+    assertThat(cache.size()).isEqualTo(1);
+
+    IdempotencyMetrics metrics = cache.getMetrics();
+    assertThat(metrics.getHits()).isEqualTo(2);
+    assertThat(metrics.getMisses()).isEqualTo(6);
+    assertThat(metrics.getEvictions()).isEqualTo(1);
+    assertThat(metrics.getExpirations()).isEqualTo(4);
+  }
+
+  @Test
+  public void removeOnlyForgetsTheGivenValue() {
+    IdempotencyCache<String> cache = new IdempotencyCache<>(16, 1, TimeUnit.MINUTES, 4);
+    cache.putIfAbsent("key-1", "first");
+
+    cache.remove("key-1", "other");
+    assertThat(cache.putIfAbsent("key-1", "second")).isEqualTo("first");
+
+    cache.remove("key-1", "first");
+    assertThat(cache.putIfAbsent("key-1", "second")).isNull();
+  }
+}
@@ -0,0 +1,158 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryReplicated;
+import com.db.awmd.challenge.repository.InProcessReplicationTransport;
+import com.db.awmd.challenge.repository.ReplicationProperties;
+import com.db.awmd.challenge.repository.ReplicationTransport;
+import com.db.awmd.challenge.repository.SocketReplicationTransport;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A replicated cluster running in this JVM, its nodes talking either in process or over loopback
+ * sockets, so that replication and failover can be exercised on one machine.
+ */
+public class LocalCluster implements AutoCloseable {
+
+  private final InProcessReplicationTransport.Network network;
+
+  private final Map<String, String> addresses = new LinkedHashMap<>();
+
+  private final Consumer<ReplicationProperties> tuning;
+
+  private final Map<String, AccountsRepositoryReplicated> nodes = new LinkedHashMap<>();
+
+  private LocalCluster(int size, boolean sockets, Consumer<ReplicationProperties> tuning)
+    throws IOException {
+    this.network = sockets ? null : new InProcessReplicationTransport.Network();
+    this.tuning = tuning;
+    for (int i = 1; i <= size; i++) {
+      addresses.put("node-" + i, sockets ? "127.0.0.1:" + freePort() : "in-process");
+    }
+    for (String nodeId : addresses.keySet()) {
+      start(nodeId, "node-1");
+    }
+  }
+
+  public static LocalCluster inProcess(int size, Consumer<ReplicationProperties> tuning)
+    throws IOException {
+    return new LocalCluster(size, false, tuning);
+  }
+
+  public static LocalCluster overLoopback(int size, Consumer<ReplicationProperties> tuning)
+    throws IOException {
+    return new LocalCluster(size, true, tuning);
+  }
+
+  public AccountsRepositoryReplicated leader() {
+    for (AccountsRepositoryReplicated node : nodes.values()) {
+      if (node.isLeader()) {
+        return node;
+      }
+    }
+    throw new IllegalStateException("No node leads the cluster");
+  }
+
+  public List<AccountsRepositoryReplicated> followers() {
+    List<AccountsRepositoryReplicated> followers = new ArrayList<>();
+    for (AccountsRepositoryReplicated node : nodes.values()) {
+      if (!node.isLeader()) {
+        followers.add(node);
+      }
+    }
+    return followers;
+  }
+
+  /**
+   * Stops a node as if it had crashed.
+   */
+  public void stop(String nodeId) throws InterruptedException {
+    AccountsRepositoryReplicated node = nodes.remove(nodeId);
+    if (node != null) {
+      node.close();
+    }
+  }
+
+  /**
+   * Starts a stopped node again with nothing in it, to be brought up to date by the leader.
+   */
+  public AccountsRepositoryReplicated restart(String nodeId) {
+    return start(nodeId, leader().getNodeId());
+  }
+
+  /**
+   * Stops the leader and promotes the follower that holds the most of the log.
+   */
+  public AccountsRepositoryReplicated failover() throws InterruptedException {
+    stop(leader().getNodeId());
+    AccountsRepositoryReplicated next = nodes.values().stream()
+      .max(Comparator.comparingLong(AccountsRepositoryReplicated::getLogPosition))
+      .orElseThrow(() -> new IllegalStateException("No node left to promote"));
+    next.promote();
+    return next;
+  }
+
+  /**
+   * Waits until every running node has applied the leader's whole log.
+   */
+  public void awaitReplication(long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      long end = leader().getLogPosition();
+      boolean replicated = true;
+      for (AccountsRepositoryReplicated node : nodes.values()) {
+        replicated &= node.getLogPosition() == end;
+      }
+      if (replicated) {
+        return;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Followers did not catch up within " + timeoutMillis + " ms");
+      }
+      Thread.sleep(5);
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    for (AccountsRepositoryReplicated node : nodes.values()) {
+      node.close();
+    }
+    nodes.clear();
+  }
+
+  private AccountsRepositoryReplicated start(String nodeId, String leaderId) {
+    ReplicationProperties properties = new ReplicationProperties();
+    properties.setNodeId(nodeId);
+    properties.setNodes(addresses);
+    properties.setInitialLeader(leaderId);
+    tuning.accept(properties);
+    ReplicationTransport transport;
+    if (network != null) {
+      transport = network.transport();
+    } else {
+      Map<String, InetSocketAddress> sockets = new LinkedHashMap<>();
+      addresses.forEach((id, address) ->
+        sockets.put(id, SocketReplicationTransport.parseAddress(address)));
+      transport = new SocketReplicationTransport(sockets);
+    }
+    AccountsRepositoryReplicated node =
+      new AccountsRepositoryReplicated(properties, transport, 64, TransferMetrics.NONE);
+    nodes.put(nodeId, node);
+    return node;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class MoneyTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void convertsExactlyAndFormatsWithoutRounding() {
+    assertThat(Money.of(new BigDecimal("12.5")).getMinorUnits()).isEqualTo(1250);
+    assertThat(Money.of(new BigDecimal("1E+2")).getMinorUnits()).isEqualTo(10_000);
+    assertThat(Money.ofMinorUnits(1250).toString()).isEqualTo("12.50");
+    assertThat(Money.ofMinorUnits(7).toString()).isEqualTo("0.07");
+    assertThat(Money.ofMinorUnits(-7).toString()).isEqualTo("-0.07");
+    assertThat(Money.ofMinorUnits(-1234).toString()).isEqualTo("-12.34");
+    assertThat(Money.ofMinorUnits(Long.MIN_VALUE).toString())
+      .isEqualTo(BigDecimal.valueOf(Long.MIN_VALUE, Money.SCALE).toPlainString());
+    assertThat(Money.ofMinorUnits(150).plus(Money.ofMinorUnits(50)).minus(Money.ofMinorUnits(25)))
+      .isEqualTo(Money.ofMinorUnits(175));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void refusesMoreDecimalPlacesThanTheScale() {
+    Money.of(new BigDecimal("0.001"));
+  }
+
+  @Test
+  public void readAndWrittenAsPlainNumbers() throws Exception {
+    Transfer transfer = objectMapper.readValue(
+      "{\"toAccountId\":\"Id-1\",\"fromAccountId\":\"Id-2\",\"amount\":10.5}", Transfer.class);
+    assertThat(transfer.getAmount()).isEqualTo(Money.ofMinorUnits(1050));
+    assertThat(objectMapper.writeValueAsString(Money.ofMinorUnits(1050))).isEqualTo("10.50");
+
+    try {
+      objectMapper.readValue(
+        "{\"toAccountId\":\"Id-1\",\"fromAccountId\":\"Id-2\",\"amount\":10.505}", Transfer.class);
+      assertThat(false).as("amount with three decimal places was accepted").isTrue();
+    } catch (JsonMappingException expected) {
+      assertThat(expected.getCause()).isInstanceOf(ArithmeticException.class);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationMetrics;
+import com.db.awmd.challenge.service.NotificationProperties;
+import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.OverflowPolicy;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class NotificationDispatcherTest {
+
+  private NotificationDispatcher dispatcher;
+
+  @After
+  public void shutdownDispatcher() throws Exception {
+    if (dispatcher != null) {
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  public void dispatchDoesNotWaitForSlowBackend() throws Exception {
+    SlowNotificationService backend = new SlowNotificationService(50, 10);
+    dispatcher = new NotificationDispatcher(backend, properties(100, OverflowPolicy.BLOCK));
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      assertThat(dispatcher.dispatch(new Account("Id-" + i), "Updated balance is: 1")).isTrue();
+    }
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(50);
+
+    assertThat(backend.delivered.await(5, TimeUnit.SECONDS)).isTrue();
+    NotificationMetrics metrics = awaitDispatched(10);
+    assertThat(metrics.getDispatched()).isEqualTo(10);
+    assertThat(metrics.getMaxDispatchLatencyMicros()).isGreaterThanOrEqualTo(50_000);
+  }
+
+  @Test
+  public void dropPolicyDiscardsWhenQueueIsFull() throws Exception {
+    SlowNotificationService backend = new SlowNotificationService(200, 1);
+    dispatcher = new NotificationDispatcher(backend, properties(2, OverflowPolicy.DROP));
+
+    int accepted = 0;
+    for (int i = 0; i < 20; i++) {
+      if (dispatcher.dispatch(new Account("Id-" + i), "Updated balance is: 1")) {
+        accepted++;
+      }
+    }
+
+    assertThat(accepted).isLessThan(20);
+    assertThat(dispatcher.getMetrics().getDropped()).isEqualTo(20 - accepted);
+  }
+
+  @Test(timeout = 5000)
+  public void blockPolicyDoesNotWaitOnceShutDown() throws Exception {
+    SlowNotificationService backend = new SlowNotificationService(0, 1);
+    dispatcher = new NotificationDispatcher(backend, properties(1, OverflowPolicy.BLOCK));
+    dispatcher.shutdown();
+
+    dispatcher.dispatch(new Account("Id-1"), "Updated balance is: 1");
+    assertThat(dispatcher.dispatch(new Account("Id-2"), "Updated balance is: 1")).isFalse();
+    assertThat(dispatcher.getMetrics().getDropped()).isEqualTo(1);
+  }
+
+  @Test
+  public void spillPolicyEventuallyDeliversEverything() throws Exception {
+    SlowNotificationService backend = new SlowNotificationService(5, 50);
+    NotificationProperties properties = properties(2, OverflowPolicy.SPILL);
+    File spillFile = File.createTempFile("notifications", ".spill");
+    spillFile.delete();
+    properties.setSpillFile(spillFile.getPath());
+    dispatcher = new NotificationDispatcher(backend, properties);
+
+    for (int i = 0; i < 50; i++) {
+      assertThat(dispatcher.dispatch(new Account("Id-" + i), "Updated balance is: " + i)).isTrue();
+    }
+
+    assertThat(backend.delivered.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(dispatcher.getMetrics().getSpilled()).isGreaterThan(0);
+    assertThat(dispatcher.getMetrics().getDropped()).isZero();
+    assertThat(backend.calls.get()).isEqualTo(50);
+  }
+
+  @Test
+  public void spillDrainsInBatchesWhileLiveTrafficKeepsComing() throws Exception {
+    SlowNotificationService backend = new SlowNotificationService(1, 200);
+    NotificationProperties properties = properties(4, OverflowPolicy.SPILL);
+    File spillFile = File.createTempFile("notifications", ".spill");
+    spillFile.delete();
+    properties.setSpillFile(spillFile.getPath());
+    dispatcher = new NotificationDispatcher(backend, properties);
+
+    for (int i = 0; i < 200; i++) {
+      assertThat(dispatcher.dispatch(new Account("Id-" + i), "burst " + i)).isTrue();
+    }
+    assertThat(dispatcher.getMetrics().getSpilled()).isGreaterThan(0);
+
+    // The queue never stays empty long enough for a worker to go idle.
+    AtomicBoolean live = new AtomicBoolean(true);
+    Thread feeder = new Thread(() -> {
+      while (live.get()) {
+        dispatcher.dispatch(new Account("Id-live"), "live");
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    });
+    feeder.start();
+    try {
+      assertThat(backend.delivered.await(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      live.set(false);
+      feeder.join();
+    }
+    assertThat(backend.maxBatch.get()).isGreaterThan(1);
+  }
+
+  private NotificationMetrics awaitDispatched(long expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    NotificationMetrics metrics = dispatcher.getMetrics();
+    while (metrics.getDispatched() < expected && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+      metrics = dispatcher.getMetrics();
+    }
+    return metrics;
+  }
+
+  private static NotificationProperties properties(int capacity, OverflowPolicy policy) {
+    NotificationProperties properties = new NotificationProperties();
+    properties.setQueueCapacity(capacity);
+    properties.setWorkers(1);
+    properties.setBatchSize(8);
+    properties.setOverflowPolicy(policy);
+    return properties;
+  }
+
+  /**
+   * Stand-in for a remote notification backend with fixed latency per call.
+   */
+  private static class SlowNotificationService implements NotificationService {
+
+    private final long latencyMillis;
+
+    private final CountDownLatch delivered;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger maxBatch = new AtomicInteger();
+
+    SlowNotificationService(long latencyMillis, int expected) {
+      this.latencyMillis = latencyMillis;
+      this.delivered = new CountDownLatch(expected);
+    }
+
+    @Override
+    public void notifyAboutTransfer(Account account, String transferDescription) {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      calls.incrementAndGet();
+      if (!"live".equals(transferDescription)) {
+        delivered.countDown();
+      }
+    }
+
+    @Override
+    public void notifyAboutTransfers(List<Account> accounts, List<String> transferDescriptions) {
+      maxBatch.accumulateAndGet(accounts.size(), Math::max);
+      NotificationService.super.notifyAboutTransfers(accounts, transferDescriptions);
+    }
+  }
+}
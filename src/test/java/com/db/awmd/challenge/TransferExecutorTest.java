@@ -0,0 +1,110 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.audit.AuditLog;
+import com.db.awmd.challenge.audit.AuditProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.RejectionReason;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.LimitExceededException;
+import com.db.awmd.challenge.ledger.LedgerProperties;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.limits.LimitsProperties;
+import com.db.awmd.challenge.limits.TransferLimits;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceStream;
+import com.db.awmd.challenge.service.BalanceStreamProperties;
+import com.db.awmd.challenge.service.EmailNotificationService;
+import com.db.awmd.challenge.service.IdempotencyProperties;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationProperties;
+import com.db.awmd.challenge.service.TransferExecutor;
+import com.db.awmd.challenge.service.TransferExecutorProperties;
+import java.math.BigDecimal;
+import org.junit.After;
+import org.junit.Test;
+
+public class TransferExecutorTest {
+
+  private AccountsRepositoryInMemory repository;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private BalanceStream balanceStream;
+
+  private TransferExecutor transferExecutor;
+
+  @After
+  public void shutdown() throws Exception {
+    transferExecutor.shutdown();
+    balanceStream.shutdown();
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  public void retryOfARefusedSubmissionDoesNotStayPending() throws Exception {
+    Transfer transfer = new Transfer("Id-2", "Id-1", BigDecimal.ONE);
+    transfer.setIdempotencyKey("key-1");
+    String[] retriedId = new String[1];
+    // The retry comes in after the original took the key but before its limits refused it.
+    TransferLimits limits = new TransferLimits(new LimitsProperties()) {
+      @Override
+      public long reserve(String accountId, long amount) {
+        retriedId[0] = transferExecutor.submit(transfer);
+        throw new LimitExceededException("Too many transfers", 60);
+      }
+    };
+    start(limits);
+
+    try {
+      transferExecutor.submit(transfer);
+      fail("Should have refused the transfer");
+    } catch (LimitExceededException expected) {
+      TransferStatus retried = transferExecutor.getStatus(retriedId[0]);
+      assertThat(retried.getState()).isEqualTo(TransferState.REJECTED);
+      assertThat(retried.getMessage()).isEqualTo("Too many transfers");
+    }
+  }
+
+  @Test
+  public void accountGoneBeforeTheWorkerRunsIsReportedAsUnknown() throws Exception {
+    // The accounts are cleared after the submission was checked but before a worker applies it.
+    TransferLimits limits = new TransferLimits(new LimitsProperties()) {
+      @Override
+      public long reserve(String accountId, long amount) {
+        repository.clearAccounts();
+        return super.reserve(accountId, amount);
+      }
+    };
+    start(limits);
+
+    String transferId = transferExecutor.submit(new Transfer("Id-2", "Id-1", BigDecimal.ONE));
+
+    TransferStatus status = transferExecutor.await(transferId);
+    assertThat(status.getState()).isEqualTo(TransferState.REJECTED);
+    assertThat(status.getReason()).isEqualTo(RejectionReason.UNKNOWN_ACCOUNT);
+  }
+
+  private void start(TransferLimits limits) {
+    repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Id-1", new BigDecimal("100")));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    notificationDispatcher =
+      new NotificationDispatcher(new EmailNotificationService(), new NotificationProperties());
+    balanceStream = new BalanceStream(repository, new BalanceStreamProperties());
+    AuditProperties audit = new AuditProperties();
+    audit.setEnabled(false);
+    LedgerProperties ledger = new LedgerProperties();
+    ledger.setMaxEntries(1024);
+    AccountsService accountsService = new AccountsService(repository, notificationDispatcher,
+      TransferMetrics.NONE, new AuditLog(audit), new TransferLedger(ledger), balanceStream, limits);
+    transferExecutor = new TransferExecutor(accountsService, new TransferExecutorProperties(),
+      new IdempotencyProperties());
+  }
+}
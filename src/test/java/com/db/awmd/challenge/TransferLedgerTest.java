@@ -0,0 +1,73 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.ledger.LedgerEntry;
+import com.db.awmd.challenge.ledger.LedgerProperties;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class TransferLedgerTest {
+
+  private static TransferLedger ledger(int maxEntries) {
+    LedgerProperties properties = new LedgerProperties();
+    properties.setMaxEntries(maxEntries);
+    return new TransferLedger(properties);
+  }
+
+  @Test
+  public void latestAndTimeRangeAreServedPerAccount() throws Exception {
+    TransferLedger ledger = ledger(1_000);
+    long before = System.currentTimeMillis();
+    assertThat(ledger.record("Id-1", "Id-2", 1050)).isEqualTo(0);
+    assertThat(ledger.record("Id-2", "Id-3", 250)).isEqualTo(1);
+    Thread.sleep(5);
+    long middle = System.currentTimeMillis();
+    assertThat(ledger.record("Id-3", "Id-1", 100)).isEqualTo(2);
+
+    List<LedgerEntry> latest = ledger.latest("Id-1", 10);
+    assertThat(latest).extracting(LedgerEntry::getTransferId).containsExactly(2L, 0L);
+    assertThat(latest.get(1).getAmount().toBigDecimal()).isEqualByComparingTo("10.50");
+    assertThat(latest.get(1).getToAccountId()).isEqualTo("Id-2");
+
+    assertThat(ledger.between("Id-1", middle, Long.MAX_VALUE, 10))
+      .extracting(LedgerEntry::getTransferId).containsExactly(2L);
+    assertThat(ledger.between("Id-2", before, middle, 10))
+      .extracting(LedgerEntry::getTransferId).containsExactly(1L, 0L);
+    assertThat(ledger.latest("Id-4", 10)).isEmpty();
+
+    assertThat(ledger.record("Id-1", "Id-2", 1)).isEqualTo(3);
+    assertThat(ledger.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void concurrentAppendsAreAllIndexedUntilFull() throws Exception {
+    int threads = 4;
+    int perThread = 100_000;
+    TransferLedger ledger = ledger(threads * perThread - 10);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      String account = "Id-" + t;
+      workers.add(executor.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          ledger.record(account, "Id-shared", 1);
+        }
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    executor.shutdown();
+
+    assertThat(ledger.size()).isEqualTo(threads * perThread - 10);
+    assertThat(ledger.getDropped()).isEqualTo(10);
+    assertThat(ledger.latest("Id-shared", Integer.MAX_VALUE)).hasSize(threads * perThread - 10);
+  }
+}
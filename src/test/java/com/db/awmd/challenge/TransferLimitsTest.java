@@ -0,0 +1,208 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.audit.AuditLog;
+import com.db.awmd.challenge.audit.AuditProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransfer;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.exception.LimitExceededException;
+import com.db.awmd.challenge.ledger.LedgerProperties;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.limits.AccountLimits;
+import com.db.awmd.challenge.limits.LimitWindow;
+import com.db.awmd.challenge.limits.LimitsProperties;
+import com.db.awmd.challenge.limits.TransferLimits;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceStream;
+import com.db.awmd.challenge.service.BalanceStreamProperties;
+import com.db.awmd.challenge.service.EmailNotificationService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationProperties;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class TransferLimitsTest {
+
+  private static final long START = 1_500_000_000_000L;
+
+  private final AtomicLong now = new AtomicLong(START);
+
+  private TransferLimits limits() {
+    LimitsProperties.Tier standard = new LimitsProperties.Tier();
+    standard.setMaxTransfersPerMinute(3);
+    standard.setMaxAmountPerHour(new BigDecimal("100"));
+    LimitsProperties.Tier premium = new LimitsProperties.Tier();
+    premium.setMaxAmountPerDay(new BigDecimal("1000"));
+    LimitsProperties properties = new LimitsProperties();
+    properties.setDefaultTier("standard");
+    properties.getTiers().put("standard", standard);
+    properties.getTiers().put("premium", premium);
+    properties.getTiers().put("unlimited", new LimitsProperties.Tier());
+    return new TransferLimits(properties, now::get);
+  }
+
+  @Test
+  public void refusesWhatWouldBreachAWindowUntilItSlides() {
+    TransferLimits limits = limits();
+    for (int i = 0; i < 3; i++) {
+      limits.reserve("Id-1", 100);
+    }
+    try {
+      limits.reserve("Id-1", 100);
+      fail("Should have hit the per minute cap");
+    } catch (LimitExceededException expected) {
+      assertThat(expected.getMessage()).contains("per minute transfer cap");
+      assertThat(expected.getRetryAfterSeconds()).isBetween(1L, 60L);
+    }
+    // Other accounts have their own windows.
+    limits.reserve("Id-2", 100);
+
+    now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+    limits.reserve("Id-1", 9_700);
+    try {
+      limits.reserve("Id-1", 1);
+      fail("Should have hit the hourly limit");
+    } catch (LimitExceededException expected) {
+      assertThat(expected.getMessage()).contains("hourly outflow limit");
+    }
+    // The refused transfer was not counted against the per minute cap.
+    limits.reserve("Id-1", 0);
+    limits.reserve("Id-1", 0);
+
+    now.addAndGet(TimeUnit.HOURS.toMillis(1));
+    limits.reserve("Id-1", 10_000);
+  }
+
+  @Test
+  public void releasedReservationsNoLongerCount() {
+    TransferLimits limits = limits();
+    long reservation = limits.reserve("Id-1", 10_000);
+    limits.release("Id-1", 10_000, reservation);
+    limits.reserve("Id-1", 10_000);
+
+    AccountLimits usage = limits.getLimits("Id-1");
+    assertThat(usage.getTier()).isEqualTo("standard");
+    assertThat(usage.getWindows()).extracting("window").containsExactly(
+      LimitWindow.TRANSFERS_PER_MINUTE, LimitWindow.AMOUNT_PER_HOUR, LimitWindow.AMOUNT_PER_DAY);
+    assertThat(usage.getWindows().get(0).getUsed()).isEqualByComparingTo("1");
+    assertThat(usage.getWindows().get(1).getUsed()).isEqualByComparingTo("100");
+    assertThat(usage.getWindows().get(2).getLimit()).isNull();
+  }
+
+  @Test
+  public void tiersCanBeChangedAndIdleCountersAreDropped() {
+    TransferLimits limits = limits();
+    assertThat(limits.assignTier("Id-1", "gold")).isFalse();
+    assertThat(limits.assignTier("Id-1", "premium")).isTrue();
+    for (int i = 0; i < 10; i++) {
+      limits.reserve("Id-1", 10_000);
+    }
+    try {
+      limits.reserve("Id-1", 1);
+      fail("Should have hit the daily limit");
+    } catch (LimitExceededException expected) {
+      assertThat(expected.getMessage()).contains("daily outflow limit");
+    }
+
+    assertThat(limits.assignTier("Id-2", "unlimited")).isTrue();
+    assertThat(limits.reserve("Id-2", Long.MAX_VALUE / 2)).isEqualTo(TransferLimits.NOT_RESERVED);
+    assertThat(limits.getMetrics().getTrackedAccounts()).isEqualTo(1);
+
+    // Counters idle for over a day start afresh on the account's next transfer.
+    now.addAndGet(TimeUnit.DAYS.toMillis(1) + TimeUnit.MINUTES.toMillis(1));
+    limits.reserve("Id-1", 1);
+    assertThat(limits.getMetrics().getEvicted()).isEqualTo(1);
+    assertThat(limits.getLimits("Id-1").getWindows().get(2).getUsed())
+      .isEqualByComparingTo("0.01");
+
+    // Or are swept away by the transfers of other accounts.
+    for (int i = 0; i < 100; i++) {
+      limits.reserve("Id-" + (i + 3), 1);
+    }
+    assertThat(limits.getMetrics().getTrackedAccounts()).isEqualTo(101);
+    now.addAndGet(TimeUnit.DAYS.toMillis(1) + TimeUnit.MINUTES.toMillis(1));
+    limits.assignTier("Id-hot", "premium");
+    for (int i = 0; i < 20_000; i++) {
+      limits.reserve("Id-hot", 0);
+    }
+    assertThat(limits.getMetrics().getTrackedAccounts()).isEqualTo(1);
+    assertThat(limits.getMetrics().getEvicted()).isEqualTo(102);
+  }
+
+  @Test
+  public void racingTransfersNeverOvershootALimit() throws InterruptedException {
+    TransferLimits limits = limits();
+    AtomicInteger passed = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 1_000; i++) {
+          try {
+            limits.reserve("Id-1", 1);
+            passed.incrementAndGet();
+          } catch (LimitExceededException expected) {
+            // Over the cap.
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(passed.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void failedBatchHandsBackItsReservations() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory() {
+      @Override
+      public BatchTransferResult batchTransfer(List<Transfer> transfers, BatchMode mode) {
+        throw new JournalException("Journal write failed");
+      }
+    };
+    repository.createAccount(new Account("Id-1", new BigDecimal("1000")));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    TransferLimits limits = limits();
+    NotificationDispatcher notificationDispatcher =
+      new NotificationDispatcher(new EmailNotificationService(), new NotificationProperties());
+    BalanceStream balanceStream = new BalanceStream(repository, new BalanceStreamProperties());
+    AuditProperties audit = new AuditProperties();
+    audit.setEnabled(false);
+    LedgerProperties ledger = new LedgerProperties();
+    ledger.setMaxEntries(1024);
+    AccountsService accountsService = new AccountsService(repository, notificationDispatcher,
+      TransferMetrics.NONE, new AuditLog(audit), new TransferLedger(ledger), balanceStream, limits);
+    try {
+      BatchTransfer batch = new BatchTransfer(BatchMode.ALL_OR_NOTHING,
+        Arrays.asList(new Transfer("Id-2", "Id-1", new BigDecimal("40")),
+          new Transfer("Id-2", "Id-1", new BigDecimal("50"))));
+      try {
+        accountsService.batchTransfer(batch);
+        fail("Should have failed with the repository");
+      } catch (JournalException expected) {
+        AccountLimits usage = limits.getLimits("Id-1");
+        assertThat(usage.getWindows().get(0).getUsed()).isEqualByComparingTo("0");
+        assertThat(usage.getWindows().get(1).getUsed()).isEqualByComparingTo("0");
+      }
+    } finally {
+      balanceStream.shutdown();
+      notificationDispatcher.shutdown();
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.BatchMode;
+import com.db.awmd.challenge.domain.BatchTransferResult;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.domain.TransferState;
+import com.db.awmd.challenge.schedule.ScheduleProperties;
+import com.db.awmd.challenge.schedule.ScheduledOrder;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransferSchedulerTest {
+
+  private static final long START = 1_500_000_000_000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<Transfer> applied = new ArrayList<>();
+
+  private TransferScheduler scheduler(long nowMillis) throws Exception {
+    ScheduleProperties properties = new ScheduleProperties();
+    properties.setFile(folder.getRoot().toPath().resolve("schedule.log").toString());
+    properties.setBatchSize(2);
+    return scheduler(nowMillis, properties);
+  }
+
+  private TransferScheduler scheduler(long nowMillis, ScheduleProperties properties)
+    throws Exception {
+    return new TransferScheduler(properties, this::apply, nowMillis);
+  }
+
+  /*
+   * Transfers out of "broke" are rejected, everything else goes through.
+   */
+  private BatchTransferResult apply(List<Transfer> transfers) {
+    List<TransferOutcome> results = new ArrayList<>();
+    int completed = 0;
+    for (int i = 0; i < transfers.size(); i++) {
+      Transfer transfer = transfers.get(i);
+      if (transfer.getFromAccountId().equals("broke")) {
+        results.add(new TransferOutcome(i, TransferState.REJECTED, "Insufficient funds"));
+      } else {
+        applied.add(transfer);
+        results.add(new TransferOutcome(i, TransferState.COMPLETED, null));
+        completed++;
+      }
+    }
+    return new BatchTransferResult(BatchMode.BEST_EFFORT, completed,
+      transfers.size() - completed, results, Collections.emptyMap());
+  }
+
+  private static Transfer transfer(String from, String to, long minorUnits) {
+    return new Transfer(to, from, Money.ofMinorUnits(minorUnits));
+  }
+
+  @Test
+  public void oneOffAndRecurringOrdersFireWhenDue() throws Exception {
+    try (TransferScheduler scheduler = scheduler(START)) {
+      ScheduledOrder once =
+        scheduler.schedule(transfer("Id-1", "Id-2", 500), START + 1_050, 0, null);
+      ScheduledOrder weekly = scheduler.schedule(transfer("Id-2", "Id-3", 100), START + 2_000,
+        TimeUnit.DAYS.toMillis(7), 3);
+      scheduler.schedule(transfer("broke", "Id-3", 100), START + 2_000, 0, null);
+
+      assertThat(scheduler.runDue(START + 1_000)).isEqualTo(0);
+      assertThat(scheduler.runDue(START + 1_100)).isEqualTo(1);
+      assertThat(applied).extracting(Transfer::getFromAccountId).containsExactly("Id-1");
+      assertThat(scheduler.getOrder(once.getId())).isNull();
+
+      assertThat(scheduler.runDue(START + 2_000)).isEqualTo(2);
+      assertThat(scheduler.getMetrics().getFailed()).isEqualTo(1);
+      ScheduledOrder next = scheduler.getOrder(weekly.getId());
+      assertThat(next.getRemainingOccurrences()).isEqualTo(2);
+      assertThat(next.getIntervalSeconds()).isEqualTo(TimeUnit.DAYS.toSeconds(7));
+
+      long week = TimeUnit.DAYS.toMillis(7);
+      assertThat(scheduler.runDue(START + 2_000 + week - 1)).isEqualTo(0);
+      assertThat(scheduler.runDue(START + 2_000 + week)).isEqualTo(1);
+      // Missed occurrences are not made up for: the last one fires once however late it is.
+      assertThat(scheduler.runDue(START + 2_000 + 10 * week)).isEqualTo(1);
+      assertThat(scheduler.getOrder(weekly.getId())).isNull();
+      assertThat(scheduler.getMetrics().getFired()).isEqualTo(4);
+      assertThat(scheduler.getMetrics().getPending()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void ordersFarAheadCascadeDownToTheirTick() throws Exception {
+    // Level 0, 1, 2 and 3 of the wheel at 100 ms ticks, then beyond its horizon.
+    long[] offsets = {150, 25_600, 25_700, 6_553_600, 6_553_650, 1_677_721_600L,
+      1_677_721_750L, TimeUnit.DAYS.toMillis(400), TimeUnit.DAYS.toMillis(365 * 20)};
+    try (TransferScheduler scheduler = scheduler(START)) {
+      for (long offset : offsets) {
+        scheduler.schedule(transfer("Id-" + offset, "Id-0", 1), START + offset, 0, null);
+      }
+      long now = START;
+      for (long offset : offsets) {
+        // Steps through every tick up to the level 3 orders, jumps straight to the later ones.
+        long step = offset <= 1_677_721_750L ? 6_553_600 : Long.MAX_VALUE / 2;
+        while (START + offset - 1 - now > step) {
+          now += step;
+          assertThat(scheduler.runDue(now)).isEqualTo(0);
+        }
+        now = START + offset - 1;
+        assertThat(scheduler.runDue(now)).isEqualTo(0);
+        // Fires within one tick of its time.
+        now = START + offset + 99;
+        assertThat(scheduler.runDue(now)).isEqualTo(1);
+        assertThat(applied.get(applied.size() - 1).getFromAccountId()).isEqualTo("Id-" + offset);
+      }
+    }
+  }
+
+  @Test
+  public void pendingOrdersSurviveRestartButCancelledOnesDoNot() throws Exception {
+    long kept;
+    long cancelled;
+    long recurring;
+    try (TransferScheduler scheduler = scheduler(START)) {
+      kept = scheduler.schedule(transfer("Id-1", "Id-2", 250), START + 60_000, 0, null).getId();
+      cancelled = scheduler.schedule(transfer("Id-1", "Id-3", 250), START + 60_000, 0, null)
+        .getId();
+      recurring = scheduler.schedule(transfer("Id-2", "Id-1", 75), START + 1_000, 10_000, null)
+        .getId();
+      assertThat(scheduler.cancel(cancelled)).isTrue();
+      assertThat(scheduler.cancel(cancelled)).isFalse();
+      assertThat(scheduler.runDue(START + 1_000)).isEqualTo(1);
+    }
+
+    try (TransferScheduler scheduler = scheduler(START + 5_000)) {
+      assertThat(scheduler.getMetrics().getPending()).isEqualTo(2);
+      assertThat(scheduler.getOrder(cancelled)).isNull();
+      ScheduledOrder order = scheduler.getOrder(kept);
+      assertThat(order.getAmount().getMinorUnits()).isEqualTo(250);
+      assertThat(order.getToAccountId()).isEqualTo("Id-2");
+      assertThat(scheduler.getOrder(recurring).getRemainingOccurrences()).isNull();
+      assertThat(scheduler.getOrder(recurring).getNextExecution())
+        .isEqualTo(Instant.ofEpochMilli(START + 11_000).toString());
+
+      ScheduledOrder added =
+        scheduler.schedule(transfer("Id-4", "Id-5", 1), START + 6_000, 0, null);
+      assertThat(added.getId()).isNotIn(kept, recurring);
+      assertThat(scheduler.runDue(START + 60_000)).isEqualTo(3);
+    }
+
+    try (TransferScheduler scheduler = scheduler(START + 60_000)) {
+      assertThat(scheduler.getMetrics().getPending()).isEqualTo(1);
+      assertThat(scheduler.getOrder(recurring)).isNotNull();
+    }
+  }
+
+  @Test
+  public void anOccurrenceCaughtByACrashIsNotFiredAgain() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("schedule.log");
+    Path atCrash = folder.getRoot().toPath().resolve("crashed.log");
+    ScheduleProperties properties = new ScheduleProperties();
+    properties.setFile(file.toString());
+    // What is on disk while the batch is being applied is what a crash at that point leaves.
+    Function<List<Transfer>, BatchTransferResult> crashing = transfers -> {
+      try {
+        Files.copy(file, atCrash);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return apply(transfers);
+    };
+    long recurring;
+    try (TransferScheduler scheduler = new TransferScheduler(properties, crashing, START)) {
+      scheduler.schedule(transfer("Id-1", "Id-2", 250), START + 1_000, 0, null);
+      recurring = scheduler.schedule(transfer("Id-2", "Id-1", 75), START + 1_000, 10_000, null)
+        .getId();
+      assertThat(scheduler.runDue(START + 1_000)).isEqualTo(2);
+    }
+
+    properties.setFile(atCrash.toString());
+    try (TransferScheduler scheduler = scheduler(START + 5_000, properties)) {
+      assertThat(scheduler.runDue(START + 5_000)).isEqualTo(0);
+      assertThat(scheduler.getMetrics().getPending()).isEqualTo(1);
+      assertThat(scheduler.getOrder(recurring).getNextExecution())
+        .isEqualTo(Instant.ofEpochMilli(START + 11_000).toString());
+    }
+    assertThat(applied).hasSize(2);
+  }
+}